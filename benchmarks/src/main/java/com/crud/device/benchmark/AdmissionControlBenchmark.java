@@ -0,0 +1,46 @@
+package com.crud.device.benchmark;
+
+import com.crud.device.admission.ClientRateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost of a rate limit check from 8 threads at once, all for the same client and endpoint, which contend on one
+ * bucket, or each for its own client. The limit is high enough that every request is admitted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class AdmissionControlBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Limiter {
+        final ClientRateLimiter rateLimiter = new ClientRateLimiter(
+                new ClientRateLimiter.Limit(1e12, 1_000_000), Map.of(), 100_000);
+        final AtomicInteger clients = new AtomicInteger();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        @Param({"shared", "distinct"})
+        String clients;
+
+        String clientId;
+
+        @Setup
+        public void setUp(Limiter limiter) {
+            clientId = clients.equals("shared") ? "client" : "client-" + limiter.clients.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public long tryAcquire(Limiter limiter, Client client) {
+        return limiter.rateLimiter.tryAcquire(client.clientId, "GET /api/devices/{id}");
+    }
+}
@@ -0,0 +1,42 @@
+package com.crud.device.benchmark;
+
+import com.crud.device.dto.DeviceDTO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Deterministic device fixtures shared by the benchmarks.
+ */
+public final class BenchmarkDevices {
+    private static final String[] BRANDS = {"Apple", "Samsung", "Dell", "Lenovo", "Sony", "Huawei", "Xiaomi", "Asus"};
+
+    private BenchmarkDevices() {
+    }
+
+    public static String brand(int index) {
+        return BRANDS[Math.floorMod(index, BRANDS.length)];
+    }
+
+    public static DeviceDTO newDevice(int index) {
+        return new DeviceDTO(null, "Device-" + index, brand(index), null);
+    }
+
+    public static List<DeviceDTO> newDevices(int count) {
+        List<DeviceDTO> devices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            devices.add(newDevice(i));
+        }
+        return devices;
+    }
+
+    public static List<DeviceDTO> savedDevices(int count) {
+        List<DeviceDTO> devices = new ArrayList<>(count);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            devices.add(new DeviceDTO((long) i + 1, "Device-" + i, brand(i), new Date(now - i * 1000L)));
+        }
+        return devices;
+    }
+}
@@ -0,0 +1,90 @@
+package com.crud.device.benchmark;
+
+import com.crud.device.DeviceApplication;
+import com.crud.device.service.DeviceService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory held per stored device by the default JPA/H2 in-memory database and by the off-heap engine of the
+ * {@code memory} profile, printed once per trial as heap and direct buffer growth after loading the devices, and the
+ * time to stream all of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DeviceFootprintBenchmark {
+
+    @Param({"100000"})
+    int devices;
+
+    @Param({"default", "memory"})
+    String profile;
+
+    private ConfigurableApplicationContext context;
+    private DeviceService deviceService;
+    private Path datastore;
+
+    @Setup
+    public void setUp() throws IOException {
+        datastore = Files.createTempDirectory("device-footprint");
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(DeviceApplication.class)
+                .web(WebApplicationType.NONE);
+        if (!profile.equals("default")) {
+            builder.profiles(profile);
+        }
+        // The change feed would otherwise retain every loaded device as an event
+        context = builder.run("--device.cache.enabled=false", "--device.changes.max-size=1",
+                "--logging.level.root=WARN", "--device.datastore.path=" + datastore.resolve("devices"),
+                "--device.store.sync-writes=false");
+        deviceService = context.getBean(DeviceService.class);
+
+        long heapBefore = usedHeap();
+        long directBefore = directBytes();
+        deviceService.saveDevices(BenchmarkDevices.newDevices(devices));
+        long heap = usedHeap() - heapBefore;
+        long direct = directBytes() - directBefore;
+        System.out.printf("%n%s: %d bytes heap + %d bytes direct per device%n", profile, heap / devices,
+                direct / devices);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(datastore);
+    }
+
+    @Benchmark
+    public void streamAllDevices(Blackhole blackhole) {
+        deviceService.streamAllDevices(blackhole::consume);
+    }
+
+    private static long usedHeap() {
+        // Several collections, so objects awaiting finalization or reference processing are gone too
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directBytes() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
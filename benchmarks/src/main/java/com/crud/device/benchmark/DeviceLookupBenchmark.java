@@ -0,0 +1,71 @@
+package com.crud.device.benchmark;
+
+import com.crud.device.DeviceApplication;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceLookupDTO;
+import com.crud.device.service.DeviceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving a list of random ids against H2 with one multi-get, which loads them in chunked {@code IN} queries, and
+ * with one {@code getDeviceById} per id. The device cache is disabled so both measure the repository path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DeviceLookupBenchmark {
+
+    private static final int DEVICES = 100_000;
+
+    @Param({"10", "1000", "10000"})
+    int ids;
+
+    private ConfigurableApplicationContext context;
+    private DeviceService deviceService;
+    private List<Long> lookup;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(DeviceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--device.cache.enabled=false", "--logging.level.root=WARN");
+        deviceService = context.getBean(DeviceService.class);
+        deviceService.saveDevices(BenchmarkDevices.newDevices(DEVICES));
+        lookup = new ArrayList<>(ids);
+        for (int i = 0; i < ids; i++) {
+            lookup.add(ThreadLocalRandom.current().nextLong(1, DEVICES + 1));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public DeviceLookupDTO getDevicesByIds() {
+        return deviceService.getDevicesByIds(lookup);
+    }
+
+    @Benchmark
+    public Map<Long, DeviceDTO> getDeviceByIdLoop() {
+        Map<Long, DeviceDTO> found = new LinkedHashMap<>();
+        for (Long id : lookup) {
+            deviceService.getDeviceById(id).ifPresent(device -> found.put(id, device));
+        }
+        return found;
+    }
+}
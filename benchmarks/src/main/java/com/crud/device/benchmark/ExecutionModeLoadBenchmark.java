@@ -0,0 +1,103 @@
+package com.crud.device.benchmark;
+
+import com.crud.device.DeviceApplication;
+import com.crud.device.service.DeviceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of the REST layer on platform request threads, virtual request threads and the reactive stack (WebFlux
+ * and R2DBC). Each operation fires {@code concurrency}
+ * simultaneous GET /api/devices/{id} requests (cache disabled, so every request reaches the database; the reactive stack reads without it anyway) and waits for
+ * all of them; the score is the time to complete the whole wave. Requests that fail are counted in the
+ * {@code failedRequests} secondary result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ExecutionModeLoadBenchmark {
+
+    @Param({"platform", "virtual", "reactive"})
+    String mode;
+
+    @Param({"200", "2000"})
+    int concurrency;
+
+    private static final int DEVICES = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private String baseUrl;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+        public int failedRequests;
+    }
+
+    @Setup
+    public void setUp() {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(DeviceApplication.class)
+                .properties("server.port=0", "device.cache.enabled=false", "logging.level.root=WARN",
+                        // Same connection handling in both modes: keep client connections open across waves and
+                        // never drop SYNs, so only the request execution model differs
+                        "server.tomcat.max-connections=20000", "server.tomcat.accept-count=5000",
+                        "server.tomcat.max-keep-alive-requests=-1", "server.tomcat.keep-alive-timeout=5m");
+        if ("virtual".equals(mode)) {
+            application.profiles("virtual-threads");
+        } else if ("reactive".equals(mode)) {
+            application.profiles("reactive");
+        }
+        context = application.run();
+        context.getBean(DeviceService.class).saveDevices(BenchmarkDevices.newDevices(DEVICES));
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/devices/";
+        // The client side always uses virtual threads so that only the server's execution mode varies
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientExecutor.close();
+        context.close();
+    }
+
+    @Benchmark
+    public void concurrentGetDeviceById(Failures failures) {
+        AtomicInteger failed = new AtomicInteger();
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            long id = ThreadLocalRandom.current().nextLong(1, DEVICES + 1);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + id)).GET().build();
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failed.incrementAndGet();
+                        }
+                        return null;
+                    });
+        }
+        CompletableFuture.allOf(responses).join();
+        failures.failedRequests += failed.get();
+    }
+}
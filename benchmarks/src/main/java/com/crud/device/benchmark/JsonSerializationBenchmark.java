@@ -0,0 +1,43 @@
+package com.crud.device.benchmark;
+
+import com.crud.device.dto.DeviceDTO;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering the body of a device list response with Jackson, configured the way Spring Boot configures it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class JsonSerializationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private List<DeviceDTO> devices;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setUp() {
+        devices = BenchmarkDevices.savedDevices(size);
+        writer = Jackson2ObjectMapperBuilder.json().build().writerFor(new TypeReference<List<DeviceDTO>>() {
+        });
+    }
+
+    @Benchmark
+    public void serializeDeviceList() throws IOException {
+        // Serialize to a discarding stream so the measurement excludes buffering the whole payload
+        writer.writeValue(OutputStream.nullOutputStream(), devices);
+    }
+}
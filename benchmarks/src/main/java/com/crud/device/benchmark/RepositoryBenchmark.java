@@ -0,0 +1,95 @@
+package com.crud.device.benchmark;
+
+import com.crud.device.DeviceApplication;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.service.DeviceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end service calls through Spring Data JPA against H2, with the default in-memory settings and with the
+ * {@code production} persistence profile backed by a file in a temporary directory, and through the off-heap engine of
+ * the {@code memory} profile logging to the same directory. The device cache is disabled so reads measure the
+ * repository path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RepositoryBenchmark {
+
+    @Param({"10000"})
+    int devices;
+
+    @Param({"default", "production", "memory"})
+    String profile;
+
+    private ConfigurableApplicationContext context;
+    private DeviceService deviceService;
+    private Path datastore;
+
+    @Setup
+    public void setUp() throws IOException {
+        datastore = Files.createTempDirectory("device-benchmark");
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(DeviceApplication.class)
+                .web(WebApplicationType.NONE);
+        if (!profile.equals("default")) {
+            builder.profiles(profile);
+        }
+        // As arguments, since default properties would lose to application.properties
+        context = builder.run("--device.cache.enabled=false", "--logging.level.root=WARN",
+                "--device.datastore.path=" + datastore.resolve("devices"));
+        deviceService = context.getBean(DeviceService.class);
+        deviceService.saveDevices(BenchmarkDevices.newDevices(devices));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(datastore);
+    }
+
+    @Benchmark
+    public Optional<DeviceDTO> getDeviceById() {
+        return deviceService.getDeviceById(ThreadLocalRandom.current().nextLong(1, devices + 1));
+    }
+
+    @Benchmark
+    public DevicePage getDevicesPage() {
+        return deviceService.getDevicesPage(null, 100);
+    }
+
+    @Benchmark
+    public DevicePage searchDevicesByBrandExact() {
+        return deviceService.searchDevicesByBrand("Samsung", BrandMatch.EXACT, null, 100);
+    }
+
+    @Benchmark
+    public DevicePage searchDevicesByBrandContains() {
+        return deviceService.searchDevicesByBrand("sung", BrandMatch.CONTAINS, null, 100);
+    }
+
+    @Benchmark
+    public long countDevicesByBrandContains() {
+        return deviceService.countDevicesByBrand("sung", BrandMatch.CONTAINS);
+    }
+
+    @Benchmark
+    public DeviceDTO saveDevice() {
+        return deviceService.saveDevice(BenchmarkDevices.newDevice(ThreadLocalRandom.current().nextInt()));
+    }
+}
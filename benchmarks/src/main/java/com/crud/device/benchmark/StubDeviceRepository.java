@@ -0,0 +1,32 @@
+package com.crud.device.benchmark;
+
+import com.crud.device.model.Device;
+import com.crud.device.repository.DeviceRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+
+/**
+ * Database-free {@link DeviceRepository} that always finds the given device and echoes saves, so service-level
+ * benchmarks measure the service code rather than JPA.
+ */
+public final class StubDeviceRepository {
+
+    private StubDeviceRepository() {
+    }
+
+    public static DeviceRepository returning(Device device) {
+        return (DeviceRepository) Proxy.newProxyInstance(
+                DeviceRepository.class.getClassLoader(),
+                new Class<?>[]{DeviceRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Optional.of(device);
+                    case "save" -> args[0];
+                    case "existsById" -> true;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "StubDeviceRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
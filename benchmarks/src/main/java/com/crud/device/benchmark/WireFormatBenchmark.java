@@ -0,0 +1,74 @@
+package com.crud.device.benchmark;
+
+import com.crud.device.dto.DeviceDTO;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost of encoding a device list response as JSON, Smile and CBOR, plain and gzipped as Tomcat compresses them,
+ * configured like the application's message converters. The payload size of each combination is printed once per
+ * trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class WireFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"none", "gzip"})
+    String compression;
+
+    @Param({"1000", "100000"})
+    int size;
+
+    private List<DeviceDTO> devices;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setUp() throws IOException {
+        devices = BenchmarkDevices.savedDevices(size);
+        Jackson2ObjectMapperBuilder builder = switch (format) {
+            // Spring Boot writes ISO dates in JSON, the binary converters write epoch milliseconds
+            case "json" -> Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+        writer = builder.build().writerFor(new TypeReference<List<DeviceDTO>>() {
+        });
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        encode(payload);
+        System.out.printf("%n%s/%s payload for %d devices: %d bytes%n", format, compression, size, payload.size());
+    }
+
+    @Benchmark
+    public void encodeDeviceList() throws IOException {
+        // Encode to a discarding stream so the measurement excludes buffering the whole payload
+        encode(OutputStream.nullOutputStream());
+    }
+
+    private void encode(OutputStream out) throws IOException {
+        if (compression.equals("gzip")) {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+                writer.writeValue(gzip, devices);
+            }
+        } else {
+            writer.writeValue(out, devices);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.model.Device;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of the entity/DTO mapping done on every service operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceConversionBenchmark {
+
+    private Device device;
+    private DeviceDTO deviceDTO;
+
+    @Setup
+    public void setUp() {
+        device = new Device(42L, "Smartphone", "Apple", new Date());
+        deviceDTO = new DeviceDTO(null, "Smartphone", " Apple ", null);
+    }
+
+    @Benchmark
+    public DeviceDTO convertToDTO() {
+        return DeviceServiceImpl.convertToDTO(device);
+    }
+
+    @Benchmark
+    public Device convertToEntity() {
+        return DeviceServiceImpl.convertToEntity(deviceDTO);
+    }
+}
@@ -0,0 +1,68 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.model.Device;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a PATCH body into changes on a device: binding it to a {@code Map<String, Object>} and walking
+ * the map, as the endpoint used to, against streaming it into a {@link DevicePatch}. Run with {@code -prof gc} and
+ * compare {@code gc.alloc.rate.norm} for the bytes allocated per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartialUpdateBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    @Param({"name", "name,brand", "name,brand,unknown"})
+    String fields;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Device device = new Device(1L, "Phone", "Apple", null);
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{");
+        for (String fieldName : fields.split(",")) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(fieldName).append("\":\"value-").append(fieldName).append('"');
+        }
+        body = json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Device mapBody() throws IOException {
+        Map<String, Object> updates = objectMapper.readValue(body, MAP_TYPE);
+        updates.forEach((fieldName, fieldValue) -> {
+            switch (fieldName) {
+                case "name" -> device.setName((String) fieldValue);
+                case "brand" -> device.setBrand((String) fieldValue);
+                default -> {
+                }
+            }
+        });
+        return device;
+    }
+
+    @Benchmark
+    public Device mergePatchBody() throws IOException {
+        DeviceServiceImpl.applyPatch(device, objectMapper.readValue(body, DevicePatch.class));
+        return device;
+    }
+}
@@ -0,0 +1,76 @@
+#!/usr/bin/env bash
+# Compares startup of the regular fat jar with the CDS/AOT build of `mvn -Pcds package`:
+# time to the first successful GET /api/devices and resident memory once the application has served some requests.
+#
+#   mvn -pl device -Pcds package -DskipTests
+#   benchmarks/startup-benchmark.sh [runs]
+#
+# Run from the repository root. The fat jar built by the cds profile also contains the AOT classes, they are only
+# used when -Dspring.aot.enabled=true is set, so without it the jar starts exactly like the regular build.
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+WARMUP_REQUESTS=${WARMUP_REQUESTS:-500}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+JAR=device/target/device-1.0-exec.jar
+CDS_DIR=device/target/cds
+
+if [[ ! -f $JAR || ! -f $CDS_DIR/application.jsa ]]; then
+    echo "Build first with: mvn -pl device -Pcds package -DskipTests" >&2
+    exit 1
+fi
+
+# Prints "<milliseconds to first successful request> <RSS in KiB after warm-up>" for one start of the application
+measure() {
+    local dir=$1
+    shift
+    local start pid ready elapsed rss
+    start=$(date +%s%N)
+    (cd "$dir" && exec "$JAVA" "$@" --server.port="$PORT" > /dev/null 2>&1) &
+    pid=$!
+    ready=0
+    for _ in $(seq 1 12000); do
+        if curl -sf -o /dev/null "http://localhost:$PORT/api/devices?size=1"; then
+            ready=1
+            break
+        fi
+        sleep 0.01
+    done
+    elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+    if [[ $ready -eq 0 ]]; then
+        kill "$pid" 2> /dev/null
+        echo "Application did not answer within 120s" >&2
+        exit 1
+    fi
+    curl -sf -o /dev/null -X POST -H 'Content-Type: application/json' -d '{"name":"Startup","brand":"Benchmark"}' \
+        "http://localhost:$PORT/api/devices"
+    for _ in $(seq 1 "$WARMUP_REQUESTS"); do
+        curl -sf -o /dev/null "http://localhost:$PORT/api/devices?size=10"
+    done
+    sleep 2
+    rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    echo "$elapsed $rss"
+}
+
+median() {
+    sort -n | awk '{values[NR] = $1} END {print (NR % 2) ? values[(NR + 1) / 2] : (values[NR / 2] + values[NR / 2 + 1]) / 2}'
+}
+
+report() {
+    local name=$1
+    shift
+    local results=()
+    for run in $(seq 1 "$RUNS"); do
+        results+=("$(measure "$@")")
+        echo "  $name run $run: ${results[-1]% *} ms, ${results[-1]#* } KiB" >&2
+    done
+    printf '%-8s first request %6s ms   RSS %8s KiB   (median of %s runs)\n' "$name" \
+        "$(printf '%s\n' "${results[@]}" | cut -d' ' -f1 | median)" \
+        "$(printf '%s\n' "${results[@]}" | cut -d' ' -f2 | median)" "$RUNS"
+}
+
+report regular . -jar "$JAR"
+report cds "$CDS_DIR" -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar device-1.0-exec.jar
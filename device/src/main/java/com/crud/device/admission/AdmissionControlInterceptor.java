@@ -0,0 +1,137 @@
+package com.crud.device.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits a request only if its client is within the rate limit of the endpoint, and fewer than
+ * {@code maxConcurrentRequests} requests are being handled; otherwise it fails with
+ * {@link RateLimitExceededException} (429) or {@link ServerOverloadedException} (503) before the handler runs.
+ * <p>
+ * Endpoints are the HTTP method and the mapped path pattern, such as {@code GET /api/devices/{id}}. Clients are told
+ * apart by their authenticated principal, or else by remote address. The {@code X-Client-Id} header is only believed
+ * from {@code trustedProxies}, since any other client could send a new value with each request to get a fresh bucket.
+ * The slot is taken before the rate limit is checked, so a request shed with 503 does not use up its client's rate.
+ * A streaming response gives its slot back once the handler returns, so long exports and change feed subscriptions
+ * do not hold it. Rejections are counted in {@code device.admission.rejected} by endpoint and reason.
+ */
+public class AdmissionControlInterceptor implements AsyncHandlerInterceptor {
+    private static final String CLIENT_ID_HEADER = "X-Client-Id";
+    private static final String ADMITTED = AdmissionControlInterceptor.class.getName() + ".admitted";
+
+    private final ClientRateLimiter rateLimiter;
+    private final int maxConcurrentRequests;
+    // Only ever tried, never waited on, so taking a slot is a single compare-and-set
+    private final Semaphore slots;
+    private final Set<String> trustedProxies;
+    private final MeterRegistry registry;
+    private final Map<String, Counter[]> rejections = new ConcurrentHashMap<>();
+
+    public AdmissionControlInterceptor(ClientRateLimiter rateLimiter, int maxConcurrentRequests,
+                                       Set<String> trustedProxies, MeterRegistry registry) {
+        this.rateLimiter = rateLimiter;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.slots = new Semaphore(maxConcurrentRequests);
+        this.trustedProxies = Set.copyOf(trustedProxies);
+        this.registry = registry;
+        Gauge.builder("device.admission.in-flight", slots, available -> maxConcurrentRequests - available.availablePermits())
+                .description("Requests being handled under admission control")
+                .register(registry);
+        Gauge.builder("device.admission.clients", rateLimiter, ClientRateLimiter::activeBuckets)
+                .description("Client and endpoint rate limit buckets that are not full")
+                .register(registry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The dispatch that completes an async request was admitted when it started
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        String endpoint = endpoint(request);
+        if (!slots.tryAcquire()) {
+            rejections(endpoint)[1].increment();
+            throw new ServerOverloadedException("Server is handling " + maxConcurrentRequests
+                    + " requests already, retry later");
+        }
+        long waitNanos = rateLimiter.tryAcquire(clientId(request), endpoint);
+        if (waitNanos > 0) {
+            slots.release();
+            rejections(endpoint)[0].increment();
+            ClientRateLimiter.Limit limit = rateLimiter.limitOf(endpoint);
+            throw new RateLimitExceededException("Rate limit of " + limit.requestsPerSecond() + " requests per second"
+                    + " (burst " + limit.burst() + ") exceeded for " + endpoint,
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+        }
+        request.setAttribute(ADMITTED, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        release(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception exception) {
+        release(request);
+    }
+
+    private void release(HttpServletRequest request) {
+        if (request.getAttribute(ADMITTED) != null) {
+            request.removeAttribute(ADMITTED);
+            slots.release();
+        }
+    }
+
+    private static String endpoint(HttpServletRequest request) {
+        // Never the raw path, which would give every device id its own bucket and metric
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "unmapped");
+    }
+
+    // Prefixed by source, so a header value cannot name another client's principal or address bucket
+    private String clientId(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "user:" + principal.getName();
+        }
+        String address = request.getRemoteAddr();
+        if (trustedProxies.contains(address)) {
+            String clientId = request.getHeader(CLIENT_ID_HEADER);
+            if (clientId != null && !clientId.isBlank()) {
+                return "client:" + clientId;
+            }
+        }
+        return "address:" + address;
+    }
+
+    private Counter[] rejections(String endpoint) {
+        return rejections.computeIfAbsent(endpoint, key -> new Counter[]{
+                counter(key, "rate-limit", "Requests rejected with 429 because the client exceeded its rate limit"),
+                counter(key, "concurrency", "Requests shed with 503 because the concurrency limit was reached")
+        });
+    }
+
+    private Counter counter(String endpoint, String reason, String description) {
+        return Counter.builder("device.admission.rejected")
+                .description(description)
+                .tag("endpoint", endpoint)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,112 @@
+package com.crud.device.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limits per client and endpoint, kept by the generic cell rate algorithm: each bucket is a single
+ * theoretical arrival time advanced by compare-and-set, so admitting a request is one lock-free update and nothing
+ * has to refill the buckets. A {@link Limit} of {@code rate} requests per second and a {@code burst} admits up to
+ * {@code burst} requests at once and then one every {@code 1 / rate} seconds.
+ * <p>
+ * Buckets live in a bounded cache and expire once they would be full again, so idle clients cost nothing. Evicting
+ * a busy client when more than {@code maxBuckets} are active only forgives it the requests it used.
+ */
+public class ClientRateLimiter {
+
+    private final Limit defaultLimit;
+    private final Map<String, Limit> endpointLimits;
+    private final Cache<Bucket, AtomicLong> arrivals;
+    private final Ticker ticker;
+
+    public ClientRateLimiter(Limit defaultLimit, Map<String, Limit> endpointLimits, long maxBuckets) {
+        this(defaultLimit, endpointLimits, maxBuckets, Ticker.systemTicker());
+    }
+
+    ClientRateLimiter(Limit defaultLimit, Map<String, Limit> endpointLimits, long maxBuckets, Ticker ticker) {
+        this.defaultLimit = defaultLimit;
+        this.endpointLimits = Map.copyOf(endpointLimits);
+        this.ticker = ticker;
+        long refillNanos = defaultLimit.toleranceNanos();
+        for (Limit limit : endpointLimits.values()) {
+            refillNanos = Math.max(refillNanos, limit.toleranceNanos());
+        }
+        this.arrivals = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofNanos(refillNanos))
+                .maximumSize(maxBuckets)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Takes a token from the bucket of {@code client} for {@code endpoint}.
+     *
+     * @return 0 if the request is admitted, otherwise the nanoseconds until it would be
+     */
+    public long tryAcquire(String client, String endpoint) {
+        Limit limit = limitOf(endpoint);
+        long now = ticker.read();
+        AtomicLong arrival = arrivals.get(new Bucket(client, endpoint), bucket -> new AtomicLong(now));
+        while (true) {
+            long current = arrival.get();
+            // Compared by difference, like all System.nanoTime values
+            long next = (current - now > 0 ? current : now) + limit.intervalNanos();
+            long waitNanos = next - now - limit.toleranceNanos();
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public Limit limitOf(String endpoint) {
+        return endpointLimits.getOrDefault(endpoint, defaultLimit);
+    }
+
+    public long activeBuckets() {
+        return arrivals.estimatedSize();
+    }
+
+    /**
+     * A sustained rate in requests per second, and the number of requests admitted at once after a pause.
+     */
+    public record Limit(double requestsPerSecond, int burst) {
+
+        public Limit {
+            if (!(requestsPerSecond > 0) || burst < 1) {
+                throw new IllegalArgumentException("Rate limits need a positive rate and a burst of at least 1: "
+                        + requestsPerSecond + " per second, burst " + burst);
+            }
+        }
+
+        /**
+         * Parses {@code rate:burst}, such as {@code 10:20}.
+         */
+        public static Limit parse(String limit) {
+            String[] parts = limit.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Rate limit must be rate:burst, got " + limit);
+            }
+            return new Limit(Double.parseDouble(parts[0]), Integer.parseInt(parts[1]));
+        }
+
+        long intervalNanos() {
+            return Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond));
+        }
+
+        long toleranceNanos() {
+            return burst * intervalNanos();
+        }
+    }
+
+    private record Bucket(String client, String endpoint) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.crud.device.admission;
+
+/**
+ * The client used up its rate limit for an endpoint and has to wait {@link #retryAfterSeconds()} before the next
+ * request is admitted.
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,12 @@
+package com.crud.device.admission;
+
+/**
+ * As many requests as admission control allows are already being handled, so this one is shed before it can queue
+ * for a database connection.
+ */
+public class ServerOverloadedException extends RuntimeException {
+
+    public ServerOverloadedException(String message) {
+        super(message);
+    }
+}
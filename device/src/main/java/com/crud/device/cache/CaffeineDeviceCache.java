@@ -0,0 +1,101 @@
+package com.crud.device.cache;
+
+import com.crud.device.dto.CacheStatsDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.event.DeviceChangeEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded Caffeine cache of devices with size and TTL eviction. Unknown ids are cached as empty entries with a
+ * shorter TTL. Entries are dropped on every {@link DeviceChangeEvent} for their id.
+ */
+@Component
+@ConditionalOnProperty(name = "device.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CaffeineDeviceCache implements DeviceCache {
+
+    private final Cache<Long, Optional<DeviceDTO>> cache;
+
+    @Autowired
+    public CaffeineDeviceCache(@Value("${device.cache.max-size:100000}") long maxSize,
+                               @Value("${device.cache.ttl:10m}") Duration ttl,
+                               @Value("${device.cache.negative-ttl:30s}") Duration negativeTtl) {
+        this(maxSize, ttl, negativeTtl, Ticker.systemTicker());
+    }
+
+    CaffeineDeviceCache(long maxSize, Duration ttl, Duration negativeTtl, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new DeviceExpiry(ttl, negativeTtl))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Optional<DeviceDTO> get(Long id, Function<Long, Optional<DeviceDTO>> loader) {
+        // Caffeine runs the loader at most once per key and blocks invalidate() for that key until it completes,
+        // so a load racing with a write can never leave the pre-write value behind.
+        return cache.get(id, loader);
+    }
+
+    @Override
+    public Map<Long, Optional<DeviceDTO>> getAllPresent(Collection<Long> ids) {
+        return cache.getAllPresent(ids);
+    }
+
+    @Override
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onDeviceChange(DeviceChangeEvent event) {
+        // Creations matter too: they replace a cached "not found" entry
+        invalidate(event.id());
+    }
+
+    @Override
+    public CacheStatsDTO stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatsDTO(true, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount());
+    }
+
+    private record DeviceExpiry(Duration ttl, Duration negativeTtl) implements Expiry<Long, Optional<DeviceDTO>> {
+
+        @Override
+        public long expireAfterCreate(Long id, Optional<DeviceDTO> device, long currentTime) {
+            return device.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long id, Optional<DeviceDTO> device, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, device, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long id, Optional<DeviceDTO> device, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.crud.device.cache;
+
+import com.crud.device.dto.CacheStatsDTO;
+import com.crud.device.dto.DeviceDTO;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of devices by id. Absent devices are cached too, so repeated lookups of unknown ids do not
+ * reach the database.
+ */
+public interface DeviceCache {
+
+    Optional<DeviceDTO> get(Long id, Function<Long, Optional<DeviceDTO>> loader);
+
+    /**
+     * Returns the cached entries of {@code ids} without loading the others, which the caller reads itself and does
+     * not cache, so bulk reads cannot race a write into the cache.
+     */
+    Map<Long, Optional<DeviceDTO>> getAllPresent(Collection<Long> ids);
+
+    void invalidate(Long id);
+
+    /**
+     * Whether loaded entries are kept, so a load must not read from a replica that is still catching up.
+     */
+    default boolean retainsEntries() {
+        return true;
+    }
+
+    /**
+     * Drops every entry, after devices were written without a {@link com.crud.device.event.DeviceChangeEvent}.
+     */
+    void invalidateAll();
+
+    CacheStatsDTO stats();
+}
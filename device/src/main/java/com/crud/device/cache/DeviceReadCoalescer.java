@@ -0,0 +1,142 @@
+package com.crud.device.cache;
+
+import com.crud.device.config.ReadWriteRoutingDataSource;
+import com.crud.device.event.DeviceChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of identical concurrent reads: while one call for an operation and key is running, callers
+ * asking for the same thing wait for its result instead of running their own query and conversion. Results are
+ * shared, so they must be immutable.
+ * <p>
+ * Every {@link DeviceChangeEvent} advances a generation, globally and for the changed device's stripe, and a read only
+ * joins a flight that started in the generation it observes. Events are published after the write has committed, so
+ * a read that starts after a write returned never receives a result that was read before it.
+ * <p>
+ * With read replicas, a read also only joins a flight bound for the same side of {@link ReadWriteRoutingDataSource}:
+ * a client in its read-your-writes window must not be answered with what a lagging replica returned.
+ */
+@Component
+public class DeviceReadCoalescer {
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Map<Flight, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLongArray deviceGenerations = new AtomicLongArray(GENERATION_STRIPES);
+    private final Map<String, Counter[]> counters = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final BooleanSupplier readsFromPrimary;
+
+    @Autowired
+    public DeviceReadCoalescer(MeterRegistry registry,
+                               @Value("${device.coalescing.enabled:true}") boolean enabled,
+                               ObjectProvider<ReadWriteRoutingDataSource> routing) {
+        this(registry, enabled, routing.getIfAvailable() == null ? () -> true : routing.getObject()::readsFromPrimary);
+    }
+
+    // Every read comes from the one database
+    public DeviceReadCoalescer(MeterRegistry registry, boolean enabled) {
+        this(registry, enabled, () -> true);
+    }
+
+    DeviceReadCoalescer(MeterRegistry registry, boolean enabled, BooleanSupplier readsFromPrimary) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.readsFromPrimary = readsFromPrimary;
+        Gauge.builder("device.coalescing.in-flight", inFlight, Map::size)
+                .description("Reads currently being executed on behalf of waiting callers")
+                .register(registry);
+    }
+
+    @EventListener
+    public void onDeviceChange(DeviceChangeEvent event) {
+        generation.incrementAndGet();
+        deviceGenerations.incrementAndGet(stripe(event.id()));
+    }
+
+    /**
+     * Coalesces a read of the single device {@code id}, which only has to start again after changes to that device.
+     */
+    public <V> V coalesceById(String operation, Long id, Supplier<V> read) {
+        return execute(new Flight(operation, id, deviceGenerations.get(stripe(id)), readsFromPrimary.getAsBoolean()),
+                read);
+    }
+
+    /**
+     * Coalesces a read that may involve any device, which has to start again after every change.
+     */
+    public <V> V coalesce(String operation, Object key, Supplier<V> read) {
+        return execute(new Flight(operation, key, generation.get(), readsFromPrimary.getAsBoolean()), read);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V execute(Flight flight, Supplier<V> read) {
+        if (!enabled) {
+            return read.get();
+        }
+        Counter[] operationCounters = counters.computeIfAbsent(flight.operation(), this::register);
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(flight, mine);
+        if (running != null) {
+            operationCounters[1].increment();
+            try {
+                return (V) running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        operationCounters[0].increment();
+        try {
+            V result = read.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flight, mine);
+        }
+    }
+
+    private Counter[] register(String operation) {
+        return new Counter[]{
+                counter(operation, "executed", "Coalescable reads that ran their own query"),
+                counter(operation, "coalesced", "Reads answered with the result of an identical read already running")
+        };
+    }
+
+    private Counter counter(String operation, String outcome, String description) {
+        return Counter.builder("device.coalescing")
+                .description(description)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static int stripe(Long id) {
+        return id == null ? 0 : Math.floorMod(Long.hashCode(id), GENERATION_STRIPES);
+    }
+
+    private record Flight(String operation, Object key, long generation, boolean primary) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.crud.device.cache;
+
+import com.crud.device.dto.CacheStatsDTO;
+import com.crud.device.dto.DeviceDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Used when {@code device.cache.enabled=false}: every lookup goes to the loader.
+ */
+@Component
+@ConditionalOnProperty(name = "device.cache.enabled", havingValue = "false")
+public class NoOpDeviceCache implements DeviceCache {
+
+    @Override
+    public Optional<DeviceDTO> get(Long id, Function<Long, Optional<DeviceDTO>> loader) {
+        return loader.apply(id);
+    }
+
+    @Override
+    public Map<Long, Optional<DeviceDTO>> getAllPresent(Collection<Long> ids) {
+        return Map.of();
+    }
+
+    @Override
+    public void invalidate(Long id) {
+        // nothing cached
+    }
+
+    @Override
+    public boolean retainsEntries() {
+        return false;
+    }
+
+    @Override
+    public void invalidateAll() {
+        // nothing cached
+    }
+
+    @Override
+    public CacheStatsDTO stats() {
+        return new CacheStatsDTO(false, 0, 0, 0, 0, 0);
+    }
+}
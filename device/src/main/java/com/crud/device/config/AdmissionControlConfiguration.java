@@ -0,0 +1,63 @@
+package com.crud.device.config;
+
+import com.crud.device.admission.AdmissionControlInterceptor;
+import com.crud.device.admission.ClientRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Puts {@link AdmissionControlInterceptor} in front of {@code /api/devices} when {@code device.admission.enabled} is
+ * set, which the {@code production} profile does. Endpoint limits are given as {@code METHOD pattern=rate:burst},
+ * such as {@code GET /api/devices/search=10:20}. {@code device.admission.trusted-proxies} lists the remote addresses
+ * whose {@code X-Client-Id} header is believed.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "device.admission.enabled", havingValue = "true")
+public class AdmissionControlConfiguration implements WebMvcConfigurer {
+
+    private final AdmissionControlInterceptor interceptor;
+
+    public AdmissionControlConfiguration(MeterRegistry registry,
+                                         @Value("${device.admission.rate-per-second:50}") double ratePerSecond,
+                                         @Value("${device.admission.burst:100}") int burst,
+                                         @Value("${device.admission.endpoint-limits:}") List<String> endpointLimits,
+                                         @Value("${device.admission.max-clients:100000}") long maxClients,
+                                         @Value("${device.admission.max-concurrent-requests:100}") int maxConcurrentRequests,
+                                         @Value("${device.admission.trusted-proxies:}") Set<String> trustedProxies) {
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(new ClientRateLimiter.Limit(ratePerSecond, burst),
+                parseEndpointLimits(endpointLimits), maxClients);
+        this.interceptor = new AdmissionControlInterceptor(rateLimiter, maxConcurrentRequests, trustedProxies, registry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(interceptor).addPathPatterns("/api/devices", "/api/devices/**");
+    }
+
+    static Map<String, ClientRateLimiter.Limit> parseEndpointLimits(List<String> endpointLimits) {
+        Map<String, ClientRateLimiter.Limit> limits = new HashMap<>();
+        for (String endpointLimit : endpointLimits) {
+            if (endpointLimit.isBlank()) {
+                continue;
+            }
+            int separator = endpointLimit.lastIndexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Endpoint limit must be METHOD pattern=rate:burst, got " + endpointLimit);
+            }
+            limits.put(endpointLimit.substring(0, separator).trim().replaceAll("\\s+", " "),
+                    ClientRateLimiter.Limit.parse(endpointLimit.substring(separator + 1)));
+        }
+        return limits;
+    }
+}
@@ -0,0 +1,18 @@
+package com.crud.device.config;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown by {@link FairAdmissionDataSource} when no connection is admitted within the connection timeout. It is the
+ * only database failure answered with 503 and {@code Retry-After}; a database that is down stays a server error.
+ */
+public class ConnectionPoolExhaustedException extends SQLTransientConnectionException {
+
+    public ConnectionPoolExhaustedException(String message) {
+        super(message);
+    }
+
+    public ConnectionPoolExhaustedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
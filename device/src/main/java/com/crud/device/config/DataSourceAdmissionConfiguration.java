@@ -0,0 +1,29 @@
+package com.crud.device.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wraps the Hikari pool in a {@link FairAdmissionDataSource} when {@code device.datasource.fair-admission.enabled}
+ * is set, which the {@code virtual-threads} profile does.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "device.datasource.fair-admission.enabled", havingValue = "true")
+public class DataSourceAdmissionConfiguration {
+
+    @Bean
+    static BeanPostProcessor fairAdmissionDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari) {
+                    return new FairAdmissionDataSource(hikari, hikari.getMaximumPoolSize(), hikari.getConnectionTimeout());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package com.crud.device.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread hints for {@link ReadWriteRoutingDataSource}: the client the current request belongs to, the replica it
+ * reads from, and whether the current work must see the primary even in a read-only transaction. Without replicas configured the hints are
+ * simply never read.
+ */
+public final class DataSourceRouting {
+
+    private static final ThreadLocal<String> CLIENT = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+    private static final ThreadLocal<String> REPLICA = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    /**
+     * Runs {@code work} against the primary, for reads whose result outlives the call, such as cache loads, and so
+     * must not come from a replica that is still catching up.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY_REQUIRED.get();
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_REQUIRED.remove();
+            }
+        }
+    }
+
+    static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+
+    static void bindClient(String client) {
+        CLIENT.set(client);
+    }
+
+    static void unbindClient() {
+        CLIENT.remove();
+        REPLICA.remove();
+    }
+
+    // The replica the current request has read from, if any
+    static String boundReplica() {
+        return REPLICA.get();
+    }
+
+    static void bindReplica(String replica) {
+        if (CLIENT.get() != null) {
+            REPLICA.set(replica);
+        }
+    }
+
+    static String currentClient() {
+        return CLIENT.get();
+    }
+}
@@ -0,0 +1,79 @@
+package com.crud.device.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits reads and writes across a primary and {@code device.datasource.replica-urls} when that property is set.
+ * The primary is configured through the usual {@code spring.datasource.*} properties; replicas share its credentials
+ * and {@code spring.datasource.hikari.*} pool settings.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "device.datasource.replica-urls")
+public class ReadWriteRoutingConfiguration {
+
+    @Bean
+    ReadWriteRoutingDataSource readWriteRoutingDataSource(DataSourceProperties properties,
+                                                          Environment environment,
+                                                          @Value("${device.datasource.replica-urls}") List<String> replicaUrls,
+                                                          @Value("${device.datasource.read-your-writes-window:2s}") Duration readYourWritesWindow,
+                                                          @Value("${device.datasource.read-your-writes-max-clients:100000}") long maxTrackedClients,
+                                                          @Value("${device.datasource.fair-admission.enabled:false}") boolean fairAdmission) {
+        DataSource primary = pool(environment, properties.determineUrl(), properties, "device-primary", fairAdmission);
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicas.add(pool(environment, replicaUrls.get(i).trim(), properties, "device-replica-" + i, fairAdmission));
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas, readYourWritesWindow, maxTrackedClients);
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+
+    // By default a Hibernate session keeps the first connection it gets, so with open-in-view a request that reads
+    // and then writes would write through a replica connection. Release it after every transaction instead.
+    @Bean
+    HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+
+    private static DataSource pool(Environment environment, String url, DataSourceProperties properties,
+                                   String poolName, boolean fairAdmission) {
+        HikariDataSource hikari = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(hikari));
+        hikari.setPoolName(poolName);
+        if (fairAdmission) {
+            return new FairAdmissionDataSource(hikari, hikari.getMaximumPoolSize(), hikari.getConnectionTimeout());
+        }
+        return hikari;
+    }
+}
@@ -0,0 +1,118 @@
+package com.crud.device.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to the replicas, round robin, and everything else to the primary. The reads of one
+ * request stay on the replica of its first read, so a collection tag and the page it is sent with describe the same
+ * state even when the replicas lag by different amounts.
+ * <p>
+ * A client whose read-write transaction committed keeps reading from the primary for {@code readYourWritesWindow},
+ * so it sees its own writes while the replicas catch up. Clients are told apart by {@link ReadYourWritesFilter}. The
+ * read-only flag is only known once the transaction has started, so this must sit behind a
+ * {@link LazyConnectionDataSourceProxy} that defers fetching the connection to the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration readYourWritesWindow,
+                                      long maxTrackedClients) {
+        this(primary, replicas, readYourWritesWindow, maxTrackedClients, Ticker.systemTicker());
+    }
+
+    ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration readYourWritesWindow,
+                               long maxTrackedClients, Ticker ticker) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .maximumSize(maxTrackedClients)
+                .ticker(ticker)
+                .build();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = "replica-" + i;
+            replicaKeys.add(key);
+            targets.put(key, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String client = DataSourceRouting.currentClient();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (client != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+                // The window starts once the write is visible, a long transaction must not use it up before commit
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        recentWriters.put(client, Boolean.TRUE);
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+        if (readsFromPrimary()) {
+            return PRIMARY;
+        }
+        String replica = DataSourceRouting.boundReplica();
+        if (replica == null) {
+            replica = replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size()));
+            DataSourceRouting.bindReplica(replica);
+        }
+        return replica;
+    }
+
+    /**
+     * Whether a read-only transaction started now, on this thread, would read from the primary.
+     */
+    public boolean readsFromPrimary() {
+        String client = DataSourceRouting.currentClient();
+        return replicaKeys.isEmpty() || DataSourceRouting.isPrimaryRequired()
+                || (client != null && recentWriters.getIfPresent(client) != null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource replica : replicas) {
+            closeIfPossible(replica);
+        }
+        closeIfPossible(primary);
+    }
+
+    private static void closeIfPossible(DataSource dataSource) throws IOException {
+        if (dataSource instanceof DelegatingDataSource delegating) {
+            closeIfPossible(delegating.getTargetDataSource());
+        } else if (dataSource instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.crud.device.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Identifies the client of each request for the read-your-writes window of {@link ReadWriteRoutingDataSource}: the
+ * {@code X-Client-Id} header when sent, otherwise the remote address. Clients behind a shared proxy without the
+ * header share one window, which only sends more of their reads to the primary.
+ */
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String clientId = request.getHeader(CLIENT_ID_HEADER);
+        DataSourceRouting.bindClient(clientId != null && !clientId.isBlank() ? clientId : request.getRemoteAddr());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            DataSourceRouting.unbindClient();
+        }
+    }
+}
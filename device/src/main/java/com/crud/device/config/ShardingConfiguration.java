@@ -0,0 +1,56 @@
+package com.crud.device.config;
+
+import com.crud.device.shard.DeviceShard;
+import com.crud.device.shard.DeviceShards;
+import com.crud.device.shard.ShardRing;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads devices over the databases in {@code device.sharding.shard-urls} when that property is set. Shards share
+ * the credentials of {@code spring.datasource.*} and the {@code spring.datasource.hikari.*} pool settings, and their
+ * schema is created from {@code shard-schema.sql} if it does not exist yet.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "device.sharding.shard-urls")
+public class ShardingConfiguration {
+
+    @Bean
+    DeviceShards deviceShards(DataSourceProperties properties,
+                              Environment environment,
+                              @Value("${device.sharding.shard-urls}") List<String> shardUrls,
+                              @Value("${device.sharding.virtual-nodes:128}") int virtualNodes) {
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("shard-schema.sql"));
+        List<DeviceShard> shards = new ArrayList<>();
+        for (int i = 0; i < shardUrls.size(); i++) {
+            String url = shardUrls.get(i).trim();
+            String name = ShardRing.shardName(i);
+            HikariDataSource pool = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .build();
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            pool.setPoolName("device-" + name);
+            DatabasePopulatorUtils.execute(schema, pool);
+            shards.add(new DeviceShard(i, name, url, new JdbcTemplate(pool),
+                    new TransactionTemplate(new DataSourceTransactionManager(pool))));
+        }
+        return new DeviceShards(shards, virtualNodes);
+    }
+}
@@ -0,0 +1,24 @@
+package com.crud.device.controller;
+
+import com.crud.device.cache.DeviceCache;
+import com.crud.device.dto.CacheStatsDTO;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/devices/cache")
+public class DeviceCacheController {
+
+    private final DeviceCache deviceCache;
+
+    public DeviceCacheController(DeviceCache deviceCache) {
+        this.deviceCache = deviceCache;
+    }
+
+    // Endpoint to get hit, miss and eviction counters of the device cache
+    @GetMapping("/stats")
+    public CacheStatsDTO getCacheStats() {
+        return deviceCache.stats();
+    }
+}
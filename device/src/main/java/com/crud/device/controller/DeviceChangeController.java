@@ -0,0 +1,134 @@
+package com.crud.device.controller;
+
+import com.crud.device.dto.DeviceChangeDTO;
+import com.crud.device.feed.ChangeFeedGoneException;
+import com.crud.device.feed.DeviceChangeFeed;
+import com.crud.device.service.InvalidRequestException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/devices/changes")
+public class DeviceChangeController {
+    private static final Logger log = LoggerFactory.getLogger(DeviceChangeController.class);
+    private static final int STREAM_BATCH_SIZE = 500;
+
+    private final DeviceChangeFeed changeFeed;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final Duration streamTimeout;
+    private final Duration heartbeat;
+    private final Set<SseEmitter> openStreams = ConcurrentHashMap.newKeySet();
+    // One factory for all streams, so its counter numbers their threads device-changes-0, -1, ...
+    private final ThreadFactory streamThreads = Thread.ofVirtual().name("device-changes-", 0).factory();
+
+    public DeviceChangeController(DeviceChangeFeed changeFeed,
+                                  @Value("${device.pagination.default-size:100}") int defaultPageSize,
+                                  @Value("${device.pagination.max-size:1000}") int maxPageSize,
+                                  @Value("${device.changes.stream-timeout:30m}") Duration streamTimeout,
+                                  @Value("${device.changes.heartbeat:15s}") Duration heartbeat) {
+        this.changeFeed = changeFeed;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.streamTimeout = streamTimeout;
+        this.heartbeat = heartbeat;
+    }
+
+    // Endpoint to get the changes after a sequence number, oldest first, from the oldest retained one by default
+    @GetMapping
+    public List<DeviceChangeDTO> getChanges(@RequestParam(required = false) Long since,
+                                            @RequestParam(required = false) Integer size) {
+        if (size != null && size < 1) {
+            throw new InvalidRequestException("Page size must be positive: " + size);
+        }
+        int limit = size == null ? defaultPageSize : Math.min(size, maxPageSize);
+        return changeFeed.changesSince(since == null ? changeFeed.oldestPosition() : since, limit);
+    }
+
+    // Endpoint to follow changes as Server-Sent Events, resuming after Last-Event-ID or since, or from now on
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        long position = lastEventId != null ? lastEventId : since != null ? since : changeFeed.lastSequence();
+        changeFeed.checkRetained(position);
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        AtomicBoolean open = new AtomicBoolean(true);
+        Runnable close = () -> {
+            open.set(false);
+            openStreams.remove(emitter);
+        };
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(error -> close.run());
+        openStreams.add(emitter);
+        // A parked virtual thread per subscriber, so slow consumers never hold up writers
+        streamThreads.newThread(() -> pump(emitter, open, position)).start();
+        return emitter;
+    }
+
+    // Open streams would otherwise hold up graceful shutdown until they time out, subscribers reconnect with Last-Event-ID
+    @EventListener(ContextClosedEvent.class)
+    public void closeStreams() {
+        openStreams.forEach(SseEmitter::complete);
+    }
+
+    private void pump(SseEmitter emitter, AtomicBoolean open, long position) {
+        long since = position;
+        try {
+            while (open.get()) {
+                List<DeviceChangeDTO> changes = changeFeed.changesSince(since, STREAM_BATCH_SIZE);
+                if (changes.isEmpty()) {
+                    if (!changeFeed.awaitChangesAfter(since, heartbeat)) {
+                        // Detects clients that went away while nothing changed
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                    continue;
+                }
+                for (DeviceChangeDTO change : changes) {
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(change.sequence()))
+                            .name("change")
+                            .data(change, MediaType.APPLICATION_JSON));
+                }
+                since = changes.getLast().sequence();
+            }
+        } catch (ChangeFeedGoneException e) {
+            // The subscriber fell behind the retention window and has to re-read the devices
+            sendQuietly(emitter, SseEmitter.event().name("reset").data(e.getMessage()));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Change stream closed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
+
+    private static void sendQuietly(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Could not send to change stream", e);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.crud.device.controller;
+
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceCountDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DeviceLookupDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.search.DeviceField;
+import com.crud.device.search.DeviceQuery;
+import com.crud.device.service.DeviceService;
+import com.crud.device.service.InvalidRequestException;
+import com.crud.device.writebehind.DeviceWriteBehindQueue;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.crud.device.controller.EntityTags.parseIfMatch;
+import static com.crud.device.controller.EntityTags.withETag;
+import static com.crud.device.controller.EntityTags.withLastModified;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/devices")
+public class DeviceController {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String NDJSON_VALUE = "application/x-ndjson";
+    static final String MERGE_PATCH_VALUE = "application/merge-patch+json";
+
+    private final DeviceService deviceService;
+    private final ObjectMapper objectMapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxBatchItems;
+    private final int maxLookupIds;
+    private final boolean writeBehind;
+
+    public DeviceController(DeviceService deviceService,
+                            ObjectMapper objectMapper,
+                            @Value("${device.pagination.default-size:100}") int defaultPageSize,
+                            @Value("${device.pagination.max-size:1000}") int maxPageSize,
+                            @Value("${device.batch.max-items:50000}") int maxBatchItems,
+                            @Value("${device.lookup.max-ids:10000}") int maxLookupIds,
+                            Optional<DeviceWriteBehindQueue> writeBehindQueue) {
+        this.deviceService = deviceService;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchItems = maxBatchItems;
+        this.maxLookupIds = maxLookupIds;
+        this.writeBehind = writeBehindQueue.isPresent();
+    }
+
+    // Endpoint to save a new device. When the write-behind queue is in use it is only queued, so the answer is 202
+    // with its id
+    @PostMapping
+    public ResponseEntity<DeviceDTO> saveDevice(@RequestBody DeviceDTO deviceDTO) {
+        DeviceDTO savedDevice = deviceService.saveDevice(deviceDTO);
+        return new ResponseEntity<>(savedDevice, writeBehind ? HttpStatus.ACCEPTED : HttpStatus.CREATED);
+    }
+
+    // Endpoint to save many devices in one request
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchItemResultDTO> saveDevices(@RequestBody List<DeviceDTO> deviceDTOs) {
+        return deviceService.saveDevices(checkBatchSize(deviceDTOs));
+    }
+
+    @PostMapping(value = "/batch", consumes = NDJSON_VALUE)
+    public List<BatchItemResultDTO> saveDevicesFromNdjson(InputStream body) throws IOException {
+        return deviceService.saveDevices(readNdjson(body, DeviceDTO.class));
+    }
+
+    // Endpoint for partial update of many devices in one request, each item must carry its id
+    @PatchMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchItemResultDTO> partialUpdateDevices(@RequestBody List<DeviceDTO> updates) {
+        return deviceService.partialUpdateDevices(checkBatchSize(updates));
+    }
+
+    @PatchMapping(value = "/batch", consumes = NDJSON_VALUE)
+    public List<BatchItemResultDTO> partialUpdateDevicesFromNdjson(InputStream body) throws IOException {
+        return deviceService.partialUpdateDevices(readNdjson(body, DeviceDTO.class));
+    }
+
+    // Endpoint to delete many devices in one request
+    @DeleteMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchItemResultDTO> deleteDevices(@RequestBody List<Long> ids) {
+        return deviceService.deleteDevices(checkBatchSize(ids));
+    }
+
+    @DeleteMapping(value = "/batch", consumes = NDJSON_VALUE)
+    public List<BatchItemResultDTO> deleteDevicesFromNdjson(InputStream body) throws IOException {
+        return deviceService.deleteDevices(readNdjson(body, Long.class));
+    }
+
+    // Endpoint to get a device by ID, its version is returned as the ETag and its last update as Last-Modified.
+    // A matching If-None-Match or If-Modified-Since is answered with 304 and no body; from the cache, without a query
+    @GetMapping("/{id}")
+    public ResponseEntity<DeviceDTO> getDeviceById(@PathVariable Long id) {
+        Optional<DeviceDTO> device = deviceService.getDeviceById(id);
+        return device.map(found -> withLastModified(withETag(ResponseEntity.ok(), found.version()), found.lastModified())
+                        .varyBy(HttpHeaders.ACCEPT)
+                        .body(found))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Endpoint to get many devices by id in one request, in the order requested, along with the ids not found
+    @GetMapping(params = "ids")
+    public DeviceLookupDTO getDevicesByIds(@RequestParam List<Long> ids) {
+        return deviceService.getDevicesByIds(checkLookupIds(ids));
+    }
+
+    // The same for id lists too long for a URL
+    @PostMapping(value = "/lookup", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public DeviceLookupDTO lookupDevices(@RequestBody List<Long> ids) {
+        return deviceService.getDevicesByIds(checkLookupIds(ids));
+    }
+
+    // Endpoint to get devices one keyset page at a time, the next page cursor is returned in headers.
+    // With createdAfter and/or createdBefore only devices created in that half-open range are returned, oldest first
+    @GetMapping
+    public ResponseEntity<List<DeviceDTO>> getAllDevices(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer size,
+                                                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdAfter,
+                                                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdBefore,
+                                                         WebRequest request) {
+        String eTag = collectionETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        DevicePage page = createdAfter == null && createdBefore == null
+                ? deviceService.getDevicesPage(cursor, resolvePageSize(size))
+                : deviceService.getDevicesCreatedBetween(createdAfter, createdBefore, cursor, resolvePageSize(size));
+        return withNextCursor(collectionResponse(eTag), page.nextCursor()).body(page.content());
+    }
+
+    // Endpoint to count devices per brand and creation day, optionally within a creation time range
+    @GetMapping("/stats/daily")
+    public ResponseEntity<List<DeviceDailyCountDTO>> countDevicesByBrandAndDay(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdAfter,
+                                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdBefore,
+                                                                               WebRequest request) {
+        String eTag = collectionETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return collectionResponse(eTag).body(deviceService.countDevicesByBrandAndDay(createdAfter, createdBefore));
+    }
+
+    // Endpoint to export all devices as newline-delimited JSON in constant memory
+    @GetMapping(produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllDevicesAsNdjson() {
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(out -> {
+                    // The separator only goes between values, so the last line is ended here, on a generator that
+                    // leaves the response stream open when it is closed
+                    try (JsonGenerator generator = objectMapper.createGenerator(out)
+                            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                         SequenceWriter sequence = writer.writeValues(generator)) {
+                        deviceService.streamAllDevices(device -> write(sequence, device));
+                    }
+                    out.write('\n');
+                });
+    }
+
+    // Endpoint to export all devices as a single chunked JSON array in constant memory
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllDevicesAsJsonArray() {
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    try (SequenceWriter sequence = writer.writeValuesAsArray(out)) {
+                        deviceService.streamAllDevices(device -> write(sequence, device));
+                    }
+                });
+    }
+
+    // Endpoint to update a device completely. With an If-Match header or a version in the body the update
+    // is a single conditional statement answered with 204 and the new ETag, or 412 if the version is stale
+    @PutMapping("/{id}")
+    public ResponseEntity<DeviceDTO> updateDevice(@PathVariable Long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                  @RequestBody DeviceDTO updatedDeviceDTO) {
+        Long expectedVersion = ifMatch != null ? parseIfMatch(ifMatch) : updatedDeviceDTO.version();
+        if (expectedVersion != null) {
+            long newVersion = deviceService.updateDevice(id, updatedDeviceDTO, expectedVersion);
+            return withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), newVersion).build();
+        }
+        DeviceDTO updatedDevice = deviceService.updateDevice(id, updatedDeviceDTO);
+        return withETag(ResponseEntity.ok(), updatedDevice.version()).body(updatedDevice);
+    }
+
+    // Endpoint for partial update of a device with a JSON Merge Patch, conditional on the If-Match header when one is sent
+    @PatchMapping(value = "/{id}", consumes = {MERGE_PATCH_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<DeviceDTO> partialUpdateDevice(@PathVariable Long id,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @RequestBody DevicePatch patch) {
+        Long expectedVersion = ifMatch != null ? parseIfMatch(ifMatch) : null;
+        if (expectedVersion != null) {
+            long newVersion = deviceService.partialUpdateDevice(id, patch, expectedVersion);
+            return withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), newVersion).build();
+        }
+        DeviceDTO updatedDevice = deviceService.partialUpdateDevice(id, patch);
+        return withETag(ResponseEntity.ok(), updatedDevice.version()).body(updatedDevice);
+    }
+
+    // Endpoint to delete a device
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteDevice(@PathVariable Long id) {
+        deviceService.deleteDevice(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Endpoint to search devices by brand one keyset page at a time
+    @GetMapping("/search")
+    public ResponseEntity<List<DeviceDTO>> searchDeviceByBrand(@RequestParam String brand,
+                                                               @RequestParam(defaultValue = "CONTAINS") BrandMatch match,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) Integer size,
+                                                               WebRequest request) {
+        String eTag = collectionETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        DevicePage page = deviceService.searchDevicesByBrand(brand, match, cursor, resolvePageSize(size));
+        return withNextCursor(collectionResponse(eTag), page.nextCursor()).body(page.content());
+    }
+
+    // Endpoint to filter devices by name prefix, brand and creation time together and sort them by a field, one keyset
+    // page at a time. Combinations that no index serves are rejected with 400 instead of scanning the table
+    @GetMapping("/query")
+    public ResponseEntity<List<DeviceDTO>> queryDevices(@RequestParam(required = false) String namePrefix,
+                                                        @RequestParam(required = false) String brand,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdAfter,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdBefore,
+                                                        @RequestParam(required = false) DeviceField sort,
+                                                        @RequestParam(required = false) Sort.Direction direction,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer size,
+                                                        WebRequest request) {
+        DeviceQuery query = new DeviceQuery(namePrefix, brand, createdAfter, createdBefore, sort, direction);
+        String eTag = collectionETag();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        DevicePage page = deviceService.queryDevices(query, cursor, resolvePageSize(size));
+        return withNextCursor(collectionResponse(eTag), page.nextCursor()).body(page.content());
+    }
+
+    // Endpoint to count devices matching a brand search without loading them
+    @GetMapping(value = "/search", params = "countOnly=true")
+    public DeviceCountDTO countDeviceByBrand(@RequestParam String brand,
+                                             @RequestParam(defaultValue = "CONTAINS") BrandMatch match) {
+        return new DeviceCountDTO(deviceService.countDevicesByBrand(brand, match));
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new InvalidRequestException("Page size must be positive: " + size);
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    private <T> List<T> checkBatchSize(List<T> items) {
+        if (items.size() > maxBatchItems) {
+            throw new InvalidRequestException("Batch exceeds the maximum of " + maxBatchItems + " items: " + items.size());
+        }
+        return items;
+    }
+
+    private List<Long> checkLookupIds(List<Long> ids) {
+        if (ids.size() > maxLookupIds) {
+            throw new InvalidRequestException("Lookup exceeds the maximum of " + maxLookupIds + " ids: " + ids.size());
+        }
+        if (ids.contains(null)) {
+            throw new InvalidRequestException("Device ids must not be null");
+        }
+        return ids;
+    }
+
+    private <T> List<T> readNdjson(InputStream body, Class<T> type) throws IOException {
+        List<T> items = new ArrayList<>();
+        try (MappingIterator<T> values = objectMapper.readerFor(type).readValues(body)) {
+            while (values.hasNextValue()) {
+                items.add(values.nextValue());
+                if (items.size() > maxBatchItems) {
+                    return checkBatchSize(items);
+                }
+            }
+        }
+        return items;
+    }
+
+    private static ResponseEntity.BodyBuilder withNextCursor(ResponseEntity.BodyBuilder builder, String nextCursor) {
+        if (nextCursor == null) {
+            return builder;
+        }
+        String nextLink = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("cursor", nextCursor)
+                .toUriString();
+        return builder
+                .header(NEXT_CURSOR_HEADER, nextCursor)
+                .header(HttpHeaders.LINK, "<" + nextLink + ">; rel=\"next\"");
+    }
+
+    /**
+     * Entity tag shared by every device collection response: {@link DeviceService#collectionTag()}, read from the
+     * store, so it also moves on changes made by other instances. It is read before the query runs, so a change racing with the query can only make the tag older
+     * than the body, never newer, and the next request with it is answered in full.
+     * <p>
+     * The tag is weak because it identifies the data, not the bytes of one encoding of it, and because Tomcat does not
+     * compress responses that carry a strong tag.
+     */
+    private String collectionETag() {
+        return "W/\"" + deviceService.collectionTag() + "\"";
+    }
+
+    private static ResponseEntity.BodyBuilder collectionResponse(String eTag) {
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT);
+    }
+
+    private static void write(SequenceWriter sequence, DeviceDTO device) {
+        try {
+            sequence.write(device);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
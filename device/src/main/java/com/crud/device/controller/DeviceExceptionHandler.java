@@ -0,0 +1,77 @@
+package com.crud.device.controller;
+
+import com.crud.device.admission.RateLimitExceededException;
+import com.crud.device.admission.ServerOverloadedException;
+import com.crud.device.config.ConnectionPoolExhaustedException;
+import com.crud.device.feed.ChangeFeedGoneException;
+import com.crud.device.service.InvalidRequestException;
+import com.crud.device.writebehind.WriteBehindFullException;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class DeviceExceptionHandler {
+
+    // Malformed client input such as an undecodable cursor or a non-positive page size. Other argument checks that
+    // fail are bugs and stay server errors
+    @ExceptionHandler(InvalidRequestException.class)
+    public ProblemDetail handleInvalidRequest(InvalidRequestException exception) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, exception.getMessage());
+    }
+
+    @ExceptionHandler(EntityNotFoundException.class)
+    public ProblemDetail handleNotFound(EntityNotFoundException exception) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND, exception.getMessage());
+    }
+
+    // A change feed position that has been evicted or predates a restart, the consumer has to resync
+    @ExceptionHandler(ChangeFeedGoneException.class)
+    public ProblemDetail handleChangeFeedGone(ChangeFeedGoneException exception) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.GONE, exception.getMessage());
+    }
+
+    // The If-Match version, or the version read before a save, is no longer the current one
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ProblemDetail handleVersionConflict(OptimisticLockingFailureException exception) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.PRECONDITION_FAILED, exception.getMessage());
+    }
+
+    // No pooled connection became available within the connection timeout, so shed the request instead of queueing
+    // it. Spring wraps the exception, which is matched as the cause
+    @ExceptionHandler(ConnectionPoolExhaustedException.class)
+    public ResponseEntity<ProblemDetail> handlePoolExhausted(ConnectionPoolExhaustedException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, "Database is saturated, retry later"));
+    }
+
+    // The write-behind queue is full, so the client has to slow down
+    @ExceptionHandler(WriteBehindFullException.class)
+    public ResponseEntity<ProblemDetail> handleWriteBehindFull(WriteBehindFullException exception) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS, exception.getMessage()));
+    }
+
+    // The client went over its rate limit for the endpoint, so it has to wait until its next request is admitted
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ProblemDetail> handleRateLimitExceeded(RateLimitExceededException exception) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(exception.retryAfterSeconds()))
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS, exception.getMessage()));
+    }
+
+    // Shed by admission control before the request could pile up on the connection pool
+    @ExceptionHandler(ServerOverloadedException.class)
+    public ResponseEntity<ProblemDetail> handleServerOverloaded(ServerOverloadedException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, exception.getMessage()));
+    }
+}
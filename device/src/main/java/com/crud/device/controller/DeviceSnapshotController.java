@@ -0,0 +1,35 @@
+package com.crud.device.controller;
+
+import com.crud.device.dto.DeviceSnapshotDTO;
+import com.crud.device.snapshot.DeviceSnapshotService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@ConditionalOnProperty(name = "device.snapshot.directory")
+@RequestMapping("/api/devices/snapshots")
+public class DeviceSnapshotController {
+
+    private final DeviceSnapshotService snapshotService;
+
+    public DeviceSnapshotController(DeviceSnapshotService snapshotService) {
+        this.snapshotService = snapshotService;
+    }
+
+    // Endpoint to write all devices to a snapshot file in the snapshot directory
+    @PostMapping("/export")
+    public DeviceSnapshotDTO exportSnapshot(@RequestParam String file) throws IOException {
+        return snapshotService.exportSnapshot(file);
+    }
+
+    // Endpoint to load the devices of a snapshot file from the snapshot directory
+    @PostMapping("/import")
+    public DeviceSnapshotDTO importSnapshot(@RequestParam String file) throws IOException {
+        return snapshotService.importSnapshot(file);
+    }
+}
@@ -0,0 +1,44 @@
+package com.crud.device.controller;
+
+import com.crud.device.service.InvalidRequestException;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Date;
+
+/**
+ * Entity tag and Last-Modified handling shared by the servlet and reactive device controllers. A device's tag is its
+ * version as a strong entity tag such as {@code "3"}.
+ */
+final class EntityTags {
+    private static final String INVALID_IF_MATCH_MSG = "If-Match must be a single strong ETag: ";
+
+    private EntityTags() {
+    }
+
+    /**
+     * Reads the version out of a single strong entity tag. {@code *} matches any current version, so it returns
+     * {@code null} and the update runs unconditionally.
+     */
+    static Long parseIfMatch(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.equals("*")) {
+            return null;
+        }
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new InvalidRequestException(INVALID_IF_MATCH_MSG + ifMatch);
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException(INVALID_IF_MATCH_MSG + ifMatch);
+        }
+    }
+
+    static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, Long version) {
+        return version == null ? builder : builder.eTag("\"" + version + "\"");
+    }
+
+    static ResponseEntity.BodyBuilder withLastModified(ResponseEntity.BodyBuilder builder, Date lastModified) {
+        return lastModified == null ? builder : builder.lastModified(lastModified.toInstant());
+    }
+}
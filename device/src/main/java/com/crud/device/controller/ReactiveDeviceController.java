@@ -0,0 +1,177 @@
+package com.crud.device.controller;
+
+import com.crud.device.dto.DeviceCountDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.service.InvalidRequestException;
+import com.crud.device.service.ReactiveDeviceService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+import static com.crud.device.controller.DeviceController.MERGE_PATCH_VALUE;
+import static com.crud.device.controller.DeviceController.NDJSON_VALUE;
+import static com.crud.device.controller.DeviceController.NEXT_CURSOR_HEADER;
+import static com.crud.device.controller.EntityTags.parseIfMatch;
+import static com.crud.device.controller.EntityTags.withETag;
+import static com.crud.device.controller.EntityTags.withLastModified;
+
+/**
+ * The single-device, paging and daily count endpoints of {@link DeviceController} on WebFlux and
+ * {@link ReactiveDeviceService}, for the {@code reactive} profile. Batch, multi-get, filter query, change feed and
+ * creation time range listing endpoints are only served by the servlet stack, and collections carry no ETag.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/devices")
+public class ReactiveDeviceController {
+
+    private final ReactiveDeviceService deviceService;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public ReactiveDeviceController(ReactiveDeviceService deviceService,
+                                    @Value("${device.pagination.default-size:100}") int defaultPageSize,
+                                    @Value("${device.pagination.max-size:1000}") int maxPageSize) {
+        this.deviceService = deviceService;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // Endpoint to save a new device
+    @PostMapping
+    public Mono<ResponseEntity<DeviceDTO>> saveDevice(@RequestBody DeviceDTO deviceDTO) {
+        return deviceService.saveDevice(deviceDTO)
+                .map(savedDevice -> new ResponseEntity<>(savedDevice, HttpStatus.CREATED));
+    }
+
+    // Endpoint to get a device by ID, its version is returned as the ETag and its last update as Last-Modified.
+    // A matching If-None-Match or If-Modified-Since is answered with 304 and no body
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<DeviceDTO>> getDeviceById(@PathVariable Long id) {
+        return deviceService.getDeviceById(id)
+                .map(found -> withLastModified(withETag(ResponseEntity.ok(), found.version()), found.lastModified())
+                        .varyBy(HttpHeaders.ACCEPT)
+                        .body(found))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // Endpoint to get devices one keyset page at a time, the next page cursor is returned in headers
+    @GetMapping
+    public Mono<ResponseEntity<List<DeviceDTO>>> getAllDevices(@RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) Integer size,
+                                                               ServerHttpRequest request) {
+        return deviceService.getDevicesPage(cursor, resolvePageSize(size))
+                .map(page -> pageResponse(page, request));
+    }
+
+    // Endpoint to export all devices as newline-delimited JSON, written as the rows arrive
+    @GetMapping(produces = NDJSON_VALUE)
+    public Flux<DeviceDTO> streamAllDevicesAsNdjson() {
+        return deviceService.streamAllDevices();
+    }
+
+    // Endpoint to export all devices as a single JSON array, written as the rows arrive
+    @GetMapping(params = "stream=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DeviceDTO> streamAllDevicesAsJsonArray() {
+        return deviceService.streamAllDevices();
+    }
+
+    // Endpoint to update a device completely. With an If-Match header or a version in the body the update
+    // is a single conditional statement answered with 204 and the new ETag, or 412 if the version is stale
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<DeviceDTO>> updateDevice(@PathVariable Long id,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                        @RequestBody DeviceDTO updatedDeviceDTO) {
+        Long expectedVersion = ifMatch != null ? parseIfMatch(ifMatch) : updatedDeviceDTO.version();
+        if (expectedVersion != null) {
+            return deviceService.updateDevice(id, updatedDeviceDTO, expectedVersion)
+                    .map(newVersion -> withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), newVersion).build());
+        }
+        return deviceService.updateDevice(id, updatedDeviceDTO)
+                .map(updatedDevice -> withETag(ResponseEntity.ok(), updatedDevice.version()).body(updatedDevice));
+    }
+
+    // Endpoint for partial update of a device with a JSON Merge Patch, conditional on the If-Match header when one is sent
+    @PatchMapping(value = "/{id}", consumes = {MERGE_PATCH_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<DeviceDTO>> partialUpdateDevice(@PathVariable Long id,
+                                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                               @RequestBody DevicePatch patch) {
+        Long expectedVersion = ifMatch != null ? parseIfMatch(ifMatch) : null;
+        if (expectedVersion != null) {
+            return deviceService.partialUpdateDevice(id, patch, expectedVersion)
+                    .map(newVersion -> withETag(ResponseEntity.status(HttpStatus.NO_CONTENT), newVersion).build());
+        }
+        return deviceService.partialUpdateDevice(id, patch)
+                .map(updatedDevice -> withETag(ResponseEntity.ok(), updatedDevice.version()).body(updatedDevice));
+    }
+
+    // Endpoint to delete a device
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteDevice(@PathVariable Long id) {
+        return deviceService.deleteDevice(id)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    // Endpoint to search devices by brand one keyset page at a time
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<DeviceDTO>>> searchDeviceByBrand(@RequestParam String brand,
+                                                                     @RequestParam(defaultValue = "CONTAINS") BrandMatch match,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Integer size,
+                                                                     ServerHttpRequest request) {
+        return deviceService.searchDevicesByBrand(brand, match, cursor, resolvePageSize(size))
+                .map(page -> pageResponse(page, request));
+    }
+
+    // Endpoint to count devices matching a brand search without loading them
+    @GetMapping(value = "/search", params = "countOnly=true")
+    public Mono<DeviceCountDTO> countDeviceByBrand(@RequestParam String brand,
+                                                   @RequestParam(defaultValue = "CONTAINS") BrandMatch match) {
+        return deviceService.countDevicesByBrand(brand, match).map(DeviceCountDTO::new);
+    }
+
+    // Endpoint to count devices per brand and creation day, optionally within a creation time range
+    @GetMapping("/stats/daily")
+    public Flux<DeviceDailyCountDTO> countDevicesByBrandAndDay(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdAfter,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdBefore) {
+        return deviceService.countDevicesByBrandAndDay(createdAfter, createdBefore);
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new InvalidRequestException("Page size must be positive: " + size);
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    private static ResponseEntity<List<DeviceDTO>> pageResponse(DevicePage page, ServerHttpRequest request) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            String nextLink = UriComponentsBuilder.fromUri(request.getURI())
+                    .replaceQueryParam("cursor", page.nextCursor())
+                    .toUriString();
+            builder.header(NEXT_CURSOR_HEADER, page.nextCursor())
+                    .header(HttpHeaders.LINK, "<" + nextLink + ">; rel=\"next\"");
+        }
+        return builder.body(page.content());
+    }
+}
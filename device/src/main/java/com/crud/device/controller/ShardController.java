@@ -0,0 +1,44 @@
+package com.crud.device.controller;
+
+import com.crud.device.dto.ShardRebalanceDTO;
+import com.crud.device.dto.ShardStatusDTO;
+import com.crud.device.shard.DeviceShards;
+import com.crud.device.shard.ShardRebalancer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@ConditionalOnProperty(name = "device.sharding.shard-urls")
+@RequestMapping("/api/devices/shards")
+public class ShardController {
+
+    private final DeviceShards shards;
+    private final ShardRebalancer rebalancer;
+
+    public ShardController(DeviceShards shards, ShardRebalancer rebalancer) {
+        this.shards = shards;
+        this.rebalancer = rebalancer;
+    }
+
+    // Endpoint to get the devices held by each shard and its share of the hash ring
+    @GetMapping
+    public List<ShardStatusDTO> getShards() {
+        List<Long> counts = shards.fanOut(shard ->
+                shard.jdbcTemplate().queryForObject("select count(*) from device", Long.class));
+        return shards.all().stream()
+                .map(shard -> new ShardStatusDTO(shard.name(), counts.get(shard.index()),
+                        shards.ring().share(shard.index())))
+                .toList();
+    }
+
+    // Endpoint to move devices to the shard that owns them, after a shard has been added
+    @PostMapping("/rebalance")
+    public ShardRebalanceDTO rebalance() {
+        return rebalancer.rebalance();
+    }
+}
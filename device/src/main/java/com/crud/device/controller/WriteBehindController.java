@@ -0,0 +1,41 @@
+package com.crud.device.controller;
+
+import com.crud.device.dto.WriteBehindDeadLetterDTO;
+import com.crud.device.dto.WriteBehindStatusDTO;
+import com.crud.device.writebehind.DeviceWriteBehindQueue;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/devices/write-behind")
+public class WriteBehindController {
+
+    private final Optional<DeviceWriteBehindQueue> writeBehindQueue;
+
+    public WriteBehindController(Optional<DeviceWriteBehindQueue> writeBehindQueue) {
+        this.writeBehindQueue = writeBehindQueue;
+    }
+
+    // Endpoint to get the depth, throughput and flush lag of the write-behind queue
+    @GetMapping("/status")
+    public WriteBehindStatusDTO getWriteBehindStatus() {
+        return writeBehindQueue.map(DeviceWriteBehindQueue::status).orElseGet(WriteBehindStatusDTO::disabled);
+    }
+
+    // Endpoint to list the accepted devices that could not be written
+    @GetMapping("/dead-letters")
+    public List<WriteBehindDeadLetterDTO> getDeadLetters() {
+        return writeBehindQueue.map(DeviceWriteBehindQueue::deadLetters).orElseGet(List::of);
+    }
+
+    // Endpoint to queue the dead letters again, answering how many were queued
+    @PostMapping("/dead-letters/retry")
+    public int retryDeadLetters() {
+        return writeBehindQueue.map(DeviceWriteBehindQueue::retryDeadLetters).orElse(0);
+    }
+}
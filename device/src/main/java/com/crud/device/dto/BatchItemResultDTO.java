@@ -0,0 +1,24 @@
+package com.crud.device.dto;
+
+/**
+ * Outcome of one item of a batch request. {@code index} is the position of the item in the request and
+ * {@code status} the HTTP status the equivalent single-item request would have returned.
+ */
+public record BatchItemResultDTO(int index,
+                                 int status,
+                                 Long id,
+                                 DeviceDTO device,
+                                 String error) {
+
+    public static BatchItemResultDTO success(int index, int status, DeviceDTO device) {
+        return new BatchItemResultDTO(index, status, device.id(), device, null);
+    }
+
+    public static BatchItemResultDTO deleted(int index, Long id) {
+        return new BatchItemResultDTO(index, 204, id, null, null);
+    }
+
+    public static BatchItemResultDTO failure(int index, int status, Long id, String error) {
+        return new BatchItemResultDTO(index, status, id, null, error);
+    }
+}
@@ -0,0 +1,9 @@
+package com.crud.device.dto;
+
+public record CacheStatsDTO(boolean enabled,
+                            long size,
+                            long hits,
+                            long misses,
+                            double hitRate,
+                            long evictions) {
+}
@@ -0,0 +1,13 @@
+package com.crud.device.dto;
+
+import com.crud.device.event.DeviceChangeEvent;
+
+import java.time.Instant;
+
+public record DeviceChangeDTO(long sequence,
+                              DeviceChangeEvent.Type type,
+                              Long id,
+                              DeviceDTO device,
+                              boolean partial,
+                              Instant timestamp) {
+}
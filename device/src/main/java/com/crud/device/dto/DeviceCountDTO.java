@@ -0,0 +1,4 @@
+package com.crud.device.dto;
+
+public record DeviceCountDTO(long count) {
+}
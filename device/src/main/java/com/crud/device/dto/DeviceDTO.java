@@ -0,0 +1,19 @@
+package com.crud.device.dto;
+
+import java.util.Date;
+
+public record DeviceDTO(Long id,
+                        String name,
+                        String brand,
+                        Date creationTime,
+                        Long version,
+                        Date lastModified) {
+
+    public DeviceDTO(Long id, String name, String brand, Date creationTime, Long version) {
+        this(id, name, brand, creationTime, version, null);
+    }
+
+    public DeviceDTO(Long id, String name, String brand, Date creationTime) {
+        this(id, name, brand, creationTime, null);
+    }
+}
@@ -0,0 +1,6 @@
+package com.crud.device.dto;
+
+import java.time.LocalDate;
+
+public record DeviceDailyCountDTO(String brand, LocalDate day, long count) {
+}
@@ -0,0 +1,28 @@
+package com.crud.device.dto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The devices found for a list of ids, in the order the ids were requested, and the requested ids that do not
+ * exist, in the same order. An id requested more than once is answered once.
+ */
+public record DeviceLookupDTO(List<DeviceDTO> devices,
+                              List<Long> missing) {
+
+    public static DeviceLookupDTO of(Collection<Long> ids, Map<Long, DeviceDTO> found) {
+        List<DeviceDTO> devices = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            DeviceDTO device = found.get(id);
+            if (device != null) {
+                devices.add(device);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new DeviceLookupDTO(devices, missing);
+    }
+}
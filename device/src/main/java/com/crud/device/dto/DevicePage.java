@@ -0,0 +1,11 @@
+package com.crud.device.dto;
+
+import java.util.List;
+
+/**
+ * One keyset page of devices. {@code nextCursor} is an opaque token to pass back as
+ * {@code cursor} for the following page, or {@code null} when this is the last page.
+ */
+public record DevicePage(List<DeviceDTO> content,
+                         String nextCursor) {
+}
@@ -0,0 +1,69 @@
+package com.crud.device.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+import java.io.IOException;
+
+/**
+ * A JSON Merge Patch (RFC 7386) of a device. A field that is present replaces the current value, {@code null}
+ * included, and an absent field is left unchanged. Unknown fields are ignored.
+ */
+@JsonDeserialize(using = DevicePatch.Deserializer.class)
+public record DevicePatch(boolean hasName,
+                          String name,
+                          boolean hasBrand,
+                          String brand) {
+
+    public static DevicePatch of(String name, String brand) {
+        return new DevicePatch(true, name, true, brand);
+    }
+
+    /**
+     * Reads the body token by token into presence flags and values, without building an intermediate map, and
+     * rejects non-string values so they surface as 400 responses.
+     */
+    static final class Deserializer extends JsonDeserializer<DevicePatch> {
+
+        @Override
+        public DevicePatch deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartObjectToken()) {
+                return (DevicePatch) context.handleUnexpectedToken(DevicePatch.class, parser);
+            }
+            boolean hasName = false;
+            String name = null;
+            boolean hasBrand = false;
+            String brand = null;
+            for (String fieldName = parser.nextFieldName(); fieldName != null; fieldName = parser.nextFieldName()) {
+                parser.nextToken();
+                switch (fieldName) {
+                    case "name" -> {
+                        hasName = true;
+                        name = readString(parser, fieldName);
+                    }
+                    case "brand" -> {
+                        hasBrand = true;
+                        brand = readString(parser, fieldName);
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            return new DevicePatch(hasName, name, hasBrand, brand);
+        }
+
+        private static String readString(JsonParser parser, String fieldName) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (parser.currentToken() != JsonToken.VALUE_STRING) {
+                throw MismatchedInputException.from(parser, String.class,
+                        "Field '" + fieldName + "' must be a string or null");
+            }
+            return parser.getText();
+        }
+    }
+}
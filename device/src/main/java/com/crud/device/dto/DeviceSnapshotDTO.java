@@ -0,0 +1,10 @@
+package com.crud.device.dto;
+
+/**
+ * Outcome of a snapshot export or import: the file within the snapshot directory, the devices it holds and its size.
+ */
+public record DeviceSnapshotDTO(String file,
+                                long devices,
+                                long bytes,
+                                long durationMillis) {
+}
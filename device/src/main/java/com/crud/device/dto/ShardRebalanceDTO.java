@@ -0,0 +1,11 @@
+package com.crud.device.dto;
+
+/**
+ * Outcome of a rebalance: devices read, devices moved to their owning shard, and moves that had to be repeated
+ * because the device changed while it was being moved.
+ */
+public record ShardRebalanceDTO(long scanned,
+                                long moved,
+                                long retried,
+                                long durationMillis) {
+}
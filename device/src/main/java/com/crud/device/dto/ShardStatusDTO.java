@@ -0,0 +1,9 @@
+package com.crud.device.dto;
+
+/**
+ * A shard of a sharded deployment: the devices it holds, and {@code share}, the fraction of the hash ring it owns.
+ */
+public record ShardStatusDTO(String name,
+                             long devices,
+                             double share) {
+}
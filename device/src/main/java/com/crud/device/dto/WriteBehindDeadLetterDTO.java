@@ -0,0 +1,8 @@
+package com.crud.device.dto;
+
+import java.time.Instant;
+
+public record WriteBehindDeadLetterDTO(DeviceDTO device,
+                                       String error,
+                                       Instant failedAt) {
+}
@@ -0,0 +1,19 @@
+package com.crud.device.dto;
+
+public record WriteBehindStatusDTO(boolean enabled,
+                                   int depth,
+                                   int capacity,
+                                   long accepted,
+                                   long rejected,
+                                   long flushedDevices,
+                                   long flushedBatches,
+                                   long failedBatches,
+                                   int deadLettered,
+                                   long droppedDevices,
+                                   long oldestQueuedMillis,
+                                   long lastFlushLagMillis) {
+
+    public static WriteBehindStatusDTO disabled() {
+        return new WriteBehindStatusDTO(false, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,43 @@
+package com.crud.device.event;
+
+import com.crud.device.dto.DeviceDTO;
+
+/**
+ * Published by the device service once a create, update, delete or snapshot import has been committed.
+ * {@code device} holds the new state and is {@code null} for deletions. When {@code partial} is set the update was
+ * written without reading the row back, so only the fields the client sent are filled in and the rest are
+ * {@code null}. An imported device replaces whatever was stored under its id, even at a lower version or after a
+ * deletion.
+ */
+public record DeviceChangeEvent(Type type,
+                                Long id,
+                                DeviceDTO device,
+                                boolean partial) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        IMPORTED
+    }
+
+    public static DeviceChangeEvent created(DeviceDTO device) {
+        return new DeviceChangeEvent(Type.CREATED, device.id(), device, false);
+    }
+
+    public static DeviceChangeEvent updated(DeviceDTO device) {
+        return new DeviceChangeEvent(Type.UPDATED, device.id(), device, false);
+    }
+
+    public static DeviceChangeEvent partiallyUpdated(DeviceDTO writtenFields) {
+        return new DeviceChangeEvent(Type.UPDATED, writtenFields.id(), writtenFields, true);
+    }
+
+    public static DeviceChangeEvent deleted(Long id) {
+        return new DeviceChangeEvent(Type.DELETED, id, null, false);
+    }
+
+    public static DeviceChangeEvent imported(DeviceDTO device) {
+        return new DeviceChangeEvent(Type.IMPORTED, device.id(), device, false);
+    }
+}
@@ -0,0 +1,12 @@
+package com.crud.device.feed;
+
+/**
+ * The requested position is no longer, or was never, in the change feed, so the consumer has to re-read the
+ * devices and resume from the latest sequence.
+ */
+public class ChangeFeedGoneException extends RuntimeException {
+
+    public ChangeFeedGoneException(String message) {
+        super(message);
+    }
+}
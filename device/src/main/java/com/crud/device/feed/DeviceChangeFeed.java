@@ -0,0 +1,220 @@
+package com.crud.device.feed;
+
+import com.crud.device.dto.DeviceChangeDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.event.DeviceChangeEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ordered, sequence-numbered log of the {@link DeviceChangeEvent}s published by the device service, retained up to
+ * {@code device.changes.max-size} entries and for at most {@code device.changes.max-age}.
+ * <p>
+ * Sequences are assigned and appended under one lock, so a reader never sees a later change without the earlier
+ * ones. They start from the startup time in microseconds, which makes positions from before a restart fall outside
+ * the log and be reported as gone instead of silently matching new changes.
+ * <p>
+ * Events are published after the write has committed, so two writes to one device can be published in the opposite
+ * order to their commits. The log keeps each device's entries in {@code version} order: a late event that a retained
+ * full update already covers is dropped, a late partial one keeps only the fields not written since, at the latest
+ * version, and nothing follows a deletion. An imported device starts its order afresh, as a snapshot may restore an
+ * older version or a deleted device.
+ */
+@Component
+public class DeviceChangeFeed {
+
+    private final ConcurrentNavigableMap<Long, DeviceChangeDTO> changes = new ConcurrentSkipListMap<>();
+    // The retained entries of each device, oldest first; only used with appendLock held
+    private final Map<Long, Deque<DeviceChangeDTO>> deviceChanges = new HashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private final int maxSize;
+    private final Duration maxAge;
+    private final Clock clock;
+    // Highest sequence appended, and highest sequence no longer retained
+    private volatile long lastSequence;
+    private volatile long evictedThrough;
+    private int size;
+
+    @Autowired
+    public DeviceChangeFeed(@Value("${device.changes.max-size:100000}") int maxSize,
+                            @Value("${device.changes.max-age:1h}") Duration maxAge) {
+        this(maxSize, maxAge, Clock.systemUTC());
+    }
+
+    DeviceChangeFeed(int maxSize, Duration maxAge, Clock clock) {
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        this.clock = clock;
+        this.lastSequence = TimeUnit.MILLISECONDS.toMicros(clock.millis());
+        this.evictedThrough = lastSequence;
+    }
+
+    @EventListener
+    public void onDeviceChange(DeviceChangeEvent event) {
+        appendLock.lock();
+        try {
+            Deque<DeviceChangeDTO> logged = deviceChanges.get(event.id());
+            if (logged != null) {
+                event = inVersionOrder(event, logged);
+                if (event == null) {
+                    return;
+                }
+            }
+            long sequence = lastSequence + 1;
+            DeviceChangeDTO change = new DeviceChangeDTO(sequence, event.type(), event.id(), event.device(),
+                    event.partial(), clock.instant());
+            changes.put(sequence, change);
+            deviceChanges.computeIfAbsent(event.id(), id -> new ArrayDeque<>()).addLast(change);
+            lastSequence = sequence;
+            size++;
+            evict();
+            appended.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} changes after {@code since}, oldest first.
+     *
+     * @throws ChangeFeedGoneException if changes after {@code since} have already been evicted, or {@code since} is
+     *                                 ahead of the log
+     */
+    public List<DeviceChangeDTO> changesSince(long since, int limit) {
+        appendLock.lock();
+        try {
+            evict();
+        } finally {
+            appendLock.unlock();
+        }
+        checkRetained(since);
+        List<DeviceChangeDTO> result = new ArrayList<>(Math.min(limit, 256));
+        for (DeviceChangeDTO change : changes.tailMap(since, false).values()) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(change);
+        }
+        // Entries evicted while iterating would leave a gap at the head of the result
+        checkRetained(since);
+        return result;
+    }
+
+    /**
+     * Blocks until a change after {@code since} is appended or {@code timeout} elapses.
+     *
+     * @return whether a change after {@code since} is available
+     */
+    public boolean awaitChangesAfter(long since, Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+        appendLock.lock();
+        try {
+            while (lastSequence <= since && nanos > 0) {
+                nanos = appended.awaitNanos(nanos);
+            }
+            return lastSequence > since;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    public long oldestPosition() {
+        return evictedThrough;
+    }
+
+    public void checkRetained(long since) {
+        if (since < evictedThrough || since > lastSequence) {
+            throw new ChangeFeedGoneException("Sequence " + since + " is outside the change feed, which covers "
+                    + evictedThrough + " to " + lastSequence);
+        }
+    }
+
+    // Returns the event to append after the device's retained entries, or null when they already cover it
+    private static DeviceChangeEvent inVersionOrder(DeviceChangeEvent event, Deque<DeviceChangeDTO> logged) {
+        if (event.type() == DeviceChangeEvent.Type.IMPORTED) {
+            return event;
+        }
+        if (logged.getLast().type() == DeviceChangeEvent.Type.DELETED) {
+            // Ids are never reused
+            return null;
+        }
+        Long version = event.device() == null ? null : event.device().version();
+        if (version == null) {
+            return event;
+        }
+        List<DeviceChangeDTO> newer = sinceLastImport(logged).stream()
+                .filter(change -> change.device().version() != null && change.device().version() >= version)
+                .toList();
+        if (newer.isEmpty()) {
+            return event;
+        }
+        if (!event.partial() || newer.stream().anyMatch(change -> !change.partial())) {
+            return null;
+        }
+        String name = event.device().name();
+        String brand = event.device().brand();
+        long latest = version;
+        for (DeviceChangeDTO change : newer) {
+            name = change.device().name() == null ? name : null;
+            brand = change.device().brand() == null ? brand : null;
+            latest = Math.max(latest, change.device().version());
+        }
+        if (name == null && brand == null) {
+            return null;
+        }
+        return DeviceChangeEvent.partiallyUpdated(new DeviceDTO(event.id(), name, brand, null, latest));
+    }
+
+    // The entries from the device's latest import on, or all of them when it was never imported
+    private static List<DeviceChangeDTO> sinceLastImport(Deque<DeviceChangeDTO> logged) {
+        List<DeviceChangeDTO> current = new ArrayList<>();
+        for (Iterator<DeviceChangeDTO> newestFirst = logged.descendingIterator(); newestFirst.hasNext(); ) {
+            DeviceChangeDTO change = newestFirst.next();
+            current.addFirst(change);
+            if (change.type() == DeviceChangeEvent.Type.IMPORTED) {
+                break;
+            }
+        }
+        return current;
+    }
+
+    // Called with appendLock held
+    private void evict() {
+        Instant oldestKept = clock.instant().minus(maxAge);
+        Map.Entry<Long, DeviceChangeDTO> oldest = changes.firstEntry();
+        while (oldest != null && (size > maxSize || oldest.getValue().timestamp().isBefore(oldestKept))) {
+            evictedThrough = oldest.getKey();
+            changes.remove(oldest.getKey());
+            Deque<DeviceChangeDTO> logged = deviceChanges.get(oldest.getValue().id());
+            logged.removeFirst();
+            if (logged.isEmpty()) {
+                deviceChanges.remove(oldest.getValue().id());
+            }
+            size--;
+            oldest = changes.firstEntry();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.crud.device.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Records latency, rows, JDBC statements, database time and DTO conversion time for each device service operation,
+ * and logs operations slower than {@code device.metrics.slow-threshold}.
+ * <p>
+ * An operation opens a scope on the calling thread; {@link StatementMetricsListener} and the service add to it
+ * through the static {@code record...} methods, which do nothing outside a scope.
+ */
+@Component
+public class DeviceMetrics {
+    private static final Logger log = LoggerFactory.getLogger(DeviceMetrics.class);
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final long slowThresholdNanos;
+    private final Map<String, OperationMeters> meters = new ConcurrentHashMap<>();
+
+    public DeviceMetrics(MeterRegistry registry,
+                         @Value("${device.metrics.slow-threshold:500ms}") Duration slowThreshold) {
+        this.registry = registry;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    /**
+     * Runs {@code call} as the {@code operation} and records it, counting the rows of its result with
+     * {@code rows}.
+     */
+    public <T> T record(String operation, Supplier<T> call, ToIntFunction<? super T> rows) {
+        Scope previous = CURRENT.get();
+        Scope scope = new Scope();
+        CURRENT.set(scope);
+        long start = System.nanoTime();
+        String outcome = "error";
+        int rowCount = 0;
+        try {
+            T result = call.get();
+            rowCount = rows.applyAsInt(result);
+            outcome = "success";
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+            OperationMeters operationMeters = meters.computeIfAbsent(operation, this::register);
+            operationMeters.record(outcome, elapsed, rowCount, scope);
+            if (elapsed >= slowThresholdNanos) {
+                log.warn("Slow device operation {} ({}) took {} ms: {} rows, {} statements, {} ms in database, {} ms converting",
+                        operation, outcome, millis(elapsed), rowCount, scope.statements, millis(scope.databaseNanos),
+                        millis(scope.conversionNanos));
+            }
+        }
+    }
+
+    public void record(String operation, Runnable call, int rows) {
+        record(operation, () -> {
+            call.run();
+            return null;
+        }, result -> rows);
+    }
+
+    /**
+     * Adds one JDBC statement or batch execution of {@code nanos} to the current operation.
+     */
+    public static void recordStatement(long nanos) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.statements++;
+            scope.databaseNanos += nanos;
+        }
+    }
+
+    public static void recordConversion(long nanos) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.conversionNanos += nanos;
+        }
+    }
+
+    private OperationMeters register(String operation) {
+        return new OperationMeters(
+                timer("device.service", "Device service operation latency", operation, "success"),
+                timer("device.service", "Device service operation latency", operation, "error"),
+                timer("device.service.database", "JDBC execution time per device service operation", operation, null),
+                timer("device.service.conversion", "Entity to DTO conversion time per device service operation", operation, null),
+                DistributionSummary.builder("device.service.rows")
+                        .description("Rows returned or written per device service operation")
+                        .tag("operation", operation)
+                        .publishPercentiles(0.5, 0.99, 0.999)
+                        .register(registry),
+                DistributionSummary.builder("device.service.statements")
+                        .description("JDBC statements executed per device service operation")
+                        .tag("operation", operation)
+                        .publishPercentiles(0.5, 0.99, 0.999)
+                        .register(registry));
+    }
+
+    private Timer timer(String name, String description, String operation, String outcome) {
+        Timer.Builder builder = Timer.builder(name)
+                .description(description)
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.99, 0.999);
+        if (outcome != null) {
+            builder.tag("outcome", outcome);
+        }
+        return builder.register(registry);
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static final class Scope {
+        int statements;
+        long databaseNanos;
+        long conversionNanos;
+    }
+
+    private record OperationMeters(Timer success,
+                                   Timer error,
+                                   Timer database,
+                                   Timer conversion,
+                                   DistributionSummary rows,
+                                   DistributionSummary statements) {
+
+        void record(String outcome, long elapsed, int rowCount, Scope scope) {
+            ("success".equals(outcome) ? success : error).record(elapsed, TimeUnit.NANOSECONDS);
+            database.record(scope.databaseNanos, TimeUnit.NANOSECONDS);
+            conversion.record(scope.conversionNanos, TimeUnit.NANOSECONDS);
+            rows.record(rowCount);
+            statements.record(scope.statements);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.crud.device.metrics;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Hibernate session listener that reports every JDBC statement and batch execution, with its duration, to the
+ * device operation running on the current thread. Registered for every session through
+ * {@code hibernate.session.events.auto}, which instantiates it per session.
+ */
+public class StatementMetricsListener implements SessionEventListener {
+
+    private long executionStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        DeviceMetrics.recordStatement(System.nanoTime() - executionStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        DeviceMetrics.recordStatement(System.nanoTime() - executionStart);
+    }
+}
@@ -0,0 +1,100 @@
+package com.crud.device.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.util.Date;
+import java.util.Locale;
+
+@Entity
+// Each index ends with the id, which keyset pages use to break ties. DeviceIndexes reads this list to decide which
+// filter and sort combinations of DeviceQuery are served without a full scan
+@Table(indexes = {
+        @Index(name = "idx_device_brand_key", columnList = "brand_key, id"),
+        @Index(name = "idx_device_creation_time", columnList = "creation_time, id"),
+        @Index(name = "idx_device_name", columnList = "name, id"),
+        @Index(name = "idx_device_last_modified", columnList = "last_modified, id"),
+        @Index(name = "idx_device_brand_key_name", columnList = "brand_key, name, id"),
+        @Index(name = "idx_device_brand_key_creation_time", columnList = "brand_key, creation_time, id")
+})
+public class Device {
+    // Pooled sequence: one round trip reserves allocationSize ids, which also lets batched inserts stay batched
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "device_seq")
+    @SequenceGenerator(name = "device_seq", sequenceName = "device_seq", allocationSize = 50)
+    Long id;
+    String name;
+    String brand;
+    // Trimmed, lower-cased copy of brand so exact and prefix searches can use an index
+    @Column(name = "brand_key")
+    String brandKey;
+    @CreationTimestamp
+    @Temporal(TemporalType.TIMESTAMP)
+    Date creationTime;
+    // Optimistic lock, incremented on every update and exposed to clients as the ETag
+    @Version
+    Long version;
+    // Set on insert and on every update, exposed to clients as Last-Modified
+    @UpdateTimestamp
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_modified")
+    Date lastModified;
+
+    public Device() {
+    }
+
+    public Device(String name, String brand) {
+        this.name = name;
+        setBrand(brand);
+    }
+
+    public Device(Long id,String name, String brand, Date creationTime) {
+        this.id = id;
+        this.name = name;
+        setBrand(brand);
+        this.creationTime = creationTime;
+    }
+
+    public static String normalizeBrand(String brand) {
+        return brand == null ? null : brand.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public void setBrand(String brand) {
+        this.brand = brand;
+        this.brandKey = normalizeBrand(brand);
+    }
+
+    public String getBrandKey() {
+        return brandKey;
+    }
+
+    public Date getCreationTime() {
+        return creationTime;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+}
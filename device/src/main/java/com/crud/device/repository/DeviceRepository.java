@@ -0,0 +1,85 @@
+package com.crud.device.repository;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.model.Device;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+@Repository
+public interface DeviceRepository extends JpaRepository<Device, Long>, JpaSpecificationExecutor<Device>,
+        DeviceRepositoryCustom {
+    List<Device> findByBrandContainingIgnoreCase(String brand);
+
+    List<Device> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<Device> findByBrandKeyAndIdGreaterThanOrderByIdAsc(String brandKey, Long id, Limit limit);
+
+    List<Device> findByBrandKeyStartingWithAndIdGreaterThanOrderByIdAsc(String brandKeyPrefix, Long id, Limit limit);
+
+    List<Device> findByBrandKeyContainingAndIdGreaterThanOrderByIdAsc(String brandKeyPart, Long id, Limit limit);
+
+    long countByBrandKey(String brandKey);
+
+    long countByBrandKeyStartingWith(String brandKeyPrefix);
+
+    long countByBrandKeyContaining(String brandKeyPart);
+
+    List<Device> findByIdInOrderByIdAsc(Collection<Long> ids);
+
+    List<Device> findByCreationTimeGreaterThanEqualAndCreationTimeLessThanOrderByCreationTimeAscIdAsc(
+            Date from, Date to, Limit limit);
+
+    // Continues the query above after a keyset position, the id breaks ties between devices created in the same instant
+    @Query("""
+            select d from Device d
+            where d.creationTime >= :from and d.creationTime < :to
+              and (d.creationTime > :afterTime or (d.creationTime = :afterTime and d.id > :afterId))
+            order by d.creationTime, d.id""")
+    List<Device> findCreatedBetweenAfter(Date from, Date to, Date afterTime, Long afterId, Limit limit);
+
+    // Grouped by the normalized brand, so spelling variants of a brand are counted together
+    @Query("""
+            select new com.crud.device.dto.DeviceDailyCountDTO(d.brandKey, cast(d.creationTime as LocalDate), count(d))
+            from Device d
+            where d.creationTime >= :from and d.creationTime < :to
+            group by cast(d.creationTime as LocalDate), d.brandKey
+            order by cast(d.creationTime as LocalDate), d.brandKey""")
+    List<DeviceDailyCountDTO> countByBrandAndDay(Date from, Date to);
+
+    @Query("select d.id from Device d where d.id in :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    // Projects straight into DTOs, so a large lookup never fills the persistence context. Read-only, so it can be
+    // routed to a replica when called outside a transaction
+    @Query("select new com.crud.device.dto.DeviceDTO(d.id, d.name, d.brand, d.creationTime, d.version, d.lastModified) from Device d where d.id in :ids")
+    @Transactional(readOnly = true)
+    List<DeviceDTO> findDevicesByIdIn(Collection<Long> ids);
+
+    // Projects straight into DTOs so streamed rows never enter the persistence context
+    @Query("select new com.crud.device.dto.DeviceDTO(d.id, d.name, d.brand, d.creationTime, d.version, d.lastModified) from Device d order by d.id")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<DeviceDTO> streamAllByOrderByIdAsc();
+
+    // A constructor expression rather than an interface projection, which proxies every row
+    @Query("select new com.crud.device.repository.DeviceRepository$BrandKeyView(d.id, d.brandKey) from Device d")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<BrandKeyView> streamBrandKeysBy();
+
+    record BrandKeyView(Long id, String brandKey) {
+    }
+}
@@ -0,0 +1,79 @@
+package com.crud.device.repository;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DevicePatch;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public interface DeviceRepositoryCustom {
+
+    /**
+     * Applies the fields present in {@code patch} and increments the version in a single
+     * {@code UPDATE ... WHERE id = ? AND version = ?} statement, without loading the device first.
+     *
+     * @return the number of rows updated, 0 when the device is missing or its version has moved on
+     */
+    int updateIfVersionMatches(Long id, long expectedVersion, DevicePatch patch);
+
+    /**
+     * Reads the revision bumped by bulk writers together with the number of devices, the sum of their versions and
+     * the latest modification, which every other write moves.
+     */
+    DeviceTableState tableState();
+
+    /**
+     * Writes {@code devices} with their own ids, versions and timestamps in two JDBC batches: an update of the rows
+     * that exist, then an insert of the rest.
+     */
+    void upsertAll(List<DeviceDTO> devices);
+
+    /**
+     * Inserts {@code devices} with the ids, versions and timestamps they already have, in one JDBC batch.
+     */
+    void insertAll(List<DeviceDTO> devices);
+
+    /**
+     * Takes the next value of the id sequence of {@link com.crud.device.model.Device}, which reserves the
+     * {@code allocationSize} ids up to it.
+     */
+    long nextSequenceValue();
+
+    /**
+     * Restarts the id sequence so that the next block it hands out starts after {@code id}, unless it already does,
+     * and skips the ids up to {@code id} left in the block Hibernate holds on this node. Blocks other nodes hold are
+     * not affected.
+     */
+    void advanceSequencePast(long id);
+
+    /**
+     * Drops the indexes declared on {@link com.crud.device.model.Device}, all but the primary key.
+     */
+    void dropSecondaryIndexes();
+
+    /**
+     * Builds the indexes declared on {@link com.crud.device.model.Device} again after {@link #dropSecondaryIndexes}.
+     */
+    void createSecondaryIndexes();
+
+    /**
+     * Bumps the revision of {@link #tableState}, for writes that may leave the device count and the latest
+     * modification as they were.
+     */
+    void bumpRevision();
+
+    /**
+     * What conditional GETs of the device collection compare: it changes whenever a device is created, updated or
+     * deleted, by this instance or any other writer of the table. The sum of the versions grows with every update,
+     * even one whose timestamp is not past the latest modification, as those of instances with lagging clocks are.
+     */
+    record DeviceTableState(long revision, long devices, long versions, Instant lastModified) {
+
+        public String tag() {
+            long lastModifiedMicros = lastModified == null ? 0
+                    : TimeUnit.SECONDS.toMicros(lastModified.getEpochSecond()) + lastModified.getNano() / 1000;
+            return revision + "-" + devices + "-" + versions + "-" + lastModifiedMicros;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.crud.device.repository;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.model.Device;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Index;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+class DeviceRepositoryCustomImpl implements DeviceRepositoryCustom {
+    // Both bind the columns in the same order, so one binder serves both
+    private static final String UPDATE_SQL = "update device set name = ?, brand = ?, brand_key = ?,"
+            + " creation_time = ?, version = ?, last_modified = ? where id = ?";
+    private static final String INSERT_SQL = "insert into device"
+            + " (name, brand, brand_key, creation_time, version, last_modified, id) values (?, ?, ?, ?, ?, ?, ?)";
+    private static final SequenceGenerator ID_SEQUENCE = idSequence();
+    private static final List<Index> SECONDARY_INDEXES = List.of(Device.class.getAnnotation(Table.class).indexes());
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int updateIfVersionMatches(Long id, long expectedVersion, DevicePatch patch) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Device> update = builder.createCriteriaUpdate(Device.class);
+        Root<Device> device = update.from(Device.class);
+        if (patch.hasName()) {
+            update.set(device.<String>get("name"), patch.name());
+        }
+        if (patch.hasBrand()) {
+            update.set(device.<String>get("brand"), patch.brand());
+            update.set(device.<String>get("brandKey"), Device.normalizeBrand(patch.brand()));
+        }
+        // A bulk update bypasses @Version and @UpdateTimestamp, so both are maintained here
+        update.set(device.<Long>get("version"), builder.sum(device.<Long>get("version"), 1L));
+        update.set(device.<Date>get("lastModified"), new Date());
+        update.where(builder.equal(device.get("id"), id), builder.equal(device.get("version"), expectedVersion));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DeviceTableState tableState() {
+        // Separate subqueries, so the count and latest modification are answered from the row count and an index;
+        // only the sum of the versions reads every row
+        Object[] state = (Object[]) entityManager.createNativeQuery("""
+                        select r.revision, (select count(*) from device), (select coalesce(sum(version), 0) from device),
+                               (select max(last_modified) from device)
+                        from device_revision r where r.id = 1""")
+                .getSingleResult();
+        return new DeviceTableState(((Number) state[0]).longValue(), ((Number) state[1]).longValue(),
+                ((Number) state[2]).longValue(), state[3] == null ? null : ((Timestamp) state[3]).toInstant());
+    }
+
+    // Plain JDBC batches: merging entities would reset the timestamps and fail on versioned rows that do not exist.
+    // Which rows exist is queried first, as drivers may answer a batch with SUCCESS_NO_INFO instead of row counts
+    @Override
+    @Transactional
+    public void upsertAll(List<DeviceDTO> devices) {
+        if (devices.isEmpty()) {
+            return;
+        }
+        Set<Long> existing = new HashSet<>(entityManager.createQuery(
+                        "select d.id from Device d where d.id in :ids", Long.class)
+                .setParameter("ids", devices.stream().map(DeviceDTO::id).toList())
+                .getResultList());
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(UPDATE_SQL);
+                 PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                boolean updating = false;
+                boolean inserting = false;
+                for (DeviceDTO device : devices) {
+                    if (existing.contains(device.id())) {
+                        bindRow(update, device);
+                        update.addBatch();
+                        updating = true;
+                    } else {
+                        bindRow(insert, device);
+                        insert.addBatch();
+                        inserting = true;
+                    }
+                }
+                if (updating) {
+                    update.executeBatch();
+                }
+                if (inserting) {
+                    insert.executeBatch();
+                }
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public void insertAll(List<DeviceDTO> devices) {
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                for (DeviceDTO device : devices) {
+                    bindRow(insert, device);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public long nextSequenceValue() {
+        String nextValue = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport()
+                .getSequenceNextValString(ID_SEQUENCE.sequenceName());
+        return ((Number) entityManager.createNativeQuery(nextValue).getSingleResult()).longValue();
+    }
+
+    @Override
+    @Transactional
+    public void advanceSequencePast(long id) {
+        // A sequence value S hands out the ids up to S, starting allocationSize - 1 below it
+        long required = id + ID_SEQUENCE.allocationSize();
+        if (nextSequenceValue() < required) {
+            entityManager.createNativeQuery("alter sequence " + ID_SEQUENCE.sequenceName() + " restart with "
+                    + required).executeUpdate();
+        }
+        // The pooled optimizer keeps handing out the block it holds, which the restart does not reach, so the ids
+        // left in it up to id are used up here. The next block comes from the restarted sequence
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        if (session.getFactory().getMappingMetamodel().getEntityDescriptor(Device.class).getGenerator()
+                instanceof IdentifierGenerator generator) {
+            long skipped;
+            do {
+                skipped = ((Number) generator.generate(session, null)).longValue();
+            } while (skipped <= id);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void dropSecondaryIndexes() {
+        SECONDARY_INDEXES.forEach(index -> entityManager.createNativeQuery("drop index " + index.name())
+                .executeUpdate());
+    }
+
+    @Override
+    @Transactional
+    public void createSecondaryIndexes() {
+        SECONDARY_INDEXES.forEach(index -> entityManager.createNativeQuery("create index " + index.name()
+                + " on device (" + index.columnList() + ")").executeUpdate());
+    }
+
+    @Override
+    @Transactional
+    public void bumpRevision() {
+        entityManager.createNativeQuery("update device_revision set revision = revision + 1 where id = 1")
+                .executeUpdate();
+    }
+
+    private static void bindRow(PreparedStatement statement, DeviceDTO device) throws SQLException {
+        statement.setString(1, device.name());
+        statement.setString(2, device.brand());
+        statement.setString(3, Device.normalizeBrand(device.brand()));
+        statement.setTimestamp(4, toTimestamp(device.creationTime()));
+        statement.setObject(5, device.version(), Types.BIGINT);
+        statement.setTimestamp(6, toTimestamp(device.lastModified()));
+        statement.setLong(7, device.id());
+    }
+
+    private static Timestamp toTimestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+
+    private static SequenceGenerator idSequence() {
+        try {
+            return Device.class.getDeclaredField("id").getAnnotation(SequenceGenerator.class);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Device has no id field", e);
+        }
+    }
+}
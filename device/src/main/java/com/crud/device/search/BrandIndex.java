@@ -0,0 +1,193 @@
+package com.crud.device.search;
+
+import com.crud.device.config.DataSourceRouting;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.model.Device;
+import com.crud.device.repository.DeviceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * In-memory dictionary of normalized brand to device ids.
+ * <p>
+ * Brands are low-cardinality, so a substring search only has to scan the distinct brand keys instead of every
+ * device row. The dictionary is loaded once the application is ready and kept current from
+ * {@link DeviceChangeEvent}s; callers must fall back to the database until {@link #isReady()} returns true.
+ * A partial update that did not send a brand leaves the entry as is, so callers should re-check matches against
+ * the loaded devices.
+ * <p>
+ * Only {@code DeviceServiceImpl} searches through the index, so it stays empty and never becomes ready when the
+ * {@code memory} storage engine serves the devices instead.
+ */
+@Component
+public class BrandIndex {
+    private static final Logger log = LoggerFactory.getLogger(BrandIndex.class);
+
+    private final DeviceRepository deviceRepository;
+    private final Map<String, NavigableSet<Long>> idsByBrand = new ConcurrentHashMap<>();
+    private final Map<Long, String> brandById = new ConcurrentHashMap<>();
+    // Ids deleted while the initial load runs, so the snapshot cannot resurrect them
+    private final Set<Long> deletedDuringLoad = ConcurrentHashMap.newKeySet();
+    private final boolean enabled;
+    private volatile boolean ready;
+
+    @Autowired
+    public BrandIndex(DeviceRepository deviceRepository,
+                      @Value("${device.store.engine:jpa}") String storeEngine) {
+        this.deviceRepository = deviceRepository;
+        this.enabled = !storeEngine.equals("memory");
+    }
+
+    BrandIndex(DeviceRepository deviceRepository) {
+        this(deviceRepository, "jpa");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        // Changes are only applied from events after this point, so the snapshot must come from the primary
+        DataSourceRouting.onPrimary(() -> {
+            try (Stream<DeviceRepository.BrandKeyView> rows = deviceRepository.streamBrandKeysBy()) {
+                rows.forEach(row -> {
+                    if (!deletedDuringLoad.contains(row.id())) {
+                        brandById.computeIfAbsent(row.id(), id -> {
+                            addToBrand(row.brandKey(), id);
+                            return row.brandKey();
+                        });
+                    }
+                });
+            }
+            return null;
+        });
+        deletedDuringLoad.clear();
+        ready = true;
+        log.info("Brand index loaded with {} devices across {} brands", brandById.size(), idsByBrand.size());
+    }
+
+    /**
+     * Loads the dictionary again, after devices were written without {@link DeviceChangeEvent}s. Searches fall back
+     * to the database until it is done.
+     */
+    @Transactional(readOnly = true)
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        ready = false;
+        idsByBrand.clear();
+        brandById.clear();
+        load();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener
+    public void onDeviceChange(DeviceChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.type() == DeviceChangeEvent.Type.DELETED) {
+            remove(event.id());
+        } else if (!event.partial() || event.device().brand() != null) {
+            put(event.id(), Device.normalizeBrand(event.device().brand()));
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} ids greater than {@code afterId}, in ascending order, whose brand contains
+     * {@code term}.
+     */
+    public List<Long> findIdsContaining(String term, long afterId, int limit) {
+        String needle = Device.normalizeBrand(term);
+        TreeSet<Long> matches = new TreeSet<>();
+        idsByBrand.forEach((brand, ids) -> {
+            if (brand.contains(needle)) {
+                for (Long id : ids.tailSet(afterId, false)) {
+                    // Only the lowest ids can make the page, so stop each brand early once it cannot improve it
+                    if (matches.size() >= limit && id > matches.last()) {
+                        break;
+                    }
+                    matches.add(id);
+                    if (matches.size() > limit) {
+                        matches.pollLast();
+                    }
+                }
+            }
+        });
+        return new ArrayList<>(matches);
+    }
+
+    public long countContaining(String term) {
+        String needle = Device.normalizeBrand(term);
+        long count = 0;
+        for (Map.Entry<String, NavigableSet<Long>> entry : idsByBrand.entrySet()) {
+            if (entry.getKey().contains(needle)) {
+                count += entry.getValue().size();
+            }
+        }
+        return count;
+    }
+
+    private void put(Long id, String brandKey) {
+        deletedDuringLoad.remove(id);
+        brandById.compute(id, (key, previousBrand) -> {
+            if (previousBrand != null && !previousBrand.equals(brandKey)) {
+                removeFromBrand(previousBrand, key);
+            }
+            addToBrand(brandKey, key);
+            return brandKey;
+        });
+    }
+
+    private void remove(Long id) {
+        if (!ready) {
+            deletedDuringLoad.add(id);
+        }
+        brandById.computeIfPresent(id, (key, previousBrand) -> {
+            removeFromBrand(previousBrand, key);
+            return null;
+        });
+    }
+
+    private void addToBrand(String brandKey, Long id) {
+        if (brandKey == null) {
+            return;
+        }
+        idsByBrand.compute(brandKey, (key, ids) -> {
+            NavigableSet<Long> brandIds = ids == null ? new ConcurrentSkipListSet<>() : ids;
+            brandIds.add(id);
+            return brandIds;
+        });
+    }
+
+    private void removeFromBrand(String brandKey, Long id) {
+        if (brandKey == null) {
+            return;
+        }
+        idsByBrand.computeIfPresent(brandKey, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package com.crud.device.search;
+
+/**
+ * How a brand search term is matched against the normalized brand of a device.
+ */
+public enum BrandMatch {
+    /** Whole brand equals the term, served by the brand_key index. */
+    EXACT,
+    /** Brand starts with the term, served by a range scan of the brand_key index. */
+    PREFIX,
+    /** Brand contains the term anywhere, served by the in-memory {@link BrandIndex}. */
+    CONTAINS
+}
@@ -0,0 +1,81 @@
+package com.crud.device.search;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.model.Device;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * A device field that queries can sort by, with the entity attribute and column behind it. Brands sort by their
+ * normalized key, so spelling variants of a brand sort together.
+ */
+public enum DeviceField {
+    ID("id", "id"),
+    NAME("name", "name"),
+    BRAND("brandKey", "brand_key"),
+    CREATION_TIME("creationTime", "creation_time"),
+    LAST_MODIFIED("lastModified", "last_modified");
+
+    /**
+     * Order of field values: natural, with a missing value before any other, as H2 sorts them.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static final Comparator<Object> VALUE_ORDER =
+            Comparator.nullsFirst((a, b) -> ((Comparable) a).compareTo(b));
+
+    private final String attribute;
+    private final String column;
+
+    DeviceField(String attribute, String column) {
+        this.attribute = attribute;
+        this.column = column;
+    }
+
+    public String attribute() {
+        return attribute;
+    }
+
+    public String column() {
+        return column;
+    }
+
+    /**
+     * The value of this field in {@code device}: a {@link Long}, a {@link String} or an {@link Instant}.
+     */
+    public Object valueIn(DeviceDTO device) {
+        return switch (this) {
+            case ID -> device.id();
+            case NAME -> device.name();
+            case BRAND -> Device.normalizeBrand(device.brand());
+            case CREATION_TIME -> toInstant(device.creationTime());
+            case LAST_MODIFIED -> toInstant(device.lastModified());
+        };
+    }
+
+    /**
+     * Parses a value written with {@link String#valueOf(Object)} from {@link #valueIn(DeviceDTO)}.
+     */
+    public Object parse(String value) {
+        return switch (this) {
+            case ID -> Long.parseLong(value);
+            case NAME, BRAND -> value;
+            case CREATION_TIME, LAST_MODIFIED -> Instant.parse(value);
+        };
+    }
+
+    /**
+     * {@code value} as it is bound to a query parameter: instants become timestamps, so sub-millisecond values are
+     * bound as they are.
+     */
+    public static Object toParameter(Object value) {
+        return value instanceof Instant instant ? Timestamp.from(instant) : value;
+    }
+
+    // Timestamp overrides toInstant, so the nanoseconds read from the column are kept
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
+    }
+}
@@ -0,0 +1,84 @@
+package com.crud.device.search;
+
+import com.crud.device.model.Device;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The indexes declared on {@link Device}, read from its {@link Table} annotation, and the query shapes each can serve
+ * without scanning rows it does not return.
+ * <p>
+ * An index serves a query when its leading columns are the fields compared for equality, the next column is the
+ * field filtered by range, if any, and that is also the sort field, followed by the id to break ties. The index is
+ * then read from the first matching entry in either direction and the query stops after one page.
+ */
+public final class DeviceIndexes {
+    private static final String PRIMARY_KEY = "primary key";
+    private static final List<DeviceIndex> INDEXES = declaredIndexes();
+
+    private DeviceIndexes() {
+    }
+
+    /**
+     * Returns the name of an index that serves a query comparing {@code equalities} for equality, filtering
+     * {@code ranges} by range and sorting by {@code sort}, or empty if none does.
+     */
+    public static Optional<String> covering(Set<DeviceField> equalities, Set<DeviceField> ranges, DeviceField sort) {
+        if (ranges.size() > 1 || !ranges.isEmpty() && !ranges.contains(sort)) {
+            return Optional.empty();
+        }
+        return INDEXES.stream()
+                .filter(index -> index.serves(equalities, sort))
+                .map(DeviceIndex::name)
+                .findFirst();
+    }
+
+    /**
+     * The declared indexes, as {@code name(column, ...)}.
+     */
+    public static String describe() {
+        return INDEXES.stream()
+                .map(index -> index.name() + index.fields().stream()
+                        .map(DeviceField::column)
+                        .collect(Collectors.joining(", ", "(", ")")))
+                .collect(Collectors.joining(", "));
+    }
+
+    private static List<DeviceIndex> declaredIndexes() {
+        List<DeviceIndex> indexes = new ArrayList<>();
+        indexes.add(new DeviceIndex(PRIMARY_KEY, List.of(DeviceField.ID)));
+        for (Index index : Device.class.getAnnotation(Table.class).indexes()) {
+            List<Optional<DeviceField>> fields = Arrays.stream(index.columnList().split(","))
+                    .map(column -> Arrays.stream(DeviceField.values())
+                            .filter(field -> field.column().equals(column.trim()))
+                            .findFirst())
+                    .toList();
+            // An index on a column queries cannot filter or sort by serves none of them
+            if (fields.stream().allMatch(Optional::isPresent)) {
+                indexes.add(new DeviceIndex(index.name(), fields.stream().map(Optional::get).toList()));
+            }
+        }
+        return List.copyOf(indexes);
+    }
+
+    private record DeviceIndex(String name, List<DeviceField> fields) {
+
+        boolean serves(Set<DeviceField> equalities, DeviceField sort) {
+            int leading = equalities.size();
+            if (fields.size() <= leading || !new HashSet<>(fields.subList(0, leading)).equals(equalities)) {
+                return false;
+            }
+            // The id has to follow the sort field, or rows that share its value come back in any order
+            return fields.get(leading) == sort
+                    && (sort == DeviceField.ID || fields.size() > leading + 1 && fields.get(leading + 1) == DeviceField.ID);
+        }
+    }
+}
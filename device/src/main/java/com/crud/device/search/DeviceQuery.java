@@ -0,0 +1,120 @@
+package com.crud.device.search;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.model.Device;
+import com.crud.device.service.InvalidRequestException;
+import org.springframework.data.domain.Sort;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filters on devices and the order to return them in. Every filter is optional and they are combined with AND: the
+ * name starts with {@code namePrefix} (case-sensitive), the brand equals {@code brand} (case-insensitive) and the
+ * device was created in {@code [createdAfter, createdBefore)}. Ties on the sort field are broken by id, in the same
+ * direction.
+ * <p>
+ * Only combinations that an index on the device table serves can be built, see {@link DeviceIndexes}; the others
+ * fail with {@link UnindexedQueryException}. Without a sort field, devices are sorted by the field filtered by range,
+ * or else by id. Sorting by brand while filtering on one brand is sorting by id.
+ */
+public record DeviceQuery(String namePrefix,
+                          String brand,
+                          Instant createdAfter,
+                          Instant createdBefore,
+                          DeviceField sort,
+                          Sort.Direction direction) {
+
+    public DeviceQuery {
+        if (namePrefix != null && namePrefix.isEmpty()) {
+            namePrefix = null;
+        }
+        if (createdAfter != null && createdBefore != null && !createdAfter.isBefore(createdBefore)) {
+            throw new InvalidRequestException("createdAfter must be before createdBefore");
+        }
+        Set<DeviceField> equalities = brand != null ? EnumSet.of(DeviceField.BRAND) : EnumSet.noneOf(DeviceField.class);
+        Set<DeviceField> ranges = EnumSet.noneOf(DeviceField.class);
+        if (namePrefix != null) {
+            ranges.add(DeviceField.NAME);
+        }
+        if (createdAfter != null || createdBefore != null) {
+            ranges.add(DeviceField.CREATION_TIME);
+        }
+        if (sort == null) {
+            sort = ranges.size() == 1 ? ranges.iterator().next() : DeviceField.ID;
+        } else if (equalities.contains(sort)) {
+            sort = DeviceField.ID;
+        }
+        if (direction == null) {
+            direction = Sort.Direction.ASC;
+        }
+        if (DeviceIndexes.covering(equalities, ranges, sort).isEmpty()) {
+            throw new UnindexedQueryException("No index serves " + describe(equalities, ranges) + " sorted by " + sort
+                    + "; indexes: " + DeviceIndexes.describe());
+        }
+    }
+
+    public String brandKey() {
+        return Device.normalizeBrand(brand);
+    }
+
+    /**
+     * The least name greater than every name starting with {@code namePrefix}, or {@code null} if there is none, so
+     * the prefix can be read as the index range {@code [namePrefix, namePrefixEnd)}. Unlike {@code like ?}, a range
+     * is a seek whatever the parameter holds.
+     */
+    public String namePrefixEnd() {
+        if (namePrefix == null) {
+            return null;
+        }
+        int last = namePrefix.length() - 1;
+        while (last >= 0 && namePrefix.charAt(last) == Character.MAX_VALUE) {
+            last--;
+        }
+        return last < 0 ? null : namePrefix.substring(0, last) + (char) (namePrefix.charAt(last) + 1);
+    }
+
+    /**
+     * Whether {@code device} passes the filters, for stores that are not queried with SQL.
+     */
+    public boolean matches(DeviceDTO device) {
+        Instant created = device.creationTime() == null ? null : device.creationTime().toInstant();
+        return (namePrefix == null || device.name() != null && device.name().startsWith(namePrefix))
+                && (brand == null || brandKey().equals(Device.normalizeBrand(device.brand())))
+                && (createdAfter == null || created != null && !created.isBefore(createdAfter))
+                && (createdBefore == null || created != null && created.isBefore(createdBefore));
+    }
+
+    /**
+     * The order of the results, the same the database returns them in.
+     */
+    public Comparator<DeviceDTO> order() {
+        Comparator<DeviceDTO> ascending = Comparator.comparing(sort::valueIn, DeviceField.VALUE_ORDER)
+                .thenComparing(DeviceDTO::id);
+        return direction.isAscending() ? ascending : ascending.reversed();
+    }
+
+    /**
+     * Whether {@code device} comes after the keyset position of the sort field value {@code value} and id {@code id}.
+     */
+    public boolean isAfter(DeviceDTO device, Object value, long id) {
+        int comparison = DeviceField.VALUE_ORDER.compare(sort.valueIn(device), value);
+        if (comparison == 0) {
+            comparison = Long.compare(device.id(), id);
+        }
+        return direction.isAscending() ? comparison > 0 : comparison < 0;
+    }
+
+    private static String describe(Set<DeviceField> equalities, Set<DeviceField> ranges) {
+        List<String> filters = new ArrayList<>();
+        if (!equalities.isEmpty()) {
+            filters.add("brand");
+        }
+        ranges.forEach(field -> filters.add(field == DeviceField.NAME ? "namePrefix" : "creation time"));
+        return filters.isEmpty() ? "a query without filters" : "filtering on " + String.join(" and ", filters);
+    }
+}
@@ -0,0 +1,13 @@
+package com.crud.device.search;
+
+import com.crud.device.service.InvalidRequestException;
+
+/**
+ * Thrown for a {@link DeviceQuery} that no index serves, which would have to scan and sort the whole table.
+ */
+public class UnindexedQueryException extends InvalidRequestException {
+
+    public UnindexedQueryException(String message) {
+        super(message);
+    }
+}
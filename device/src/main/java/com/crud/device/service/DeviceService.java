@@ -0,0 +1,98 @@
+package com.crud.device.service;
+
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DeviceLookupDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.search.DeviceQuery;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface DeviceService {
+
+    DeviceDTO saveDevice(DeviceDTO device);
+
+    Optional<DeviceDTO> getDeviceById(Long id);
+
+    /**
+     * Returns the devices with {@code ids} in the order requested, and the ids that were not found.
+     */
+    DeviceLookupDTO getDevicesByIds(List<Long> ids);
+
+    List<DeviceDTO> getAllDevices();
+
+    DevicePage getDevicesPage(String cursor, int size);
+
+    /**
+     * Returns a keyset page of the devices created in {@code [createdAfter, createdBefore)}, oldest first. Either
+     * bound may be {@code null} for an open range.
+     */
+    DevicePage getDevicesCreatedBetween(Instant createdAfter, Instant createdBefore, String cursor, int size);
+
+    /**
+     * Counts the devices created in {@code [createdAfter, createdBefore)} per normalized brand and day, in the
+     * server's time zone. Either bound may be {@code null} for an open range.
+     */
+    List<DeviceDailyCountDTO> countDevicesByBrandAndDay(Instant createdAfter, Instant createdBefore);
+
+    /**
+     * Returns a keyset page of the devices passing the filters of {@code query}, in its order.
+     */
+    DevicePage queryDevices(DeviceQuery query, String cursor, int size);
+
+    void streamAllDevices(Consumer<DeviceDTO> consumer);
+
+    DeviceDTO updateDevice(Long id, DeviceDTO updatedDevice);
+
+    DeviceDTO partialUpdateDevice(Long id, DevicePatch patch);
+
+    /**
+     * Replaces the device only if it is still at {@code expectedVersion}, without reading it first.
+     *
+     * @return the new version
+     */
+    long updateDevice(Long id, DeviceDTO updatedDevice, long expectedVersion);
+
+    /**
+     * Applies {@code patch} only if the device is still at {@code expectedVersion}, without reading it first.
+     *
+     * @return the new version
+     */
+    long partialUpdateDevice(Long id, DevicePatch patch, long expectedVersion);
+
+    void deleteDevice(Long id);
+
+    List<DeviceDTO> searchDeviceByBrand(String brand);
+
+    DevicePage searchDevicesByBrand(String brand, BrandMatch match, String cursor, int size);
+
+    long countDevicesByBrand(String brand, BrandMatch match);
+
+    List<BatchItemResultDTO> saveDevices(List<DeviceDTO> devices);
+
+    List<BatchItemResultDTO> partialUpdateDevices(List<DeviceDTO> updates);
+
+    List<BatchItemResultDTO> deleteDevices(List<Long> ids);
+
+    /**
+     * A tag that changes whenever a device is created, updated or deleted, by any writer of the store, for conditional
+     * GETs of the collection endpoints.
+     */
+    String collectionTag();
+
+    /**
+     * Writes the devices {@code snapshot} passes to its consumer as they are, ids, versions and timestamps included,
+     * replacing any device with the same id, and publishes a {@link com.crud.device.event.DeviceChangeEvent#imported}
+     * event for each. Ids handed out afterwards are past every imported one. {@code expectedDevices} is how many
+     * devices the snapshot holds, so the store can choose how to load them.
+     *
+     * @return the number of devices written
+     */
+    long importDevices(long expectedDevices, Consumer<Consumer<DeviceDTO>> snapshot);
+}
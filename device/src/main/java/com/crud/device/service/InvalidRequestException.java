@@ -0,0 +1,17 @@
+package com.crud.device.service;
+
+/**
+ * Thrown for client input that cannot be served as sent, such as an undecodable cursor, a non-positive page size or
+ * an empty creation time range. Only this exception is answered with 400, so a failed argument check inside the
+ * application still surfaces as a server error.
+ */
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,62 @@
+package com.crud.device.service;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.search.BrandMatch;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+/**
+ * Non-blocking counterpart of {@link DeviceService} for the {@code reactive} execution mode. Failures are signalled
+ * with the same exceptions, so both stacks share one error mapping.
+ */
+public interface ReactiveDeviceService {
+
+    Mono<DeviceDTO> saveDevice(DeviceDTO device);
+
+    /**
+     * @return the device, or an empty {@link Mono} if there is none with {@code id}
+     */
+    Mono<DeviceDTO> getDeviceById(Long id);
+
+    Mono<DevicePage> getDevicesPage(String cursor, int size);
+
+    /**
+     * Emits every device in id order, reading rows from the database only as fast as the subscriber requests them.
+     */
+    Flux<DeviceDTO> streamAllDevices();
+
+    Mono<DeviceDTO> updateDevice(Long id, DeviceDTO updatedDevice);
+
+    Mono<DeviceDTO> partialUpdateDevice(Long id, DevicePatch patch);
+
+    /**
+     * Replaces the device only if it is still at {@code expectedVersion}.
+     *
+     * @return the new version
+     */
+    Mono<Long> updateDevice(Long id, DeviceDTO updatedDevice, long expectedVersion);
+
+    /**
+     * Applies {@code patch} only if the device is still at {@code expectedVersion}.
+     *
+     * @return the new version
+     */
+    Mono<Long> partialUpdateDevice(Long id, DevicePatch patch, long expectedVersion);
+
+    Mono<Void> deleteDevice(Long id);
+
+    Mono<DevicePage> searchDevicesByBrand(String brand, BrandMatch match, String cursor, int size);
+
+    Mono<Long> countDevicesByBrand(String brand, BrandMatch match);
+
+    /**
+     * Counts devices created in {@code [createdAfter, createdBefore)} per normalized brand and creation day, in day
+     * then brand order. Either bound may be {@code null} for an open range.
+     */
+    Flux<DeviceDailyCountDTO> countDevicesByBrandAndDay(Instant createdAfter, Instant createdBefore);
+}
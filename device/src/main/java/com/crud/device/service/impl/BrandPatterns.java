@@ -0,0 +1,32 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.model.Device;
+import com.crud.device.search.BrandMatch;
+
+/**
+ * SQL conditions on {@code brand_key} for the services that query the {@code device} table without JPA.
+ */
+final class BrandPatterns {
+
+    private BrandPatterns() {
+    }
+
+    static String condition(BrandMatch match, String parameter) {
+        return match == BrandMatch.EXACT
+                ? "brand_key = " + parameter
+                : "brand_key like " + parameter + " escape '\\'";
+    }
+
+    static String pattern(String brand, BrandMatch match) {
+        String brandKey = Device.normalizeBrand(brand);
+        if (match == BrandMatch.EXACT) {
+            return brandKey;
+        }
+        String escaped = escapeLike(brandKey);
+        return match == BrandMatch.PREFIX ? escaped + "%" : "%" + escaped + "%";
+    }
+
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
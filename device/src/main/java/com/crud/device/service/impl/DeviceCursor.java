@@ -0,0 +1,110 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.model.Device;
+import com.crud.device.search.DeviceQuery;
+import com.crud.device.service.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Encodes keyset positions as opaque, URL-safe cursor tokens.
+ */
+final class DeviceCursor {
+    private static final String SEPARATOR = "|";
+    private static final String INVALID_CURSOR_MSG = "Invalid cursor: ";
+    // Sort positions prefix a value with this marker, so a missing value differs from an empty name
+    private static final String VALUE_MARKER = "=";
+
+    private DeviceCursor() {
+    }
+
+    static String encode(Object... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The last part may contain the separator, so it can hold any string
+    static String[] decode(String cursor, int expectedParts) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(INVALID_CURSOR_MSG + cursor, e);
+        }
+        String[] parts = raw.split("\\" + SEPARATOR, expectedParts);
+        if (parts.length != expectedParts) {
+            throw new InvalidRequestException(INVALID_CURSOR_MSG + cursor);
+        }
+        return parts;
+    }
+
+    static String encodeCreationPosition(Device device) {
+        return encode(device.getCreationTime().toInstant(), device.getId());
+    }
+
+    static CreationPosition decodeCreationPosition(String cursor) {
+        String[] parts = decode(cursor, 2);
+        try {
+            return new CreationPosition(Instant.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new InvalidRequestException(INVALID_CURSOR_MSG + cursor, e);
+        }
+    }
+
+    static long decodeId(String cursor) {
+        String part = decode(cursor, 1)[0];
+        try {
+            return Long.parseLong(part);
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException(INVALID_CURSOR_MSG + cursor, e);
+        }
+    }
+
+    /**
+     * Encodes the position after {@code device} in the results of {@code query}, along with the sort field and
+     * direction, so the cursor cannot be replayed against a query sorted differently.
+     */
+    static String encodeSortPosition(DeviceQuery query, DeviceDTO device) {
+        Object value = query.sort().valueIn(device);
+        return encode(sortKey(query), device.id(), value == null ? "" : VALUE_MARKER + value);
+    }
+
+    static SortPosition decodeSortPosition(String cursor, DeviceQuery query) {
+        String[] parts = decode(cursor, 3);
+        if (!parts[0].equals(sortKey(query))) {
+            throw new InvalidRequestException(INVALID_CURSOR_MSG + cursor + " was not returned for this sort");
+        }
+        try {
+            Object value = parts[2].startsWith(VALUE_MARKER)
+                    ? query.sort().parse(parts[2].substring(VALUE_MARKER.length()))
+                    : null;
+            return new SortPosition(value, Long.parseLong(parts[1]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new InvalidRequestException(INVALID_CURSOR_MSG + cursor, e);
+        }
+    }
+
+    private static String sortKey(DeviceQuery query) {
+        return query.sort() + ":" + query.direction();
+    }
+
+    record CreationPosition(Instant creationTime, long id) {
+    }
+
+    /**
+     * The sort field value, {@code null} when the device has none, and id of the last device of a page.
+     */
+    record SortPosition(Object value, long id) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.search.DeviceField;
+import com.crud.device.search.DeviceQuery;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL for a {@link DeviceQuery} page, for the services that query the {@code device} table without JPA.
+ */
+final class DeviceQuerySql {
+
+    private DeviceQuerySql() {
+    }
+
+    /**
+     * The {@code where} clause of the query, continuing after {@code after} when it is not {@code null}, whose
+     * parameters are added to {@code parameters}; empty when there is nothing to filter.
+     */
+    static String where(DeviceQuery query, DeviceCursor.SortPosition after, List<Object> parameters) {
+        List<String> conditions = new ArrayList<>();
+        if (query.brand() != null) {
+            conditions.add("brand_key = ?");
+            parameters.add(query.brandKey());
+        }
+        if (query.namePrefix() != null) {
+            conditions.add("name >= ?");
+            parameters.add(query.namePrefix());
+        }
+        if (query.namePrefixEnd() != null) {
+            conditions.add("name < ?");
+            parameters.add(query.namePrefixEnd());
+        }
+        if (query.createdAfter() != null) {
+            conditions.add("creation_time >= ?");
+            parameters.add(Timestamp.from(query.createdAfter()));
+        }
+        if (query.createdBefore() != null) {
+            conditions.add("creation_time < ?");
+            parameters.add(Timestamp.from(query.createdBefore()));
+        }
+        if (after != null) {
+            conditions.add(keyset(query, after, parameters));
+        }
+        return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+    }
+
+    // The brand is the same on every row, but H2 only reads an index in order when the ORDER BY starts with its columns
+    static String orderBy(DeviceQuery query) {
+        String direction = query.direction().isAscending() ? "" : " desc";
+        List<String> columns = new ArrayList<>();
+        if (query.brand() != null) {
+            columns.add("brand_key" + direction);
+        }
+        if (query.sort() != DeviceField.ID) {
+            columns.add(query.sort().column() + direction);
+        }
+        columns.add("id" + direction);
+        return " order by " + String.join(", ", columns);
+    }
+
+    // Missing values sort first, as in DeviceField.VALUE_ORDER. The bound on the column alone lets the index seek to
+    // the position instead of skipping the rows before it
+    private static String keyset(DeviceQuery query, DeviceCursor.SortPosition after, List<Object> parameters) {
+        boolean ascending = query.direction().isAscending();
+        String idAfter = ascending ? "id > ?" : "id < ?";
+        if (query.sort() == DeviceField.ID) {
+            parameters.add(after.id());
+            return idAfter;
+        }
+        String column = query.sort().column();
+        if (after.value() == null) {
+            parameters.add(after.id());
+            return ascending
+                    ? "(" + column + " is null and " + idAfter + " or " + column + " is not null)"
+                    : "(" + column + " is null and " + idAfter + ")";
+        }
+        Object value = DeviceField.toParameter(after.value());
+        parameters.add(value);
+        parameters.add(value);
+        parameters.add(value);
+        parameters.add(after.id());
+        return ascending
+                ? column + " >= ? and (" + column + " > ? or " + column + " = ? and " + idAfter + ")"
+                : "(" + column + " <= ? and (" + column + " < ? or " + column + " = ? and " + idAfter + ") or "
+                + column + " is null)";
+    }
+}
@@ -0,0 +1,606 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.cache.DeviceCache;
+import com.crud.device.cache.DeviceReadCoalescer;
+import com.crud.device.config.DataSourceRouting;
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DeviceLookupDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.metrics.DeviceMetrics;
+import com.crud.device.model.Device;
+import com.crud.device.repository.DeviceRepository;
+import com.crud.device.search.BrandIndex;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.search.DeviceQuery;
+import com.crud.device.service.DeviceService;
+import com.crud.device.service.InvalidRequestException;
+import com.crud.device.writebehind.DeviceWriteBehindQueue;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@Service
+public class DeviceServiceImpl implements DeviceService {
+    private static final Logger log = LoggerFactory.getLogger(DeviceServiceImpl.class);
+    private static final String DEVICE_NOT_FOUND_MSG = "Device not found with ID: ";
+    private static final String MISSING_ID_MSG = "Device ID is required";
+    private static final String MISSING_DEVICE_MSG = "Device is required";
+    private static final String CHUNK_FAILED_MSG = "Batch chunk failed: ";
+    private static final String VERSION_CONFLICT_MSG = "Device was modified concurrently, ID: ";
+    private static final String INVALID_CREATION_RANGE_MSG = "createdAfter must be before createdBefore";
+    // Stand-ins for an open end of a creation time range, so every range query can use the creation_time index
+    private static final Instant MIN_CREATION_TIME = Instant.parse("0001-01-01T00:00:00Z");
+    private static final Instant MAX_CREATION_TIME = Instant.parse("9999-12-31T23:59:59Z");
+
+    private final DeviceRepository deviceRepository;
+    private final BrandIndex brandIndex;
+    private final DeviceCache deviceCache;
+    private final DeviceReadCoalescer readCoalescer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final Optional<DeviceWriteBehindQueue> writeBehindQueue;
+    private final int batchChunkSize;
+
+    public DeviceServiceImpl(DeviceRepository deviceRepository,
+                             BrandIndex brandIndex,
+                             DeviceCache deviceCache,
+                             DeviceReadCoalescer readCoalescer,
+                             ApplicationEventPublisher eventPublisher,
+                             EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             Optional<DeviceWriteBehindQueue> writeBehindQueue,
+                             @Value("${device.batch.chunk-size:500}") int batchChunkSize) {
+        this.deviceRepository = deviceRepository;
+        this.brandIndex = brandIndex;
+        this.deviceCache = deviceCache;
+        this.readCoalescer = readCoalescer;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.writeBehindQueue = writeBehindQueue;
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    @Override
+    public DeviceDTO saveDevice(DeviceDTO deviceDTO) {
+        if (writeBehindQueue.isPresent()) {
+            // Written and announced by the queue's writer
+            return writeBehindQueue.get().enqueue(deviceDTO);
+        }
+        Device device = convertToEntity(deviceDTO);
+        Device savedDevice = deviceRepository.save(device);
+        DeviceDTO savedDeviceDTO = toDTO(savedDevice);
+        eventPublisher.publishEvent(DeviceChangeEvent.created(savedDeviceDTO));
+        return savedDeviceDTO;
+    }
+
+    // Not transactional, so cache hits never borrow a connection; findById runs in its own read-only transaction.
+    // Cached entries outlive the replica lag, so they are loaded from the primary; without a cache the read is routed
+    // like any other. Caffeine already loads each id once at a time, the coalescer does the same when the cache is
+    // disabled.
+    @Override
+    public Optional<DeviceDTO> getDeviceById(Long id) {
+        Optional<DeviceDTO> queued = writeBehindQueue.flatMap(queue -> queue.findPending(id));
+        if (queued.isPresent()) {
+            return queued;
+        }
+        return deviceCache.get(id, key -> readCoalescer.coalesceById("get", key, () -> {
+            Supplier<Optional<DeviceDTO>> read = () -> deviceRepository.findById(key).map(DeviceServiceImpl::toDTO);
+            return deviceCache.retainsEntries() ? DataSourceRouting.onPrimary(read) : read.get();
+        }));
+    }
+
+    // Cache hits are answered from the cache and the rest read in IN queries of device.batch.chunk-size ids, routed
+    // like any other read since what is read is not cached, see DeviceCache.getAllPresent
+    @Override
+    public DeviceLookupDTO getDevicesByIds(List<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        Map<Long, Optional<DeviceDTO>> cached = deviceCache.getAllPresent(requested);
+        Map<Long, DeviceDTO> found = new HashMap<>();
+        List<Long> uncached = new ArrayList<>();
+        for (Long id : requested) {
+            Optional<DeviceDTO> queued = writeBehindQueue.flatMap(queue -> queue.findPending(id));
+            // null when the id is not cached, empty when it is cached as not found
+            Optional<DeviceDTO> device = queued.isPresent() ? queued : cached.get(id);
+            if (device == null) {
+                uncached.add(id);
+            } else {
+                device.ifPresent(present -> found.put(id, present));
+            }
+        }
+        for (int offset = 0; offset < uncached.size(); offset += batchChunkSize) {
+            List<Long> chunk = uncached.subList(offset, Math.min(offset + batchChunkSize, uncached.size()));
+            deviceRepository.findDevicesByIdIn(chunk).forEach(device -> found.put(device.id(), device));
+        }
+        return DeviceLookupDTO.of(requested, found);
+    }
+
+    @Override
+    public String collectionTag() {
+        return deviceRepository.tableState().tag();
+    }
+
+    // On the primary, in transactions of device.batch.chunk-size devices, each announced once committed
+    @Override
+    public long importDevices(long expectedDevices, Consumer<Consumer<DeviceDTO>> snapshot) {
+        return DataSourceRouting.onPrimary(() -> {
+            // Building an index once is cheaper than maintaining it row by row, but queries of a table with devices
+            // would scan it meanwhile, so only an empty table loads without its indexes
+            boolean rebuildIndexes = expectedDevices > 0 && deviceRepository.count() == 0;
+            if (rebuildIndexes) {
+                deviceRepository.dropSecondaryIndexes();
+            }
+            List<DeviceDTO> chunk = new ArrayList<>(batchChunkSize);
+            long[] imported = {0};
+            long[] maxId = {0};
+            try {
+                snapshot.accept(device -> {
+                    chunk.add(device);
+                    maxId[0] = Math.max(maxId[0], device.id());
+                    if (chunk.size() == batchChunkSize) {
+                        imported[0] += importChunk(chunk);
+                        chunk.clear();
+                    }
+                });
+                imported[0] += importChunk(chunk);
+            } finally {
+                if (rebuildIndexes) {
+                    deviceRepository.createSecondaryIndexes();
+                }
+                // Imported devices keep their lastModified, so the count and latest modification may not move
+                deviceRepository.bumpRevision();
+            }
+            deviceRepository.advanceSequencePast(maxId[0]);
+            writeBehindQueue.ifPresent(queue -> queue.skipIdsPast(maxId[0]));
+            return imported[0];
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DeviceDTO> getAllDevices() {
+        List<Device> devices = deviceRepository.findAll();
+        return toDTOs(devices.stream());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DevicePage getDevicesPage(String cursor, int size) {
+        long afterId = cursor == null ? Long.MIN_VALUE : DeviceCursor.decodeId(cursor);
+        // Fetch one extra row to know whether another page exists without a count query
+        List<Device> devices = deviceRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size + 1));
+        boolean hasMore = devices.size() > size;
+        List<DeviceDTO> content = toDTOs(devices.stream().limit(size));
+        String nextCursor = hasMore ? DeviceCursor.encode(content.getLast().id()) : null;
+        return new DevicePage(content, nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DevicePage getDevicesCreatedBetween(Instant createdAfter, Instant createdBefore, String cursor, int size) {
+        Date from = toTimestamp(createdAfter, MIN_CREATION_TIME);
+        Date to = toTimestamp(createdBefore, MAX_CREATION_TIME);
+        checkCreationRange(from, to);
+        Limit limit = Limit.of(size + 1);
+        List<Device> devices;
+        if (cursor == null) {
+            devices = deviceRepository.findByCreationTimeGreaterThanEqualAndCreationTimeLessThanOrderByCreationTimeAscIdAsc(
+                    from, to, limit);
+        } else {
+            DeviceCursor.CreationPosition after = DeviceCursor.decodeCreationPosition(cursor);
+            devices = deviceRepository.findCreatedBetweenAfter(from, to, Timestamp.from(after.creationTime()),
+                    after.id(), limit);
+        }
+        boolean hasMore = devices.size() > size;
+        List<Device> pageDevices = hasMore ? devices.subList(0, size) : devices;
+        // Encoded from the entity, whose timestamp keeps the column's sub-millisecond precision
+        String nextCursor = hasMore ? DeviceCursor.encodeCreationPosition(pageDevices.getLast()) : null;
+        return new DevicePage(toDTOs(pageDevices.stream()), nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DeviceDailyCountDTO> countDevicesByBrandAndDay(Instant createdAfter, Instant createdBefore) {
+        Date from = toTimestamp(createdAfter, MIN_CREATION_TIME);
+        Date to = toTimestamp(createdBefore, MAX_CREATION_TIME);
+        checkCreationRange(from, to);
+        return deviceRepository.countByBrandAndDay(from, to);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public DevicePage queryDevices(DeviceQuery query, String cursor, int size) {
+        DeviceCursor.SortPosition after = cursor == null ? null : DeviceCursor.decodeSortPosition(cursor, query);
+        List<Device> devices = deviceRepository.findBy(DeviceSpecifications.matching(query, after),
+                fluentQuery -> fluentQuery.sortBy(DeviceSpecifications.sort(query)).limit(size + 1).all());
+        boolean hasMore = devices.size() > size;
+        List<DeviceDTO> content = toDTOs(devices.stream().limit(size));
+        String nextCursor = hasMore ? DeviceCursor.encodeSortPosition(query, content.getLast()) : null;
+        return new DevicePage(content, nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllDevices(Consumer<DeviceDTO> consumer) {
+        try (Stream<DeviceDTO> devices = deviceRepository.streamAllByOrderByIdAsc()) {
+            devices.forEach(consumer);
+        }
+    }
+
+    @Override
+    public DeviceDTO updateDevice(Long id, DeviceDTO updatedDeviceDTO) {
+        awaitWritten(id);
+        // One read-write transaction, so the read routes to the primary along with the write
+        DeviceDTO savedDeviceDTO = transactionTemplate.execute(status -> {
+            Device existingDevice = deviceRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id));
+
+            existingDevice.setName(updatedDeviceDTO.name());
+            existingDevice.setBrand(updatedDeviceDTO.brand());
+
+            return toDTO(deviceRepository.saveAndFlush(existingDevice));
+        });
+        eventPublisher.publishEvent(DeviceChangeEvent.updated(savedDeviceDTO));
+        return savedDeviceDTO;
+    }
+
+    @Override
+    public DeviceDTO partialUpdateDevice(Long id, DevicePatch patch) {
+        awaitWritten(id);
+        DeviceDTO savedDeviceDTO = transactionTemplate.execute(status -> {
+            Device existingDevice = deviceRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id));
+
+            applyPatch(existingDevice, patch);
+
+            return toDTO(deviceRepository.saveAndFlush(existingDevice));
+        });
+        eventPublisher.publishEvent(DeviceChangeEvent.updated(savedDeviceDTO));
+        return savedDeviceDTO;
+    }
+
+    @Override
+    public long updateDevice(Long id, DeviceDTO updatedDeviceDTO, long expectedVersion) {
+        DevicePatch patch = DevicePatch.of(updatedDeviceDTO.name(), updatedDeviceDTO.brand());
+        long newVersion = updateIfVersionMatches(id, expectedVersion, patch);
+        // The row is not read back, so listeners only get the written fields, as for a conditional PATCH
+        eventPublisher.publishEvent(DeviceChangeEvent.partiallyUpdated(
+                new DeviceDTO(id, updatedDeviceDTO.name(), updatedDeviceDTO.brand(), null, newVersion)));
+        return newVersion;
+    }
+
+    @Override
+    public long partialUpdateDevice(Long id, DevicePatch patch, long expectedVersion) {
+        long newVersion = updateIfVersionMatches(id, expectedVersion, patch);
+        eventPublisher.publishEvent(DeviceChangeEvent.partiallyUpdated(
+                new DeviceDTO(id, patch.name(), patch.brand(), null, newVersion)));
+        return newVersion;
+    }
+
+    @Override
+    public void deleteDevice(Long id) {
+        awaitWritten(id);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!deviceRepository.existsById(id)) {
+                throw new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id);
+            }
+            deviceRepository.deleteById(id);
+        });
+        eventPublisher.publishEvent(DeviceChangeEvent.deleted(id));
+    }
+
+    // Coalesced outside the transaction, so callers waiting for an identical search do not hold a connection
+    @Override
+    public List<DeviceDTO> searchDeviceByBrand(String brand) {
+        return readCoalescer.coalesce("search", brand, () -> readOnlyTransactionTemplate.execute(status -> {
+            if (!brandIndex.isReady()) {
+                List<Device> devices = deviceRepository.findByBrandContainingIgnoreCase(brand);
+                return toDTOs(devices.stream());
+            }
+            List<Long> ids = brandIndex.findIdsContaining(brand, Long.MIN_VALUE, Integer.MAX_VALUE);
+            return findIndexedBrandMatches(ids, Device.normalizeBrand(brand));
+        }));
+    }
+
+    @Override
+    public DevicePage searchDevicesByBrand(String brand, BrandMatch match, String cursor, int size) {
+        long afterId = cursor == null ? Long.MIN_VALUE : DeviceCursor.decodeId(cursor);
+        String brandKey = Device.normalizeBrand(brand);
+        return readCoalescer.coalesce("searchPage", new BrandSearch(brandKey, match, afterId, size),
+                () -> readOnlyTransactionTemplate.execute(status -> findBrandPage(brandKey, match, afterId, size)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countDevicesByBrand(String brand, BrandMatch match) {
+        String brandKey = Device.normalizeBrand(brand);
+        return switch (match) {
+            case EXACT -> deviceRepository.countByBrandKey(brandKey);
+            case PREFIX -> deviceRepository.countByBrandKeyStartingWith(brandKey);
+            case CONTAINS -> brandIndex.isReady()
+                    ? brandIndex.countContaining(brandKey)
+                    : deviceRepository.countByBrandKeyContaining(brandKey);
+        };
+    }
+
+    @Override
+    public List<BatchItemResultDTO> saveDevices(List<DeviceDTO> devices) {
+        return processInChunks(devices, chunk -> {
+            BatchItemResultDTO[] results = new BatchItemResultDTO[chunk.size()];
+            List<Device> pending = new ArrayList<>(chunk.size());
+            List<Integer> pendingIndexes = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                if (chunk.get(i) == null) {
+                    results[i] = BatchItemResultDTO.failure(i, 400, null, MISSING_DEVICE_MSG);
+                } else {
+                    Device device = convertToEntity(chunk.get(i));
+                    entityManager.persist(device);
+                    pending.add(device);
+                    pendingIndexes.add(i);
+                }
+            }
+            // One flush per chunk lets Hibernate send the inserts as a single JDBC batch
+            entityManager.flush();
+            for (int i = 0; i < pending.size(); i++) {
+                results[pendingIndexes.get(i)] = BatchItemResultDTO.success(pendingIndexes.get(i), 201, toDTO(pending.get(i)));
+            }
+            return Arrays.asList(results);
+        }, DeviceChangeEvent::created);
+    }
+
+    @Override
+    public List<BatchItemResultDTO> partialUpdateDevices(List<DeviceDTO> updates) {
+        updates.stream().filter(update -> update != null && update.id() != null).forEach(update -> awaitWritten(update.id()));
+        return processInChunks(updates, chunk -> {
+            Map<Long, Device> existingDevices = findAllByIdInChunk(chunk.stream()
+                    .filter(update -> update != null && update.id() != null)
+                    .map(DeviceDTO::id)
+                    .toList());
+            BatchItemResultDTO[] results = new BatchItemResultDTO[chunk.size()];
+            Device[] updated = new Device[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                DeviceDTO update = chunk.get(i);
+                if (update == null || update.id() == null) {
+                    results[i] = BatchItemResultDTO.failure(i, 400, null, MISSING_ID_MSG);
+                    continue;
+                }
+                Device existingDevice = existingDevices.get(update.id());
+                if (existingDevice == null) {
+                    results[i] = BatchItemResultDTO.failure(i, 404, update.id(), DEVICE_NOT_FOUND_MSG + update.id());
+                    continue;
+                }
+                if (update.name() != null) {
+                    existingDevice.setName(update.name());
+                }
+                if (update.brand() != null) {
+                    existingDevice.setBrand(update.brand());
+                }
+                updated[i] = existingDevice;
+            }
+            // Hibernate increments the version and sets lastModified on flush, so the results are built afterwards
+            entityManager.flush();
+            for (int i = 0; i < chunk.size(); i++) {
+                if (updated[i] != null) {
+                    results[i] = BatchItemResultDTO.success(i, 200, toDTO(updated[i]));
+                }
+            }
+            return Arrays.asList(results);
+        }, DeviceChangeEvent::updated);
+    }
+
+    @Override
+    public List<BatchItemResultDTO> deleteDevices(List<Long> ids) {
+        ids.stream().filter(Objects::nonNull).forEach(this::awaitWritten);
+        List<BatchItemResultDTO> results = processInChunks(ids, chunk -> {
+            Set<Long> existingIds = new HashSet<>(deviceRepository.findExistingIds(chunk.stream().filter(Objects::nonNull).toList()));
+            BatchItemResultDTO[] chunkResults = new BatchItemResultDTO[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                Long id = chunk.get(i);
+                if (id == null) {
+                    chunkResults[i] = BatchItemResultDTO.failure(i, 400, null, MISSING_ID_MSG);
+                } else if (existingIds.contains(id)) {
+                    chunkResults[i] = BatchItemResultDTO.deleted(i, id);
+                } else {
+                    chunkResults[i] = BatchItemResultDTO.failure(i, 404, id, DEVICE_NOT_FOUND_MSG + id);
+                }
+            }
+            // A single "delete ... where id in (...)" statement instead of one delete per entity
+            deviceRepository.deleteAllByIdInBatch(existingIds);
+            return Arrays.asList(chunkResults);
+        }, null);
+        results.stream()
+                .filter(result -> result.status() == 204)
+                .forEach(result -> eventPublisher.publishEvent(DeviceChangeEvent.deleted(result.id())));
+        return results;
+    }
+
+    /**
+     * Runs {@code chunkProcessor} over consecutive chunks of {@code items}, each in its own transaction, and
+     * publishes {@code eventFactory} events for the successful items once their chunk has committed. A chunk
+     * that fails to commit reports every one of its items as failed without affecting the other chunks.
+     */
+    private <T> List<BatchItemResultDTO> processInChunks(List<T> items,
+                                                         Function<List<T>, List<BatchItemResultDTO>> chunkProcessor,
+                                                         Function<DeviceDTO, DeviceChangeEvent> eventFactory) {
+        List<BatchItemResultDTO> results = new ArrayList<>(items.size());
+        for (int offset = 0; offset < items.size(); offset += batchChunkSize) {
+            List<T> chunk = items.subList(offset, Math.min(offset + batchChunkSize, items.size()));
+            List<BatchItemResultDTO> chunkResults;
+            try {
+                chunkResults = transactionTemplate.execute(status -> {
+                    List<BatchItemResultDTO> processed = chunkProcessor.apply(chunk);
+                    // Keep the persistence context from growing across chunks
+                    entityManager.clear();
+                    return processed;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Batch chunk at offset {} failed", offset, e);
+                chunkResults = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    chunkResults.add(BatchItemResultDTO.failure(i, 500, null, CHUNK_FAILED_MSG + e.getMessage()));
+                }
+            }
+            for (BatchItemResultDTO result : chunkResults) {
+                BatchItemResultDTO shifted = new BatchItemResultDTO(offset + result.index(), result.status(),
+                        result.id(), result.device(), result.error());
+                results.add(shifted);
+                if (eventFactory != null && shifted.device() != null) {
+                    eventPublisher.publishEvent(eventFactory.apply(shifted.device()));
+                }
+            }
+        }
+        return results;
+    }
+
+    private int importChunk(List<DeviceDTO> devices) {
+        deviceRepository.upsertAll(devices);
+        devices.forEach(device -> eventPublisher.publishEvent(DeviceChangeEvent.imported(device)));
+        return devices.size();
+    }
+
+    private long updateIfVersionMatches(Long id, long expectedVersion, DevicePatch patch) {
+        awaitWritten(id);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (deviceRepository.updateIfVersionMatches(id, expectedVersion, patch) == 0) {
+                // Only the failure path pays for the extra query that tells a missing device from a stale version
+                if (!deviceRepository.existsById(id)) {
+                    throw new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id);
+                }
+                throw new OptimisticLockingFailureException(VERSION_CONFLICT_MSG + id);
+            }
+        });
+        return expectedVersion + 1;
+    }
+
+    private DevicePage findBrandPage(String brandKey, BrandMatch match, long afterId, int size) {
+        if (match == BrandMatch.CONTAINS && brandIndex.isReady()) {
+            List<Long> ids = brandIndex.findIdsContaining(brandKey, afterId, size + 1);
+            List<Long> pageIds = ids.size() > size ? ids.subList(0, size) : ids;
+            String nextCursor = ids.size() > size ? DeviceCursor.encode(pageIds.getLast()) : null;
+            return new DevicePage(findIndexedBrandMatches(pageIds, brandKey), nextCursor);
+        }
+        Limit limit = Limit.of(size + 1);
+        List<Device> devices = switch (match) {
+            case EXACT -> deviceRepository.findByBrandKeyAndIdGreaterThanOrderByIdAsc(brandKey, afterId, limit);
+            case PREFIX -> deviceRepository.findByBrandKeyStartingWithAndIdGreaterThanOrderByIdAsc(brandKey, afterId, limit);
+            case CONTAINS -> deviceRepository.findByBrandKeyContainingAndIdGreaterThanOrderByIdAsc(brandKey, afterId, limit);
+        };
+        boolean hasMore = devices.size() > size;
+        List<DeviceDTO> content = toDTOs(devices.stream().limit(size));
+        String nextCursor = hasMore ? DeviceCursor.encode(content.getLast().id()) : null;
+        return new DevicePage(content, nextCursor);
+    }
+
+    // A device still in the write-behind queue has no row to change yet
+    private void awaitWritten(Long id) {
+        writeBehindQueue.ifPresent(queue -> queue.awaitWritten(id));
+    }
+
+    /**
+     * Loads the devices the brand index matched. A partial update that cleared a brand cannot tell the index the
+     * old one, so the loaded brand is checked again.
+     */
+    private List<DeviceDTO> findIndexedBrandMatches(List<Long> ids, String brandKey) {
+        return toDTOs(deviceRepository.findByIdInOrderByIdAsc(ids).stream()
+                .filter(device -> device.getBrandKey() != null && device.getBrandKey().contains(brandKey)));
+    }
+
+    // A Timestamp rather than a Date, so sub-millisecond bounds are bound as they are
+    private static Date toTimestamp(Instant instant, Instant openBound) {
+        return Timestamp.from(instant != null ? instant : openBound);
+    }
+
+    private static void checkCreationRange(Date from, Date to) {
+        if (!from.before(to)) {
+            throw new InvalidRequestException(INVALID_CREATION_RANGE_MSG);
+        }
+    }
+
+    static void applyPatch(Device device, DevicePatch patch) {
+        if (patch.hasName()) {
+            device.setName(patch.name());
+        }
+        if (patch.hasBrand()) {
+            device.setBrand(patch.brand());
+        }
+    }
+
+    private Map<Long, Device> findAllByIdInChunk(List<Long> ids) {
+        Map<Long, Device> devicesById = new HashMap<>();
+        for (Device device : deviceRepository.findAllById(ids)) {
+            devicesById.put(device.getId(), device);
+        }
+        return devicesById;
+    }
+
+    // Conversions of loaded entities are timed for DeviceMetrics, a list at a time where possible
+    private static DeviceDTO toDTO(Device device) {
+        long start = System.nanoTime();
+        DeviceDTO deviceDTO = convertToDTO(device);
+        DeviceMetrics.recordConversion(System.nanoTime() - start);
+        return deviceDTO;
+    }
+
+    private static List<DeviceDTO> toDTOs(Stream<Device> devices) {
+        long start = System.nanoTime();
+        List<DeviceDTO> deviceDTOs = devices.map(DeviceServiceImpl::convertToDTO).toList();
+        DeviceMetrics.recordConversion(System.nanoTime() - start);
+        return deviceDTOs;
+    }
+
+    static DeviceDTO convertToDTO(Device device) {
+        return new DeviceDTO(
+                device.getId(),
+                device.getName(),
+                device.getBrand(),
+                device.getCreationTime(),
+                device.getVersion(),
+                device.getLastModified()
+        );
+    }
+
+    static Device convertToEntity(DeviceDTO deviceDTO) {
+        return new Device(
+                deviceDTO.name(),
+                deviceDTO.brand()
+        );
+    }
+
+    private record BrandSearch(String brandKey, BrandMatch match, long afterId, int size) {
+    }
+}
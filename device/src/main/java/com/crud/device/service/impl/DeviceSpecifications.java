@@ -0,0 +1,87 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.model.Device;
+import com.crud.device.search.DeviceField;
+import com.crud.device.search.DeviceQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * JPA predicates and ordering for a {@link DeviceQuery} page, matching the SQL of {@link DeviceQuerySql}.
+ */
+final class DeviceSpecifications {
+
+    private DeviceSpecifications() {
+    }
+
+    /**
+     * Devices passing the filters of {@code query}, after {@code after} when it is not {@code null}.
+     */
+    static Specification<Device> matching(DeviceQuery query, DeviceCursor.SortPosition after) {
+        return (device, criteriaQuery, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (query.brand() != null) {
+                predicates.add(builder.equal(device.get("brandKey"), query.brandKey()));
+            }
+            if (query.namePrefix() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(device.get("name"), query.namePrefix()));
+            }
+            if (query.namePrefixEnd() != null) {
+                predicates.add(builder.lessThan(device.get("name"), query.namePrefixEnd()));
+            }
+            if (query.createdAfter() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(device.<Date>get("creationTime"),
+                        Timestamp.from(query.createdAfter())));
+            }
+            if (query.createdBefore() != null) {
+                predicates.add(builder.lessThan(device.<Date>get("creationTime"), Timestamp.from(query.createdBefore())));
+            }
+            if (after != null) {
+                predicates.add(keyset(query, after, device.get(query.sort().attribute()), device.get("id"), builder));
+            }
+            return builder.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    // Led by the brand when filtering on one, for the same reason as DeviceQuerySql.orderBy
+    static Sort sort(DeviceQuery query) {
+        Sort sort = Sort.unsorted();
+        if (query.brand() != null) {
+            sort = sort.and(Sort.by(query.direction(), "brandKey"));
+        }
+        if (query.sort() != DeviceField.ID) {
+            sort = sort.and(Sort.by(query.direction(), query.sort().attribute()));
+        }
+        return sort.and(Sort.by(query.direction(), "id"));
+    }
+
+    // The same conditions as DeviceQuerySql.keyset
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate keyset(DeviceQuery query, DeviceCursor.SortPosition after, Path column, Path<Long> id,
+                                    CriteriaBuilder builder) {
+        boolean ascending = query.direction().isAscending();
+        Predicate idAfter = ascending ? builder.greaterThan(id, after.id()) : builder.lessThan(id, after.id());
+        if (query.sort() == DeviceField.ID) {
+            return idAfter;
+        }
+        if (after.value() == null) {
+            Predicate missingAfter = builder.and(builder.isNull(column), idAfter);
+            return ascending ? builder.or(missingAfter, builder.isNotNull(column)) : missingAfter;
+        }
+        Comparable value = (Comparable) DeviceField.toParameter(after.value());
+        Predicate tieAfter = builder.and(builder.equal(column, value), idAfter);
+        return ascending
+                ? builder.and(builder.greaterThanOrEqualTo(column, value),
+                builder.or(builder.greaterThan(column, value), tieAfter))
+                : builder.or(builder.and(builder.lessThanOrEqualTo(column, value),
+                builder.or(builder.lessThan(column, value), tieAfter)), builder.isNull(column));
+    }
+}
@@ -0,0 +1,527 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DeviceLookupDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.model.Device;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.search.DeviceQuery;
+import com.crud.device.service.DeviceService;
+import com.crud.device.service.InvalidRequestException;
+import com.crud.device.store.DeviceWriteAheadLog;
+import com.crud.device.store.OffHeapDeviceStore;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * {@link DeviceService} over an {@link OffHeapDeviceStore}, used instead of the JPA repository when
+ * {@code device.store.engine=memory}.
+ * <p>
+ * Every change is appended to the {@link DeviceWriteAheadLog} before it is applied, and the store is rebuilt from the
+ * newest snapshot and the log on startup. A snapshot is written in the background every
+ * {@code device.store.snapshot-every} logged records, and once more on shutdown, so recovery replays at most that
+ * many records.
+ * <p>
+ * Reads share a read lock and writes take the write lock, so a batch chunk is applied and logged as one unit. Ids are
+ * handed out in blocks of {@link #ID_BLOCK_SIZE} like {@code device_seq}, and each block is logged before its first id
+ * is used, so ids are never reused after a restart.
+ */
+@Service
+@ConditionalOnProperty(name = "device.store.engine", havingValue = "memory")
+public class InMemoryDeviceService implements DeviceService, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryDeviceService.class);
+    private static final String DEVICE_NOT_FOUND_MSG = "Device not found with ID: ";
+    private static final String MISSING_ID_MSG = "Device ID is required";
+    private static final String MISSING_DEVICE_MSG = "Device is required";
+    private static final String VERSION_CONFLICT_MSG = "Device was modified concurrently, ID: ";
+    private static final String INVALID_CREATION_RANGE_MSG = "createdAfter must be before createdBefore";
+    private static final Instant MIN_CREATION_TIME = Instant.parse("0001-01-01T00:00:00Z");
+    private static final Instant MAX_CREATION_TIME = Instant.parse("9999-12-31T23:59:59Z");
+    // Same increment as device_seq
+    static final int ID_BLOCK_SIZE = 50;
+
+    private final OffHeapDeviceStore store = new OffHeapDeviceStore();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+    private final DeviceWriteAheadLog writeAheadLog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService snapshotExecutor;
+    private final long snapshotEvery;
+    private final int batchChunkSize;
+    private long nextId;
+    private long reservedUpTo;
+    // Moved by every write under the write lock; the start time keeps tags from before a restart from matching
+    private final long startedAt = System.currentTimeMillis();
+    private long revision;
+
+    public InMemoryDeviceService(ApplicationEventPublisher eventPublisher,
+                                 @Value("${device.store.path}") Path path,
+                                 @Value("${device.store.sync-writes:true}") boolean syncWrites,
+                                 @Value("${device.store.snapshot-every:100000}") long snapshotEvery,
+                                 @Value("${device.batch.chunk-size:500}") int batchChunkSize) throws IOException {
+        this.eventPublisher = eventPublisher;
+        this.writeAheadLog = new DeviceWriteAheadLog(path, syncWrites);
+        this.snapshotEvery = snapshotEvery;
+        this.batchChunkSize = batchChunkSize;
+        writeAheadLog.recover(new DeviceWriteAheadLog.Replay() {
+            @Override
+            public void put(DeviceDTO device) {
+                store.put(device);
+            }
+
+            @Override
+            public void delete(long id) {
+                store.remove(id);
+            }
+
+            @Override
+            public void reserveIds(long upTo) {
+                reservedUpTo = Math.max(reservedUpTo, upTo);
+            }
+        });
+        // The rest of the last block may have been handed out before the restart, like a sequence's cached values
+        reservedUpTo = Math.max(reservedUpTo, store.maxId());
+        nextId = reservedUpTo + 1;
+        this.snapshotExecutor = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("device-store-snapshot").daemon().factory());
+        log.info("Recovered {} devices from {}", store.size(), path);
+    }
+
+    @Override
+    public DeviceDTO saveDevice(DeviceDTO deviceDTO) {
+        DeviceDTO device = write(() -> {
+            DeviceDTO created = newDevice(deviceDTO);
+            writeAheadLog.appendPut(created);
+            store.put(created);
+            return created;
+        });
+        eventPublisher.publishEvent(DeviceChangeEvent.created(device));
+        return device;
+    }
+
+    @Override
+    public Optional<DeviceDTO> getDeviceById(Long id) {
+        return read(() -> Optional.ofNullable(store.get(id)));
+    }
+
+    @Override
+    public DeviceLookupDTO getDevicesByIds(List<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        return read(() -> {
+            Map<Long, DeviceDTO> found = new HashMap<>();
+            for (Long id : requested) {
+                DeviceDTO device = store.get(id);
+                if (device != null) {
+                    found.put(id, device);
+                }
+            }
+            return DeviceLookupDTO.of(requested, found);
+        });
+    }
+
+    @Override
+    public List<DeviceDTO> getAllDevices() {
+        return read(() -> store.page(Long.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public DevicePage getDevicesPage(String cursor, int size) {
+        long afterId = cursor == null ? Long.MIN_VALUE : DeviceCursor.decodeId(cursor);
+        return idPage(read(() -> store.page(afterId, size + 1)), size);
+    }
+
+    @Override
+    public DevicePage getDevicesCreatedBetween(Instant createdAfter, Instant createdBefore, String cursor, int size) {
+        Timestamp from = Timestamp.from(createdAfter != null ? createdAfter : MIN_CREATION_TIME);
+        Timestamp to = Timestamp.from(createdBefore != null ? createdBefore : MAX_CREATION_TIME);
+        checkCreationRange(from, to);
+        DeviceCursor.CreationPosition after = cursor == null ? null : DeviceCursor.decodeCreationPosition(cursor);
+        Date afterTime = after == null ? null : Timestamp.from(after.creationTime());
+        long afterId = after == null ? Long.MIN_VALUE : after.id();
+        List<DeviceDTO> devices = read(() -> store.findCreatedBetween(from, to, afterTime, afterId, size + 1));
+        boolean hasMore = devices.size() > size;
+        List<DeviceDTO> content = hasMore ? devices.subList(0, size) : devices;
+        DeviceDTO last = hasMore ? content.getLast() : null;
+        String nextCursor = last != null ? DeviceCursor.encode(last.creationTime().toInstant(), last.id()) : null;
+        return new DevicePage(content, nextCursor);
+    }
+
+    @Override
+    public List<DeviceDailyCountDTO> countDevicesByBrandAndDay(Instant createdAfter, Instant createdBefore) {
+        Timestamp from = Timestamp.from(createdAfter != null ? createdAfter : MIN_CREATION_TIME);
+        Timestamp to = Timestamp.from(createdBefore != null ? createdBefore : MAX_CREATION_TIME);
+        checkCreationRange(from, to);
+        return read(() -> store.countByBrandAndDay(from, to, ZoneId.systemDefault()));
+    }
+
+    @Override
+    public DevicePage queryDevices(DeviceQuery query, String cursor, int size) {
+        DeviceCursor.SortPosition after = cursor == null ? null : DeviceCursor.decodeSortPosition(cursor, query);
+        Predicate<DeviceDTO> matches = after == null
+                ? query::matches
+                : device -> query.matches(device) && query.isAfter(device, after.value(), after.id());
+        List<DeviceDTO> devices = read(() -> store.find(matches, query.order(), size + 1));
+        boolean hasMore = devices.size() > size;
+        List<DeviceDTO> content = hasMore ? devices.subList(0, size) : devices;
+        String nextCursor = hasMore ? DeviceCursor.encodeSortPosition(query, content.getLast()) : null;
+        return new DevicePage(content, nextCursor);
+    }
+
+    /**
+     * Streams all devices in id order from one consistent state: writes wait until the stream has finished, so
+     * consumers should not block for long.
+     */
+    @Override
+    public void streamAllDevices(Consumer<DeviceDTO> consumer) {
+        read(() -> {
+            store.forEach(consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public DeviceDTO updateDevice(Long id, DeviceDTO updatedDevice) {
+        return partialUpdateDevice(id, DevicePatch.of(updatedDevice.name(), updatedDevice.brand()));
+    }
+
+    @Override
+    public DeviceDTO partialUpdateDevice(Long id, DevicePatch patch) {
+        DeviceDTO saved = write(() -> update(id, patch, null));
+        eventPublisher.publishEvent(DeviceChangeEvent.updated(saved));
+        return saved;
+    }
+
+    @Override
+    public long updateDevice(Long id, DeviceDTO updatedDevice, long expectedVersion) {
+        return partialUpdateDevice(id, DevicePatch.of(updatedDevice.name(), updatedDevice.brand()), expectedVersion);
+    }
+
+    // The whole device is at hand, so the event carries it instead of only the written fields
+    @Override
+    public long partialUpdateDevice(Long id, DevicePatch patch, long expectedVersion) {
+        DeviceDTO saved = write(() -> update(id, patch, expectedVersion));
+        eventPublisher.publishEvent(DeviceChangeEvent.updated(saved));
+        return saved.version();
+    }
+
+    @Override
+    public void deleteDevice(Long id) {
+        write(() -> {
+            if (!store.contains(id)) {
+                throw new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id);
+            }
+            writeAheadLog.appendDelete(id);
+            store.remove(id);
+            return null;
+        });
+        eventPublisher.publishEvent(DeviceChangeEvent.deleted(id));
+    }
+
+    // Same matching as the repository's findByBrandContainingIgnoreCase, on the brand as entered
+    @Override
+    public List<DeviceDTO> searchDeviceByBrand(String brand) {
+        String term = brand.toLowerCase(Locale.ROOT);
+        return read(() -> store.findByBrand(candidate -> candidate.toLowerCase(Locale.ROOT).contains(term),
+                Long.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public DevicePage searchDevicesByBrand(String brand, BrandMatch match, String cursor, int size) {
+        long afterId = cursor == null ? Long.MIN_VALUE : DeviceCursor.decodeId(cursor);
+        Predicate<String> brandMatches = brandMatcher(brand, match);
+        return idPage(read(() -> store.findByBrand(brandMatches, afterId, size + 1)), size);
+    }
+
+    @Override
+    public long countDevicesByBrand(String brand, BrandMatch match) {
+        Predicate<String> brandMatches = brandMatcher(brand, match);
+        return read(() -> store.countByBrand(brandMatches));
+    }
+
+    @Override
+    public List<BatchItemResultDTO> saveDevices(List<DeviceDTO> devices) {
+        return processInChunks(devices, (i, device) -> {
+            if (device == null) {
+                return BatchItemResultDTO.failure(i, 400, null, MISSING_DEVICE_MSG);
+            }
+            DeviceDTO created = newDevice(device);
+            writeAheadLog.appendPut(created);
+            store.put(created);
+            return BatchItemResultDTO.success(i, 201, created);
+        }, DeviceChangeEvent::created);
+    }
+
+    // A null field is left unchanged, like the other services' batch updates
+    @Override
+    public List<BatchItemResultDTO> partialUpdateDevices(List<DeviceDTO> updates) {
+        return processInChunks(updates, (i, update) -> {
+            if (update == null || update.id() == null) {
+                return BatchItemResultDTO.failure(i, 400, null, MISSING_ID_MSG);
+            }
+            if (!store.contains(update.id())) {
+                return BatchItemResultDTO.failure(i, 404, update.id(), DEVICE_NOT_FOUND_MSG + update.id());
+            }
+            DevicePatch patch = new DevicePatch(update.name() != null, update.name(),
+                    update.brand() != null, update.brand());
+            return BatchItemResultDTO.success(i, 200, update(update.id(), patch, null));
+        }, DeviceChangeEvent::updated);
+    }
+
+    @Override
+    public List<BatchItemResultDTO> deleteDevices(List<Long> ids) {
+        List<BatchItemResultDTO> results = processInChunks(ids, (i, id) -> {
+            if (id == null) {
+                return BatchItemResultDTO.failure(i, 400, null, MISSING_ID_MSG);
+            }
+            if (!store.contains(id)) {
+                return BatchItemResultDTO.failure(i, 404, id, DEVICE_NOT_FOUND_MSG + id);
+            }
+            writeAheadLog.appendDelete(id);
+            store.remove(id);
+            return BatchItemResultDTO.deleted(i, id);
+        }, null);
+        results.stream()
+                .filter(result -> result.status() == 204)
+                .forEach(result -> eventPublisher.publishEvent(DeviceChangeEvent.deleted(result.id())));
+        return results;
+    }
+
+    /**
+     * Writes a final snapshot, so the next start does not have to replay the log.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (writeAheadLog.recordsSinceSnapshot() > 0) {
+                writeAheadLog.snapshot(reservedUpTo, store::forEach);
+            }
+            writeAheadLog.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String collectionTag() {
+        return read(() -> startedAt + "-" + revision);
+    }
+
+    // Logged and applied in chunks of device.batch.chunk-size under one write lock each. Ids of later creations
+    // continue after the largest imported one; recovery does the same from the largest stored id
+    @Override
+    public long importDevices(long expectedDevices, Consumer<Consumer<DeviceDTO>> snapshot) {
+        List<DeviceDTO> chunk = new ArrayList<>(batchChunkSize);
+        long[] imported = {0};
+        snapshot.accept(device -> {
+            chunk.add(device);
+            if (chunk.size() == batchChunkSize) {
+                imported[0] += importChunk(chunk);
+                chunk.clear();
+            }
+        });
+        imported[0] += importChunk(chunk);
+        return imported[0];
+    }
+
+    // Exposed for tests and the memory benchmark
+    OffHeapDeviceStore store() {
+        return store;
+    }
+
+    /**
+     * Applies {@code item} to every item of each chunk under one write lock, and publishes {@code eventFactory}
+     * events for the successful items once the lock is released.
+     */
+    private <T> List<BatchItemResultDTO> processInChunks(List<T> items,
+                                                         ItemProcessor<T> item,
+                                                         Function<DeviceDTO, DeviceChangeEvent> eventFactory) {
+        List<BatchItemResultDTO> results = new ArrayList<>(items.size());
+        for (int offset = 0; offset < items.size(); offset += batchChunkSize) {
+            List<T> chunk = items.subList(offset, Math.min(offset + batchChunkSize, items.size()));
+            int chunkOffset = offset;
+            List<BatchItemResultDTO> chunkResults = write(() -> {
+                List<BatchItemResultDTO> processed = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    processed.add(item.process(chunkOffset + i, chunk.get(i)));
+                }
+                return processed;
+            });
+            for (BatchItemResultDTO result : chunkResults) {
+                results.add(result);
+                if (eventFactory != null && result.device() != null) {
+                    eventPublisher.publishEvent(eventFactory.apply(result.device()));
+                }
+            }
+        }
+        return results;
+    }
+
+    private int importChunk(List<DeviceDTO> devices) {
+        if (devices.isEmpty()) {
+            return 0;
+        }
+        write(() -> {
+            for (DeviceDTO device : devices) {
+                writeAheadLog.appendPut(device);
+                store.put(device);
+                nextId = Math.max(nextId, device.id() + 1);
+            }
+            return null;
+        });
+        devices.forEach(device -> eventPublisher.publishEvent(DeviceChangeEvent.imported(device)));
+        return devices.size();
+    }
+
+    // Called with the write lock held
+    private DeviceDTO update(Long id, DevicePatch patch, Long expectedVersion) {
+        DeviceDTO existing = store.get(id);
+        if (existing == null) {
+            throw new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id);
+        }
+        if (expectedVersion != null && existing.version() != expectedVersion.longValue()) {
+            throw new OptimisticLockingFailureException(VERSION_CONFLICT_MSG + id);
+        }
+        DeviceDTO saved = new DeviceDTO(id,
+                patch.hasName() ? patch.name() : existing.name(),
+                patch.hasBrand() ? patch.brand() : existing.brand(),
+                existing.creationTime(),
+                existing.version() + 1,
+                new Timestamp(System.currentTimeMillis()));
+        writeAheadLog.appendPut(saved);
+        store.put(saved);
+        return saved;
+    }
+
+    // Called with the write lock held
+    private DeviceDTO newDevice(DeviceDTO deviceDTO) {
+        if (nextId > reservedUpTo) {
+            reservedUpTo = nextId + ID_BLOCK_SIZE - 1;
+            writeAheadLog.appendIdBlock(reservedUpTo);
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        return new DeviceDTO(nextId++, deviceDTO.name(), deviceDTO.brand(), now, 0L, now);
+    }
+
+    private <R> R read(Supplier<R> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <R> R write(Supplier<R> writer) {
+        boolean snapshotDue;
+        lock.writeLock().lock();
+        try {
+            return writer.get();
+        } finally {
+            revision++;
+            snapshotDue = writeAheadLog.recordsSinceSnapshot() >= snapshotEvery;
+            lock.writeLock().unlock();
+            if (snapshotDue) {
+                scheduleSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot in the background, unless one is already pending. Readers carry on meanwhile, writers wait
+     * until it is complete.
+     */
+    private void scheduleSnapshot() {
+        if (!snapshotPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            snapshotExecutor.execute(() -> {
+                lock.readLock().lock();
+                try {
+                    writeAheadLog.snapshot(reservedUpTo, store::forEach);
+                } catch (IOException | UncheckedIOException e) {
+                    log.warn("Device store snapshot failed, the log keeps growing until the next one", e);
+                } finally {
+                    lock.readLock().unlock();
+                    snapshotPending.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down, close() writes the last snapshot
+            snapshotPending.set(false);
+        }
+    }
+
+    private static Predicate<String> brandMatcher(String brand, BrandMatch match) {
+        String brandKey = Device.normalizeBrand(brand);
+        return candidate -> {
+            String candidateKey = Device.normalizeBrand(candidate);
+            return switch (match) {
+                case EXACT -> candidateKey.equals(brandKey);
+                case PREFIX -> candidateKey.startsWith(brandKey);
+                case CONTAINS -> candidateKey.contains(brandKey);
+            };
+        };
+    }
+
+    private static DevicePage idPage(List<DeviceDTO> devices, int size) {
+        // One extra device was read, so it tells whether another page exists
+        boolean hasMore = devices.size() > size;
+        List<DeviceDTO> content = hasMore ? devices.subList(0, size) : devices;
+        return new DevicePage(content, hasMore ? DeviceCursor.encode(content.getLast().id()) : null);
+    }
+
+    private static void checkCreationRange(Date from, Date to) {
+        if (!from.before(to)) {
+            throw new InvalidRequestException(INVALID_CREATION_RANGE_MSG);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ItemProcessor<T> {
+        BatchItemResultDTO process(int index, T item);
+    }
+}
@@ -0,0 +1,166 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DeviceLookupDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.metrics.DeviceMetrics;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.search.DeviceQuery;
+import com.crud.device.service.DeviceService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Records every {@link DeviceService} operation in {@link DeviceMetrics}, delegating to {@link InMemoryDeviceService}
+ * when the memory engine is selected, to {@link ShardedDeviceService} when sharding is configured and to
+ * {@link DeviceServiceImpl} otherwise.
+ */
+@Service
+@Primary
+public class MeteredDeviceService implements DeviceService {
+
+    private final DeviceService delegate;
+    private final DeviceMetrics metrics;
+
+    public MeteredDeviceService(DeviceServiceImpl deviceService,
+                                Optional<ShardedDeviceService> shardedDeviceService,
+                                Optional<InMemoryDeviceService> inMemoryDeviceService,
+                                DeviceMetrics metrics) {
+        this.delegate = inMemoryDeviceService.<DeviceService>map(inMemory -> inMemory)
+                .or(() -> shardedDeviceService)
+                .orElse(deviceService);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public DeviceDTO saveDevice(DeviceDTO device) {
+        return metrics.record("save", () -> delegate.saveDevice(device), saved -> 1);
+    }
+
+    @Override
+    public Optional<DeviceDTO> getDeviceById(Long id) {
+        return metrics.record("get", () -> delegate.getDeviceById(id), found -> found.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public DeviceLookupDTO getDevicesByIds(List<Long> ids) {
+        return metrics.record("getMany", () -> delegate.getDevicesByIds(ids), found -> found.devices().size());
+    }
+
+    @Override
+    public List<DeviceDTO> getAllDevices() {
+        return metrics.record("getAll", delegate::getAllDevices, List::size);
+    }
+
+    @Override
+    public DevicePage getDevicesPage(String cursor, int size) {
+        return metrics.record("getPage", () -> delegate.getDevicesPage(cursor, size), page -> page.content().size());
+    }
+
+    @Override
+    public DevicePage getDevicesCreatedBetween(Instant createdAfter, Instant createdBefore, String cursor, int size) {
+        return metrics.record("getCreatedBetween",
+                () -> delegate.getDevicesCreatedBetween(createdAfter, createdBefore, cursor, size),
+                page -> page.content().size());
+    }
+
+    @Override
+    public List<DeviceDailyCountDTO> countDevicesByBrandAndDay(Instant createdAfter, Instant createdBefore) {
+        return metrics.record("countByBrandAndDay",
+                () -> delegate.countDevicesByBrandAndDay(createdAfter, createdBefore), List::size);
+    }
+
+    @Override
+    public DevicePage queryDevices(DeviceQuery query, String cursor, int size) {
+        return metrics.record("query", () -> delegate.queryDevices(query, cursor, size), page -> page.content().size());
+    }
+
+    @Override
+    public void streamAllDevices(Consumer<DeviceDTO> consumer) {
+        int[] rows = new int[1];
+        metrics.record("stream", () -> {
+            delegate.streamAllDevices(device -> {
+                rows[0]++;
+                consumer.accept(device);
+            });
+            return rows;
+        }, streamed -> streamed[0]);
+    }
+
+    @Override
+    public DeviceDTO updateDevice(Long id, DeviceDTO updatedDevice) {
+        return metrics.record("update", () -> delegate.updateDevice(id, updatedDevice), updated -> 1);
+    }
+
+    @Override
+    public DeviceDTO partialUpdateDevice(Long id, DevicePatch patch) {
+        return metrics.record("partialUpdate", () -> delegate.partialUpdateDevice(id, patch), updated -> 1);
+    }
+
+    @Override
+    public long updateDevice(Long id, DeviceDTO updatedDevice, long expectedVersion) {
+        return metrics.record("conditionalUpdate", () -> delegate.updateDevice(id, updatedDevice, expectedVersion),
+                version -> 1);
+    }
+
+    @Override
+    public long partialUpdateDevice(Long id, DevicePatch patch, long expectedVersion) {
+        return metrics.record("conditionalPartialUpdate", () -> delegate.partialUpdateDevice(id, patch, expectedVersion),
+                version -> 1);
+    }
+
+    @Override
+    public void deleteDevice(Long id) {
+        metrics.record("delete", () -> delegate.deleteDevice(id), 1);
+    }
+
+    @Override
+    public List<DeviceDTO> searchDeviceByBrand(String brand) {
+        return metrics.record("search", () -> delegate.searchDeviceByBrand(brand), List::size);
+    }
+
+    @Override
+    public DevicePage searchDevicesByBrand(String brand, BrandMatch match, String cursor, int size) {
+        return metrics.record("searchPage", () -> delegate.searchDevicesByBrand(brand, match, cursor, size),
+                page -> page.content().size());
+    }
+
+    @Override
+    public long countDevicesByBrand(String brand, BrandMatch match) {
+        return metrics.record("count", () -> delegate.countDevicesByBrand(brand, match), count -> 0);
+    }
+
+    @Override
+    public List<BatchItemResultDTO> saveDevices(List<DeviceDTO> devices) {
+        return metrics.record("saveBatch", () -> delegate.saveDevices(devices), List::size);
+    }
+
+    @Override
+    public List<BatchItemResultDTO> partialUpdateDevices(List<DeviceDTO> updates) {
+        return metrics.record("partialUpdateBatch", () -> delegate.partialUpdateDevices(updates), List::size);
+    }
+
+    @Override
+    public List<BatchItemResultDTO> deleteDevices(List<Long> ids) {
+        return metrics.record("deleteBatch", () -> delegate.deleteDevices(ids), List::size);
+    }
+
+    @Override
+    public String collectionTag() {
+        return metrics.record("collectionTag", delegate::collectionTag, tag -> 0);
+    }
+
+    @Override
+    public long importDevices(long expectedDevices, Consumer<Consumer<DeviceDTO>> snapshot) {
+        return metrics.record("import", () -> delegate.importDevices(expectedDevices, snapshot),
+                devices -> (int) Math.min(devices, Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,322 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.model.Device;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.service.InvalidRequestException;
+import com.crud.device.service.ReactiveDeviceService;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * {@link ReactiveDeviceService} on R2DBC, against the same {@code device} table the JPA entity maps.
+ * <p>
+ * The connection pool and transaction manager are kept private to this service: registering a connection factory or
+ * a reactive transaction manager as a bean would stop Spring Boot from creating the JDBC data source and JPA
+ * transaction manager that the rest of the application relies on. Changes publish the same
+ * {@link DeviceChangeEvent}s as {@link DeviceServiceImpl}, so the brand index, cache and change feed stay current.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class R2dbcDeviceService implements ReactiveDeviceService, DisposableBean {
+    private static final String DEVICE_NOT_FOUND_MSG = "Device not found with ID: ";
+    private static final String VERSION_CONFLICT_MSG = "Device was modified concurrently, ID: ";
+    private static final String INVALID_CREATION_RANGE_MSG = "createdAfter must be before createdBefore";
+    // Open ends of a creation time range, within what the column holds
+    private static final Instant MIN_CREATION_TIME = Instant.parse("0001-01-01T00:00:00Z");
+    private static final Instant MAX_CREATION_TIME = Instant.parse("9999-12-31T23:59:59Z");
+    private static final String COLUMNS = "id, name, brand, brand_key, creation_time, version, last_modified";
+    // Matches allocationSize of the device_seq generator on Device
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Object idLock = new Object();
+    private long nextId = 1;
+    private long maxId = 0;
+
+    public R2dbcDeviceService(@Value("${device.r2dbc.url}") String url,
+                              @Value("${device.r2dbc.username:sa}") String username,
+                              @Value("${device.r2dbc.password:}") String password,
+                              @Value("${device.r2dbc.pool-size:20}") int poolSize,
+                              ApplicationEventPublisher eventPublisher) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .maxSize(poolSize)
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.dispose();
+    }
+
+    @Override
+    public Mono<DeviceDTO> saveDevice(DeviceDTO deviceDTO) {
+        LocalDateTime now = LocalDateTime.now();
+        return nextId()
+                .flatMap(id -> {
+                    DatabaseClient.GenericExecuteSpec insert = databaseClient.sql("insert into device (" + COLUMNS + ")"
+                                    + " values (:id, :name, :brand, :brandKey, :now, 0, :now)")
+                            .bind("id", id)
+                            .bind("now", now);
+                    insert = bindNullable(insert, "name", deviceDTO.name());
+                    insert = bindNullable(insert, "brand", deviceDTO.brand());
+                    insert = bindNullable(insert, "brandKey", Device.normalizeBrand(deviceDTO.brand()));
+                    return insert.fetch().rowsUpdated()
+                            .thenReturn(new DeviceDTO(id, deviceDTO.name(), deviceDTO.brand(), toDate(now), 0L, toDate(now)));
+                })
+                .doOnNext(saved -> eventPublisher.publishEvent(DeviceChangeEvent.created(saved)));
+    }
+
+    @Override
+    public Mono<DeviceDTO> getDeviceById(Long id) {
+        return databaseClient.sql("select " + COLUMNS + " from device where id = :id")
+                .bind("id", id)
+                .map(R2dbcDeviceService::toDTO)
+                .one();
+    }
+
+    @Override
+    public Mono<DevicePage> getDevicesPage(String cursor, int size) {
+        long afterId = cursor == null ? Long.MIN_VALUE : DeviceCursor.decodeId(cursor);
+        return toPage(databaseClient.sql("select " + COLUMNS + " from device where id > :afterId order by id limit :limit")
+                .bind("afterId", afterId)
+                .bind("limit", size + 1)
+                .map(R2dbcDeviceService::toDTO)
+                .all(), size);
+    }
+
+    @Override
+    public Flux<DeviceDTO> streamAllDevices() {
+        return databaseClient.sql("select " + COLUMNS + " from device order by id")
+                .map(R2dbcDeviceService::toDTO)
+                .all();
+    }
+
+    @Override
+    public Mono<DeviceDTO> updateDevice(Long id, DeviceDTO updatedDevice) {
+        return update(id, DevicePatch.of(updatedDevice.name(), updatedDevice.brand()), null)
+                .then(getDeviceById(id))
+                .as(transactionalOperator::transactional)
+                .doOnNext(saved -> eventPublisher.publishEvent(DeviceChangeEvent.updated(saved)));
+    }
+
+    @Override
+    public Mono<DeviceDTO> partialUpdateDevice(Long id, DevicePatch patch) {
+        return update(id, patch, null)
+                .then(getDeviceById(id))
+                .as(transactionalOperator::transactional)
+                .doOnNext(saved -> eventPublisher.publishEvent(DeviceChangeEvent.updated(saved)));
+    }
+
+    @Override
+    public Mono<Long> updateDevice(Long id, DeviceDTO updatedDevice, long expectedVersion) {
+        return update(id, DevicePatch.of(updatedDevice.name(), updatedDevice.brand()), expectedVersion)
+                .thenReturn(expectedVersion + 1)
+                .doOnNext(newVersion -> eventPublisher.publishEvent(DeviceChangeEvent.updated(
+                        new DeviceDTO(id, updatedDevice.name(), updatedDevice.brand(), null, newVersion))));
+    }
+
+    @Override
+    public Mono<Long> partialUpdateDevice(Long id, DevicePatch patch, long expectedVersion) {
+        return update(id, patch, expectedVersion)
+                .thenReturn(expectedVersion + 1)
+                .doOnNext(newVersion -> eventPublisher.publishEvent(DeviceChangeEvent.partiallyUpdated(
+                        new DeviceDTO(id, patch.name(), patch.brand(), null, newVersion))));
+    }
+
+    @Override
+    public Mono<Void> deleteDevice(Long id) {
+        return databaseClient.sql("delete from device where id = :id")
+                .bind("id", id)
+                .fetch().rowsUpdated()
+                .flatMap(rows -> rows == 0
+                        ? Mono.<Void>error(new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id))
+                        : Mono.<Void>empty())
+                .doOnSuccess(done -> eventPublisher.publishEvent(DeviceChangeEvent.deleted(id)));
+    }
+
+    @Override
+    public Mono<DevicePage> searchDevicesByBrand(String brand, BrandMatch match, String cursor, int size) {
+        long afterId = cursor == null ? Long.MIN_VALUE : DeviceCursor.decodeId(cursor);
+        return toPage(databaseClient.sql("select " + COLUMNS + " from device where "
+                        + BrandPatterns.condition(match, ":brandKey") + " and id > :afterId order by id limit :limit")
+                .bind("brandKey", BrandPatterns.pattern(brand, match))
+                .bind("afterId", afterId)
+                .bind("limit", size + 1)
+                .map(R2dbcDeviceService::toDTO)
+                .all(), size);
+    }
+
+    @Override
+    public Mono<Long> countDevicesByBrand(String brand, BrandMatch match) {
+        return databaseClient.sql("select count(*) from device where " + BrandPatterns.condition(match, ":brandKey"))
+                .bind("brandKey", BrandPatterns.pattern(brand, match))
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    @Override
+    public Flux<DeviceDailyCountDTO> countDevicesByBrandAndDay(Instant createdAfter, Instant createdBefore) {
+        Instant from = createdAfter != null ? createdAfter : MIN_CREATION_TIME;
+        Instant to = createdBefore != null ? createdBefore : MAX_CREATION_TIME;
+        if (!from.isBefore(to)) {
+            return Flux.error(new InvalidRequestException(INVALID_CREATION_RANGE_MSG));
+        }
+        return databaseClient.sql("""
+                        select brand_key, cast(creation_time as date) as creation_day, count(*) as devices from device
+                        where creation_time >= :from and creation_time < :to
+                        group by cast(creation_time as date), brand_key
+                        order by cast(creation_time as date), brand_key""")
+                .bind("from", toLocalDateTime(from))
+                .bind("to", toLocalDateTime(to))
+                .map(row -> new DeviceDailyCountDTO(row.get("brand_key", String.class),
+                        row.get("creation_day", LocalDate.class), row.get("devices", Long.class)))
+                .all();
+    }
+
+    /**
+     * Writes the fields present in {@code patch} in one statement, only at {@code expectedVersion} when that is not
+     * {@code null}, and fails like {@link DeviceServiceImpl} when no row was updated.
+     */
+    private Mono<Void> update(Long id, DevicePatch patch, Long expectedVersion) {
+        List<String> assignments = new ArrayList<>();
+        if (patch.hasName()) {
+            assignments.add("name = :name");
+        }
+        if (patch.hasBrand()) {
+            assignments.add("brand = :brand");
+            assignments.add("brand_key = :brandKey");
+        }
+        assignments.add("version = version + 1");
+        assignments.add("last_modified = :now");
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql("update device set "
+                        + String.join(", ", assignments) + " where id = :id"
+                        + (expectedVersion != null ? " and version = :expectedVersion" : ""))
+                .bind("id", id)
+                .bind("now", LocalDateTime.now());
+        if (expectedVersion != null) {
+            statement = statement.bind("expectedVersion", expectedVersion);
+        }
+        if (patch.hasName()) {
+            statement = bindNullable(statement, "name", patch.name());
+        }
+        if (patch.hasBrand()) {
+            statement = bindNullable(statement, "brand", patch.brand());
+            statement = bindNullable(statement, "brandKey", Device.normalizeBrand(patch.brand()));
+        }
+        return statement.fetch().rowsUpdated()
+                .flatMap(rows -> rows > 0 ? Mono.<Void>empty() : updateFailure(id, expectedVersion));
+    }
+
+    // Only the failure path pays for the extra query that tells a missing device from a stale version
+    private Mono<Void> updateFailure(Long id, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.error(new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id));
+        }
+        return databaseClient.sql("select count(*) from device where id = :id")
+                .bind("id", id)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(count -> Mono.error(count == 0
+                        ? new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id)
+                        : new OptimisticLockingFailureException(VERSION_CONFLICT_MSG + id)));
+    }
+
+    /**
+     * Hands out ids the way Hibernate's pooled optimizer does for {@code device_seq}: each sequence value reserves the
+     * block of {@link #ID_BLOCK_SIZE} ids ending at it, so ids never collide with ones assigned through JPA.
+     */
+    private Mono<Long> nextId() {
+        return Mono.defer(() -> {
+            synchronized (idLock) {
+                if (nextId <= maxId) {
+                    return Mono.just(nextId++);
+                }
+            }
+            return databaseClient.sql("select next value for device_seq")
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(blockEnd -> {
+                        synchronized (idLock) {
+                            // A concurrent caller may have refilled the block meanwhile, then this one is skipped
+                            if (nextId > maxId) {
+                                nextId = Math.max(1, blockEnd - ID_BLOCK_SIZE + 1);
+                                maxId = blockEnd;
+                            }
+                            return nextId++;
+                        }
+                    });
+        });
+    }
+
+    private static Mono<DevicePage> toPage(Flux<DeviceDTO> devices, int size) {
+        // One extra row tells whether another page exists without a count query
+        return devices.collectList().map(page -> {
+            boolean hasMore = page.size() > size;
+            List<DeviceDTO> content = hasMore ? page.subList(0, size) : page;
+            return new DevicePage(content, hasMore ? DeviceCursor.encode(content.getLast().id()) : null);
+        });
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec statement,
+                                                                  String name, String value) {
+        return value == null ? statement.bindNull(name, String.class) : statement.bind(name, value);
+    }
+
+    private static DeviceDTO toDTO(Readable row) {
+        return new DeviceDTO(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("brand", String.class),
+                toDate(row.get("creation_time", LocalDateTime.class)),
+                row.get("version", Long.class),
+                toDate(row.get("last_modified", LocalDateTime.class))
+        );
+    }
+
+    // Hibernate stores the entity's Date fields as local timestamps in the JVM's time zone, so read them back the same way
+    private static Date toDate(LocalDateTime timestamp) {
+        return timestamp == null ? null : Date.from(timestamp.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LocalDateTime toLocalDateTime(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+}
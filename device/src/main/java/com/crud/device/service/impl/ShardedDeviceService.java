@@ -0,0 +1,764 @@
+package com.crud.device.service.impl;
+
+import com.crud.device.cache.DeviceCache;
+import com.crud.device.cache.DeviceReadCoalescer;
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DeviceLookupDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.model.Device;
+import com.crud.device.repository.DeviceRepositoryCustom;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.search.DeviceQuery;
+import com.crud.device.service.DeviceService;
+import com.crud.device.service.InvalidRequestException;
+import com.crud.device.shard.DeviceShard;
+import com.crud.device.shard.DeviceShards;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link DeviceService} over the shards of {@link DeviceShards}, used instead of {@link DeviceServiceImpl} when
+ * {@code device.sharding.shard-urls} is set.
+ * <p>
+ * A device lives on the shard its id hashes to, so reads and writes of one device go to a single shard. Queries over
+ * all devices run on every shard in parallel and merge the per-shard results, which are each already in the requested
+ * order, so keyset pages still read at most {@code size + 1} rows per shard. Batches are split by shard and each
+ * shard's part is written in one transaction.
+ * <p>
+ * After a shard has been added, devices stay where they were until {@link com.crud.device.shard.ShardRebalancer}
+ * moves them, so a device missing from its owner is looked up on the other shards before it is reported missing.
+ */
+@Service
+@ConditionalOnProperty(name = "device.sharding.shard-urls")
+public class ShardedDeviceService implements DeviceService {
+    private static final Logger log = LoggerFactory.getLogger(ShardedDeviceService.class);
+    private static final String DEVICE_NOT_FOUND_MSG = "Device not found with ID: ";
+    private static final String MISSING_ID_MSG = "Device ID is required";
+    private static final String MISSING_DEVICE_MSG = "Device is required";
+    private static final String CHUNK_FAILED_MSG = "Batch chunk failed: ";
+    private static final String VERSION_CONFLICT_MSG = "Device was modified concurrently, ID: ";
+    private static final String INVALID_CREATION_RANGE_MSG = "createdAfter must be before createdBefore";
+    private static final String SELECT = "select " + DeviceShard.COLUMNS + " from device";
+    private static final String INSERT_SQL = "insert into device (" + DeviceShard.COLUMNS + ")"
+            + " values (?, ?, ?, ?, ?, 0, ?)";
+    // Batch updates leave a field unchanged when it is null, like DeviceServiceImpl
+    private static final String BATCH_UPDATE_SQL = "update device set name = coalesce(?, name),"
+            + " brand = coalesce(?, brand), brand_key = coalesce(?, brand_key), version = version + 1, last_modified = ? where id = ?";
+    private static final String IMPORT_UPDATE_SQL = "update device set name = ?, brand = ?, brand_key = ?,"
+            + " creation_time = ?, version = ?, last_modified = ? where id = ?";
+    private static final String IMPORT_INSERT_SQL = "insert into device (" + DeviceShard.COLUMNS + ")"
+            + " values (?, ?, ?, ?, ?, ?, ?)";
+    // Rows per shard and round trip when streaming all devices
+    private static final int STREAM_PAGE_SIZE = 1000;
+    private static final Instant MIN_CREATION_TIME = Instant.parse("0001-01-01T00:00:00Z");
+    private static final Instant MAX_CREATION_TIME = Instant.parse("9999-12-31T23:59:59Z");
+    // While a rebalance has a device on two shards the copy with the higher version is the current one, and the
+    // merge keeps the first of the two
+    private static final Comparator<DeviceDTO> NEWEST_FIRST = Comparator.comparing(DeviceDTO::version,
+            Comparator.reverseOrder());
+    private static final Comparator<DeviceDTO> BY_ID = Comparator.comparing(DeviceDTO::id).thenComparing(NEWEST_FIRST);
+    private static final Comparator<DeviceDTO> BY_CREATION_TIME = Comparator.comparing(DeviceDTO::creationTime)
+            .thenComparing(DeviceDTO::id)
+            .thenComparing(NEWEST_FIRST);
+
+    private final DeviceShards shards;
+    private final DeviceCache deviceCache;
+    private final DeviceReadCoalescer readCoalescer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchChunkSize;
+
+    public ShardedDeviceService(DeviceShards shards,
+                                DeviceCache deviceCache,
+                                DeviceReadCoalescer readCoalescer,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${device.batch.chunk-size:500}") int batchChunkSize) {
+        this.shards = shards;
+        this.deviceCache = deviceCache;
+        this.readCoalescer = readCoalescer;
+        this.eventPublisher = eventPublisher;
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    @Override
+    public DeviceDTO saveDevice(DeviceDTO deviceDTO) {
+        DeviceDTO device = newDevice(deviceDTO);
+        insert(shards.owner(device.id()), List.of(device));
+        eventPublisher.publishEvent(DeviceChangeEvent.created(device));
+        return device;
+    }
+
+    @Override
+    public Optional<DeviceDTO> getDeviceById(Long id) {
+        return deviceCache.get(id, key -> readCoalescer.coalesceById("get", key,
+                () -> locate(key, shard -> find(shard, key))));
+    }
+
+    // Cache hits first, then IN queries of device.batch.chunk-size ids on every owning shard in parallel. Ids not on
+    // their owner are looked for on all shards, as a rebalance may not have moved them yet
+    @Override
+    public DeviceLookupDTO getDevicesByIds(List<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        Map<Long, Optional<DeviceDTO>> cached = deviceCache.getAllPresent(requested);
+        Map<Long, DeviceDTO> found = new HashMap<>();
+        Map<DeviceShard, List<Long>> idsByShard = new LinkedHashMap<>();
+        for (Long id : requested) {
+            Optional<DeviceDTO> device = cached.get(id);
+            if (device == null) {
+                idsByShard.computeIfAbsent(shards.owner(id), shard -> new ArrayList<>()).add(id);
+            } else {
+                device.ifPresent(present -> found.put(id, present));
+            }
+        }
+        shards.fanOut(new ArrayList<>(idsByShard.keySet()), shard -> findAllInChunks(shard, idsByShard.get(shard)))
+                .forEach(found::putAll);
+        List<Long> notOnOwner = idsByShard.values().stream()
+                .flatMap(List::stream)
+                .filter(id -> !found.containsKey(id))
+                .toList();
+        if (!notOnOwner.isEmpty() && shards.all().size() > 1) {
+            shards.fanOut(shard -> findAllInChunks(shard, notOnOwner)).forEach(found::putAll);
+        }
+        return DeviceLookupDTO.of(requested, found);
+    }
+
+    @Override
+    public List<DeviceDTO> getAllDevices() {
+        return DeviceShards.merge(shards.fanOut(shard -> shard.jdbcTemplate().query(
+                SELECT + " order by id", DeviceShard.DEVICE_ROW_MAPPER)), BY_ID, DeviceDTO::id, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public DevicePage getDevicesPage(String cursor, int size) {
+        long afterId = cursor == null ? Long.MIN_VALUE : DeviceCursor.decodeId(cursor);
+        return idPage(shards.fanOut(shard -> shard.jdbcTemplate().query(
+                SELECT + " where id > ? order by id limit ?", DeviceShard.DEVICE_ROW_MAPPER, afterId, size + 1)), size);
+    }
+
+    @Override
+    public DevicePage getDevicesCreatedBetween(Instant createdAfter, Instant createdBefore, String cursor, int size) {
+        Timestamp from = Timestamp.from(createdAfter != null ? createdAfter : MIN_CREATION_TIME);
+        Timestamp to = Timestamp.from(createdBefore != null ? createdBefore : MAX_CREATION_TIME);
+        checkCreationRange(from, to);
+        List<List<DeviceDTO>> perShard;
+        if (cursor == null) {
+            perShard = shards.fanOut(shard -> shard.jdbcTemplate().query(SELECT
+                            + " where creation_time >= ? and creation_time < ? order by creation_time, id limit ?",
+                    DeviceShard.DEVICE_ROW_MAPPER, from, to, size + 1));
+        } else {
+            DeviceCursor.CreationPosition after = DeviceCursor.decodeCreationPosition(cursor);
+            Timestamp afterTime = Timestamp.from(after.creationTime());
+            perShard = shards.fanOut(shard -> shard.jdbcTemplate().query(SELECT
+                            + " where creation_time >= ? and creation_time < ?"
+                            + " and (creation_time > ? or (creation_time = ? and id > ?))"
+                            + " order by creation_time, id limit ?",
+                    DeviceShard.DEVICE_ROW_MAPPER, from, to, afterTime, afterTime, after.id(), size + 1));
+        }
+        List<DeviceDTO> devices = DeviceShards.merge(perShard, BY_CREATION_TIME, DeviceDTO::id, size + 1);
+        boolean hasMore = devices.size() > size;
+        List<DeviceDTO> content = hasMore ? devices.subList(0, size) : devices;
+        DeviceDTO last = hasMore ? content.getLast() : null;
+        String nextCursor = last != null ? DeviceCursor.encode(last.creationTime().toInstant(), last.id()) : null;
+        return new DevicePage(content, nextCursor);
+    }
+
+    // The state of every shard, so moving devices between shards changes the tag too
+    @Override
+    public String collectionTag() {
+        return String.join(".", shards.fanOut(shard -> shard.jdbcTemplate().queryForObject("""
+                        select r.revision, (select count(*) from device), (select coalesce(sum(version), 0) from device),
+                               (select max(last_modified) from device)
+                        from device_revision r where r.id = 1""",
+                (resultSet, rowNum) -> {
+                    Timestamp lastModified = resultSet.getTimestamp(4);
+                    return new DeviceRepositoryCustom.DeviceTableState(resultSet.getLong(1), resultSet.getLong(2),
+                            resultSet.getLong(3), lastModified == null ? null : lastModified.toInstant()).tag();
+                })));
+    }
+
+    // Each chunk is written to its owning shards in parallel, one transaction per shard that also removes the
+    // chunk's devices from the shards that do not own them, where a rebalance may not have moved them yet. The
+    // revision of every shard is bumped, as imported devices keep their lastModified
+    @Override
+    public long importDevices(long expectedDevices, Consumer<Consumer<DeviceDTO>> snapshot) {
+        List<DeviceDTO> chunk = new ArrayList<>(batchChunkSize);
+        long[] imported = {0};
+        long[] maxId = {0};
+        try {
+            snapshot.accept(device -> {
+                chunk.add(device);
+                maxId[0] = Math.max(maxId[0], device.id());
+                if (chunk.size() == batchChunkSize) {
+                    imported[0] += importChunk(chunk);
+                    chunk.clear();
+                }
+            });
+            imported[0] += importChunk(chunk);
+        } finally {
+            shards.fanOut(shard -> shard.jdbcTemplate().update(
+                    "update device_revision set revision = revision + 1 where id = 1"));
+        }
+        shards.advanceIdsPast(maxId[0]);
+        return imported[0];
+    }
+
+    @Override
+    public List<DeviceDailyCountDTO> countDevicesByBrandAndDay(Instant createdAfter, Instant createdBefore) {
+        Timestamp from = Timestamp.from(createdAfter != null ? createdAfter : MIN_CREATION_TIME);
+        Timestamp to = Timestamp.from(createdBefore != null ? createdBefore : MAX_CREATION_TIME);
+        checkCreationRange(from, to);
+        Map<DailyKey, Long> totals = countOnce("""
+                        select id, brand_key, cast(creation_time as date) as creation_day from device
+                        where creation_time >= ? and creation_time < ?""",
+                (resultSet, rowNum) -> new DailyKey(resultSet.getObject("creation_day", LocalDate.class),
+                        resultSet.getString("brand_key")),
+                from, to);
+        return totals.entrySet().stream()
+                .map(total -> new DeviceDailyCountDTO(total.getKey().brand(), total.getKey().day(), total.getValue()))
+                .sorted(Comparator.comparing(DeviceDailyCountDTO::day)
+                        .thenComparing(DeviceDailyCountDTO::brand, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .toList();
+    }
+
+    @Override
+    public DevicePage queryDevices(DeviceQuery query, String cursor, int size) {
+        DeviceCursor.SortPosition after = cursor == null ? null : DeviceCursor.decodeSortPosition(cursor, query);
+        List<Object> parameters = new ArrayList<>();
+        String sql = SELECT + DeviceQuerySql.where(query, after, parameters) + DeviceQuerySql.orderBy(query) + " limit ?";
+        parameters.add(size + 1);
+        List<DeviceDTO> devices = DeviceShards.merge(shards.fanOut(shard -> shard.jdbcTemplate().query(sql,
+                DeviceShard.DEVICE_ROW_MAPPER, parameters.toArray())), query.order().thenComparing(NEWEST_FIRST),
+                DeviceDTO::id, size + 1);
+        boolean hasMore = devices.size() > size;
+        List<DeviceDTO> content = hasMore ? devices.subList(0, size) : devices;
+        String nextCursor = hasMore ? DeviceCursor.encodeSortPosition(query, content.getLast()) : null;
+        return new DevicePage(content, nextCursor);
+    }
+
+    /**
+     * Streams all devices in id order, merging keyset pages read from every shard. Unlike a single-database export
+     * the rows are not read from one snapshot, so devices changed during a long export may appear in either state.
+     */
+    @Override
+    public void streamAllDevices(Consumer<DeviceDTO> consumer) {
+        PriorityQueue<ShardStream> streams = new PriorityQueue<>(Comparator.comparing(ShardStream::head, BY_ID));
+        for (ShardStream stream : shards.fanOut(ShardStream::new)) {
+            if (stream.hasNext()) {
+                streams.add(stream);
+            }
+        }
+        // A device a rebalance has on two shards comes out twice in a row, the current copy first
+        long lastId = Long.MIN_VALUE;
+        while (!streams.isEmpty()) {
+            ShardStream stream = streams.poll();
+            DeviceDTO device = stream.next();
+            if (device.id() != lastId) {
+                consumer.accept(device);
+                lastId = device.id();
+            }
+            if (stream.hasNext()) {
+                streams.add(stream);
+            }
+        }
+    }
+
+    @Override
+    public DeviceDTO updateDevice(Long id, DeviceDTO updatedDevice) {
+        return partialUpdateDevice(id, DevicePatch.of(updatedDevice.name(), updatedDevice.brand()));
+    }
+
+    @Override
+    public DeviceDTO partialUpdateDevice(Long id, DevicePatch patch) {
+        DeviceDTO saved = locate(id, shard -> shard.transactionTemplate().execute(status ->
+                        update(shard, id, patch, null) ? find(shard, id) : Optional.<DeviceDTO>empty()))
+                .orElseThrow(() -> new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id));
+        eventPublisher.publishEvent(DeviceChangeEvent.updated(saved));
+        return saved;
+    }
+
+    @Override
+    public long updateDevice(Long id, DeviceDTO updatedDevice, long expectedVersion) {
+        long newVersion = updateIfVersionMatches(id, DevicePatch.of(updatedDevice.name(), updatedDevice.brand()),
+                expectedVersion);
+        // The row is not read back, so listeners only get the written fields, as for a conditional PATCH
+        eventPublisher.publishEvent(DeviceChangeEvent.partiallyUpdated(
+                new DeviceDTO(id, updatedDevice.name(), updatedDevice.brand(), null, newVersion)));
+        return newVersion;
+    }
+
+    @Override
+    public long partialUpdateDevice(Long id, DevicePatch patch, long expectedVersion) {
+        long newVersion = updateIfVersionMatches(id, patch, expectedVersion);
+        eventPublisher.publishEvent(DeviceChangeEvent.partiallyUpdated(
+                new DeviceDTO(id, patch.name(), patch.brand(), null, newVersion)));
+        return newVersion;
+    }
+
+    @Override
+    public void deleteDevice(Long id) {
+        locate(id, shard -> delete(shard, id) ? Optional.of(shard) : Optional.<DeviceShard>empty())
+                .orElseThrow(() -> new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id));
+        eventPublisher.publishEvent(DeviceChangeEvent.deleted(id));
+    }
+
+    // Same matching as the repository's findByBrandContainingIgnoreCase, on the brand as entered
+    @Override
+    public List<DeviceDTO> searchDeviceByBrand(String brand) {
+        String pattern = "%" + BrandPatterns.escapeLike(brand) + "%";
+        return readCoalescer.coalesce("search", brand, () -> DeviceShards.merge(shards.fanOut(shard ->
+                shard.jdbcTemplate().query(SELECT + " where upper(brand) like upper(?) escape '\\' order by id",
+                        DeviceShard.DEVICE_ROW_MAPPER, pattern)), BY_ID, DeviceDTO::id, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public DevicePage searchDevicesByBrand(String brand, BrandMatch match, String cursor, int size) {
+        long afterId = cursor == null ? Long.MIN_VALUE : DeviceCursor.decodeId(cursor);
+        String pattern = BrandPatterns.pattern(brand, match);
+        String sql = SELECT + " where " + BrandPatterns.condition(match, "?") + " and id > ? order by id limit ?";
+        return readCoalescer.coalesce("searchPage", new BrandSearch(pattern, match, afterId, size),
+                () -> idPage(shards.fanOut(shard -> shard.jdbcTemplate().query(sql, DeviceShard.DEVICE_ROW_MAPPER,
+                        pattern, afterId, size + 1)), size));
+    }
+
+    @Override
+    public long countDevicesByBrand(String brand, BrandMatch match) {
+        String pattern = BrandPatterns.pattern(brand, match);
+        String sql = "select id from device where " + BrandPatterns.condition(match, "?");
+        return countOnce(sql, (resultSet, rowNum) -> match, pattern).values().stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Override
+    public List<BatchItemResultDTO> saveDevices(List<DeviceDTO> devices) {
+        return processInChunks(devices, (chunk, results) -> {
+            Map<DeviceShard, List<Integer>> indexesByShard = new LinkedHashMap<>();
+            DeviceDTO[] created = new DeviceDTO[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                if (chunk.get(i) == null) {
+                    results[i] = BatchItemResultDTO.failure(i, 400, null, MISSING_DEVICE_MSG);
+                    continue;
+                }
+                created[i] = newDevice(chunk.get(i));
+                indexesByShard.computeIfAbsent(shards.owner(created[i].id()), shard -> new ArrayList<>()).add(i);
+            }
+            forEachShard(indexesByShard, results, (shard, indexes) -> {
+                insert(shard, indexes.stream().map(i -> created[i]).toList());
+                for (int i : indexes) {
+                    results[i] = BatchItemResultDTO.success(i, 201, created[i]);
+                }
+            });
+        }, DeviceChangeEvent::created);
+    }
+
+    @Override
+    public List<BatchItemResultDTO> partialUpdateDevices(List<DeviceDTO> updates) {
+        return processInChunks(updates, (chunk, results) -> {
+            Map<DeviceShard, List<Integer>> indexesByShard = new LinkedHashMap<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                DeviceDTO update = chunk.get(i);
+                if (update == null || update.id() == null) {
+                    results[i] = BatchItemResultDTO.failure(i, 400, null, MISSING_ID_MSG);
+                } else {
+                    indexesByShard.computeIfAbsent(shards.owner(update.id()), shard -> new ArrayList<>()).add(i);
+                }
+            }
+            forEachShard(indexesByShard, results, (shard, indexes) -> {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                Map<Long, DeviceDTO> saved = shard.transactionTemplate().execute(status -> {
+                    shard.jdbcTemplate().batchUpdate(BATCH_UPDATE_SQL, indexes.stream().map(i -> {
+                        DeviceDTO update = chunk.get(i);
+                        return new Object[]{update.name(), update.brand(), Device.normalizeBrand(update.brand()), now,
+                                update.id()};
+                    }).toList());
+                    return findAll(shard, indexes.stream().map(i -> chunk.get(i).id()).toList());
+                });
+                for (int i : indexes) {
+                    DeviceDTO update = chunk.get(i);
+                    DeviceDTO device = saved.get(update.id());
+                    if (device == null) {
+                        // Not on its owner, it may not have been moved there yet
+                        DevicePatch patch = new DevicePatch(update.name() != null, update.name(),
+                                update.brand() != null, update.brand());
+                        device = locateElsewhere(shard, update.id(), other -> other.transactionTemplate().execute(
+                                status -> update(other, update.id(), patch, null)
+                                        ? find(other, update.id()) : Optional.<DeviceDTO>empty()))
+                                .orElse(null);
+                    }
+                    results[i] = device != null
+                            ? BatchItemResultDTO.success(i, 200, device)
+                            : BatchItemResultDTO.failure(i, 404, update.id(), DEVICE_NOT_FOUND_MSG + update.id());
+                }
+            });
+        }, DeviceChangeEvent::updated);
+    }
+
+    @Override
+    public List<BatchItemResultDTO> deleteDevices(List<Long> ids) {
+        List<BatchItemResultDTO> results = processInChunks(ids, (chunk, chunkResults) -> {
+            Map<DeviceShard, List<Integer>> indexesByShard = new LinkedHashMap<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                if (chunk.get(i) == null) {
+                    chunkResults[i] = BatchItemResultDTO.failure(i, 400, null, MISSING_ID_MSG);
+                } else {
+                    indexesByShard.computeIfAbsent(shards.owner(chunk.get(i)), shard -> new ArrayList<>()).add(i);
+                }
+            }
+            forEachShard(indexesByShard, chunkResults, (shard, indexes) -> {
+                List<Long> shardIds = indexes.stream().map(chunk::get).toList();
+                int[] deleted = shard.transactionTemplate().execute(status -> shard.jdbcTemplate().batchUpdate(
+                        "delete from device where id = ?", shardIds.stream().map(id -> new Object[]{id}).toList()));
+                for (int position = 0; position < indexes.size(); position++) {
+                    int i = indexes.get(position);
+                    Long id = shardIds.get(position);
+                    boolean found = deleted[position] != 0 || locateElsewhere(shard, id,
+                            other -> delete(other, id) ? Optional.of(other) : Optional.<DeviceShard>empty()).isPresent();
+                    chunkResults[i] = found
+                            ? BatchItemResultDTO.deleted(i, id)
+                            : BatchItemResultDTO.failure(i, 404, id, DEVICE_NOT_FOUND_MSG + id);
+                }
+            });
+        }, null);
+        results.stream()
+                .filter(result -> result.status() == 204)
+                .forEach(result -> eventPublisher.publishEvent(DeviceChangeEvent.deleted(result.id())));
+        return results;
+    }
+
+    /**
+     * Runs {@code chunkProcessor} over consecutive chunks of {@code items}, where it fills in one result per item, and
+     * publishes {@code eventFactory} events for the successful items once their shards have committed.
+     */
+    private <T> List<BatchItemResultDTO> processInChunks(List<T> items,
+                                                         ChunkProcessor<T> chunkProcessor,
+                                                         Function<DeviceDTO, DeviceChangeEvent> eventFactory) {
+        List<BatchItemResultDTO> results = new ArrayList<>(items.size());
+        for (int offset = 0; offset < items.size(); offset += batchChunkSize) {
+            List<T> chunk = items.subList(offset, Math.min(offset + batchChunkSize, items.size()));
+            BatchItemResultDTO[] chunkResults = new BatchItemResultDTO[chunk.size()];
+            chunkProcessor.process(chunk, chunkResults);
+            for (BatchItemResultDTO result : chunkResults) {
+                BatchItemResultDTO shifted = new BatchItemResultDTO(offset + result.index(), result.status(),
+                        result.id(), result.device(), result.error());
+                results.add(shifted);
+                if (eventFactory != null && shifted.device() != null) {
+                    eventPublisher.publishEvent(eventFactory.apply(shifted.device()));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs each shard's part of a chunk in parallel. A shard whose transaction fails reports all of its items as
+     * failed without affecting the other shards.
+     */
+    private void forEachShard(Map<DeviceShard, List<Integer>> indexesByShard, BatchItemResultDTO[] results,
+                              ShardWork work) {
+        List<DeviceShard> targets = new ArrayList<>(indexesByShard.keySet());
+        shards.fanOut(targets, shard -> {
+            List<Integer> indexes = indexesByShard.get(shard);
+            try {
+                work.run(shard, indexes);
+            } catch (RuntimeException e) {
+                log.warn("Batch chunk on {} failed", shard.name(), e);
+                for (int i : indexes) {
+                    results[i] = BatchItemResultDTO.failure(i, 500, null, CHUNK_FAILED_MSG + e.getMessage());
+                }
+            }
+            return null;
+        });
+    }
+
+    private long updateIfVersionMatches(Long id, DevicePatch patch, long expectedVersion) {
+        // Present when the device was found: true once updated, false when its version did not match
+        boolean updated = locate(id, shard -> shard.transactionTemplate().execute(status -> {
+            if (update(shard, id, patch, expectedVersion)) {
+                return Optional.of(true);
+            }
+            return find(shard, id).map(device -> false);
+        })).orElseThrow(() -> new EntityNotFoundException(DEVICE_NOT_FOUND_MSG + id));
+        if (!updated) {
+            throw new OptimisticLockingFailureException(VERSION_CONFLICT_MSG + id);
+        }
+        return expectedVersion + 1;
+    }
+
+    /**
+     * Runs {@code operation} on the device's owner and, if the device is not there, on the other shards. The owner
+     * is asked once more at the end, in case a rebalance moved the device there in the meantime.
+     */
+    private <R> Optional<R> locate(Long id, Function<DeviceShard, Optional<R>> operation) {
+        DeviceShard owner = shards.owner(id);
+        Optional<R> result = operation.apply(owner);
+        return result.isPresent() ? result : locateElsewhere(owner, id, operation);
+    }
+
+    private <R> Optional<R> locateElsewhere(DeviceShard owner, Long id, Function<DeviceShard, Optional<R>> operation) {
+        if (shards.all().size() == 1) {
+            return Optional.empty();
+        }
+        for (DeviceShard shard : shards.all()) {
+            if (shard != owner) {
+                Optional<R> result = operation.apply(shard);
+                if (result.isPresent()) {
+                    return result;
+                }
+            }
+        }
+        return operation.apply(owner);
+    }
+
+    private Optional<DeviceDTO> find(DeviceShard shard, Long id) {
+        return shard.jdbcTemplate().query(SELECT + " where id = ?", DeviceShard.DEVICE_ROW_MAPPER, id).stream()
+                .findFirst();
+    }
+
+    private Map<Long, DeviceDTO> findAll(DeviceShard shard, List<Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Map<Long, DeviceDTO> devices = new HashMap<>();
+        for (DeviceDTO device : shard.jdbcTemplate().query(SELECT + " where id in (" + placeholders + ")",
+                DeviceShard.DEVICE_ROW_MAPPER, ids.toArray())) {
+            devices.put(device.id(), device);
+        }
+        return devices;
+    }
+
+    private Map<Long, DeviceDTO> findAllInChunks(DeviceShard shard, List<Long> ids) {
+        Map<Long, DeviceDTO> devices = new HashMap<>();
+        for (int offset = 0; offset < ids.size(); offset += batchChunkSize) {
+            devices.putAll(findAll(shard, ids.subList(offset, Math.min(offset + batchChunkSize, ids.size()))));
+        }
+        return devices;
+    }
+
+    private DeviceDTO newDevice(DeviceDTO deviceDTO) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        return new DeviceDTO(shards.nextId(), deviceDTO.name(), deviceDTO.brand(), now, 0L, now);
+    }
+
+    private int importChunk(List<DeviceDTO> devices) {
+        if (devices.isEmpty()) {
+            return 0;
+        }
+        Map<DeviceShard, List<DeviceDTO>> devicesByShard = new HashMap<>();
+        for (DeviceDTO device : devices) {
+            devicesByShard.computeIfAbsent(shards.owner(device.id()), shard -> new ArrayList<>()).add(device);
+        }
+        shards.fanOut(shard -> {
+            List<DeviceDTO> owned = devicesByShard.getOrDefault(shard, List.of());
+            List<Object[]> notOwned = devices.stream()
+                    .filter(device -> shards.owner(device.id()) != shard)
+                    .map(device -> new Object[]{device.id()})
+                    .toList();
+            shard.transactionTemplate().executeWithoutResult(status -> {
+                upsert(shard, owned);
+                if (!notOwned.isEmpty()) {
+                    shard.jdbcTemplate().batchUpdate("delete from device where id = ?", notOwned);
+                }
+            });
+            return null;
+        });
+        devices.forEach(device -> eventPublisher.publishEvent(DeviceChangeEvent.imported(device)));
+        return devices.size();
+    }
+
+    // Updates the rows that exist, then inserts the rest
+    private static void upsert(DeviceShard shard, List<DeviceDTO> devices) {
+        if (devices.isEmpty()) {
+            return;
+        }
+        int[] updated = shard.jdbcTemplate().batchUpdate(IMPORT_UPDATE_SQL, devices.stream()
+                .map(device -> new Object[]{device.name(), device.brand(), Device.normalizeBrand(device.brand()),
+                        device.creationTime(), device.version(), device.lastModified(), device.id()})
+                .toList());
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < devices.size(); i++) {
+            if (updated[i] == 0) {
+                DeviceDTO device = devices.get(i);
+                missing.add(new Object[]{device.id(), device.name(), device.brand(),
+                        Device.normalizeBrand(device.brand()), device.creationTime(), device.version(),
+                        device.lastModified()});
+            }
+        }
+        if (!missing.isEmpty()) {
+            shard.jdbcTemplate().batchUpdate(IMPORT_INSERT_SQL, missing);
+        }
+    }
+
+    private static void insert(DeviceShard shard, List<DeviceDTO> devices) {
+        shard.transactionTemplate().executeWithoutResult(status -> shard.jdbcTemplate().batchUpdate(INSERT_SQL,
+                devices.stream().map(device -> new Object[]{device.id(), device.name(), device.brand(),
+                        Device.normalizeBrand(device.brand()), device.creationTime(), device.lastModified()}).toList()));
+    }
+
+    /**
+     * Writes the fields present in {@code patch} in one statement, only at {@code expectedVersion} when that is not
+     * {@code null}, and tells whether a row was updated.
+     */
+    private static boolean update(DeviceShard shard, Long id, DevicePatch patch, Long expectedVersion) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> arguments = new ArrayList<>();
+        if (patch.hasName()) {
+            assignments.add("name = ?");
+            arguments.add(patch.name());
+        }
+        if (patch.hasBrand()) {
+            assignments.add("brand = ?");
+            assignments.add("brand_key = ?");
+            arguments.add(patch.brand());
+            arguments.add(Device.normalizeBrand(patch.brand()));
+        }
+        assignments.add("version = version + 1");
+        assignments.add("last_modified = ?");
+        arguments.add(new Timestamp(System.currentTimeMillis()));
+        arguments.add(id);
+        if (expectedVersion != null) {
+            arguments.add(expectedVersion);
+        }
+        return shard.jdbcTemplate().update("update device set " + String.join(", ", assignments) + " where id = ?"
+                + (expectedVersion != null ? " and version = ?" : ""), arguments.toArray()) > 0;
+    }
+
+    /**
+     * Counts the rows {@code sql} selects on every shard by the key {@code keyMapper} reads from them, counting each
+     * device once although a rebalance may have it on two shards. That needs the ring, so the shards return an id per
+     * row rather than a count: a shard's own rows are counted as they arrive, and the few it does not own only if
+     * their owner does not have them yet. Like the pages, the shards are not read from one snapshot.
+     */
+    private <K> Map<K, Long> countOnce(String sql, RowMapper<K> keyMapper, Object... arguments) {
+        List<ShardCount<K>> perShard = shards.fanOut(shard -> {
+            ShardCount<K> count = new ShardCount<>(new HashMap<>(), new HashMap<>());
+            shard.jdbcTemplate().query(sql, (RowCallbackHandler) resultSet -> {
+                long id = resultSet.getLong("id");
+                K key = keyMapper.mapRow(resultSet, resultSet.getRow());
+                if (shards.owner(id) == shard) {
+                    count.owned().merge(key, 1L, Long::sum);
+                } else {
+                    count.misplaced().put(id, key);
+                }
+            }, arguments);
+            return count;
+        });
+        Map<K, Long> totals = new HashMap<>();
+        Map<DeviceShard, List<Long>> misplacedByOwner = new LinkedHashMap<>();
+        Map<Long, K> misplaced = new HashMap<>();
+        for (ShardCount<K> count : perShard) {
+            count.owned().forEach((key, devices) -> totals.merge(key, devices, Long::sum));
+            count.misplaced().forEach((id, key) -> {
+                misplaced.put(id, key);
+                misplacedByOwner.computeIfAbsent(shards.owner(id), owner -> new ArrayList<>()).add(id);
+            });
+        }
+        misplacedByOwner.forEach((owner, ids) -> {
+            Set<Long> copied = findAllInChunks(owner, ids).keySet();
+            for (Long id : ids) {
+                if (!copied.contains(id)) {
+                    totals.merge(misplaced.get(id), 1L, Long::sum);
+                }
+            }
+        });
+        return totals;
+    }
+
+    private static boolean delete(DeviceShard shard, Long id) {
+        return shard.jdbcTemplate().update("delete from device where id = ?", id) > 0;
+    }
+
+    private static DevicePage idPage(List<List<DeviceDTO>> perShard, int size) {
+        // Every shard returned one extra row, so the merge tells whether another page exists without a count query
+        List<DeviceDTO> devices = DeviceShards.merge(perShard, BY_ID, DeviceDTO::id, size + 1);
+        boolean hasMore = devices.size() > size;
+        List<DeviceDTO> content = hasMore ? devices.subList(0, size) : devices;
+        return new DevicePage(content, hasMore ? DeviceCursor.encode(content.getLast().id()) : null);
+    }
+
+    private static void checkCreationRange(Date from, Date to) {
+        if (!from.before(to)) {
+            throw new InvalidRequestException(INVALID_CREATION_RANGE_MSG);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkProcessor<T> {
+        void process(List<T> chunk, BatchItemResultDTO[] results);
+    }
+
+    @FunctionalInterface
+    private interface ShardWork {
+        void run(DeviceShard shard, List<Integer> indexes);
+    }
+
+    private record DailyKey(LocalDate day, String brand) {
+    }
+
+    private record ShardCount<K>(Map<K, Long> owned, Map<Long, K> misplaced) {
+    }
+
+    private record BrandSearch(String pattern, BrandMatch match, long afterId, int size) {
+    }
+
+    /**
+     * Reads one shard in keyset pages of {@link #STREAM_PAGE_SIZE} devices.
+     */
+    private static final class ShardStream {
+        private final DeviceShard shard;
+        private List<DeviceDTO> page;
+        private int position;
+
+        ShardStream(DeviceShard shard) {
+            this.shard = shard;
+            this.page = fetch(Long.MIN_VALUE);
+        }
+
+        boolean hasNext() {
+            if (position == page.size() && page.size() == STREAM_PAGE_SIZE) {
+                page = fetch(page.getLast().id());
+                position = 0;
+            }
+            return position < page.size();
+        }
+
+        DeviceDTO head() {
+            return page.get(position);
+        }
+
+        DeviceDTO next() {
+            return page.get(position++);
+        }
+
+        private List<DeviceDTO> fetch(long afterId) {
+            return shard.jdbcTemplate().query(SELECT + " where id > ? order by id limit ?",
+                    DeviceShard.DEVICE_ROW_MAPPER, afterId, STREAM_PAGE_SIZE);
+        }
+    }
+}
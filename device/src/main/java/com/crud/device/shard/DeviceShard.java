@@ -0,0 +1,27 @@
+package com.crud.device.shard;
+
+import com.crud.device.dto.DeviceDTO;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One database of a sharded deployment, holding the {@code device} rows the {@link ShardRing} assigns to it.
+ */
+public record DeviceShard(int index,
+                          String name,
+                          String url,
+                          JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate) {
+
+    public static final String COLUMNS = "id, name, brand, brand_key, creation_time, version, last_modified";
+
+    // Timestamps are kept as read, so creation time cursors keep the column's sub-millisecond precision
+    public static final RowMapper<DeviceDTO> DEVICE_ROW_MAPPER = (resultSet, rowNum) -> new DeviceDTO(
+            resultSet.getLong("id"),
+            resultSet.getString("name"),
+            resultSet.getString("brand"),
+            resultSet.getTimestamp("creation_time"),
+            resultSet.getLong("version"),
+            resultSet.getTimestamp("last_modified"));
+}
@@ -0,0 +1,167 @@
+package com.crud.device.shard;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * The shards of a sharded deployment, the {@link ShardRing} that assigns devices to them, and parallel execution of
+ * a query on all of them.
+ * <p>
+ * Ids come from {@code device_seq} on the first shard only, in the blocks Hibernate's pooled optimizer would use, so
+ * they stay unique across shards. Shards are named after their position in {@code device.sharding.shard-urls}: new
+ * shards must be appended to the list, and existing ones never reordered or removed.
+ */
+public class DeviceShards implements AutoCloseable {
+    // Matches allocationSize of the device_seq generator on Device
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private final List<DeviceShard> shards;
+    private final ShardRing ring;
+    // Fan-out queries spend their time waiting on the databases, one virtual thread per shard query is enough
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private long nextId = 1;
+    private long maxId = 0;
+
+    public DeviceShards(List<DeviceShard> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        this.ring = new ShardRing(shards.size(), virtualNodes);
+    }
+
+    public List<DeviceShard> all() {
+        return shards;
+    }
+
+    public ShardRing ring() {
+        return ring;
+    }
+
+    public DeviceShard owner(long id) {
+        return shards.get(ring.shardFor(id));
+    }
+
+    /**
+     * Runs {@code query} on every shard in parallel and returns the results in shard order. The first failure is
+     * rethrown once all shards have answered.
+     */
+    public <T> List<T> fanOut(Function<DeviceShard, T> query) {
+        return fanOut(shards, query);
+    }
+
+    public <T> List<T> fanOut(List<DeviceShard> targets, Function<DeviceShard, T> query) {
+        if (targets.size() == 1) {
+            return List.of(query.apply(targets.getFirst()));
+        }
+        List<Future<T>> futures = new ArrayList<>(targets.size());
+        for (DeviceShard shard : targets) {
+            futures.add(executor.submit(() -> query.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(targets.size());
+        RuntimeException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause
+                            ? cause
+                            : new IllegalStateException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while querying shards", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Merges lists that are each sorted by {@code order} into one sorted list of at most {@code limit} elements with
+     * distinct keys. A rebalance copies a device to its owner before deleting it from its old shard, so the same
+     * device can come from two shards: only the first one in {@code order} is kept. As every list is the head of its
+     * shard, the merged list is still the head of all shards without duplicates.
+     */
+    public static <T> List<T> merge(List<List<T>> sortedLists, Comparator<? super T> order,
+                                    Function<? super T, ?> key, int limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.value(), b.value()));
+        int total = 0;
+        for (List<T> list : sortedLists) {
+            total += list.size();
+            if (!list.isEmpty()) {
+                heads.add(new Head<>(list, 0));
+            }
+        }
+        List<T> merged = new ArrayList<>(Math.min(total, limit));
+        Set<Object> seen = new HashSet<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Head<T> head = heads.poll();
+            if (seen.add(key.apply(head.value()))) {
+                merged.add(head.value());
+            }
+            if (head.position() + 1 < head.list().size()) {
+                heads.add(new Head<>(head.list(), head.position() + 1));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Takes the next id from {@code device_seq} on the first shard. For a sequence value {@code S} Hibernate's
+     * pooled optimizer uses {@code [S - 49, S]}, so the same blocks are reserved here.
+     */
+    public synchronized long nextId() {
+        if (nextId > maxId) {
+            JdbcTemplate sequenceShard = shards.getFirst().jdbcTemplate();
+            long sequenceValue = sequenceShard.queryForObject("select next value for device_seq", Long.class);
+            maxId = sequenceValue;
+            nextId = Math.max(1, sequenceValue - ID_BLOCK_SIZE + 1);
+        }
+        return nextId++;
+    }
+
+    /**
+     * Makes the ids handed out from now on larger than {@code id}, for devices written with ids of their own: the
+     * rest of the current block is skipped up to it, and {@code device_seq} restarted past it unless it already is.
+     */
+    public synchronized void advanceIdsPast(long id) {
+        nextId = Math.max(nextId, id + 1);
+        JdbcTemplate sequenceShard = shards.getFirst().jdbcTemplate();
+        long sequenceValue = sequenceShard.queryForObject("select next value for device_seq", Long.class);
+        long required = id + ID_BLOCK_SIZE;
+        if (sequenceValue < required) {
+            sequenceShard.execute("alter sequence device_seq restart with " + required);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.close();
+        for (DeviceShard shard : shards) {
+            if (shard.jdbcTemplate().getDataSource() instanceof AutoCloseable dataSource) {
+                dataSource.close();
+            }
+        }
+    }
+
+    private record Head<T>(List<T> list, int position) {
+        T value() {
+            return list.get(position);
+        }
+    }
+}
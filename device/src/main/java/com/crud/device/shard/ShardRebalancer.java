@@ -0,0 +1,138 @@
+package com.crud.device.shard;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.ShardRebalanceDTO;
+import com.crud.device.model.Device;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves every device that is not on the shard the {@link ShardRing} assigns it to, which after appending a shard to
+ * {@code device.sharding.shard-urls} are the devices the new shard now owns.
+ * <p>
+ * Each shard is read in keyset pages. A misplaced device is first copied to its owner and then deleted from where it
+ * was, only at the version that was copied, while the application keeps serving: until the copy exists the service
+ * finds the device on its old shard, and once it exists changes go to the copy. A device that changed or was deleted
+ * between the copy and the delete is copied again, or its copy removed, until both sides agree.
+ */
+@Component
+@ConditionalOnProperty(name = "device.sharding.shard-urls")
+public class ShardRebalancer {
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+    // H2's upsert, so a copy left behind by an interrupted rebalance is overwritten instead of failing
+    private static final String UPSERT_SQL = "merge into device (" + DeviceShard.COLUMNS + ") key (id)"
+            + " values (?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_AT_VERSION_SQL = "delete from device where id = ? and version = ?";
+    private static final int MAX_MOVE_ATTEMPTS = 10;
+
+    private final DeviceShards shards;
+    private final int pageSize;
+
+    public ShardRebalancer(DeviceShards shards,
+                           @Value("${device.sharding.rebalance-page-size:${device.batch.chunk-size:500}}") int pageSize) {
+        this.shards = shards;
+        this.pageSize = pageSize;
+    }
+
+    // One rebalance at a time, a second request waits for the running one and then finds nothing left to move
+    public synchronized ShardRebalanceDTO rebalance() {
+        long start = System.nanoTime();
+        long scanned = 0;
+        long moved = 0;
+        long retried = 0;
+        for (DeviceShard source : shards.all()) {
+            long afterId = Long.MIN_VALUE;
+            while (true) {
+                List<DeviceDTO> page = source.jdbcTemplate().query("select " + DeviceShard.COLUMNS
+                                + " from device where id > ? order by id limit ?",
+                        DeviceShard.DEVICE_ROW_MAPPER, afterId, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                afterId = page.getLast().id();
+                scanned += page.size();
+                Map<DeviceShard, List<DeviceDTO>> misplaced = new LinkedHashMap<>();
+                for (DeviceDTO device : page) {
+                    DeviceShard owner = shards.owner(device.id());
+                    if (owner != source) {
+                        misplaced.computeIfAbsent(owner, shard -> new ArrayList<>()).add(device);
+                    }
+                }
+                for (Map.Entry<DeviceShard, List<DeviceDTO>> target : misplaced.entrySet()) {
+                    List<DeviceDTO> changed = move(source, target.getKey(), target.getValue());
+                    moved += target.getValue().size() - changed.size();
+                    for (DeviceDTO device : changed) {
+                        retried++;
+                        if (moveAgain(source, target.getKey(), device)) {
+                            moved++;
+                        }
+                    }
+                }
+            }
+        }
+        ShardRebalanceDTO result = new ShardRebalanceDTO(scanned, moved, retried,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Shard rebalance finished: {}", result);
+        return result;
+    }
+
+    /**
+     * Copies {@code devices} to {@code target} and deletes them from {@code source} in one batch each.
+     *
+     * @return the devices whose delete found a different version, because they changed after they were read
+     */
+    private List<DeviceDTO> move(DeviceShard source, DeviceShard target, List<DeviceDTO> devices) {
+        target.transactionTemplate().executeWithoutResult(status -> target.jdbcTemplate().batchUpdate(UPSERT_SQL,
+                devices.stream().map(ShardRebalancer::upsertArguments).toList()));
+        int[] deleted = source.transactionTemplate().execute(status -> source.jdbcTemplate().batchUpdate(
+                DELETE_AT_VERSION_SQL,
+                devices.stream().map(device -> new Object[]{device.id(), device.version()}).toList()));
+        List<DeviceDTO> changed = new ArrayList<>();
+        for (int i = 0; i < devices.size(); i++) {
+            if (deleted[i] == 0) {
+                changed.add(devices.get(i));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Repeats the move of one device that changed on {@code source} after {@code copied} was written to
+     * {@code target}. If the device was deleted there instead, the copy is removed, unless it has been changed itself.
+     *
+     * @return whether the device ended up on {@code target}
+     */
+    private boolean moveAgain(DeviceShard source, DeviceShard target, DeviceDTO copied) {
+        DeviceDTO current = copied;
+        for (int attempt = 0; attempt < MAX_MOVE_ATTEMPTS; attempt++) {
+            Optional<DeviceDTO> onSource = source.jdbcTemplate().query("select " + DeviceShard.COLUMNS
+                    + " from device where id = ?", DeviceShard.DEVICE_ROW_MAPPER, current.id()).stream().findFirst();
+            if (onSource.isEmpty()) {
+                target.jdbcTemplate().update(DELETE_AT_VERSION_SQL, current.id(), current.version());
+                return false;
+            }
+            current = onSource.get();
+            target.jdbcTemplate().update(UPSERT_SQL, upsertArguments(current));
+            if (source.jdbcTemplate().update(DELETE_AT_VERSION_SQL, current.id(), current.version()) > 0) {
+                return true;
+            }
+        }
+        log.warn("Device {} kept changing on {} and was left there", copied.id(), source.name());
+        return false;
+    }
+
+    private static Object[] upsertArguments(DeviceDTO device) {
+        return new Object[]{device.id(), device.name(), device.brand(), Device.normalizeBrand(device.brand()),
+                device.creationTime(), device.version(), device.lastModified()};
+    }
+}
@@ -0,0 +1,84 @@
+package com.crud.device.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring over shard positions. Every shard is placed on the ring at {@code virtualNodes} points derived
+ * from its name, and a device belongs to the first point at or after the hash of its id. Adding a shard therefore
+ * only moves the devices that land on the new shard's points, about {@code 1 / (n + 1)} of them, and leaves every
+ * other device where it is.
+ */
+public final class ShardRing {
+    private final NavigableMap<Long, Integer> points = new TreeMap<>();
+    private final int shardCount;
+
+    public ShardRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("A shard ring needs at least one shard and one virtual node per shard");
+        }
+        this.shardCount = shardCount;
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // Ties are vanishingly rare and resolved towards the lower shard, so the ring stays deterministic
+                points.putIfAbsent(hash(shardName(shard) + "#" + node), shard);
+            }
+        }
+    }
+
+    public static String shardName(int shard) {
+        return "shard-" + shard;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public int shardFor(long id) {
+        Map.Entry<Long, Integer> point = points.ceilingEntry(mix(id));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * The fraction of the hash space owned by {@code shard}, which is the share of devices it is expected to hold.
+     */
+    public double share(int shard) {
+        double owned = 0;
+        Long previous = points.lastKey();
+        for (Map.Entry<Long, Integer> point : points.entrySet()) {
+            if (point.getValue() == shard) {
+                // Unsigned distance from the previous point, wrapping around the ring for the first one
+                owned += unsigned(point.getKey() - previous);
+            }
+            previous = point.getKey();
+        }
+        return points.size() == 1 ? 1.0 : owned / Math.pow(2, 64);
+    }
+
+    private static double unsigned(long value) {
+        return value >= 0 ? value : value + Math.pow(2, 64);
+    }
+
+    // 64-bit FNV-1a, finished with the MurmurHash3 mix so similar names still spread over the whole ring
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // MurmurHash3 fmix64: sequential ids end up uniformly spread over the ring
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
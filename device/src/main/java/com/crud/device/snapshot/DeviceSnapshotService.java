@@ -0,0 +1,105 @@
+package com.crud.device.snapshot;
+
+import com.crud.device.dto.DeviceSnapshotDTO;
+import com.crud.device.service.DeviceService;
+import com.crud.device.service.InvalidRequestException;
+import com.crud.device.store.DeviceSnapshotFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports all devices to a {@link DeviceSnapshotFile} and imports one back, both streaming so the heap holds at most
+ * one batch of devices. Files are named relative to {@code device.snapshot.directory} and cannot leave it.
+ * <p>
+ * Exports read through {@link DeviceService#streamAllDevices} and imports write through
+ * {@link DeviceService#importDevices}, so both work with every storage engine. Imports keep the ids of the snapshot,
+ * overwrite devices with the same id and publish an {@code IMPORTED} {@link com.crud.device.event.DeviceChangeEvent}
+ * per device, which the device cache, brand index and change feed follow like any other change.
+ */
+@Service
+@ConditionalOnProperty(name = "device.snapshot.directory")
+public class DeviceSnapshotService {
+    private static final Logger log = LoggerFactory.getLogger(DeviceSnapshotService.class);
+
+    private final Path directory;
+    private final DeviceService deviceService;
+
+    public DeviceSnapshotService(@Value("${device.snapshot.directory}") Path directory,
+                                 DeviceService deviceService) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.deviceService = deviceService;
+    }
+
+    /**
+     * Writes all devices to {@code fileName}, replacing the file only once the snapshot is complete.
+     */
+    public synchronized DeviceSnapshotDTO exportSnapshot(String fileName) throws IOException {
+        Path file = resolve(fileName);
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        DeviceSnapshotFile.Header header;
+        try {
+            header = DeviceSnapshotFile.write(temporary, deviceService::streamAllDevices);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Exported {} devices to {} in {} ms", header.devices(), file, durationMillis);
+        return new DeviceSnapshotDTO(fileName, header.devices(), header.bytes(), durationMillis);
+    }
+
+    /**
+     * Loads the devices of {@code fileName} into the device store. The whole file is checked first, so a
+     * damaged snapshot is rejected before anything is written.
+     */
+    public synchronized DeviceSnapshotDTO importSnapshot(String fileName) throws IOException {
+        Path file = resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new InvalidRequestException("Snapshot not found: " + fileName);
+        }
+        long start = System.nanoTime();
+        DeviceSnapshotFile.Header header;
+        try {
+            header = DeviceSnapshotFile.read(file, device -> {
+            });
+        } catch (IllegalArgumentException e) {
+            // The client named a file that is not a readable snapshot
+            throw new InvalidRequestException(e.getMessage(), e);
+        }
+        try {
+            deviceService.importDevices(header.devices(), devices -> {
+                try {
+                    DeviceSnapshotFile.read(file, devices);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Imported {} devices from {} in {} ms", header.devices(), file, durationMillis);
+        return new DeviceSnapshotDTO(fileName, header.devices(), header.bytes(), durationMillis);
+    }
+
+    private Path resolve(String fileName) {
+        Path file = directory.resolve(fileName).normalize();
+        if (fileName.isBlank() || !directory.equals(file.getParent())) {
+            throw new InvalidRequestException("Snapshot file must be a plain name within the snapshot directory: "
+                    + fileName);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,63 @@
+package com.crud.device.store;
+
+import com.crud.device.model.Device;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interned brand strings. Registries hold few distinct brands, so each device stores a code into this table instead
+ * of its own copy of the brand, and brand searches match the table rather than every device.
+ */
+final class BrandTable {
+    static final int NO_BRAND = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> brands = new ArrayList<>();
+    private final List<String> brandKeys = new ArrayList<>();
+    private final List<SortedIdSet> devices = new ArrayList<>();
+
+    int intern(String brand) {
+        if (brand == null) {
+            return NO_BRAND;
+        }
+        Integer code = codes.get(brand);
+        if (code != null) {
+            return code;
+        }
+        brands.add(brand);
+        brandKeys.add(Device.normalizeBrand(brand));
+        devices.add(new SortedIdSet());
+        codes.put(brand, brands.size() - 1);
+        return brands.size() - 1;
+    }
+
+    String brand(int code) {
+        return code == NO_BRAND ? null : brands.get(code);
+    }
+
+    String brandKey(int code) {
+        return code == NO_BRAND ? null : brandKeys.get(code);
+    }
+
+    /**
+     * Ids of the devices with the brand {@code code}, in ascending order.
+     */
+    SortedIdSet devices(int code) {
+        return devices.get(code);
+    }
+
+    int size() {
+        return brands.size();
+    }
+
+    long heapBytes() {
+        long bytes = 0;
+        for (int code = 0; code < brands.size(); code++) {
+            bytes += devices.get(code).heapBytes() + 2L * brands.get(code).length();
+        }
+        return bytes;
+    }
+}
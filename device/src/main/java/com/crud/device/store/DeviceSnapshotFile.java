@@ -0,0 +1,237 @@
+package com.crud.device.store;
+
+import com.crud.device.dto.DeviceDTO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Portable binary snapshot of the device registry, written and read through memory-mapped windows of the file so
+ * neither direction holds more than one device on the heap.
+ * <p>
+ * The file starts with a header of magic number, format version, device count and the CRC32 of everything after the
+ * header, followed by one length-prefixed record per device: id, version, creation and modification time in
+ * microseconds, then name and brand as UTF-8 with a length of -1 for {@code null}. Readers reject other versions.
+ */
+public final class DeviceSnapshotFile {
+    private static final int MAGIC = 0x44565331; // "DVS1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER = 24;
+    private static final int COUNT_POSITION = 8;
+    private static final int CRC_POSITION = 16;
+    private static final int FIXED_RECORD = 4 * Long.BYTES + 2 * Integer.BYTES;
+    // Bytes mapped at a time; records are never split, a window is remapped before one that does not fit
+    private static final int WINDOW = 64 << 20;
+
+    private DeviceSnapshotFile() {
+    }
+
+    /**
+     * Writes every device {@code devices} hands out to {@code file}, replacing it.
+     *
+     * @return the header of the written file
+     */
+    public static Header write(Path file, Consumer<Consumer<DeviceDTO>> devices) throws IOException {
+        return write(file, devices, WINDOW);
+    }
+
+    // Exposed with a small window for tests of records crossing windows
+    static Header write(Path file, Consumer<Consumer<DeviceDTO>> devices, int windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Window window = new Window(channel, FileChannel.MapMode.READ_WRITE, windowSize);
+            window.ensure(HEADER);
+            window.buffer.position(HEADER);
+            CRC32 crc = new CRC32();
+            long[] count = new long[1];
+            try {
+                devices.accept(device -> {
+                    byte[] name = bytes(device.name());
+                    byte[] brand = bytes(device.brand());
+                    int length = FIXED_RECORD + (name == null ? 0 : name.length) + (brand == null ? 0 : brand.length);
+                    window.ensure(Integer.BYTES + length);
+                    MappedByteBuffer buffer = window.buffer;
+                    int start = buffer.position();
+                    buffer.putInt(length);
+                    buffer.putLong(device.id());
+                    buffer.putLong(device.version() == null ? 0 : device.version());
+                    buffer.putLong(OffHeapDeviceStore.toMicros(device.creationTime()));
+                    buffer.putLong(OffHeapDeviceStore.toMicros(device.lastModified()));
+                    putString(buffer, name);
+                    putString(buffer, brand);
+                    crc.update(buffer.slice(start, buffer.position() - start));
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long size = window.offset + window.buffer.position();
+            window.remap(0, HEADER);
+            Header header = new Header(FORMAT_VERSION, count[0], crc.getValue(), size);
+            window.buffer.putInt(0, MAGIC);
+            window.buffer.putInt(4, FORMAT_VERSION);
+            window.buffer.putLong(COUNT_POSITION, header.devices());
+            window.buffer.putLong(CRC_POSITION, header.crc());
+            window.buffer.force();
+            channel.truncate(size);
+            channel.force(true);
+            return header;
+        }
+    }
+
+    /**
+     * Reads the header of {@code file} without reading the devices.
+     *
+     * @throws IllegalArgumentException if {@code file} is not a snapshot of a supported version
+     */
+    public static Header readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return header(channel, new Window(channel, FileChannel.MapMode.READ_ONLY, WINDOW));
+        }
+    }
+
+    /**
+     * Hands every device of {@code file} to {@code consumer} in file order, and checks the checksum at the end.
+     *
+     * @throws IllegalArgumentException if {@code file} is not a snapshot of a supported version, or is damaged
+     */
+    public static Header read(Path file, Consumer<DeviceDTO> consumer) throws IOException {
+        return read(file, consumer, WINDOW);
+    }
+
+    static Header read(Path file, Consumer<DeviceDTO> consumer, int windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Window window = new Window(channel, FileChannel.MapMode.READ_ONLY, windowSize);
+            Header header = header(channel, window);
+            window.buffer.position(HEADER);
+            CRC32 crc = new CRC32();
+            for (long i = 0; i < header.devices(); i++) {
+                window.ensure(Integer.BYTES);
+                int length = window.buffer.getInt(window.buffer.position());
+                if (length < FIXED_RECORD) {
+                    throw damaged(file);
+                }
+                window.ensure(Integer.BYTES + length);
+                MappedByteBuffer buffer = window.buffer;
+                int start = buffer.position();
+                buffer.position(start + Integer.BYTES);
+                long id = buffer.getLong();
+                long version = buffer.getLong();
+                long created = buffer.getLong();
+                long modified = buffer.getLong();
+                String name = getString(buffer);
+                String brand = getString(buffer);
+                if (buffer.position() - start != Integer.BYTES + length) {
+                    throw damaged(file);
+                }
+                crc.update(buffer.slice(start, Integer.BYTES + length));
+                consumer.accept(new DeviceDTO(id, name, brand, OffHeapDeviceStore.toTimestamp(created), version,
+                        OffHeapDeviceStore.toTimestamp(modified)));
+            }
+            if (crc.getValue() != header.crc() || window.offset + window.buffer.position() != header.bytes()) {
+                throw damaged(file);
+            }
+            return header;
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw damaged(file);
+        }
+    }
+
+    private static Header header(FileChannel channel, Window window) throws IOException {
+        long size = channel.size();
+        if (size < HEADER) {
+            throw new IllegalArgumentException("Not a device snapshot: too short");
+        }
+        window.ensure(HEADER);
+        if (window.buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a device snapshot");
+        }
+        int version = window.buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported device snapshot version " + version
+                    + ", expected " + FORMAT_VERSION);
+        }
+        return new Header(version, window.buffer.getLong(COUNT_POSITION), window.buffer.getLong(CRC_POSITION), size);
+    }
+
+    private static IllegalArgumentException damaged(Path file) {
+        return new IllegalArgumentException("Device snapshot " + file.getFileName() + " is damaged");
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(MappedByteBuffer buffer, byte[] value) {
+        buffer.putInt(value == null ? -1 : value.length);
+        if (value != null) {
+            buffer.put(value);
+        }
+    }
+
+    private static String getString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The fields of the header, and the size of the file.
+     */
+    public record Header(int version, long devices, long crc, long bytes) {
+    }
+
+    /**
+     * The mapped part of the file, moved forward so the next record always fits in it. Writing maps beyond the end,
+     * which grows the file; it is truncated to the written size at the end.
+     */
+    private static final class Window {
+        private final FileChannel channel;
+        private final FileChannel.MapMode mode;
+        private final int size;
+        private MappedByteBuffer buffer;
+        private long offset;
+
+        Window(FileChannel channel, FileChannel.MapMode mode, int size) throws IOException {
+            this.channel = channel;
+            this.mode = mode;
+            this.size = size;
+            remap(0, size);
+        }
+
+        void ensure(int bytes) {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            try {
+                remap(offset + buffer.position(), Math.max(size, bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (buffer.remaining() < bytes) {
+                throw new IndexOutOfBoundsException("Record beyond the end of the snapshot");
+            }
+        }
+
+        void remap(long position, int length) throws IOException {
+            long mapped = mode == FileChannel.MapMode.READ_ONLY ? Math.min(length, channel.size() - position) : length;
+            buffer = channel.map(mode, position, mapped);
+            offset = position;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.crud.device.store;
+
+import com.crud.device.dto.DeviceDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durability of the in-memory store: an append-only log of every change, and snapshots of the whole store that let
+ * older logs be deleted.
+ * <p>
+ * Files are numbered by generation. A snapshot of generation {@code g} holds the state from before anything was
+ * written to the log of generation {@code g}, so recovery loads the newest snapshot and replays the logs of that
+ * generation and later ones. Every record carries its length and a CRC32: a record torn by a crash ends the log,
+ * which is truncated there. Snapshots are written to a temporary file and renamed once complete.
+ */
+public final class DeviceWriteAheadLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(DeviceWriteAheadLog.class);
+    private static final Pattern FILE_NAME = Pattern.compile("(wal|snapshot)-(\\d+)\\.(log|bin)");
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte ID_BLOCK = 3;
+    // Length and CRC32 in front of every record
+    private static final int RECORD_HEADER = 8;
+
+    private final Path directory;
+    private final boolean syncWrites;
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+    private final DataOutputStream payloadOut = new DataOutputStream(payload);
+    private FileChannel channel;
+    private long generation;
+    private long recordsSinceSnapshot;
+
+    /**
+     * Receives the recovered changes in the order they were made.
+     */
+    public interface Replay {
+        void put(DeviceDTO device);
+
+        void delete(long id);
+
+        void reserveIds(long reservedUpTo);
+    }
+
+    public DeviceWriteAheadLog(Path directory, boolean syncWrites) {
+        this.directory = directory;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Replays the newest snapshot and the logs written after it into {@code replay}, then opens the log for appending.
+     */
+    public void recover(Replay replay) throws IOException {
+        Files.createDirectories(directory);
+        long snapshotGeneration = -1;
+        List<Long> logGenerations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+                if (!name.matches()) {
+                    continue;
+                }
+                long fileGeneration = Long.parseLong(name.group(2));
+                if (name.group(1).equals("snapshot")) {
+                    snapshotGeneration = Math.max(snapshotGeneration, fileGeneration);
+                } else {
+                    logGenerations.add(fileGeneration);
+                }
+            }
+        }
+        if (snapshotGeneration >= 0) {
+            Path snapshot = snapshotFile(snapshotGeneration);
+            if (!replay(snapshot, replay)) {
+                throw new IllegalStateException("Device store snapshot is corrupt: " + snapshot);
+            }
+        }
+        generation = Math.max(snapshotGeneration, 0);
+        logGenerations.sort(null);
+        for (long logGeneration : logGenerations) {
+            if (logGeneration >= generation) {
+                replay(logFile(logGeneration), replay);
+                generation = logGeneration;
+            }
+        }
+        deleteBefore(generation);
+        channel = openLog(generation);
+    }
+
+    public void appendPut(DeviceDTO device) {
+        append(out -> {
+            out.writeByte(PUT);
+            writeDevice(out, device);
+        });
+    }
+
+    public void appendDelete(long id) {
+        append(out -> {
+            out.writeByte(DELETE);
+            out.writeLong(id);
+        });
+    }
+
+    public void appendIdBlock(long reservedUpTo) {
+        append(out -> {
+            out.writeByte(ID_BLOCK);
+            out.writeLong(reservedUpTo);
+        });
+    }
+
+    public long recordsSinceSnapshot() {
+        return recordsSinceSnapshot;
+    }
+
+    /**
+     * Switches to the log of the next generation and writes its snapshot: the id reservation and every device
+     * {@code devices} hands out. Callers keep writers out until it returns, so the snapshot matches the point where
+     * the logs were switched. Older logs and snapshots are deleted afterwards.
+     */
+    public void snapshot(long reservedUpTo, Consumer<Consumer<DeviceDTO>> devices) throws IOException {
+        long next = generation + 1;
+        FileChannel nextChannel = openLog(next);
+        channel.force(false);
+        channel.close();
+        channel = nextChannel;
+        generation = next;
+        recordsSinceSnapshot = 0;
+
+        Path temporary = directory.resolve("snapshot-" + next + ".bin.tmp");
+        try (FileChannel snapshot = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(snapshot, out -> {
+                out.writeByte(ID_BLOCK);
+                out.writeLong(reservedUpTo);
+            });
+            devices.accept(device -> write(snapshot, out -> {
+                out.writeByte(PUT);
+                writeDevice(out, device);
+            }));
+            snapshot.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temporary, snapshotFile(next), StandardCopyOption.ATOMIC_MOVE);
+        deleteBefore(next);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private void append(RecordWriter writer) {
+        write(channel, writer);
+        if (syncWrites) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        recordsSinceSnapshot++;
+    }
+
+    private void write(FileChannel target, RecordWriter writer) {
+        try {
+            payload.reset();
+            writer.write(payloadOut);
+            byte[] bytes = payload.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + bytes.length);
+            record.putInt(bytes.length);
+            record.putInt((int) crc.getValue());
+            record.put(bytes);
+            record.flip();
+            while (record.hasRemaining()) {
+                target.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies the records of {@code file} and truncates it after the last intact one.
+     *
+     * @return whether every record was intact
+     */
+    private boolean replay(Path file, Replay replay) throws IOException {
+        long intactBytes = 0;
+        boolean intact = true;
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file));
+             DataInputStream in = new DataInputStream(stream)) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] record;
+                int expectedCrc;
+                try {
+                    expectedCrc = in.readInt();
+                    record = in.readNBytes(length);
+                } catch (EOFException e) {
+                    intact = false;
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if (length < 1 || record.length < length || (int) crc.getValue() != expectedCrc) {
+                    intact = false;
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(record)), replay);
+                intactBytes += RECORD_HEADER + length;
+            }
+        }
+        if (!intact) {
+            log.warn("Device store file {} ends with a torn record, truncating it to {} bytes", file, intactBytes);
+            try (FileChannel truncated = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncated.truncate(intactBytes);
+            }
+        }
+        return intact;
+    }
+
+    private static void apply(DataInputStream record, Replay replay) throws IOException {
+        byte type = record.readByte();
+        switch (type) {
+            case PUT -> replay.put(readDevice(record));
+            case DELETE -> replay.delete(record.readLong());
+            case ID_BLOCK -> replay.reserveIds(record.readLong());
+            default -> throw new IllegalStateException("Unknown device store record type " + type);
+        }
+    }
+
+    private static void writeDevice(DataOutputStream out, DeviceDTO device) throws IOException {
+        out.writeLong(device.id());
+        out.writeLong(device.version());
+        out.writeLong(OffHeapDeviceStore.toMicros(device.creationTime()));
+        out.writeLong(OffHeapDeviceStore.toMicros(device.lastModified()));
+        writeString(out, device.name());
+        writeString(out, device.brand());
+    }
+
+    private static DeviceDTO readDevice(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        long version = in.readLong();
+        long created = in.readLong();
+        long modified = in.readLong();
+        String name = readString(in);
+        String brand = readString(in);
+        return new DeviceDTO(id, name, brand, OffHeapDeviceStore.toTimestamp(created), version,
+                OffHeapDeviceStore.toTimestamp(modified));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        return length < 0 ? null : new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private FileChannel openLog(long logGeneration) throws IOException {
+        return FileChannel.open(logFile(logGeneration), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void deleteBefore(long keptGeneration) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+                if (name.matches() && Long.parseLong(name.group(2)) < keptGeneration) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve("wal-" + logGeneration + ".log");
+    }
+
+    private Path snapshotFile(long snapshotGeneration) {
+        return directory.resolve("snapshot-" + snapshotGeneration + ".bin");
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
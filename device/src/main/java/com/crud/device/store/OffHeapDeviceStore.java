@@ -0,0 +1,344 @@
+package com.crud.device.store;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Devices kept outside the Java heap, in a direct buffer of fixed-layout records located through a primitive
+ * id index, with brands interned in a {@link BrandTable}. Only the id index, the id sets and the brand table live on
+ * the heap, so the garbage collector never scans the devices themselves.
+ * <p>
+ * A record holds the id, version, creation and modification time in microseconds, the brand code and the UTF-8 name
+ * with some spare room, so renames usually fit in place. Records that no longer fit are moved to the end and the
+ * space they left is reclaimed by compaction when the buffer has to grow.
+ * <p>
+ * Not thread-safe: callers serialize writes and keep reads from overlapping them.
+ */
+public final class OffHeapDeviceStore {
+    private static final int ID = 0;
+    private static final int VERSION = 8;
+    private static final int CREATED = 16;
+    private static final int MODIFIED = 24;
+    private static final int BRAND = 32;
+    private static final int NAME_LENGTH = 36;
+    private static final int NAME_CAPACITY = 40;
+    private static final int HEADER = 44;
+    private static final int NO_NAME = -1;
+    // Name bytes are reserved in steps of this size, so small renames fit in place
+    private static final int NAME_ALIGNMENT = 8;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private static final long MICROS_PER_SECOND = 1_000_000;
+
+    private final LongIntHashMap offsets = new LongIntHashMap();
+    private final SortedIdSet ids = new SortedIdSet();
+    private final BrandTable brands = new BrandTable();
+    private ByteBuffer records = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    private int used;
+    private int unusedBytes;
+    private long maxId;
+
+    public DeviceDTO get(long id) {
+        int offset = offsets.get(id);
+        return offset == LongIntHashMap.MISSING ? null : read(offset);
+    }
+
+    public boolean contains(long id) {
+        return offsets.get(id) != LongIntHashMap.MISSING;
+    }
+
+    public long version(long id) {
+        int offset = offsets.get(id);
+        return offset == LongIntHashMap.MISSING ? -1 : records.getLong(offset + VERSION);
+    }
+
+    /**
+     * Inserts {@code device}, or replaces the device with the same id.
+     */
+    public void put(DeviceDTO device) {
+        long id = device.id();
+        byte[] name = device.name() == null ? null : device.name().getBytes(StandardCharsets.UTF_8);
+        int nameLength = name == null ? 0 : name.length;
+        int brand = brands.intern(device.brand());
+        int offset = offsets.get(id);
+        if (offset != LongIntHashMap.MISSING) {
+            int previousBrand = records.getInt(offset + BRAND);
+            if (previousBrand != brand) {
+                if (previousBrand != BrandTable.NO_BRAND) {
+                    brands.devices(previousBrand).remove(id);
+                }
+                if (brand != BrandTable.NO_BRAND) {
+                    brands.devices(brand).add(id);
+                }
+            }
+            if (records.getInt(offset + NAME_CAPACITY) < nameLength) {
+                // Counted as unused only after allocating, a compaction on the way still copies the old record
+                int previousSize = recordSize(offset);
+                offset = allocate(nameLength);
+                offsets.put(id, offset);
+                unusedBytes += previousSize;
+            }
+        } else {
+            offset = allocate(nameLength);
+            offsets.put(id, offset);
+            ids.add(id);
+            if (brand != BrandTable.NO_BRAND) {
+                brands.devices(brand).add(id);
+            }
+            maxId = Math.max(maxId, id);
+        }
+        records.putLong(offset + ID, id);
+        records.putLong(offset + VERSION, device.version() == null ? 0 : device.version());
+        records.putLong(offset + CREATED, toMicros(device.creationTime()));
+        records.putLong(offset + MODIFIED, toMicros(device.lastModified()));
+        records.putInt(offset + BRAND, brand);
+        records.putInt(offset + NAME_LENGTH, name == null ? NO_NAME : name.length);
+        if (name != null) {
+            records.put(offset + HEADER, name);
+        }
+    }
+
+    public boolean remove(long id) {
+        int offset = offsets.remove(id);
+        if (offset == LongIntHashMap.MISSING) {
+            return false;
+        }
+        ids.remove(id);
+        int brand = records.getInt(offset + BRAND);
+        if (brand != BrandTable.NO_BRAND) {
+            brands.devices(brand).remove(id);
+        }
+        unusedBytes += recordSize(offset);
+        return true;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    // The largest id ever stored, including since removed ones
+    public long maxId() {
+        return maxId;
+    }
+
+    public long offHeapBytes() {
+        return records.capacity();
+    }
+
+    public long heapBytes() {
+        return offsets.heapBytes() + ids.heapBytes() + brands.heapBytes();
+    }
+
+    public List<DeviceDTO> page(long afterId, int limit) {
+        List<DeviceDTO> page = new ArrayList<>(Math.min(limit, ids.size()));
+        for (int i = ids.indexAfter(afterId); i < ids.size() && page.size() < limit; i++) {
+            page.add(get(ids.get(i)));
+        }
+        return page;
+    }
+
+    public void forEach(Consumer<DeviceDTO> consumer) {
+        for (int i = 0; i < ids.size(); i++) {
+            consumer.accept(get(ids.get(i)));
+        }
+    }
+
+    /**
+     * Devices whose brand, as entered, matches {@code brandMatches}, in id order after {@code afterId}. The brand
+     * table is matched once and the id sets of the matching brands are merged.
+     */
+    public List<DeviceDTO> findByBrand(Predicate<String> brandMatches, long afterId, int limit) {
+        PriorityQueue<long[]> heads = new PriorityQueue<>(Comparator.comparingLong(head -> head[0]));
+        for (int code = 0; code < brands.size(); code++) {
+            SortedIdSet brandIds = brands.devices(code);
+            int index = brandIds.indexAfter(afterId);
+            if (index < brandIds.size() && brandMatches.test(brands.brand(code))) {
+                heads.add(new long[]{brandIds.get(index), code, index});
+            }
+        }
+        List<DeviceDTO> devices = new ArrayList<>();
+        while (!heads.isEmpty() && devices.size() < limit) {
+            long[] head = heads.poll();
+            devices.add(get(head[0]));
+            SortedIdSet brandIds = brands.devices((int) head[1]);
+            int next = (int) head[2] + 1;
+            if (next < brandIds.size()) {
+                heads.add(new long[]{brandIds.get(next), head[1], next});
+            }
+        }
+        return devices;
+    }
+
+    public long countByBrand(Predicate<String> brandMatches) {
+        long count = 0;
+        for (int code = 0; code < brands.size(); code++) {
+            if (brands.devices(code).size() > 0 && brandMatches.test(brands.brand(code))) {
+                count += brands.devices(code).size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Devices created in {@code [from, to)} after the keyset position {@code (afterTime, afterId)}, ordered by creation
+     * time and id. There is no creation time index, so every record is checked.
+     */
+    public List<DeviceDTO> findCreatedBetween(Date from, Date to, Date afterTime, long afterId, int limit) {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        long afterMicros = afterTime == null ? Long.MIN_VALUE : toMicros(afterTime);
+        List<long[]> matches = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            long id = ids.get(i);
+            long created = records.getLong(offsets.get(id) + CREATED);
+            if (created >= fromMicros && created < toMicros
+                    && (created > afterMicros || (created == afterMicros && id > afterId))) {
+                matches.add(new long[]{created, id});
+            }
+        }
+        matches.sort(Comparator.<long[]>comparingLong(match -> match[0]).thenComparingLong(match -> match[1]));
+        List<DeviceDTO> devices = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            devices.add(get(matches.get(i)[1]));
+        }
+        return devices;
+    }
+
+    /**
+     * The first {@code limit} devices in {@code order} that pass {@code matches}. There are no secondary indexes, so
+     * every record is checked, and only the best {@code limit} are kept while doing so.
+     */
+    public List<DeviceDTO> find(Predicate<DeviceDTO> matches, Comparator<DeviceDTO> order, int limit) {
+        PriorityQueue<DeviceDTO> best = new PriorityQueue<>(order.reversed());
+        for (int i = 0; i < ids.size(); i++) {
+            DeviceDTO device = read(offsets.get(ids.get(i)));
+            if (matches.test(device)) {
+                best.add(device);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<DeviceDTO> devices = new ArrayList<>(best);
+        devices.sort(order);
+        return devices;
+    }
+
+    /**
+     * Counts the devices created in {@code [from, to)} per normalized brand and day in {@code zone}, ordered like the
+     * repository query.
+     */
+    public List<DeviceDailyCountDTO> countByBrandAndDay(Date from, Date to, ZoneId zone) {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        Map<DailyKey, Long> counts = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            int offset = offsets.get(ids.get(i));
+            long created = records.getLong(offset + CREATED);
+            if (created >= fromMicros && created < toMicros) {
+                LocalDate day = LocalDate.ofInstant(toTimestamp(created).toInstant(), zone);
+                counts.merge(new DailyKey(day, brands.brandKey(records.getInt(offset + BRAND))), 1L, Long::sum);
+            }
+        }
+        return counts.entrySet().stream()
+                .map(count -> new DeviceDailyCountDTO(count.getKey().brandKey(), count.getKey().day(), count.getValue()))
+                .sorted(Comparator.comparing(DeviceDailyCountDTO::day)
+                        .thenComparing(DeviceDailyCountDTO::brand, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .toList();
+    }
+
+    private DeviceDTO read(int offset) {
+        int nameLength = records.getInt(offset + NAME_LENGTH);
+        String name = null;
+        if (nameLength != NO_NAME) {
+            byte[] bytes = new byte[nameLength];
+            records.get(offset + HEADER, bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new DeviceDTO(
+                records.getLong(offset + ID),
+                name,
+                brands.brand(records.getInt(offset + BRAND)),
+                toTimestamp(records.getLong(offset + CREATED)),
+                records.getLong(offset + VERSION),
+                toTimestamp(records.getLong(offset + MODIFIED)));
+    }
+
+    private int recordSize(int offset) {
+        return HEADER + records.getInt(offset + NAME_CAPACITY);
+    }
+
+    private int allocate(int nameLength) {
+        int capacity = (nameLength + NAME_ALIGNMENT - 1) / NAME_ALIGNMENT * NAME_ALIGNMENT;
+        int size = HEADER + capacity;
+        if (used + size > records.capacity()) {
+            makeRoom(size);
+        }
+        int offset = used;
+        records.putInt(offset + NAME_CAPACITY, capacity);
+        used += size;
+        return offset;
+    }
+
+    /**
+     * Compacts the records when at least half of the buffer is unused, and otherwise moves them to a buffer twice
+     * the size.
+     */
+    private void makeRoom(int size) {
+        long live = (long) used - unusedBytes;
+        long capacity = records.capacity();
+        while (live + size > capacity / 2) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("In-memory device store is full: " + used + " bytes");
+        }
+        ByteBuffer compacted = ByteBuffer.allocateDirect((int) capacity);
+        int position = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            long id = ids.get(i);
+            int offset = offsets.get(id);
+            int recordSize = recordSize(offset);
+            compacted.put(position, records, offset, recordSize);
+            offsets.put(id, position);
+            position += recordSize;
+        }
+        records = compacted;
+        used = position;
+        unusedBytes = 0;
+    }
+
+    static long toMicros(Date date) {
+        Instant instant = date.toInstant();
+        return instant.getEpochSecond() * MICROS_PER_SECOND + instant.getNano() / 1000;
+    }
+
+    // A Timestamp keeps the microseconds, like the timestamps Hibernate reads from the creation_time column
+    static Timestamp toTimestamp(long micros) {
+        return Timestamp.from(Instant.ofEpochSecond(Math.floorDiv(micros, MICROS_PER_SECOND),
+                Math.floorMod(micros, MICROS_PER_SECOND) * 1000));
+    }
+
+    // Exposed for tests of the growth and compaction paths
+    int capacity() {
+        return records.capacity();
+    }
+
+    private record DailyKey(LocalDate day, String brandKey) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.crud.device.store;
+
+import java.util.Arrays;
+
+/**
+ * Ascending set of ids on a primitive array. New ids are usually the largest so far and are appended; removals shift
+ * the tail, which is fine for the registry sizes the in-memory store is meant for.
+ */
+final class SortedIdSet {
+    private long[] ids = new long[16];
+    private int size;
+
+    void add(long id) {
+        if (size > 0 && id <= ids[size - 1]) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            insertAt(-index - 1, id);
+            return;
+        }
+        insertAt(size, id);
+    }
+
+    boolean remove(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Position of the first id greater than {@code afterId}.
+     */
+    int indexAfter(long afterId) {
+        int index = Arrays.binarySearch(ids, 0, size, afterId);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    long get(int index) {
+        return ids[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long heapBytes() {
+        return (long) ids.length * Long.BYTES;
+    }
+
+    private void insertAt(int index, long id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = id;
+        size++;
+    }
+}
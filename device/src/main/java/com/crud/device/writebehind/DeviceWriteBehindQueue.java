@@ -0,0 +1,338 @@
+package com.crud.device.writebehind;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.WriteBehindDeadLetterDTO;
+import com.crud.device.dto.WriteBehindStatusDTO;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.repository.DeviceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind path for device creation, enabled with {@code device.write-behind.enabled=true}.
+ * <p>
+ * {@link #enqueue} assigns the id and timestamps straight away, from blocks reserved on {@code device_seq} just like
+ * Hibernate's pooled generator, and hands the device to a bounded queue. A single writer thread takes everything that
+ * accumulated while it wrote the previous batch, up to {@code device.write-behind.batch-size} devices, and inserts it
+ * through {@link DeviceRepository#insertAll} as one JDBC batch in one transaction, then publishes the
+ * {@link DeviceChangeEvent}s. Batches therefore grow with the arrival rate without delaying devices that arrive alone.
+ * Until it is written a device can be read through {@link #findPending}, and changes to it should
+ * {@link #awaitWritten} first.
+ * <p>
+ * A full queue rejects new devices with {@link WriteBehindFullException} instead of blocking the caller. Batches that
+ * fail because the database is unavailable are retried. A batch that fails for any other reason is written again one
+ * device at a time, and the devices that still fail are kept as dead letters, up to
+ * {@code device.write-behind.dead-letter-capacity}, until {@link #retryDeadLetters} queues them again. On shutdown the
+ * queue stops accepting and the writer drains it for up to {@code device.write-behind.drain-timeout}.
+ * <p>
+ * Only the JPA engine writes through the queue, so it is not created with the {@code memory} engine or sharding.
+ */
+@Component
+@ConditionalOnExpression("${device.write-behind.enabled:false} and '${device.store.engine:jpa}' != 'memory'"
+        + " and '${device.sharding.shard-urls:}' == ''")
+public class DeviceWriteBehindQueue implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(DeviceWriteBehindQueue.class);
+    // Matches allocationSize of the device_seq generator on Device
+    private static final int ID_BLOCK_SIZE = 50;
+    private static final long RETRY_BACKOFF_MILLIS = 500;
+    // How often an idle writer checks for shutdown
+    private static final long POLL_MILLIS = 100;
+
+    private final BlockingQueue<Pending> queue;
+    private final Map<Long, DeviceDTO> pending = new ConcurrentHashMap<>();
+    private final Map<Long, WriteBehindDeadLetterDTO> deadLetters = new ConcurrentSkipListMap<>();
+    private final DeviceRepository deviceRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration drainTimeout;
+    private final int deadLetterCapacity;
+    private final Object written = new Object();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushedDevices = new AtomicLong();
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong droppedDevices = new AtomicLong();
+    private long nextId = 1;
+    private long maxId = 0;
+    private volatile long lastFlushLagMillis;
+    private volatile boolean accepting;
+    private volatile boolean running;
+    private Thread writer;
+
+    public DeviceWriteBehindQueue(DeviceRepository deviceRepository,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${device.write-behind.capacity:10000}") int capacity,
+                                  @Value("${device.write-behind.batch-size:500}") int batchSize,
+                                  @Value("${device.write-behind.drain-timeout:30s}") Duration drainTimeout,
+                                  @Value("${device.write-behind.dead-letter-capacity:10000}") int deadLetterCapacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.deviceRepository = deviceRepository;
+        this.eventPublisher = eventPublisher;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.drainTimeout = drainTimeout;
+        this.deadLetterCapacity = deadLetterCapacity;
+    }
+
+    /**
+     * Accepts a new device for writing and returns it as it will be stored, with its id, creation time and version.
+     *
+     * @throws WriteBehindFullException if the queue is full or shutting down
+     */
+    public DeviceDTO enqueue(DeviceDTO deviceDTO) {
+        if (!accepting) {
+            rejected.incrementAndGet();
+            throw new WriteBehindFullException("Write-behind queue is not accepting devices");
+        }
+        Date now = new Date();
+        DeviceDTO device = new DeviceDTO(nextId(), deviceDTO.name(), deviceDTO.brand(), now, 0L, now);
+        // Readable before it is queued, so the writer can never remove it first
+        pending.put(device.id(), device);
+        if (!queue.offer(new Pending(device, System.nanoTime()))) {
+            pending.remove(device.id());
+            rejected.incrementAndGet();
+            throw new WriteBehindFullException("Write-behind queue is full (" + capacity + " devices)");
+        }
+        accepted.incrementAndGet();
+        return device;
+    }
+
+    public Optional<DeviceDTO> findPending(Long id) {
+        return Optional.ofNullable(pending.get(id));
+    }
+
+    /**
+     * Waits until the device with {@code id} has been written, if it is still queued, for at most the drain timeout.
+     */
+    public void awaitWritten(Long id) {
+        if (!pending.containsKey(id)) {
+            return;
+        }
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        synchronized (written) {
+            long remaining;
+            while (pending.containsKey(id) && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(written, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public WriteBehindStatusDTO status() {
+        Pending oldest = queue.peek();
+        long oldestAgeMillis = oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.acceptedNanos());
+        return new WriteBehindStatusDTO(true, queue.size(), capacity, accepted.get(), rejected.get(),
+                flushedDevices.get(), flushedBatches.get(), failedBatches.get(), deadLetters.size(),
+                droppedDevices.get(), oldestAgeMillis, lastFlushLagMillis);
+    }
+
+    /**
+     * The devices that were accepted but could not be written, oldest id first.
+     */
+    public List<WriteBehindDeadLetterDTO> deadLetters() {
+        return List.copyOf(deadLetters.values());
+    }
+
+    /**
+     * Queues the dead letters again with the ids they were given, as many as the queue has room for.
+     *
+     * @return the number of devices queued again
+     */
+    public int retryDeadLetters() {
+        int queued = 0;
+        for (WriteBehindDeadLetterDTO deadLetter : deadLetters.values()) {
+            DeviceDTO device = deadLetter.device();
+            pending.put(device.id(), device);
+            if (!accepting || !queue.offer(new Pending(device, System.nanoTime()))) {
+                pending.remove(device.id());
+                break;
+            }
+            deadLetters.remove(device.id());
+            queued++;
+        }
+        return queued;
+    }
+
+    /**
+     * Skips the ids up to {@code id} left in the block of {@code device_seq} this queue holds, after devices were
+     * written with ids of their own.
+     */
+    public synchronized void skipIdsPast(long id) {
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        accepting = true;
+        writer = Thread.ofPlatform().name("device-write-behind").start(this::writeLoop);
+    }
+
+    @Override
+    public void stop() {
+        accepting = false;
+        running = false;
+        try {
+            writer.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            writer.interrupt();
+        }
+        // Whole devices, one line each, so they can be written again from the log once the process is gone
+        if (!queue.isEmpty()) {
+            log.error("Write-behind queue stopped with {} devices not written", queue.size());
+            queue.forEach(entry -> log.error("Write-behind device not written: {}", entry.device()));
+        }
+        if (!deadLetters.isEmpty()) {
+            log.error("Write-behind queue stopped with {} dead letters not written", deadLetters.size());
+            deadLetters.values().forEach(deadLetter -> log.error("Write-behind dead letter not written: {},"
+                    + " failed at {}: {}", deadLetter.device(), deadLetter.failedAt(), deadLetter.error()));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stop after the web server, so requests still in flight can enqueue, and before the data source is closed
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        long drainDeadline = Long.MAX_VALUE;
+        while (running || !queue.isEmpty()) {
+            if (!running && drainDeadline == Long.MAX_VALUE) {
+                drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+            }
+            try {
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch, drainDeadline);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch, long drainDeadline) throws InterruptedException {
+        List<Pending> written = batch;
+        try {
+            insert(batch, drainDeadline);
+        } catch (RuntimeException e) {
+            // Most likely one device the database refuses, which must not take the rest of the batch with it
+            failedBatches.incrementAndGet();
+            log.warn("Write-behind batch of {} devices failed, writing them one at a time", batch.size(), e);
+            written = new ArrayList<>(batch.size());
+            for (Pending entry : batch) {
+                try {
+                    insert(List.of(entry), drainDeadline);
+                    written.add(entry);
+                } catch (RuntimeException single) {
+                    deadLetter(entry.device(), single);
+                }
+            }
+        }
+        for (Pending entry : written) {
+            eventPublisher.publishEvent(DeviceChangeEvent.created(entry.device()));
+        }
+        if (!written.isEmpty()) {
+            lastFlushLagMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - written.get(0).acceptedNanos());
+            flushedDevices.addAndGet(written.size());
+            flushedBatches.incrementAndGet();
+        }
+        release(batch);
+    }
+
+    // Retries while the database is unavailable, on shutdown only until the drain deadline
+    private void insert(List<Pending> entries, long drainDeadline) throws InterruptedException {
+        List<DeviceDTO> devices = entries.stream().map(Pending::device).toList();
+        while (true) {
+            try {
+                deviceRepository.insertAll(devices);
+                return;
+            } catch (TransientDataAccessException | DataAccessResourceFailureException | CannotCreateTransactionException e) {
+                if (System.nanoTime() > drainDeadline) {
+                    throw e;
+                }
+                log.warn("Write-behind batch of {} devices failed, retrying", devices.size(), e);
+                Thread.sleep(RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void deadLetter(DeviceDTO device, RuntimeException cause) {
+        if (deadLetters.size() >= deadLetterCapacity) {
+            log.error("Write-behind device {} dropped, the dead letters are full", device.id(), cause);
+            droppedDevices.incrementAndGet();
+            return;
+        }
+        log.error("Write-behind device {} could not be written, kept as a dead letter", device.id(), cause);
+        deadLetters.put(device.id(), new WriteBehindDeadLetterDTO(device, cause.getMessage(), Instant.now()));
+    }
+
+    private void release(List<Pending> batch) {
+        for (Pending entry : batch) {
+            pending.remove(entry.device().id());
+        }
+        synchronized (written) {
+            written.notifyAll();
+        }
+    }
+
+    /**
+     * Takes ids from blocks of {@code device_seq}. For a sequence value {@code S} Hibernate's pooled optimizer uses
+     * {@code [S - 49, S]}, so reserving the same range never collides with ids assigned by JPA.
+     */
+    private synchronized long nextId() {
+        if (nextId > maxId) {
+            long sequenceValue = deviceRepository.nextSequenceValue();
+            maxId = sequenceValue;
+            nextId = Math.max(1, sequenceValue - ID_BLOCK_SIZE + 1);
+        }
+        return nextId++;
+    }
+
+    private record Pending(DeviceDTO device, long acceptedNanos) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.crud.device.writebehind;
+
+/**
+ * The write-behind queue has no room for another device, so the client has to retry later.
+ */
+public class WriteBehindFullException extends RuntimeException {
+
+    public WriteBehindFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+-- The device table as mapped by com.crud.device.model.Device, with the indexes declared in its @Table
+create sequence device_seq start with 1 increment by 50;
+
+create table device (
+    id bigint not null,
+    brand varchar(255),
+    brand_key varchar(255),
+    creation_time timestamp(6),
+    last_modified timestamp(6),
+    name varchar(255),
+    version bigint,
+    primary key (id)
+);
+
+create index idx_device_brand_key on device (brand_key, id);
+create index idx_device_creation_time on device (creation_time, id);
+create index idx_device_name on device (name, id);
+create index idx_device_last_modified on device (last_modified, id);
+create index idx_device_brand_key_name on device (brand_key, name, id);
+create index idx_device_brand_key_creation_time on device (brand_key, creation_time, id);
@@ -0,0 +1,9 @@
+-- Bumped by writers that can leave the device count and the latest last_modified where they were, such as snapshot
+-- imports, so the collection ETags still change
+create table device_revision (
+    id integer not null,
+    revision bigint not null,
+    primary key (id)
+);
+
+insert into device_revision (id, revision) values (1, 0);
@@ -0,0 +1,149 @@
+package com.crud.device.admission;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "device.admission.enabled=true",
+        "device.admission.rate-per-second=100",
+        "device.admission.burst=100",
+        "device.admission.endpoint-limits=GET /api/devices/search=0.1:2",
+        "device.admission.trusted-proxies=127.0.0.1"
+})
+@AutoConfigureMockMvc
+class AdmissionControlTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void clientOverItsEndpointLimitShouldGet429WithoutAffectingOthers() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(get("/api/devices/search").param("brand", "Apple").header("X-Client-Id", "greedy"))
+                    .andExpect(status().isOk());
+        }
+        mvc.perform(get("/api/devices/search").param("brand", "Apple").header("X-Client-Id", "greedy"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+
+        // Other endpoints and other clients keep their own buckets
+        mvc.perform(get("/api/devices").header("X-Client-Id", "greedy")).andExpect(status().isOk());
+        mvc.perform(get("/api/devices/search").param("brand", "Apple").header("X-Client-Id", "polite"))
+                .andExpect(status().isOk());
+        assertEquals(1, registry.get("device.admission.rejected")
+                .tag("endpoint", "GET /api/devices/search").tag("reason", "rate-limit").counter().count());
+    }
+
+    @Test
+    void bucketShouldRefillAtTheConfiguredRate() {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = nanos::get;
+        ClientRateLimiter limiter = new ClientRateLimiter(new ClientRateLimiter.Limit(10, 3),
+                Map.of("GET /api/devices", new ClientRateLimiter.Limit(1, 1)), 100, ticker);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("client", "GET /api/devices/{id}"));
+        }
+        assertEquals(Duration.ofMillis(100).toNanos(), limiter.tryAcquire("client", "GET /api/devices/{id}"));
+        nanos.addAndGet(Duration.ofMillis(100).toNanos());
+        assertEquals(0, limiter.tryAcquire("client", "GET /api/devices/{id}"));
+        assertTrue(limiter.tryAcquire("client", "GET /api/devices/{id}") > 0);
+
+        assertEquals(0, limiter.tryAcquire("client", "GET /api/devices"));
+        assertEquals(Duration.ofSeconds(1).toNanos(), limiter.tryAcquire("client", "GET /api/devices"));
+    }
+
+    @Test
+    void requestsBeyondTheConcurrencyLimitShouldBeShedUntilOneCompletes() {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        ClientRateLimiter limiter = new ClientRateLimiter(new ClientRateLimiter.Limit(1000, 1000), Map.of(), 100);
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(limiter, 1, Set.of(), meters);
+        MockHttpServletRequest first = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(first, response, null));
+        assertThrows(ServerOverloadedException.class, () -> interceptor.preHandle(request(), response, null));
+        assertEquals(1, meters.get("device.admission.in-flight").gauge().value());
+
+        interceptor.afterCompletion(first, response, null, null);
+        assertTrue(interceptor.preHandle(request(), response, null));
+        assertEquals(1, meters.get("device.admission.rejected").tag("reason", "concurrency").counter().count());
+    }
+
+    @Test
+    void requestShedForConcurrencyShouldNotUseUpItsClientsRate() {
+        ClientRateLimiter limiter = new ClientRateLimiter(new ClientRateLimiter.Limit(1000, 1000),
+                Map.of("GET /api/devices/{id}", new ClientRateLimiter.Limit(0.1, 1)), 100);
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(limiter, 1, Set.of(),
+                new SimpleMeterRegistry());
+        MockHttpServletRequest first = request("10.0.0.1", null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(first, response, null));
+        assertThrows(ServerOverloadedException.class,
+                () -> interceptor.preHandle(request("10.0.0.2", null), response, null));
+        interceptor.afterCompletion(first, response, null, null);
+
+        assertTrue(interceptor.preHandle(request("10.0.0.2", null), response, null));
+    }
+
+    @Test
+    void clientIdHeaderShouldOnlyBeBelievedFromTrustedProxies() {
+        ClientRateLimiter limiter = new ClientRateLimiter(new ClientRateLimiter.Limit(1000, 1000),
+                Map.of("GET /api/devices/{id}", new ClientRateLimiter.Limit(0.1, 1)), 100);
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(limiter, 100, Set.of("10.0.0.9"),
+                new SimpleMeterRegistry());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(request("10.0.0.1", "first"), response, null));
+        assertThrows(RateLimitExceededException.class,
+                () -> interceptor.preHandle(request("10.0.0.1", "second"), response, null));
+
+        assertTrue(interceptor.preHandle(request("10.0.0.9", "first"), response, null));
+        assertTrue(interceptor.preHandle(request("10.0.0.9", "second"), response, null));
+        // Nor can a forwarded id take over the bucket of an address
+        assertTrue(interceptor.preHandle(request("10.0.0.9", "10.0.0.1"), response, null));
+
+        MockHttpServletRequest authenticated = request("10.0.0.1", null);
+        authenticated.setUserPrincipal(() -> "alice");
+        assertTrue(interceptor.preHandle(authenticated, response, null));
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/devices/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/devices/{id}");
+        return request;
+    }
+
+    private static MockHttpServletRequest request(String remoteAddress, String clientId) {
+        MockHttpServletRequest request = request();
+        request.setRemoteAddr(remoteAddress);
+        if (clientId != null) {
+            request.addHeader("X-Client-Id", clientId);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,86 @@
+package com.crud.device.cache;
+
+import com.crud.device.dto.CacheStatsDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.event.DeviceChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaffeineDeviceCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private CaffeineDeviceCache deviceCache;
+
+    @BeforeEach
+    void setUp() {
+        deviceCache = new CaffeineDeviceCache(100, Duration.ofMinutes(10), Duration.ofSeconds(30), nanos::get);
+    }
+
+    @Test
+    void get_ShouldLoadOnceAndServeHitsFromCache() {
+        Function<Long, Optional<DeviceDTO>> loader = countingLoader(Optional.of(new DeviceDTO(1L, "Phone", "Apple", null)));
+
+        assertEquals("Phone", deviceCache.get(1L, loader).orElseThrow().name());
+        assertEquals("Phone", deviceCache.get(1L, loader).orElseThrow().name());
+
+        assertEquals(1, loads.get());
+        CacheStatsDTO stats = deviceCache.stats();
+        assertTrue(stats.enabled());
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void get_ShouldCacheUnknownIdsForNegativeTtlOnly() {
+        Function<Long, Optional<DeviceDTO>> loader = countingLoader(Optional.empty());
+
+        assertTrue(deviceCache.get(404L, loader).isEmpty());
+        assertTrue(deviceCache.get(404L, loader).isEmpty());
+        assertEquals(1, loads.get());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertTrue(deviceCache.get(404L, loader).isEmpty());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_ShouldExpireDevicesAfterTtl() {
+        Function<Long, Optional<DeviceDTO>> loader = countingLoader(Optional.of(new DeviceDTO(1L, "Phone", "Apple", null)));
+
+        deviceCache.get(1L, loader);
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        deviceCache.get(1L, loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void onDeviceChange_ShouldInvalidateChangedDevice() {
+        deviceCache.get(1L, countingLoader(Optional.of(new DeviceDTO(1L, "Phone", "Apple", null))));
+        deviceCache.get(2L, countingLoader(Optional.empty()));
+
+        deviceCache.onDeviceChange(DeviceChangeEvent.updated(new DeviceDTO(1L, "Mac", "Apple", null)));
+        deviceCache.onDeviceChange(DeviceChangeEvent.created(new DeviceDTO(2L, "TV", "Samsung", null)));
+
+        assertEquals("Mac", deviceCache.get(1L, id -> Optional.of(new DeviceDTO(1L, "Mac", "Apple", null))).orElseThrow().name());
+        assertTrue(deviceCache.get(2L, id -> Optional.of(new DeviceDTO(2L, "TV", "Samsung", null))).isPresent());
+    }
+
+    private Function<Long, Optional<DeviceDTO>> countingLoader(Optional<DeviceDTO> result) {
+        return id -> {
+            loads.incrementAndGet();
+            return result;
+        };
+    }
+}
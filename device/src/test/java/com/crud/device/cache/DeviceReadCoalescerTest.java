@@ -0,0 +1,161 @@
+package com.crud.device.cache;
+
+import com.crud.device.event.DeviceChangeEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceReadCoalescerTest {
+
+    private final AtomicInteger reads = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SimpleMeterRegistry registry;
+    private DeviceReadCoalescer coalescer;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        coalescer = new DeviceReadCoalescer(registry, true);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.close();
+    }
+
+    @Test
+    void concurrentIdenticalReads_ShouldShareOneExecution() throws Exception {
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(executor.submit(() -> coalescer.coalesce("search", "apple", blockingRead(List.of("Phone")))));
+        }
+        awaitCount("coalesced", 9);
+        release.countDown();
+
+        List<String> first = results.getFirst().get(5, TimeUnit.SECONDS);
+        for (Future<List<String>> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, reads.get());
+        assertEquals(1, count("executed"));
+    }
+
+    @Test
+    void readsStartedAfterChange_ShouldNotJoinEarlierRead() throws Exception {
+        Future<String> before = executor.submit(() -> coalescer.coalesceById("get", 1L, blockingRead("before")));
+        awaitCount("executed", 1);
+
+        coalescer.onDeviceChange(DeviceChangeEvent.deleted(1L));
+        String after = coalescer.coalesceById("get", 1L, () -> "after");
+        release.countDown();
+
+        assertEquals("after", after);
+        assertEquals("before", before.get(5, TimeUnit.SECONDS));
+        assertEquals(0, count("coalesced"));
+    }
+
+    @Test
+    void readsBoundForThePrimary_ShouldNotJoinReplicaRead() throws Exception {
+        AtomicBoolean primary = new AtomicBoolean();
+        DeviceReadCoalescer routed = new DeviceReadCoalescer(registry, true, primary::get);
+        Future<String> replicaRead = executor.submit(() -> routed.coalesce("search", "apple", blockingRead("replica")));
+        awaitCount("executed", 1);
+
+        primary.set(true);
+        String primaryRead = routed.coalesce("search", "apple", () -> "primary");
+        release.countDown();
+
+        assertEquals("primary", primaryRead);
+        assertEquals("replica", replicaRead.get(5, TimeUnit.SECONDS));
+        assertEquals(0, count("coalesced"));
+    }
+
+    @Test
+    void changeToOtherDevice_ShouldNotSplitReadsById() throws Exception {
+        Future<String> leader = executor.submit(() -> coalescer.coalesceById("get", 1L, blockingRead("device")));
+        awaitCount("executed", 1);
+
+        coalescer.onDeviceChange(DeviceChangeEvent.deleted(2L));
+        Future<String> follower = executor.submit(() -> coalescer.coalesceById("get", 1L, () -> "separate"));
+        awaitCount("coalesced", 1);
+        release.countDown();
+
+        assertEquals("device", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("device", follower.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failure_ShouldReachEveryWaitingCaller() throws Exception {
+        Future<Object> leader = executor.submit(() -> coalescer.coalesce("search", "apple", () -> {
+            await();
+            throw new IllegalStateException("boom");
+        }));
+        awaitCount("executed", 1);
+        Future<Object> follower = executor.submit(() -> coalescer.coalesce("search", "apple", () -> "unused"));
+        awaitCount("coalesced", 1);
+        release.countDown();
+
+        Exception leaderFailure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        Exception followerFailure = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, leaderFailure.getCause());
+        assertInstanceOf(IllegalStateException.class, followerFailure.getCause());
+        assertEquals("unused", coalescer.coalesce("search", "apple", () -> "unused"));
+    }
+
+    @Test
+    void disabledCoalescer_ShouldRunEveryRead() {
+        DeviceReadCoalescer disabled = new DeviceReadCoalescer(registry, false);
+
+        disabled.coalesce("search", "apple", () -> reads.incrementAndGet());
+        disabled.coalesce("search", "apple", () -> reads.incrementAndGet());
+
+        assertEquals(2, reads.get());
+    }
+
+    private <V> Supplier<V> blockingRead(V result) {
+        return () -> {
+            reads.incrementAndGet();
+            await();
+            return result;
+        };
+    }
+
+    private void await() {
+        try {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double count(String outcome) {
+        return registry.find("device.coalescing").tag("outcome", outcome).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private void awaitCount(String outcome, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count(outcome) < expected) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + expected + " " + outcome + " reads");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.crud.device.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FairAdmissionDataSourceTest {
+
+    private DataSource pool;
+    private FairAdmissionDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        dataSource = new FairAdmissionDataSource(pool, 2, 50);
+    }
+
+    @Test
+    void getConnection_ShouldFailFast_WhenAllPermitsAreHeld() throws SQLException {
+        dataSource.getConnection();
+        dataSource.getConnection();
+
+        assertEquals(0, dataSource.availablePermits());
+        assertThrows(ConnectionPoolExhaustedException.class, () -> dataSource.getConnection());
+        verify(pool, times(2)).getConnection();
+    }
+
+    @Test
+    void close_ShouldReleasePermitExactlyOnce() throws SQLException {
+        Connection connection = dataSource.getConnection();
+
+        connection.close();
+        connection.close();
+
+        assertEquals(2, dataSource.availablePermits());
+    }
+
+    @Test
+    void getConnection_ShouldReleasePermit_WhenPoolFails() throws SQLException {
+        when(pool.getConnection()).thenThrow(new SQLException("pool closed"));
+
+        assertThrows(SQLException.class, () -> dataSource.getConnection());
+        assertEquals(2, dataSource.availablePermits());
+    }
+}
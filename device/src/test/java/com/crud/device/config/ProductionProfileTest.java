@@ -0,0 +1,117 @@
+package com.crud.device.config;
+
+import com.crud.device.dto.DeviceChangeDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.feed.DeviceChangeFeed;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.service.DeviceService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "device.datastore.path=./target/production-profile-test/${random.uuid}/devices")
+@ActiveProfiles("production")
+class ProductionProfileTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Value("${spring.jpa.open-in-view}")
+    private boolean openInView;
+
+    @Value("${spring.jpa.hibernate.ddl-auto}")
+    private String ddlAuto;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private DeviceChangeFeed changeFeed;
+
+    @Test
+    void dataSourceShouldUseFixedSizeFileBackedPool() {
+        HikariDataSource hikari = assertInstanceOf(HikariDataSource.class, dataSource);
+        assertTrue(hikari.getJdbcUrl().startsWith("jdbc:h2:file:./target/production-profile-test/"));
+        assertEquals(10, hikari.getMaximumPoolSize());
+        assertEquals(10, hikari.getMinimumIdle());
+        assertFalse(openInView);
+    }
+
+    @Test
+    void schemaShouldComeFromMigrationsAndBeValidated() {
+        assertEquals("validate", ddlAuto);
+        assertEquals("2", flyway.info().current().getVersion().getVersion());
+    }
+
+    @Test
+    void readMethodsShouldWorkInReadOnlyTransactions() {
+        DeviceDTO saved = deviceService.saveDevice(new DeviceDTO(null, "Phone", "Apple", null));
+
+        assertTrue(deviceService.getDevicesPage(null, 10).content().stream().anyMatch(device -> device.id().equals(saved.id())));
+        assertTrue(deviceService.countDevicesByBrand("apple", BrandMatch.EXACT) >= 1);
+    }
+
+    // Version and lastModified are only written on flush, so results built before it would be a version behind
+    @Test
+    void batchPartialUpdateShouldReturnAndAnnounceTheNewVersion() {
+        DeviceDTO saved = deviceService.saveDevice(new DeviceDTO(null, "Phone", "Apple", null));
+        long since = changeFeed.lastSequence();
+
+        DeviceDTO updated = deviceService.partialUpdateDevices(List.of(new DeviceDTO(saved.id(), "Phone 2", null, null)))
+                .getFirst().device();
+
+        assertEquals(saved.version() + 1, updated.version());
+        assertEquals(updated, deviceService.getDeviceById(saved.id()).orElseThrow());
+        List<DeviceChangeDTO> changes = changeFeed.changesSince(since, 100);
+        assertTrue(changes.stream().anyMatch(change -> change.type() == DeviceChangeEvent.Type.UPDATED
+                && updated.equals(change.device())), changes.toString());
+    }
+
+    // Other instances write to the same database without this one seeing their change events
+    @Test
+    void collectionTagShouldMoveWithWritesOfAnyInstance() {
+        JdbcTemplate otherInstance = new JdbcTemplate(dataSource);
+        String tag = deviceService.collectionTag();
+        assertEquals(tag, deviceService.collectionTag());
+
+        otherInstance.update("insert into device (id, name, brand, brand_key, version, last_modified)"
+                + " values (-1, 'Other', 'Apple', 'apple', 0, current_timestamp(6))");
+        String afterInsert = deviceService.collectionTag();
+        assertNotEquals(tag, afterInsert);
+
+        otherInstance.update("delete from device where id = -1");
+        String afterDelete = deviceService.collectionTag();
+        assertNotEquals(afterInsert, afterDelete);
+
+        otherInstance.update("update device_revision set revision = revision + 1");
+        assertNotEquals(afterDelete, deviceService.collectionTag());
+    }
+
+    @Test
+    void collectionTagShouldMoveWithUpdatesBehindTheLatestModification() {
+        DeviceDTO saved = deviceService.saveDevice(new DeviceDTO(null, "Phone", "Apple", null));
+        // Written by an instance whose clock is ahead of this one
+        new JdbcTemplate(dataSource).update("insert into device (id, name, brand, brand_key, version, last_modified)"
+                + " values (-2, 'Ahead', 'Apple', 'apple', 0, timestampadd(hour, 1, current_timestamp(6)))");
+        String tag = deviceService.collectionTag();
+
+        deviceService.updateDevice(saved.id(), new DeviceDTO(null, "Phone 2", "Apple", null), saved.version());
+
+        assertNotEquals(tag, deviceService.collectionTag());
+        new JdbcTemplate(dataSource).update("delete from device where id = -2");
+    }
+}
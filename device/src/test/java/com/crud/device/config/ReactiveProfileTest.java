@@ -0,0 +1,120 @@
+package com.crud.device.config;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureWebTestClient
+@ActiveProfiles("reactive")
+class ReactiveProfileTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Test
+    void deviceLifecycleShouldWorkOnReactiveStack() {
+        DeviceDTO saved = client.post().uri("/api/devices")
+                .bodyValue(new DeviceDTO(null, "Galaxy", "Samsung", null))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(DeviceDTO.class).returnResult().getResponseBody();
+        assertNotNull(saved);
+        assertEquals(0L, saved.version());
+
+        client.get().uri("/api/devices/{id}", saved.id())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody().jsonPath("$.name").isEqualTo("Galaxy");
+        client.get().uri("/api/devices/{id}", saved.id())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+
+        client.patch().uri("/api/devices/{id}", saved.id())
+                .contentType(MediaType.parseMediaType("application/merge-patch+json"))
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(Map.of("brand", "Apple"))
+                .exchange()
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+        client.patch().uri("/api/devices/{id}", saved.id())
+                .contentType(MediaType.parseMediaType("application/merge-patch+json"))
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(Map.of("brand", "Nokia"))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        client.get().uri("/api/devices/search?brand=APP&countOnly=true")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.count").isEqualTo(1);
+
+        client.delete().uri("/api/devices/{id}", saved.id())
+                .exchange()
+                .expectStatus().isNoContent();
+        client.get().uri("/api/devices/{id}", saved.id())
+                .exchange()
+                .expectStatus().isNotFound();
+        client.delete().uri("/api/devices/{id}", saved.id())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void pagesShouldLinkToNextPage() {
+        for (int i = 0; i < 3; i++) {
+            client.post().uri("/api/devices")
+                    .bodyValue(new DeviceDTO(null, "Pixel " + i, "Google", null))
+                    .exchange()
+                    .expectStatus().isCreated();
+        }
+
+        List<DeviceDTO> firstPage = client.get().uri("/api/devices/search?brand=google&match=EXACT&size=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("X-Next-Cursor")
+                .expectHeader().valueMatches(HttpHeaders.LINK, "<.*cursor=.*>; rel=\"next\"")
+                .expectBodyList(DeviceDTO.class).returnResult().getResponseBody();
+        assertEquals(2, firstPage.size());
+    }
+
+    @Test
+    void dailyCountsShouldCoverDevicesCreatedInTheRange() {
+        Instant start = Instant.now().minusSeconds(1);
+        for (String brand : List.of("Nokia", " NOKIA", "Sony")) {
+            client.post().uri("/api/devices")
+                    .bodyValue(new DeviceDTO(null, "Phone", brand, null))
+                    .exchange()
+                    .expectStatus().isCreated();
+        }
+
+        List<DeviceDailyCountDTO> counts = client.get()
+                .uri("/api/devices/stats/daily?createdAfter={after}", start)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(DeviceDailyCountDTO.class).returnResult().getResponseBody();
+        LocalDate today = LocalDate.now();
+        assertTrue(counts.contains(new DeviceDailyCountDTO("nokia", today, 2)), counts.toString());
+        assertTrue(counts.contains(new DeviceDailyCountDTO("sony", today, 1)), counts.toString());
+
+        client.get().uri("/api/devices/stats/daily?createdAfter={after}&createdBefore={before}", start, start)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
@@ -0,0 +1,124 @@
+package com.crud.device.config;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "device.datasource.replica-urls=" + ReadWriteRoutingTest.REPLICA_0 + "," + ReadWriteRoutingTest.REPLICA_1,
+        "device.datasource.read-your-writes-window=1m"
+})
+@AutoConfigureMockMvc
+class ReadWriteRoutingTest {
+
+    static final String REPLICA_0 = "jdbc:h2:mem:routing-replica-0;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:replica-schema.sql'";
+    static final String REPLICA_1 = "jdbc:h2:mem:routing-replica-1;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:replica-schema.sql'";
+
+    @Autowired
+    private MockMvc mvc;
+
+    // Each replica holds a row the primary does not, so responses show where a read was served from
+    @BeforeAll
+    static void seedReplicas() {
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA_0, "sa", "")).update(
+                "merge into device (id, name, brand, brand_key, version) values (1000000, 'Replica0', 'R', 'r', 0)");
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA_1, "sa", "")).update(
+                "merge into device (id, name, brand, brand_key, version) values (1000000, 'Replica1', 'R', 'r', 0)");
+    }
+
+    @Test
+    void clientShouldReadItsOwnWriteFromThePrimary() throws Exception {
+        mvc.perform(post("/api/devices").header(ReadYourWritesFilter.CLIENT_ID_HEADER, "writer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Written\",\"brand\":\"Apple\"}"))
+                .andExpect(status().isCreated());
+
+        mvc.perform(get("/api/devices").header(ReadYourWritesFilter.CLIENT_ID_HEADER, "writer"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Written")))
+                .andExpect(content().string(not(containsString("Replica"))));
+    }
+
+    @Test
+    void otherClientsShouldReadFromTheReplicasInTurn() throws Exception {
+        String first = mvc.perform(get("/api/devices").header(ReadYourWritesFilter.CLIENT_ID_HEADER, "reader"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String second = mvc.perform(get("/api/devices").header(ReadYourWritesFilter.CLIENT_ID_HEADER, "reader"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(first.contains("Replica"));
+        assertTrue(second.contains("Replica"));
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void uncachedLookupsShouldReadFromTheReplicas() throws Exception {
+        mvc.perform(get("/api/devices").param("ids", "1000000").header(ReadYourWritesFilter.CLIENT_ID_HEADER, "reader"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Replica")));
+
+        mvc.perform(post("/api/devices").header(ReadYourWritesFilter.CLIENT_ID_HEADER, "looker")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Looked up\",\"brand\":\"Apple\"}"))
+                .andExpect(status().isCreated());
+        mvc.perform(get("/api/devices").param("ids", "1000000").header(ReadYourWritesFilter.CLIENT_ID_HEADER, "looker"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(not(containsString("Replica"))));
+    }
+
+    @Test
+    void readYourWritesWindowShouldExpire() {
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = nanos::get;
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(mock(DataSource.class),
+                List.of(mock(DataSource.class)), Duration.ofSeconds(2), 100, ticker);
+        DataSourceRouting.bindClient("client");
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertEquals(ReadWriteRoutingDataSource.PRIMARY, routing.determineCurrentLookupKey());
+
+            // The window only starts once the write has committed
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            assertEquals("replica-0", routing.determineCurrentLookupKey());
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            assertEquals(ReadWriteRoutingDataSource.PRIMARY, routing.determineCurrentLookupKey());
+
+            nanos.addAndGet(Duration.ofSeconds(3).toNanos());
+            assertEquals("replica-0", routing.determineCurrentLookupKey());
+            assertEquals(ReadWriteRoutingDataSource.PRIMARY,
+                    DataSourceRouting.onPrimary(routing::determineCurrentLookupKey));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            DataSourceRouting.unbindClient();
+        }
+    }
+}
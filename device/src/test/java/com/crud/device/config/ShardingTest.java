@@ -0,0 +1,223 @@
+package com.crud.device.config;
+
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.dto.ShardRebalanceDTO;
+import com.crud.device.model.Device;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.search.DeviceField;
+import com.crud.device.search.DeviceQuery;
+import com.crud.device.service.DeviceService;
+import com.crud.device.shard.DeviceShard;
+import com.crud.device.shard.DeviceShards;
+import com.crud.device.shard.ShardRebalancer;
+import com.crud.device.writebehind.DeviceWriteBehindQueue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "device.sharding.shard-urls=jdbc:h2:mem:sharding-0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:sharding-1;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:sharding-2;DB_CLOSE_DELAY=-1",
+        "device.cache.enabled=false",
+        "device.write-behind.enabled=true"
+})
+class ShardingTest {
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private DeviceShards shards;
+
+    @Autowired
+    private ShardRebalancer rebalancer;
+
+    @Autowired
+    private Optional<DeviceWriteBehindQueue> writeBehindQueue;
+
+    @Test
+    void devicesShouldBeStoredOnTheirOwnerAndListedInIdOrder() {
+        List<DeviceDTO> saved = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            saved.add(deviceService.saveDevice(new DeviceDTO(null, "Phone " + i, "Sharded", null)));
+        }
+
+        for (DeviceDTO device : saved) {
+            DeviceShard owner = shards.owner(device.id());
+            assertEquals(1, owner.jdbcTemplate().queryForObject(
+                    "select count(*) from device where id = ?", Long.class, device.id()), "owner of " + device.id());
+            assertEquals("Phone", deviceService.getDeviceById(device.id()).orElseThrow().name().split(" ")[0]);
+        }
+        assertTrue(shards.all().stream().allMatch(shard -> shard.jdbcTemplate().queryForObject(
+                "select count(*) from device where brand_key = 'sharded'", Long.class) > 0));
+
+        List<Long> pagedIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            DevicePage page = deviceService.searchDevicesByBrand("sharded", BrandMatch.EXACT, cursor, 7);
+            page.content().forEach(device -> pagedIds.add(device.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        assertEquals(saved.stream().map(DeviceDTO::id).toList(), pagedIds);
+        assertEquals(30, deviceService.countDevicesByBrand("shard", BrandMatch.PREFIX));
+        assertEquals(30, deviceService.searchDeviceByBrand("SHARD").size());
+    }
+
+    @Test
+    void writeBehindShouldNotBeUsedWithSharding() {
+        assertTrue(writeBehindQueue.isEmpty());
+    }
+
+    @Test
+    void updatesAndDeletesShouldReachTheOwningShard() {
+        DeviceDTO saved = deviceService.saveDevice(new DeviceDTO(null, "Galaxy", "Samsung", null));
+
+        DeviceDTO updated = deviceService.updateDevice(saved.id(), new DeviceDTO(null, "Galaxy S", "Samsung", null));
+        assertEquals(1L, updated.version());
+        assertEquals(2L, deviceService.updateDevice(saved.id(), new DeviceDTO(null, "Galaxy S2", "Samsung", null), 1L));
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> deviceService.updateDevice(saved.id(), new DeviceDTO(null, "Stale", "Samsung", null), 1L));
+
+        deviceService.deleteDevice(saved.id());
+        assertTrue(deviceService.getDeviceById(saved.id()).isEmpty());
+    }
+
+    @Test
+    void batchesShouldBeSplitByShard() {
+        List<BatchItemResultDTO> created = deviceService.saveDevices(Arrays.asList(
+                new DeviceDTO(null, "A", "Batch", null), null, new DeviceDTO(null, "B", "Batch", null),
+                new DeviceDTO(null, "C", "Batch", null)));
+        assertEquals(List.of(201, 400, 201, 201), created.stream().map(BatchItemResultDTO::status).toList());
+
+        List<Long> ids = new ArrayList<>(created.stream().filter(result -> result.status() == 201)
+                .map(BatchItemResultDTO::id).toList());
+        ids.add(-1L);
+        List<BatchItemResultDTO> deleted = deviceService.deleteDevices(ids);
+        assertEquals(List.of(204, 204, 204, 404), deleted.stream().map(BatchItemResultDTO::status).toList());
+    }
+
+    @Test
+    void queriesShouldMergeShardsInTheirSortOrder() {
+        List<DeviceDTO> devices = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            devices.add(new DeviceDTO(null, i % 5 == 0 ? null : "Tablet " + (i % 7), "Queried", null));
+        }
+        deviceService.saveDevices(devices);
+        DeviceQuery query = new DeviceQuery(null, "queried", null, null, DeviceField.NAME, Sort.Direction.DESC);
+
+        List<DeviceDTO> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            DevicePage page = deviceService.queryDevices(query, cursor, 5);
+            paged.addAll(page.content());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(deviceService.getAllDevices().stream().filter(query::matches).sorted(query.order()).toList(), paged);
+        assertEquals(24, paged.size());
+        assertNull(paged.getLast().name());
+    }
+
+    @Test
+    void importShouldWriteEachDeviceToItsOwnerOnly() {
+        DeviceDTO saved = deviceService.saveDevice(new DeviceDTO(null, "Stale", "Import", null));
+        DeviceShard owner = shards.owner(saved.id());
+        DeviceShard previous = shards.all().get((owner.index() + 1) % shards.all().size());
+        // A copy a rebalance has not removed yet
+        previous.jdbcTemplate().update("insert into device (" + DeviceShard.COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?)",
+                saved.id(), saved.name(), saved.brand(), "import", saved.creationTime(), 0L, saved.lastModified());
+        String tag = deviceService.collectionTag();
+        long farId = saved.id() + 1_000;
+        List<DeviceDTO> snapshot = List.of(
+                new DeviceDTO(saved.id(), "Imported", "Import", saved.creationTime(), 5L, saved.lastModified()),
+                new DeviceDTO(farId, "Far", "Import", saved.creationTime(), 0L, saved.lastModified()));
+
+        assertEquals(2, deviceService.importDevices(snapshot.size(), snapshot::forEach));
+
+        assertEquals(0, previous.jdbcTemplate().queryForObject(
+                "select count(*) from device where id = ?", Long.class, saved.id()));
+        assertEquals("Imported", owner.jdbcTemplate().queryForObject(
+                "select name from device where id = ?", String.class, saved.id()));
+        assertEquals(5L, deviceService.getDeviceById(saved.id()).orElseThrow().version());
+        assertEquals("Far", deviceService.getDeviceById(farId).orElseThrow().name());
+        assertNotEquals(tag, deviceService.collectionTag());
+        assertTrue(deviceService.saveDevice(new DeviceDTO(null, "After import", "Import", null)).id() > farId);
+    }
+
+    @Test
+    void rebalanceShouldMoveMisplacedDevicesToTheirOwner() {
+        DeviceDTO saved = deviceService.saveDevice(new DeviceDTO(null, "Moved", "Rebalance", null));
+        DeviceShard owner = shards.owner(saved.id());
+        DeviceShard previous = shards.all().get((owner.index() + 1) % shards.all().size());
+        // Where the device would have been before its owner was added
+        owner.jdbcTemplate().update("delete from device where id = ?", saved.id());
+        previous.jdbcTemplate().update("insert into device (" + DeviceShard.COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?)",
+                saved.id(), saved.name(), saved.brand(), "rebalance", saved.creationTime(), 0L, saved.lastModified());
+
+        assertEquals("Moved", deviceService.getDeviceById(saved.id()).orElseThrow().name());
+        assertEquals(1L, deviceService.partialUpdateDevice(saved.id(),
+                new DevicePatch(true, "Moved once", false, null)).version());
+
+        ShardRebalanceDTO result = rebalancer.rebalance();
+
+        assertEquals(1, result.moved());
+        assertEquals(0, previous.jdbcTemplate().queryForObject(
+                "select count(*) from device where id = ?", Long.class, saved.id()));
+        assertEquals("Moved once", owner.jdbcTemplate().queryForObject(
+                "select name from device where id = ?", String.class, saved.id()));
+        assertEquals(0, rebalancer.rebalance().moved());
+    }
+
+    @Test
+    void queriesShouldListEachDeviceOnceWhileARebalanceMovesIt() {
+        DeviceDTO copied = deviceService.saveDevice(new DeviceDTO(null, "Copied", "Midway", null));
+        DeviceDTO misplaced = deviceService.saveDevice(new DeviceDTO(null, "Misplaced", "Midway", null));
+        // The first is on its owner and still on the shard it is moved from, the second is not copied yet
+        copyTo(previousOf(copied.id()), copied);
+        copyTo(previousOf(misplaced.id()), misplaced);
+        shards.owner(misplaced.id()).jdbcTemplate().update("delete from device where id = ?", misplaced.id());
+        List<Long> ids = List.of(copied.id(), misplaced.id());
+
+        assertEquals(ids, deviceService.searchDeviceByBrand("Midway").stream().map(DeviceDTO::id).toList());
+        assertEquals(ids, deviceService.searchDevicesByBrand("Midway", BrandMatch.EXACT, null, 10).content().stream()
+                .map(DeviceDTO::id).toList());
+        assertEquals(2, deviceService.countDevicesByBrand("Midway", BrandMatch.EXACT));
+        assertEquals(2, deviceService.countDevicesByBrandAndDay(null, null).stream()
+                .filter(count -> Device.normalizeBrand("Midway").equals(count.brand()))
+                .mapToLong(DeviceDailyCountDTO::count)
+                .sum());
+        List<Long> listed = deviceService.getAllDevices().stream().map(DeviceDTO::id).toList();
+        assertEquals(listed.stream().distinct().count(), listed.size());
+        assertTrue(listed.containsAll(ids));
+        List<Long> streamed = new ArrayList<>();
+        deviceService.streamAllDevices(device -> streamed.add(device.id()));
+        assertEquals(listed, streamed);
+
+        rebalancer.rebalance();
+
+        assertEquals(2, deviceService.countDevicesByBrand("Midway", BrandMatch.EXACT));
+    }
+
+    private DeviceShard previousOf(long id) {
+        return shards.all().get((shards.owner(id).index() + 1) % shards.all().size());
+    }
+
+    private static void copyTo(DeviceShard shard, DeviceDTO device) {
+        shard.jdbcTemplate().update("insert into device (" + DeviceShard.COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?)",
+                device.id(), device.name(), device.brand(), Device.normalizeBrand(device.brand()),
+                device.creationTime(), device.version(), device.lastModified());
+    }
+}
@@ -0,0 +1,57 @@
+package com.crud.device.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "device.cache.enabled=false")
+@ActiveProfiles("virtual-threads")
+@AutoConfigureMockMvc
+class VirtualThreadsProfileTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void dataSourceShouldAdmitAtMostPoolSizeConnections() {
+        FairAdmissionDataSource admission = assertInstanceOf(FairAdmissionDataSource.class, dataSource);
+        assertEquals(20, admission.availablePermits());
+    }
+
+    @Test
+    void requestShouldBeShedWith503_WhenNoConnectionIsAdmitted() throws Exception {
+        FairAdmissionDataSource admission = assertInstanceOf(FairAdmissionDataSource.class, dataSource);
+        List<Connection> held = new ArrayList<>();
+        try {
+            while (admission.availablePermits() > 0) {
+                held.add(admission.getConnection());
+            }
+            mvc.perform(get("/api/devices/{id}", 1L))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+        mvc.perform(get("/api/devices/{id}", 1L)).andExpect(status().isNotFound());
+    }
+}
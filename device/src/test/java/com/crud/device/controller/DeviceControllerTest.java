@@ -0,0 +1,745 @@
+package com.crud.device.controller;
+
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import com.crud.device.dto.DeviceLookupDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.search.DeviceField;
+import com.crud.device.search.DeviceQuery;
+import com.crud.device.service.impl.DeviceServiceImpl;
+import com.crud.device.writebehind.WriteBehindFullException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class DeviceControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private DeviceController deviceController;
+    // Using @MockitoBean instead of @MockBean since @MockBean is marked for removal in 3.4.0
+    @MockitoBean
+    private DeviceServiceImpl deviceService;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    public void setup() {
+        mocks = MockitoAnnotations.openMocks(this);
+
+        DeviceDTO device1 = new DeviceDTO(1L, "Smartphone", "Apple", null);
+        DeviceDTO device2 = new DeviceDTO(2L, "TV", "Samsung", null);
+
+        given(deviceService.getAllDevices()).willReturn(Arrays.asList(device1, device2));
+        given(deviceService.getDevicesPage(isNull(), anyInt())).willReturn(new DevicePage(Arrays.asList(device1, device2), null));
+        given(deviceService.getDeviceById(1L)).willReturn(Optional.of(device1));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getAllDevicesTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id", hasItems(1, 2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Smartphone"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].brand").value("Apple"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].name").value("TV"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].brand").value("Samsung"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getAllDevicesPageTest() throws Exception {
+        DeviceDTO device3 = new DeviceDTO(3L, "Watch", "Apple", null);
+        given(deviceService.getDevicesPage("Mg", 1)).willReturn(new DevicePage(List.of(device3), "Mw"));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices?cursor={cursor}&size={size}", "Mg", 1)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(DeviceController.NEXT_CURSOR_HEADER, "Mw"))
+                .andExpect(header().string("Link", "<http://localhost/api/devices?size=1&cursor=Mw>; rel=\"next\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(3L));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getAllDevicesWithoutAcceptHeaderReturnsPageTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id", hasItems(1, 2)));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getDevicesCreatedBetweenTest() throws Exception {
+        DeviceDTO device3 = new DeviceDTO(3L, "Watch", "Apple", null);
+        Instant createdAfter = Instant.parse("2025-01-01T00:00:00Z");
+        given(deviceService.getDevicesCreatedBetween(createdAfter, null, null, 100))
+                .willReturn(new DevicePage(List.of(device3), null));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .param("createdAfter", "2025-01-01T00:00:00Z")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id", contains(3)));
+
+        verify(deviceService, never()).getDevicesPage(any(), anyInt());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getDevicesCreatedBetweenInvalidTimestampTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .param("createdBefore", "yesterday")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void countDevicesByBrandAndDayTest() throws Exception {
+        given(deviceService.countDevicesByBrandAndDay(null, null))
+                .willReturn(List.of(new DeviceDailyCountDTO("apple", LocalDate.of(2025, 1, 1), 7)));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/stats/daily")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].brand").value("apple"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].day").value("2025-01-01"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].count").value(7));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getAllDevicesAsCborTest() throws Exception {
+        byte[] body = mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<DeviceDTO> devices = new CBORMapper().readValue(body, new TypeReference<>() {
+        });
+        assertEquals(List.of(1L, 2L), devices.stream().map(DeviceDTO::id).toList());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getAllDevicesAsSmileTest() throws Exception {
+        Date creationTime = new Date(1735689600000L);
+        given(deviceService.getDevicesPage(isNull(), anyInt()))
+                .willReturn(new DevicePage(List.of(new DeviceDTO(1L, "Smartphone", "Apple", creationTime)), null));
+
+        byte[] body = mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode devices = new SmileMapper().readTree(body);
+        assertEquals("Apple", devices.get(0).get("brand").asText());
+        // Dates are written as epoch milliseconds in the binary formats
+        assertEquals(creationTime.getTime(), devices.get(0).get("creationTime").asLong());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getAllDevicesPageSizeIsCappedTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .param("size", "1000000")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(DeviceController.NEXT_CURSOR_HEADER));
+
+        verify(deviceService).getDevicesPage(isNull(), eq(1000));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getAllDevicesInvalidPageSizeTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .param("size", "0")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void streamAllDevicesAsNdjsonTest() throws Exception {
+        stubStreamAllDevices();
+
+        var result = mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .accept(DeviceController.NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(DeviceController.NDJSON_VALUE))
+                .andExpect(content().string(
+                        "{\"id\":1,\"name\":\"Smartphone\",\"brand\":\"Apple\",\"creationTime\":null,\"version\":null,\"lastModified\":null}\n"
+                                + "{\"id\":2,\"name\":\"TV\",\"brand\":\"Samsung\",\"creationTime\":null,\"version\":null,\"lastModified\":null}\n"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void streamAllDevicesAsJsonArrayTest() throws Exception {
+        stubStreamAllDevices();
+
+        var result = mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .param("stream", "true")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id", hasItems(1, 2)));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void saveDeviceTest() throws Exception {
+        DeviceDTO newDevice = new DeviceDTO(null, "NewDevice", "NewBrand", null);
+        DeviceDTO savedDevice = new DeviceDTO(3L, "NewDevice", "NewBrand", null);
+
+        given(deviceService.saveDevice(any(DeviceDTO.class))).willReturn(savedDevice);
+
+        mvc.perform(MockMvcRequestBuilders
+                        .post("/api/devices")
+                        .content(asJsonString(newDevice))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(3L))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("NewDevice"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.brand").value("NewBrand"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void saveDevice_ShouldReturnTooManyRequests_WhenWriteBehindQueueIsFull() throws Exception {
+        given(deviceService.saveDevice(any(DeviceDTO.class))).willThrow(new WriteBehindFullException("Write-behind queue is full"));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .post("/api/devices")
+                        .content(asJsonString(new DeviceDTO(null, "NewDevice", "NewBrand", null)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void saveDevicesBatchTest() throws Exception {
+        DeviceDTO savedDevice = new DeviceDTO(3L, "NewDevice", "NewBrand", null);
+
+        given(deviceService.saveDevices(List.of(new DeviceDTO(null, "NewDevice", "NewBrand", null))))
+                .willReturn(List.of(BatchItemResultDTO.success(0, 201, savedDevice)));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .post("/api/devices/batch")
+                        .content(asJsonString(List.of(new DeviceDTO(null, "NewDevice", "NewBrand", null))))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value(201))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(3L));
+    }
+
+    @Test
+    void streamAllDevicesAsNdjson_ShouldEndTheLastLineWithoutClosingTheResponse() throws Exception {
+        stubStreamAllDevices();
+        boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void write(int b) {
+                if (closed[0]) {
+                    throw new IllegalStateException("Response stream closed");
+                }
+                super.write(b);
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        deviceController.streamAllDevicesAsNdjson().getBody().writeTo(out);
+
+        assertFalse(closed[0]);
+        assertTrue(out.toString(StandardCharsets.UTF_8).endsWith("\"Samsung\",\"creationTime\":null,\"version\":null,"
+                + "\"lastModified\":null}\n"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void saveDevicesBatchFromNdjsonTest() throws Exception {
+        List<DeviceDTO> devices = List.of(
+                new DeviceDTO(null, "Phone", "Apple", null),
+                new DeviceDTO(null, "TV", "Samsung", null));
+
+        given(deviceService.saveDevices(devices)).willReturn(List.of(
+                BatchItemResultDTO.success(0, 201, new DeviceDTO(1L, "Phone", "Apple", null)),
+                BatchItemResultDTO.success(1, 201, new DeviceDTO(2L, "TV", "Samsung", null))));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .post("/api/devices/batch")
+                        .content("{\"name\":\"Phone\",\"brand\":\"Apple\"}\n{\"name\":\"TV\",\"brand\":\"Samsung\"}\n")
+                        .contentType(DeviceController.NDJSON_VALUE)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id", hasItems(1, 2)));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void deleteDevicesBatchTest() throws Exception {
+        given(deviceService.deleteDevices(List.of(1L, 9L))).willReturn(List.of(
+                BatchItemResultDTO.deleted(0, 1L),
+                BatchItemResultDTO.failure(1, 404, 9L, "Device not found with ID: 9")));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .delete("/api/devices/batch")
+                        .content("[1, 9]")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value(204))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].status").value(404));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getDeviceByIdTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/{id}", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Smartphone"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.brand").value("Apple"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getDevicesByIdsKeepsRequestOrderAndReportsMissingIdsTest() throws Exception {
+        DeviceDTO device2 = new DeviceDTO(2L, "TV", "Samsung", null);
+        DeviceDTO device1 = new DeviceDTO(1L, "Smartphone", "Apple", null);
+        given(deviceService.getDevicesByIds(List.of(2L, 5L, 1L)))
+                .willReturn(new DeviceLookupDTO(List.of(device2, device1), List.of(5L)));
+
+        mvc.perform(MockMvcRequestBuilders.get("/api/devices").param("ids", "2,5,1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.devices[*].id", contains(2, 1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.missing", contains(5)));
+        mvc.perform(MockMvcRequestBuilders.post("/api/devices/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[2, 5, 1]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.devices[*].id", contains(2, 1)));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void lookupOverTheMaximumIdsIsRejectedTest() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id <= 10_000; id++) {
+            ids.add(id);
+        }
+
+        mvc.perform(MockMvcRequestBuilders.post("/api/devices/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ids.toString()))
+                .andExpect(status().isBadRequest());
+        mvc.perform(MockMvcRequestBuilders.post("/api/devices/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, null]"))
+                .andExpect(status().isBadRequest());
+        verify(deviceService, never()).getDevicesByIds(any());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void updateDeviceTest() throws Exception {
+        DeviceDTO updatedDevice = new DeviceDTO(1L, "UpdatedDevice", "UpdatedBrand", null);
+
+        given(deviceService.updateDevice(any(Long.class), any(DeviceDTO.class))).willReturn(updatedDevice);
+
+        mvc.perform(MockMvcRequestBuilders
+                        .put("/api/devices/{id}", 1L)
+                        .content(asJsonString(updatedDevice))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("UpdatedDevice"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void partialUpdateDeviceTest() throws Exception{
+        DeviceDTO updatedDevice = new DeviceDTO(1L, "Mac", "Apple", null);
+
+        Map<String, String> updates = new HashMap<>();
+        updates.put("name", "Mac");
+
+        given(deviceService.partialUpdateDevice(1L, new DevicePatch(true, "Mac", false, null)))
+                .willReturn(updatedDevice);
+
+        mvc.perform(MockMvcRequestBuilders
+                        .patch("/api/devices/{id}", 1L)
+                        .content(asJsonString(updates))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(1L))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Mac"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getDeviceByIdReturnsVersionAsETagTest() throws Exception {
+        given(deviceService.getDeviceById(3L)).willReturn(Optional.of(new DeviceDTO(3L, "TV", "Samsung", null, 4L)));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/{id}", 3L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.version").value(4));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getDeviceByIdReturnsLastModifiedTest() throws Exception {
+        Date lastModified = new Date(1735689600000L);
+        given(deviceService.getDeviceById(3L))
+                .willReturn(Optional.of(new DeviceDTO(3L, "TV", "Samsung", null, 4L, lastModified)));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/{id}", 3L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().dateValue("Last-Modified", lastModified.getTime()));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getDeviceByIdNotModifiedTest() throws Exception {
+        given(deviceService.getDeviceById(3L)).willReturn(Optional.of(new DeviceDTO(3L, "TV", "Samsung", null, 4L)));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/{id}", 3L)
+                        .header("If-None-Match", "\"4\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getAllDevicesNotModifiedWithoutQueryTest() throws Exception {
+        given(deviceService.collectionTag()).willReturn("0-3-1700000000000000");
+        String eTag = mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertEquals("W/\"0-3-1700000000000000\"", eTag);
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(deviceService, times(1)).getDevicesPage(isNull(), anyInt());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void getAllDevicesETagChangesWithAnyDeviceTest() throws Exception {
+        given(deviceService.searchDevicesByBrand(eq("Apple"), any(), isNull(), anyInt())).willReturn(new DevicePage(List.of(), null));
+        given(deviceService.collectionTag()).willReturn("0-2-1700000000000001");
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/search")
+                        .param("brand", "Apple")
+                        .header("If-None-Match", "W/\"0-3-1700000000000000\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"0-2-1700000000000001\""));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void updateDeviceWithIfMatchTest() throws Exception {
+        DeviceDTO updatedDevice = new DeviceDTO(1L, "UpdatedDevice", "UpdatedBrand", null);
+
+        given(deviceService.updateDevice(eq(1L), any(DeviceDTO.class), eq(4L))).willReturn(5L);
+
+        mvc.perform(MockMvcRequestBuilders
+                        .put("/api/devices/{id}", 1L)
+                        .header("If-Match", "\"4\"")
+                        .content(asJsonString(updatedDevice))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"5\""));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void updateDeviceWithVersionInBodyTest() throws Exception {
+        DeviceDTO updatedDevice = new DeviceDTO(1L, "UpdatedDevice", "UpdatedBrand", null, 2L);
+
+        given(deviceService.updateDevice(eq(1L), any(DeviceDTO.class), eq(2L))).willReturn(3L);
+
+        mvc.perform(MockMvcRequestBuilders
+                        .put("/api/devices/{id}", 1L)
+                        .content(asJsonString(updatedDevice))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"3\""));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void partialUpdateDeviceWithMergePatchTest() throws Exception {
+        given(deviceService.partialUpdateDevice(1L, new DevicePatch(false, null, true, null)))
+                .willReturn(new DeviceDTO(1L, "Smartphone", null, null));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .patch("/api/devices/{id}", 1L)
+                        .content("{\"brand\":null,\"unknown\":{\"nested\":[1,2]}}")
+                        .contentType("application/merge-patch+json"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Smartphone"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void partialUpdateDeviceWithWrongFieldTypeTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .patch("/api/devices/{id}", 1L)
+                        .content("{\"name\":42}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void partialUpdateDeviceWithStaleIfMatchTest() throws Exception {
+        given(deviceService.partialUpdateDevice(eq(1L), any(DevicePatch.class), eq(4L)))
+                .willThrow(new OptimisticLockingFailureException("Device was modified concurrently, ID: 1"));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .patch("/api/devices/{id}", 1L)
+                        .header("If-Match", "\"4\"")
+                        .content(asJsonString(Map.of("name", "Mac")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void partialUpdateDeviceWithMalformedIfMatchTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .patch("/api/devices/{id}", 1L)
+                        .header("If-Match", "W/\"4\"")
+                        .content(asJsonString(Map.of("name", "Mac")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void searchDeviceByBrandTest() throws Exception {
+        DeviceDTO deviceWithBrand= new DeviceDTO(2L, "TV", "Samsung", null);
+
+        given(deviceService.searchDevicesByBrand("Samsung", BrandMatch.CONTAINS, null, 100))
+                .willReturn(new DevicePage(List.of(deviceWithBrand), null));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/search")
+                        .param("brand", "Samsung")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(2L))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("TV"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].brand").value("Samsung"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void searchDeviceByBrandPrefixPageTest() throws Exception {
+        DeviceDTO deviceWithBrand = new DeviceDTO(2L, "TV", "Samsung", null);
+
+        given(deviceService.searchDevicesByBrand("sam", BrandMatch.PREFIX, null, 1))
+                .willReturn(new DevicePage(List.of(deviceWithBrand), "Mg"));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/search")
+                        .param("brand", "sam")
+                        .param("match", "PREFIX")
+                        .param("size", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(DeviceController.NEXT_CURSOR_HEADER, "Mg"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].brand").value("Samsung"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void queryDevicesTest() throws Exception {
+        DeviceDTO device = new DeviceDTO(2L, "Galaxy", "Samsung", null);
+        DeviceQuery query = new DeviceQuery("Gal", "samsung", null, null, DeviceField.NAME, Sort.Direction.DESC);
+        given(deviceService.queryDevices(query, null, 1)).willReturn(new DevicePage(List.of(device), "Mg"));
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/query")
+                        .param("namePrefix", "Gal")
+                        .param("brand", "samsung")
+                        .param("sort", "NAME")
+                        .param("direction", "DESC")
+                        .param("size", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(DeviceController.NEXT_CURSOR_HEADER, "Mg"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Galaxy"));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void queryDevicesWithoutAnIndexIsRejectedTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/query")
+                        .param("brand", "samsung")
+                        .param("sort", "LAST_MODIFIED")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.detail").value(
+                        startsWith("No index serves filtering on brand sorted by LAST_MODIFIED")));
+        verify(deviceService, never()).queryDevices(any(), any(), anyInt());
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void countDeviceByBrandTest() throws Exception {
+        given(deviceService.countDevicesByBrand("Samsung", BrandMatch.EXACT)).willReturn(42L);
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get("/api/devices/search")
+                        .param("brand", "Samsung")
+                        .param("match", "EXACT")
+                        .param("countOnly", "true")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.count").value(42));
+    }
+
+    @Test
+    @WithMockUser(username = "MockUser")
+    void deleteDeviceTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .delete("/api/devices/{id}", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isNoContent());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubStreamAllDevices() {
+        doAnswer(invocation -> {
+            Consumer<DeviceDTO> consumer = invocation.getArgument(0);
+            consumer.accept(new DeviceDTO(1L, "Smartphone", "Apple", null));
+            consumer.accept(new DeviceDTO(2L, "TV", "Samsung", null));
+            return null;
+        }).when(deviceService).streamAllDevices(any(Consumer.class));
+    }
+
+    public static String asJsonString(final Object obj) {
+        try {
+            return new ObjectMapper().writeValueAsString(obj);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.crud.device.feed;
+
+import com.crud.device.dto.DeviceChangeDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.event.DeviceChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceChangeFeedTest {
+
+    private MutableClock clock;
+    private DeviceChangeFeed changeFeed;
+    private long start;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        changeFeed = new DeviceChangeFeed(3, Duration.ofMinutes(10), clock);
+        start = changeFeed.lastSequence();
+    }
+
+    @Test
+    void changesSince_ShouldReturnChangesAfterSequenceInOrder() {
+        changeFeed.onDeviceChange(DeviceChangeEvent.created(new DeviceDTO(1L, "Phone", "Apple", null)));
+        changeFeed.onDeviceChange(DeviceChangeEvent.deleted(1L));
+
+        List<DeviceChangeDTO> all = changeFeed.changesSince(start, 10);
+        List<DeviceChangeDTO> afterFirst = changeFeed.changesSince(start + 1, 10);
+
+        assertEquals(List.of(start + 1, start + 2), all.stream().map(DeviceChangeDTO::sequence).toList());
+        assertEquals(DeviceChangeEvent.Type.CREATED, all.getFirst().type());
+        assertEquals(1, afterFirst.size());
+        assertEquals(DeviceChangeEvent.Type.DELETED, afterFirst.getFirst().type());
+        assertEquals(1, changeFeed.changesSince(start, 1).size());
+    }
+
+    @Test
+    void changesSince_ShouldReportGone_WhenChangesWereEvictedBySize() {
+        for (long id = 1; id <= 5; id++) {
+            changeFeed.onDeviceChange(DeviceChangeEvent.deleted(id));
+        }
+
+        assertThrows(ChangeFeedGoneException.class, () -> changeFeed.changesSince(start, 10));
+        assertEquals(3, changeFeed.changesSince(changeFeed.oldestPosition(), 10).size());
+    }
+
+    @Test
+    void changesSince_ShouldEvictChangesOlderThanMaxAge() {
+        changeFeed.onDeviceChange(DeviceChangeEvent.deleted(1L));
+        clock.advance(Duration.ofMinutes(11));
+        changeFeed.onDeviceChange(DeviceChangeEvent.deleted(2L));
+
+        assertThrows(ChangeFeedGoneException.class, () -> changeFeed.changesSince(start, 10));
+        assertEquals(2L, changeFeed.changesSince(start + 1, 10).getFirst().id());
+    }
+
+    @Test
+    void lateEvents_ShouldNotMoveADeviceBackToAnOlderVersion() {
+        changeFeed = new DeviceChangeFeed(100, Duration.ofMinutes(10), clock);
+        changeFeed.onDeviceChange(DeviceChangeEvent.created(new DeviceDTO(1L, "Phone", "Apple", null, 0L)));
+        changeFeed.onDeviceChange(DeviceChangeEvent.updated(new DeviceDTO(1L, "Phone 2", "Apple", null, 2L)));
+        changeFeed.onDeviceChange(DeviceChangeEvent.updated(new DeviceDTO(1L, "Phone 1", "Apple", null, 1L)));
+        changeFeed.onDeviceChange(DeviceChangeEvent.partiallyUpdated(new DeviceDTO(1L, "Phone 1", null, null, 1L)));
+        changeFeed.onDeviceChange(DeviceChangeEvent.deleted(1L));
+        changeFeed.onDeviceChange(DeviceChangeEvent.updated(new DeviceDTO(1L, "Phone 3", "Apple", null, 3L)));
+
+        assertEquals(List.of(0L, 2L), changeFeed.changesSince(start, 10).stream()
+                .filter(change -> change.device() != null).map(change -> change.device().version()).toList());
+        assertEquals(DeviceChangeEvent.Type.DELETED, changeFeed.changesSince(start, 10).getLast().type());
+    }
+
+    @Test
+    void latePartialUpdate_ShouldKeepOnlyTheFieldsNotWrittenSince() {
+        changeFeed.onDeviceChange(DeviceChangeEvent.partiallyUpdated(new DeviceDTO(1L, null, "Samsung", null, 5L)));
+        changeFeed.onDeviceChange(DeviceChangeEvent.partiallyUpdated(new DeviceDTO(1L, "Galaxy", "Apple", null, 4L)));
+
+        DeviceChangeDTO late = changeFeed.changesSince(start, 10).getLast();
+        assertTrue(late.partial());
+        assertEquals(new DeviceDTO(1L, "Galaxy", null, null, 5L), late.device());
+    }
+
+    @Test
+    void importedDevice_ShouldStartItsVersionOrderAfresh() {
+        changeFeed = new DeviceChangeFeed(100, Duration.ofMinutes(10), clock);
+        changeFeed.onDeviceChange(DeviceChangeEvent.updated(new DeviceDTO(1L, "Phone 4", "Apple", null, 4L)));
+        changeFeed.onDeviceChange(DeviceChangeEvent.deleted(1L));
+        changeFeed.onDeviceChange(DeviceChangeEvent.imported(new DeviceDTO(1L, "Phone 2", "Apple", null, 2L)));
+        changeFeed.onDeviceChange(DeviceChangeEvent.updated(new DeviceDTO(1L, "Phone 3", "Apple", null, 3L)));
+        changeFeed.onDeviceChange(DeviceChangeEvent.updated(new DeviceDTO(1L, "Phone 1", "Apple", null, 1L)));
+
+        assertEquals(List.of(DeviceChangeEvent.Type.UPDATED, DeviceChangeEvent.Type.DELETED,
+                        DeviceChangeEvent.Type.IMPORTED, DeviceChangeEvent.Type.UPDATED),
+                changeFeed.changesSince(start, 10).stream().map(DeviceChangeDTO::type).toList());
+        assertEquals(3L, changeFeed.changesSince(start, 10).getLast().device().version());
+    }
+
+    @Test
+    void changesSince_ShouldReportGone_ForSequenceAheadOfTheFeed() {
+        assertThrows(ChangeFeedGoneException.class, () -> changeFeed.changesSince(start + 1, 10));
+    }
+
+    @Test
+    void awaitChangesAfter_ShouldReturnOnceAChangeIsAppended() throws InterruptedException {
+        assertFalse(changeFeed.awaitChangesAfter(start, Duration.ofMillis(10)));
+
+        Thread.ofVirtual().start(() -> changeFeed.onDeviceChange(DeviceChangeEvent.deleted(1L)));
+
+        assertTrue(changeFeed.awaitChangesAfter(start, Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void sequences_ShouldStartFromStartupTime() {
+        assertEquals(TimeUnit.MILLISECONDS.toMicros(clock.millis()), start);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.crud.device.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private DeviceMetrics deviceMetrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        deviceMetrics = new DeviceMetrics(registry, Duration.ofSeconds(1));
+    }
+
+    @Test
+    void record_ShouldRecordLatencyRowsStatementsAndConversion() {
+        List<String> result = deviceMetrics.record("search", () -> {
+            DeviceMetrics.recordStatement(TimeUnit.MILLISECONDS.toNanos(3));
+            DeviceMetrics.recordStatement(TimeUnit.MILLISECONDS.toNanos(2));
+            DeviceMetrics.recordConversion(TimeUnit.MILLISECONDS.toNanos(1));
+            return List.of("a", "b", "c");
+        }, List::size);
+
+        assertEquals(3, result.size());
+        assertEquals(1, registry.get("device.service").tags("operation", "search", "outcome", "success").timer().count());
+        assertEquals(3, registry.get("device.service.rows").tag("operation", "search").summary().totalAmount());
+        assertEquals(2, registry.get("device.service.statements").tag("operation", "search").summary().totalAmount());
+        assertEquals(5, registry.get("device.service.database").tag("operation", "search").timer().totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, registry.get("device.service.conversion").tag("operation", "search").timer().totalTime(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void record_ShouldRecordErrorOutcome_WhenOperationThrows() {
+        assertThrows(IllegalStateException.class, () -> deviceMetrics.record("delete", () -> {
+            throw new IllegalStateException("boom");
+        }, 1));
+
+        assertEquals(1, registry.get("device.service").tags("operation", "delete", "outcome", "error").timer().count());
+        assertEquals(0, registry.get("device.service.rows").tag("operation", "delete").summary().totalAmount());
+    }
+
+    @Test
+    void recordStatement_ShouldBeIgnoredOutsideAnOperation() {
+        DeviceMetrics.recordStatement(TimeUnit.MILLISECONDS.toNanos(3));
+
+        deviceMetrics.record("get", () -> "device", device -> 1);
+
+        assertEquals(0, registry.get("device.service.statements").tag("operation", "get").summary().totalAmount());
+    }
+}
@@ -0,0 +1,87 @@
+package com.crud.device.search;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.repository.DeviceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BrandIndexTest {
+
+    private DeviceRepository deviceRepository;
+    private BrandIndex brandIndex;
+
+    @BeforeEach
+    void setUp() {
+        deviceRepository = mock(DeviceRepository.class);
+        brandIndex = new BrandIndex(deviceRepository);
+    }
+
+    @Test
+    void load_ShouldIndexExistingDevices() {
+        when(deviceRepository.streamBrandKeysBy()).thenReturn(Stream.of(
+                brandKey(1L, "apple"),
+                brandKey(2L, "samsung"),
+                brandKey(3L, "samsung")
+        ));
+
+        assertFalse(brandIndex.isReady());
+        brandIndex.load();
+
+        assertTrue(brandIndex.isReady());
+        assertEquals(List.of(2L, 3L), brandIndex.findIdsContaining("SUNG", Long.MIN_VALUE, 10));
+        assertEquals(3, brandIndex.countContaining(""));
+    }
+
+    @Test
+    void onDeviceChange_ShouldMoveDeviceBetweenBrands() {
+        brandIndex.onDeviceChange(DeviceChangeEvent.created(new DeviceDTO(1L, "Phone", "Apple", null)));
+        brandIndex.onDeviceChange(DeviceChangeEvent.updated(new DeviceDTO(1L, "Phone", "Samsung", null)));
+
+        assertEquals(0, brandIndex.countContaining("apple"));
+        assertEquals(List.of(1L), brandIndex.findIdsContaining("sam", Long.MIN_VALUE, 10));
+
+        brandIndex.onDeviceChange(DeviceChangeEvent.deleted(1L));
+
+        assertEquals(0, brandIndex.countContaining("sam"));
+    }
+
+    @Test
+    void onDeviceChange_ShouldKeepBrand_WhenPartialUpdateDidNotWriteIt() {
+        brandIndex.onDeviceChange(DeviceChangeEvent.created(new DeviceDTO(1L, "Phone", "Apple", null)));
+        brandIndex.onDeviceChange(DeviceChangeEvent.partiallyUpdated(new DeviceDTO(1L, "Mac", null, null, 1L)));
+
+        assertEquals(List.of(1L), brandIndex.findIdsContaining("apple", Long.MIN_VALUE, 10));
+    }
+
+    @Test
+    void findIdsContaining_ShouldReturnLowestIdsAfterCursorAcrossBrands() {
+        for (long id = 1; id <= 6; id++) {
+            String brand = id % 2 == 0 ? "Samsung" : "Samsonite";
+            brandIndex.onDeviceChange(DeviceChangeEvent.created(new DeviceDTO(id, "Device" + id, brand, null)));
+        }
+
+        assertEquals(List.of(3L, 4L, 5L), brandIndex.findIdsContaining("sams", 2L, 3));
+    }
+
+    @Test
+    void load_ShouldNotResurrectDevicesDeletedWhileLoading() {
+        brandIndex.onDeviceChange(DeviceChangeEvent.deleted(2L));
+        when(deviceRepository.streamBrandKeysBy()).thenReturn(Stream.of(brandKey(1L, "apple"), brandKey(2L, "apple")));
+
+        brandIndex.load();
+
+        assertEquals(List.of(1L), brandIndex.findIdsContaining("apple", Long.MIN_VALUE, 10));
+    }
+
+    private static DeviceRepository.BrandKeyView brandKey(Long id, String brandKey) {
+        return new DeviceRepository.BrandKeyView(id, brandKey);
+    }
+}
@@ -0,0 +1,107 @@
+package com.crud.device.search;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.service.DeviceService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.crud.device.search.DeviceQueryTest$RecordedStatements",
+        "device.cache.enabled=false"
+})
+class DeviceQueryTest {
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void onlyCombinationsAnIndexServesShouldBeAccepted() {
+        assertEquals(Optional.of("idx_device_brand_key_creation_time"), DeviceIndexes.covering(
+                Set.of(DeviceField.BRAND), Set.of(DeviceField.CREATION_TIME), DeviceField.CREATION_TIME));
+        assertEquals(Optional.of("primary key"), DeviceIndexes.covering(Set.of(), Set.of(), DeviceField.ID));
+        assertEquals(Optional.empty(), DeviceIndexes.covering(Set.of(), Set.of(DeviceField.NAME), DeviceField.ID));
+
+        assertThrows(UnindexedQueryException.class,
+                () -> new DeviceQuery("Gal", "Samsung", Instant.EPOCH, null, null, null));
+        assertThrows(UnindexedQueryException.class,
+                () -> new DeviceQuery(null, "Samsung", null, null, DeviceField.LAST_MODIFIED, null));
+        assertThrows(UnindexedQueryException.class,
+                () -> new DeviceQuery("Gal", null, null, null, DeviceField.CREATION_TIME, null));
+        assertThrows(UnindexedQueryException.class,
+                () -> new DeviceQuery(null, null, Instant.EPOCH, null, DeviceField.ID, null));
+        assertEquals(DeviceField.CREATION_TIME, new DeviceQuery(null, null, Instant.EPOCH, null, null, null).sort());
+        assertEquals(DeviceField.ID, new DeviceQuery(null, "Apple", null, null, DeviceField.BRAND, null).sort());
+    }
+
+    @Test
+    void acceptedQueriesShouldReadTheirIndexAndPageInOrder() {
+        Instant start = Instant.now();
+        List<DeviceDTO> devices = new ArrayList<>();
+        String[] names = {"Galaxy S1", "Galaxy Tab", null, "iPhone", "Galaxy S1", "iPad", "Pixel", "", "Galaxy_S2"};
+        String[] brands = {"Samsung", " samsung", "Google", "Apple", "SAMSUNG", "Apple", "Google", null, "Samsung"};
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < names.length; i++) {
+                devices.add(new DeviceDTO(null, names[i], brands[i], null));
+            }
+        }
+        deviceService.saveDevices(devices);
+        jdbcTemplate.execute("analyze");
+        List<DeviceDTO> all = deviceService.getAllDevices();
+
+        Map<DeviceQuery, String> indexes = Map.of(
+                new DeviceQuery(null, null, null, null, null, Sort.Direction.DESC), "PRIMARY_KEY",
+                new DeviceQuery(null, null, null, null, DeviceField.NAME, Sort.Direction.DESC), "IDX_DEVICE_NAME",
+                new DeviceQuery("Galaxy_", null, null, null, null, null), "IDX_DEVICE_NAME",
+                new DeviceQuery("Galaxy", "Samsung", null, null, null, Sort.Direction.DESC), "IDX_DEVICE_BRAND_KEY_NAME",
+                new DeviceQuery(null, "samsung", null, null, null, null), "IDX_DEVICE_BRAND_KEY",
+                new DeviceQuery(null, "Samsung", start, null, null, Sort.Direction.DESC), "IDX_DEVICE_BRAND_KEY_CREATION_TIME",
+                new DeviceQuery(null, null, start, Instant.now(), null, null), "IDX_DEVICE_CREATION_TIME",
+                new DeviceQuery(null, null, null, null, DeviceField.LAST_MODIFIED, Sort.Direction.DESC), "IDX_DEVICE_LAST_MODIFIED",
+                new DeviceQuery(null, null, null, null, DeviceField.BRAND, null), "IDX_DEVICE_BRAND_KEY",
+                new DeviceQuery(null, "Samsung", null, null, DeviceField.NAME, null), "IDX_DEVICE_BRAND_KEY_NAME");
+        indexes.forEach((query, index) -> {
+            List<DeviceDTO> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                RecordedStatements.SQL.clear();
+                DevicePage page = deviceService.queryDevices(query, cursor, 7);
+                paged.addAll(page.content());
+                cursor = page.nextCursor();
+            } while (cursor != null);
+
+            assertEquals(all.stream().filter(query::matches).sorted(query.order()).map(DeviceDTO::id).toList(),
+                    paged.stream().map(DeviceDTO::id).toList(), query.toString());
+            // The last page continues from a cursor, so its plan covers the keyset condition too
+            String plan = jdbcTemplate.queryForObject("explain " + RecordedStatements.SQL.getLast(), String.class);
+            assertTrue(plan.contains(index) && plan.contains("index sorted"), query + " read " + plan);
+        });
+    }
+
+    public static class RecordedStatements implements StatementInspector {
+        static final List<String> SQL = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            SQL.add(sql);
+            return sql;
+        }
+    }
+}
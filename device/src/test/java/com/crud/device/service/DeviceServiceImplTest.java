@@ -0,0 +1,479 @@
+package com.crud.device.service;
+
+import com.crud.device.cache.CaffeineDeviceCache;
+import com.crud.device.cache.DeviceReadCoalescer;
+import com.crud.device.cache.NoOpDeviceCache;
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceLookupDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.model.Device;
+import com.crud.device.repository.DeviceRepository;
+import com.crud.device.search.BrandIndex;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.service.impl.DeviceServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DeviceServiceImplTest {
+
+    @Mock
+    private DeviceRepository deviceRepository;
+
+    @Mock
+    private BrandIndex brandIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DeviceServiceImpl deviceService;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        deviceService = new DeviceServiceImpl(deviceRepository, brandIndex, new NoOpDeviceCache(),
+                new DeviceReadCoalescer(new SimpleMeterRegistry(), true), eventPublisher,
+                entityManager, transactionManager, Optional.empty(), 2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void saveDevice_ShouldSaveAndReturnDevice() {
+        DeviceDTO deviceDTO = new DeviceDTO(1L, "Phone", "Apple", null);
+        Device savedDevice = new Device(1L, "Phone", "Apple", null);
+
+
+        when(deviceRepository.save(any(Device.class))).thenReturn(savedDevice);
+
+        DeviceDTO result = deviceService.saveDevice(deviceDTO);
+
+        assertNotNull(result);
+        assertEquals(1L, result.id());
+        assertEquals("Phone", result.name());
+        assertEquals("Apple", result.brand());
+        verify(eventPublisher).publishEvent(DeviceChangeEvent.created(result));
+    }
+
+    @Test
+    void getDeviceById_ShouldReturnDevice_WhenFound() {
+        Device device = new Device(1L, "Phone", "Apple", null);
+        when(deviceRepository.findById(1L)).thenReturn(Optional.of(device));
+
+        Optional<DeviceDTO> result = deviceService.getDeviceById(1L);
+
+        assertTrue(result.isPresent());
+        assertEquals(1L, result.get().id());
+        assertEquals("Phone", result.get().name());
+        assertEquals("Apple", result.get().brand());
+    }
+
+    @Test
+    void getDeviceById_ShouldReturnEmpty_WhenNotFound() {
+        when(deviceRepository.findById(1L)).thenReturn(Optional.empty());
+
+        Optional<DeviceDTO> result = deviceService.getDeviceById(1L);
+
+        assertFalse(result.isPresent());
+    }
+
+    @Test
+    void getDevicesByIds_ShouldQueryInChunksAndKeepRequestOrder() {
+        DeviceDTO device1 = new DeviceDTO(1L, "Phone", "Apple", null);
+        DeviceDTO device2 = new DeviceDTO(2L, "TV", "Samsung", null);
+        DeviceDTO device3 = new DeviceDTO(3L, "Watch", "Apple", null);
+        when(deviceRepository.findDevicesByIdIn(List.of(3L, 1L))).thenReturn(List.of(device1, device3));
+        when(deviceRepository.findDevicesByIdIn(List.of(9L, 2L))).thenReturn(List.of(device2));
+
+        DeviceLookupDTO result = deviceService.getDevicesByIds(List.of(3L, 1L, 9L, 1L, 2L));
+
+        assertEquals(List.of(device3, device1, device2), result.devices());
+        assertEquals(List.of(9L), result.missing());
+        verify(deviceRepository, times(2)).findDevicesByIdIn(anyCollection());
+    }
+
+    @Test
+    void getDevicesByIds_ShouldOnlyQueryIdsThatAreNotCached() {
+        DeviceServiceImpl cachingService = new DeviceServiceImpl(deviceRepository, brandIndex,
+                new CaffeineDeviceCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1)),
+                new DeviceReadCoalescer(new SimpleMeterRegistry(), true), eventPublisher,
+                entityManager, transactionManager, Optional.empty(), 2);
+        when(deviceRepository.findById(1L)).thenReturn(Optional.of(new Device(1L, "Phone", "Apple", null)));
+        when(deviceRepository.findById(7L)).thenReturn(Optional.empty());
+        cachingService.getDeviceById(1L);
+        cachingService.getDeviceById(7L);
+        DeviceDTO device2 = new DeviceDTO(2L, "TV", "Samsung", null);
+        when(deviceRepository.findDevicesByIdIn(List.of(2L))).thenReturn(List.of(device2));
+
+        DeviceLookupDTO result = cachingService.getDevicesByIds(List.of(7L, 2L, 1L));
+
+        assertEquals(List.of(2L, 1L), result.devices().stream().map(DeviceDTO::id).toList());
+        assertEquals(List.of(7L), result.missing());
+        verify(deviceRepository).findDevicesByIdIn(List.of(2L));
+    }
+
+    @Test
+    void getAllDevices_ShouldReturnDeviceList() {
+        List<Device> devices = Arrays.asList(
+                new Device("Phone", "Apple"),
+                new Device("Laptop", "Dell")
+        );
+        when(deviceRepository.findAll()).thenReturn(devices);
+
+        List<DeviceDTO> result = deviceService.getAllDevices();
+
+        assertEquals(2, result.size());
+        assertEquals("Phone", result.get(0).name());
+        assertEquals("Apple", result.get(0).brand());
+        assertEquals("Laptop", result.get(1).name());
+        assertEquals("Dell", result.get(1).brand());
+    }
+
+    @Test
+    void getDevicesPage_ShouldReturnNextCursor_WhenMoreDevicesExist() {
+        List<Device> devices = List.of(
+                new Device(1L, "Phone", "Apple", null),
+                new Device(2L, "Laptop", "Dell", null),
+                new Device(3L, "TV", "Samsung", null)
+        );
+        when(deviceRepository.findByIdGreaterThanOrderByIdAsc(Long.MIN_VALUE, Limit.of(3))).thenReturn(devices);
+
+        DevicePage firstPage = deviceService.getDevicesPage(null, 2);
+
+        assertEquals(2, firstPage.content().size());
+        assertEquals(2L, firstPage.content().getLast().id());
+        assertNotNull(firstPage.nextCursor());
+
+        when(deviceRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(3))).thenReturn(List.of(devices.getLast()));
+
+        DevicePage lastPage = deviceService.getDevicesPage(firstPage.nextCursor(), 2);
+
+        assertEquals(1, lastPage.content().size());
+        assertEquals(3L, lastPage.content().getFirst().id());
+        assertNull(lastPage.nextCursor());
+    }
+
+    @Test
+    void getDevicesCreatedBetween_ShouldContinueAfterCreationTimeAndId() {
+        Timestamp sameInstant = Timestamp.from(Instant.parse("2025-01-01T10:00:00.000123Z"));
+        List<Device> devices = List.of(
+                new Device(1L, "Phone", "Apple", sameInstant),
+                new Device(2L, "Laptop", "Dell", sameInstant)
+        );
+        Instant createdAfter = Instant.parse("2025-01-01T00:00:00Z");
+        Instant createdBefore = Instant.parse("2025-01-02T00:00:00Z");
+        when(deviceRepository.findByCreationTimeGreaterThanEqualAndCreationTimeLessThanOrderByCreationTimeAscIdAsc(
+                Timestamp.from(createdAfter), Timestamp.from(createdBefore), Limit.of(2))).thenReturn(devices);
+
+        DevicePage firstPage = deviceService.getDevicesCreatedBetween(createdAfter, createdBefore, null, 1);
+
+        assertEquals(List.of(1L), firstPage.content().stream().map(DeviceDTO::id).toList());
+        assertNotNull(firstPage.nextCursor());
+
+        deviceService.getDevicesCreatedBetween(createdAfter, createdBefore, firstPage.nextCursor(), 1);
+
+        verify(deviceRepository).findCreatedBetweenAfter(Timestamp.from(createdAfter), Timestamp.from(createdBefore),
+                sameInstant, 1L, Limit.of(2));
+    }
+
+    @Test
+    void getDevicesCreatedBetween_ShouldRejectEmptyRangeAndIdOnlyCursor() {
+        Instant instant = Instant.parse("2025-01-01T00:00:00Z");
+        assertThrows(InvalidRequestException.class,
+                () -> deviceService.getDevicesCreatedBetween(instant, instant, null, 10));
+        // "Mg" is the id-only cursor of the unfiltered listing
+        assertThrows(InvalidRequestException.class,
+                () -> deviceService.getDevicesCreatedBetween(instant, null, "Mg", 10));
+    }
+
+    @Test
+    void getDevicesPage_ShouldRejectMalformedCursor() {
+        assertThrows(InvalidRequestException.class, () -> deviceService.getDevicesPage("not a cursor!", 10));
+    }
+
+    @Test
+    void updateDevice_ShouldUpdateAndReturnDevice() {
+        Device existingDevice = new Device("Phone", "Apple");
+        Device updatedDevice = new Device("Tablet", "Samsung");
+        DeviceDTO updatedDeviceDTO = new DeviceDTO(1L, "Tablet", "Samsung", null);
+
+        when(deviceRepository.findById(1L)).thenReturn(Optional.of(existingDevice));
+        when(deviceRepository.saveAndFlush(any(Device.class))).thenReturn(updatedDevice);
+
+        DeviceDTO result = deviceService.updateDevice(1L, updatedDeviceDTO);
+
+        assertNotNull(result);
+        assertEquals("Tablet", result.name());
+        assertEquals("Samsung", result.brand());
+    }
+
+    @Test
+    void partialUpdateDevice_ShouldUpdateFieldsAndReturnDevice() {
+        Device existingDevice = new Device("Phone", "Apple");
+        Device updatedDevice = new Device("Mac", "Apple");
+        DevicePatch patch = new DevicePatch(true, "Mac", false, null);
+
+        when(deviceRepository.findById(1L)).thenReturn(Optional.of(existingDevice));
+        when(deviceRepository.saveAndFlush(any(Device.class))).thenReturn(updatedDevice);
+
+        DeviceDTO result = deviceService.partialUpdateDevice(1L, patch);
+
+        assertNotNull(result);
+        assertEquals("Mac", result.name());
+        assertEquals("Apple", result.brand());
+    }
+
+    @Test
+    void updateDevice_ShouldUpdateInOneStatement_WhenVersionMatches() {
+        DeviceDTO deviceDTO = new DeviceDTO(null, "Phone", " Apple ", null);
+        when(deviceRepository.updateIfVersionMatches(eq(1L), eq(4L), any(DevicePatch.class))).thenReturn(1);
+
+        long newVersion = deviceService.updateDevice(1L, deviceDTO, 4L);
+
+        assertEquals(5L, newVersion);
+        verify(deviceRepository).updateIfVersionMatches(1L, 4L, DevicePatch.of("Phone", " Apple "));
+        verify(deviceRepository, never()).findById(any());
+        verify(eventPublisher).publishEvent(DeviceChangeEvent.partiallyUpdated(
+                new DeviceDTO(1L, "Phone", " Apple ", null, 5L)));
+    }
+
+    @Test
+    void partialUpdateDevice_ShouldThrowConflict_WhenVersionIsStale() {
+        when(deviceRepository.updateIfVersionMatches(eq(1L), eq(4L), any(DevicePatch.class))).thenReturn(0);
+        when(deviceRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> deviceService.partialUpdateDevice(1L, new DevicePatch(true, "Mac", false, null), 4L));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void partialUpdateDevice_ShouldThrowNotFound_WhenDeviceDoesNotExist() {
+        when(deviceRepository.updateIfVersionMatches(eq(1L), eq(4L), any(DevicePatch.class))).thenReturn(0);
+        when(deviceRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(EntityNotFoundException.class,
+                () -> deviceService.partialUpdateDevice(1L, new DevicePatch(true, "Mac", false, null), 4L));
+    }
+
+    @Test
+    void partialUpdateDevice_ShouldPublishPartialEvent_WithOnlyWrittenFields() {
+        when(deviceRepository.updateIfVersionMatches(eq(1L), eq(4L), any(DevicePatch.class))).thenReturn(1);
+
+        deviceService.partialUpdateDevice(1L, new DevicePatch(true, "Mac", false, null), 4L);
+
+        verify(deviceRepository).updateIfVersionMatches(1L, 4L, new DevicePatch(true, "Mac", false, null));
+        verify(eventPublisher).publishEvent(DeviceChangeEvent.partiallyUpdated(new DeviceDTO(1L, "Mac", null, null, 5L)));
+    }
+
+    @Test
+    void partialUpdateDevice_ShouldSetFieldsExplicitlyPatchedToNull() {
+        Device existingDevice = new Device(1L, "Phone", "Apple", null);
+
+        when(deviceRepository.findById(1L)).thenReturn(Optional.of(existingDevice));
+        when(deviceRepository.saveAndFlush(existingDevice)).thenReturn(existingDevice);
+
+        DeviceDTO result = deviceService.partialUpdateDevice(1L, new DevicePatch(false, null, true, null));
+
+        assertEquals("Phone", result.name());
+        assertNull(result.brand());
+    }
+
+    @Test
+    void deleteDevice_ShouldDelete_WhenDeviceExists() {
+        when(deviceRepository.existsById(1L)).thenReturn(true);
+        doNothing().when(deviceRepository).deleteById(1L);
+
+        assertDoesNotThrow(() -> deviceService.deleteDevice(1L));
+        verify(deviceRepository, times(1)).deleteById(1L);
+        verify(eventPublisher).publishEvent(DeviceChangeEvent.deleted(1L));
+    }
+
+    @Test
+    void deleteDevice_ShouldThrowException_WhenDeviceDoesNotExist() {
+        when(deviceRepository.existsById(1L)).thenReturn(false);
+
+        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class, () -> deviceService.deleteDevice(1L));
+
+        assertEquals("Device not found with ID: 1", exception.getMessage());
+    }
+
+    @Test
+    void searchDeviceByBrand_ShouldReturnMatchingDevices() {
+        List<Device> devices = List.of(
+                new Device(1L, "Phone", "Apple", null),
+                new Device(2L, "TV", "Samsung", null),
+                new Device(3L, "Watch", "Samsung", null)
+        );
+
+        when(deviceRepository.findByBrandContainingIgnoreCase("Samsung")).thenReturn(devices.stream().filter(x->x.getBrand().equals("Samsung")).toList());
+
+        List<DeviceDTO> result = deviceService.searchDeviceByBrand("Samsung");
+
+        assertEquals(2, result.size());
+        assertEquals(2L, result.getFirst().id());
+        assertEquals("TV", result.getFirst().name());
+        assertEquals("Samsung", result.getFirst().brand());
+        assertEquals(3L, result.getLast().id());
+        assertEquals("Watch", result.getLast().name());
+        assertEquals("Samsung", result.getLast().brand());
+    }
+
+    @Test
+    void searchDeviceByBrand_ShouldUseBrandIndex_WhenReady() {
+        List<Device> devices = List.of(
+                new Device(2L, "TV", "Samsung", null),
+                new Device(3L, "Watch", "Samsung", null)
+        );
+        when(brandIndex.isReady()).thenReturn(true);
+        when(brandIndex.findIdsContaining("Sung", Long.MIN_VALUE, Integer.MAX_VALUE)).thenReturn(List.of(2L, 3L));
+        when(deviceRepository.findByIdInOrderByIdAsc(List.of(2L, 3L))).thenReturn(devices);
+
+        List<DeviceDTO> result = deviceService.searchDeviceByBrand("Sung");
+
+        assertEquals(2, result.size());
+        verify(deviceRepository, never()).findByBrandContainingIgnoreCase(anyString());
+    }
+
+    @Test
+    void searchDevicesByBrand_ShouldPageContainsMatchesFromBrandIndex() {
+        when(brandIndex.isReady()).thenReturn(true);
+        when(brandIndex.findIdsContaining("sung", Long.MIN_VALUE, 2)).thenReturn(List.of(2L, 3L));
+        when(deviceRepository.findByIdInOrderByIdAsc(List.of(2L))).thenReturn(List.of(
+                new Device(2L, "TV", "Samsung", null)
+        ));
+
+        DevicePage result = deviceService.searchDevicesByBrand(" SUNG ", BrandMatch.CONTAINS, null, 1);
+
+        assertEquals(1, result.content().size());
+        assertEquals(2L, result.content().getFirst().id());
+        assertNotNull(result.nextCursor());
+    }
+
+    @Test
+    void searchDevicesByBrand_ShouldQueryNormalizedBrandKey_ForExactMatch() {
+        when(deviceRepository.findByBrandKeyAndIdGreaterThanOrderByIdAsc(eq("samsung"), eq(Long.MIN_VALUE), any()))
+                .thenReturn(List.of(new Device(2L, "TV", "Samsung", null)));
+
+        DevicePage result = deviceService.searchDevicesByBrand("Samsung", BrandMatch.EXACT, null, 10);
+
+        assertEquals(1, result.content().size());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void countDevicesByBrand_ShouldCountFromBrandIndex_WhenReady() {
+        when(brandIndex.isReady()).thenReturn(true);
+        when(brandIndex.countContaining("sung")).thenReturn(7L);
+
+        assertEquals(7L, deviceService.countDevicesByBrand("Sung", BrandMatch.CONTAINS));
+        verify(deviceRepository, never()).countByBrandKeyContaining(anyString());
+    }
+
+    @Test
+    void countDevicesByBrand_ShouldUseDatabase_ForPrefixMatch() {
+        when(deviceRepository.countByBrandKeyStartingWith("sam")).thenReturn(3L);
+
+        assertEquals(3L, deviceService.countDevicesByBrand("Sam", BrandMatch.PREFIX));
+    }
+
+    @Test
+    void saveDevices_ShouldPersistInChunksAndReportEachItem() {
+        List<DeviceDTO> devices = Arrays.asList(
+                new DeviceDTO(null, "Phone", "Apple", null),
+                null,
+                new DeviceDTO(null, "TV", "Samsung", null)
+        );
+
+        List<BatchItemResultDTO> results = deviceService.saveDevices(devices);
+
+        assertEquals(3, results.size());
+        assertEquals(201, results.get(0).status());
+        assertEquals("Phone", results.get(0).device().name());
+        assertEquals(400, results.get(1).status());
+        assertEquals(2, results.get(2).index());
+        assertEquals(201, results.get(2).status());
+        verify(entityManager, times(2)).persist(any(Device.class));
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+        verify(eventPublisher, times(2)).publishEvent(any(DeviceChangeEvent.class));
+    }
+
+    @Test
+    void saveDevices_ShouldReportFailedChunkWithoutStoppingOtherChunks() {
+        doThrow(new PersistenceException("constraint violated")).doNothing().when(entityManager).flush();
+        List<DeviceDTO> devices = List.of(
+                new DeviceDTO(null, "Phone", "Apple", null),
+                new DeviceDTO(null, "Laptop", "Dell", null),
+                new DeviceDTO(null, "TV", "Samsung", null)
+        );
+
+        List<BatchItemResultDTO> results = deviceService.saveDevices(devices);
+
+        assertEquals(List.of(500, 500, 201), results.stream().map(BatchItemResultDTO::status).toList());
+        assertEquals(List.of(0, 1, 2), results.stream().map(BatchItemResultDTO::index).toList());
+        verify(eventPublisher, times(1)).publishEvent(any(DeviceChangeEvent.class));
+    }
+
+    @Test
+    void partialUpdateDevices_ShouldApplyPresentFieldsAndReportMissingDevices() {
+        when(deviceRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(new Device(1L, "Phone", "Apple", null)));
+
+        List<BatchItemResultDTO> results = deviceService.partialUpdateDevices(List.of(
+                new DeviceDTO(1L, "Mac", null, null),
+                new DeviceDTO(2L, "TV", null, null)
+        ));
+
+        assertEquals(200, results.get(0).status());
+        assertEquals("Mac", results.get(0).device().name());
+        assertEquals("Apple", results.get(0).device().brand());
+        assertEquals(404, results.get(1).status());
+        assertEquals(2L, results.get(1).id());
+    }
+
+    @Test
+    void deleteDevices_ShouldDeleteExistingDevicesInOneStatementPerChunk() {
+        when(deviceRepository.findExistingIds(List.of(1L, 2L))).thenReturn(List.of(1L));
+
+        List<BatchItemResultDTO> results = deviceService.deleteDevices(List.of(1L, 2L));
+
+        assertEquals(204, results.get(0).status());
+        assertEquals(404, results.get(1).status());
+        verify(deviceRepository).deleteAllByIdInBatch(Set.of(1L));
+        verify(eventPublisher).publishEvent(DeviceChangeEvent.deleted(1L));
+        verify(eventPublisher, never()).publishEvent(DeviceChangeEvent.deleted(2L));
+    }
+}
@@ -0,0 +1,160 @@
+package com.crud.device.service;
+
+import com.crud.device.dto.BatchItemResultDTO;
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DevicePage;
+import com.crud.device.dto.DevicePatch;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.search.DeviceQuery;
+import com.crud.device.service.impl.InMemoryDeviceService;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class InMemoryDeviceServiceTest {
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void writes_ShouldBeReadBackAndPublished() throws IOException {
+        try (InMemoryDeviceService service = open(1_000)) {
+            DeviceDTO saved = service.saveDevice(new DeviceDTO(null, "Galaxy", "Samsung", null));
+            assertEquals(1L, saved.id());
+            assertEquals(0L, saved.version());
+
+            assertEquals(1L, service.updateDevice(saved.id(), new DeviceDTO(null, "Galaxy S", "Samsung", null)).version());
+            assertEquals(2L, service.partialUpdateDevice(saved.id(), new DevicePatch(false, null, true, " SAMSUNG"), 1L));
+            assertThrows(OptimisticLockingFailureException.class,
+                    () -> service.partialUpdateDevice(saved.id(), DevicePatch.of("Stale", null), 1L));
+            DeviceDTO device = service.getDeviceById(saved.id()).orElseThrow();
+            assertEquals("Galaxy S", device.name());
+            assertEquals(" SAMSUNG", device.brand());
+            assertEquals(1, service.countDevicesByBrand("samsung", BrandMatch.EXACT));
+
+            service.deleteDevice(saved.id());
+            assertTrue(service.getDeviceById(saved.id()).isEmpty());
+            assertThrows(EntityNotFoundException.class, () -> service.deleteDevice(saved.id()));
+            verify(eventPublisher, times(4)).publishEvent(any(DeviceChangeEvent.class));
+        }
+    }
+
+    @Test
+    void batches_ShouldReportEachItemAndPageByBrand() throws IOException {
+        try (InMemoryDeviceService service = open(1_000)) {
+            List<DeviceDTO> devices = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                devices.add(new DeviceDTO(null, "Phone " + i, i % 2 == 0 ? "Apple" : "Samsung", null));
+            }
+            devices.add(null);
+            List<BatchItemResultDTO> created = service.saveDevices(devices);
+            assertEquals(201, created.getFirst().status());
+            assertEquals(400, created.getLast().status());
+            assertEquals(12, created.getLast().index());
+
+            List<BatchItemResultDTO> updated = service.partialUpdateDevices(List.of(
+                    new DeviceDTO(1L, "Renamed", null, null), new DeviceDTO(999L, "Missing", null, null)));
+            assertEquals(200, updated.get(0).status());
+            assertEquals("Apple", updated.get(0).device().brand());
+            assertEquals(404, updated.get(1).status());
+            assertEquals(List.of(204, 404), service.deleteDevices(Arrays.asList(2L, 2L)).stream()
+                    .map(BatchItemResultDTO::status).toList());
+
+            List<Long> appleIds = new ArrayList<>();
+            String cursor = null;
+            do {
+                DevicePage page = service.searchDevicesByBrand("app", BrandMatch.PREFIX, cursor, 4);
+                page.content().forEach(device -> appleIds.add(device.id()));
+                cursor = page.nextCursor();
+            } while (cursor != null);
+            assertEquals(List.of(1L, 3L, 5L, 7L, 9L, 11L), appleIds);
+        }
+    }
+
+    @Test
+    void queries_ShouldPageInTheirSortOrder() throws IOException {
+        try (InMemoryDeviceService service = open(1_000)) {
+            for (int i = 0; i < 12; i++) {
+                service.saveDevice(new DeviceDTO(null, i % 4 == 0 ? null : "Phone " + (i % 3), "Apple", null));
+            }
+            DeviceQuery query = new DeviceQuery("Phone", null, null, null, null, Sort.Direction.DESC);
+
+            List<Long> pagedIds = new ArrayList<>();
+            String cursor = null;
+            do {
+                DevicePage page = service.queryDevices(query, cursor, 4);
+                page.content().forEach(device -> pagedIds.add(device.id()));
+                cursor = page.nextCursor();
+            } while (cursor != null);
+            assertEquals(List.of(12L, 6L, 3L, 11L, 8L, 2L, 10L, 7L, 4L), pagedIds);
+            // A cursor only continues a query with the same sort
+            String nameCursor = service.queryDevices(query, null, 4).nextCursor();
+            assertThrows(InvalidRequestException.class, () -> service.queryDevices(
+                    new DeviceQuery(null, null, null, null, null, null), nameCursor, 4));
+        }
+    }
+
+    @Test
+    void restart_ShouldRecoverDevicesAndNeverReuseIds() throws IOException {
+        try (InMemoryDeviceService service = open(5)) {
+            for (int i = 0; i < 12; i++) {
+                service.saveDevice(new DeviceDTO(null, "Phone " + i, "Apple", null));
+            }
+            service.deleteDevice(12L);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.anyMatch(file -> file.getFileName().toString().startsWith("snapshot-")));
+        }
+
+        try (InMemoryDeviceService service = open(5)) {
+            assertEquals(11, service.getAllDevices().size());
+            assertEquals("Phone 10", service.getDeviceById(11L).orElseThrow().name());
+            assertEquals(51L, service.saveDevice(new DeviceDTO(null, "After restart", "Apple", null)).id());
+        }
+    }
+
+    @Test
+    void import_ShouldKeepSnapshotIdsAndHandOutLaterOnes() throws IOException {
+        Timestamp created = Timestamp.valueOf("2024-01-02 03:04:05");
+        List<DeviceDTO> snapshot = List.of(
+                new DeviceDTO(1L, "Imported", "Apple", created, 3L, created),
+                new DeviceDTO(120L, "Last", "Samsung", created, 0L, created));
+        try (InMemoryDeviceService service = open(1_000)) {
+            service.saveDevice(new DeviceDTO(null, "Overwritten", "Apple", null));
+
+            assertEquals(2, service.importDevices(snapshot.size(), snapshot::forEach));
+            assertEquals(snapshot.getFirst(), service.getDeviceById(1L).orElseThrow());
+            assertEquals(121L, service.saveDevice(new DeviceDTO(null, "After import", "Apple", null)).id());
+            verify(eventPublisher).publishEvent(DeviceChangeEvent.imported(snapshot.getLast()));
+        }
+
+        try (InMemoryDeviceService service = open(1_000)) {
+            assertEquals(3, service.getAllDevices().size());
+            assertEquals(snapshot.getLast(), service.getDeviceById(120L).orElseThrow());
+            assertTrue(service.saveDevice(new DeviceDTO(null, "After restart", "Apple", null)).id() > 121L);
+        }
+    }
+
+    private InMemoryDeviceService open(long snapshotEvery) throws IOException {
+        return new InMemoryDeviceService(eventPublisher, directory, false, snapshotEvery, 5);
+    }
+}
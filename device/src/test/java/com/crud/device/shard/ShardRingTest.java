@@ -0,0 +1,45 @@
+package com.crud.device.shard;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRingTest {
+
+    private static final int DEVICES = 100_000;
+
+    @Test
+    void sequentialIds_ShouldSpreadEvenlyOverShards() {
+        ShardRing ring = new ShardRing(4, 128);
+        int[] devices = new int[4];
+        for (long id = 1; id <= DEVICES; id++) {
+            devices[ring.shardFor(id)]++;
+        }
+        for (int shard = 0; shard < 4; shard++) {
+            assertEquals(0.25, devices[shard] / (double) DEVICES, 0.05, "shard " + shard);
+            assertEquals(0.25, ring.share(shard), 0.05, "share of shard " + shard);
+        }
+    }
+
+    @Test
+    void addingShard_ShouldOnlyMoveDevicesToTheNewShard() {
+        ShardRing before = new ShardRing(3, 128);
+        ShardRing after = new ShardRing(4, 128);
+        int moved = 0;
+        for (long id = 1; id <= DEVICES; id++) {
+            int owner = after.shardFor(id);
+            if (owner != before.shardFor(id)) {
+                assertEquals(3, owner, "device " + id + " moved between existing shards");
+                moved++;
+            }
+        }
+        assertEquals(0.25, moved / (double) DEVICES, 0.05);
+    }
+
+    @Test
+    void singleShard_ShouldOwnEverything() {
+        ShardRing ring = new ShardRing(1, 1);
+        assertEquals(0, ring.shardFor(42));
+        assertEquals(1.0, ring.share(0));
+    }
+}
@@ -0,0 +1,94 @@
+package com.crud.device.snapshot;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceSnapshotDTO;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.feed.DeviceChangeFeed;
+import com.crud.device.search.BrandMatch;
+import com.crud.device.service.DeviceService;
+import com.crud.device.service.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "device.snapshot.directory=./target/snapshot-test/${random.uuid}")
+class DeviceSnapshotServiceTest {
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private DeviceSnapshotService snapshotService;
+
+    @Autowired
+    private DeviceChangeFeed changeFeed;
+
+    @Test
+    void importShouldRestoreExportedDevicesWithTheirIds() throws IOException {
+        List<DeviceDTO> devices = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            devices.add(new DeviceDTO(null, "Phone " + i, i % 2 == 0 ? "Snapshot" : null, null));
+        }
+        deviceService.saveDevices(devices);
+        List<DeviceDTO> exported = deviceService.getAllDevices();
+
+        DeviceSnapshotDTO export = snapshotService.exportSnapshot("registry.snapshot");
+        assertEquals(exported.size(), export.devices());
+        deviceService.deleteDevices(exported.stream().map(DeviceDTO::id).toList());
+        assertTrue(deviceService.getAllDevices().isEmpty());
+
+        DeviceSnapshotDTO imported = snapshotService.importSnapshot("registry.snapshot");
+
+        assertEquals(export.devices(), imported.devices());
+        assertEquals(exported, deviceService.getAllDevices());
+        DeviceDTO first = exported.getFirst();
+        assertEquals(first, deviceService.getDeviceById(first.id()).orElseThrow());
+        assertEquals(600, deviceService.countDevicesByBrand("snap", BrandMatch.CONTAINS));
+        assertEquals(600, deviceService.countDevicesByBrand("snapshot", BrandMatch.EXACT));
+        long maxId = exported.getLast().id();
+        assertTrue(deviceService.saveDevice(new DeviceDTO(null, "New", "Snapshot", null)).id() > maxId);
+    }
+
+    @Test
+    void importShouldBeAnnouncedInTheChangeFeedAndMoveTheCollectionTag() throws IOException {
+        DeviceDTO saved = deviceService.saveDevice(new DeviceDTO(null, "Phone", "Announced", null));
+        snapshotService.exportSnapshot("announced.snapshot");
+        String tag = deviceService.collectionTag();
+        long since = changeFeed.lastSequence();
+
+        snapshotService.importSnapshot("announced.snapshot");
+
+        assertTrue(changeFeed.changesSince(since, 10_000).stream().anyMatch(change ->
+                change.type() == DeviceChangeEvent.Type.IMPORTED && change.id().equals(saved.id())));
+        assertNotEquals(tag, deviceService.collectionTag());
+    }
+
+    @Test
+    void idsLeftInTheBlockOfThisNodeShouldNotBeHandedOutAfterAnImport() {
+        // On a new sequence Hibernate's first block is the single id 1, the second device starts a full one
+        deviceService.saveDevice(new DeviceDTO(null, "Phone", "Block", null));
+        DeviceDTO saved = deviceService.saveDevice(new DeviceDTO(null, "Phone", "Block", null));
+        // The next ids of the block Hibernate took for the device above
+        List<DeviceDTO> snapshot = List.of(
+                new DeviceDTO(saved.id() + 1, "Imported", "Block", saved.creationTime(), 0L, saved.lastModified()),
+                new DeviceDTO(saved.id() + 2, "Imported", "Block", saved.creationTime(), 0L, saved.lastModified()));
+
+        deviceService.importDevices(snapshot.size(), snapshot::forEach);
+
+        assertTrue(deviceService.saveDevice(new DeviceDTO(null, "After import", "Block", null)).id() > saved.id() + 2);
+        assertEquals(5, deviceService.countDevicesByBrand("block", BrandMatch.EXACT));
+    }
+
+    @Test
+    void filesOutsideTheSnapshotDirectoryShouldBeRejected() {
+        assertThrows(InvalidRequestException.class, () -> snapshotService.exportSnapshot("../outside.snapshot"));
+        assertThrows(InvalidRequestException.class, () -> snapshotService.importSnapshot("/etc/passwd"));
+        assertThrows(InvalidRequestException.class, () -> snapshotService.importSnapshot("missing.snapshot"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.crud.device.store;
+
+import com.crud.device.dto.DeviceDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceSnapshotFileTest {
+
+    private static final Timestamp CREATED = Timestamp.from(Instant.parse("2024-03-01T10:15:30.123456Z"));
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void devices_ShouldRoundTripAcrossWindows() throws IOException {
+        Path file = directory.resolve("devices.snapshot");
+        List<DeviceDTO> devices = new ArrayList<>();
+        for (long id = 1; id <= 1_000; id++) {
+            devices.add(new DeviceDTO(id, id % 7 == 0 ? null : "Device " + id, id % 5 == 0 ? null : "Brand é" + id % 3,
+                    CREATED, id, CREATED));
+        }
+
+        // Windows of 1 KiB, so many records start near the end of one
+        DeviceSnapshotFile.Header written = DeviceSnapshotFile.write(file, devices::forEach, 1024);
+        List<DeviceDTO> read = new ArrayList<>();
+        DeviceSnapshotFile.Header header = DeviceSnapshotFile.read(file, read::add, 1024);
+
+        assertEquals(1_000, written.devices());
+        assertEquals(Files.size(file), written.bytes());
+        assertEquals(written, header);
+        assertEquals(written, DeviceSnapshotFile.readHeader(file));
+        assertEquals(devices, read);
+    }
+
+    @Test
+    void damagedFile_ShouldBeRejected() throws IOException {
+        Path file = directory.resolve("devices.snapshot");
+        DeviceSnapshotFile.write(file, consumer -> consumer.accept(new DeviceDTO(1L, "Pixel", "Google", CREATED, 0L,
+                CREATED)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), channel.size() - 1);
+        }
+
+        IllegalArgumentException damaged = assertThrows(IllegalArgumentException.class,
+                () -> DeviceSnapshotFile.read(file, device -> { }));
+        assertTrue(damaged.getMessage().contains("damaged"));
+    }
+
+    @Test
+    void otherFilesAndVersions_ShouldBeRejected() throws IOException {
+        Path file = directory.resolve("devices.snapshot");
+        Files.write(file, new byte[64]);
+        assertThrows(IllegalArgumentException.class, () -> DeviceSnapshotFile.readHeader(file));
+
+        DeviceSnapshotFile.write(file, consumer -> { });
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 2), 4);
+        }
+        IllegalArgumentException version = assertThrows(IllegalArgumentException.class,
+                () -> DeviceSnapshotFile.readHeader(file));
+        assertTrue(version.getMessage().contains("version 2"));
+    }
+}
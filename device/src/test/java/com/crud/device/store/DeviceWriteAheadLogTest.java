@@ -0,0 +1,133 @@
+package com.crud.device.store;
+
+import com.crud.device.dto.DeviceDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceWriteAheadLogTest {
+
+    private static final Timestamp CREATED = Timestamp.from(Instant.parse("2024-03-01T10:15:30.123456Z"));
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void recover_ShouldReplayTheLogInOrder() throws IOException {
+        try (DeviceWriteAheadLog log = new DeviceWriteAheadLog(directory, true)) {
+            log.recover(new Recovered(new OffHeapDeviceStore()));
+            log.appendIdBlock(50);
+            log.appendPut(device(1L, "Pixel", 0L));
+            log.appendPut(device(2L, "Galaxy", 0L));
+            log.appendPut(device(1L, "Pixel 8", 1L));
+            log.appendDelete(2L);
+        }
+
+        Recovered recovered = recover();
+
+        assertEquals(50, recovered.reservedUpTo);
+        assertEquals(1, recovered.store.size());
+        assertEquals("Pixel 8", recovered.store.get(1L).name());
+        assertEquals(CREATED, recovered.store.get(1L).creationTime());
+        assertEquals(1L, recovered.store.get(1L).version());
+    }
+
+    @Test
+    void recover_ShouldTruncateATornTailAndKeepAppending() throws IOException {
+        try (DeviceWriteAheadLog log = new DeviceWriteAheadLog(directory, true)) {
+            log.recover(new Recovered(new OffHeapDeviceStore()));
+            log.appendPut(device(1L, "Pixel", 0L));
+            log.appendPut(device(2L, "Galaxy", 0L));
+        }
+        Path logFile = directory.resolve("wal-0.log");
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (DeviceWriteAheadLog log = new DeviceWriteAheadLog(directory, true)) {
+            Recovered recovered = new Recovered(new OffHeapDeviceStore());
+            log.recover(recovered);
+            assertEquals(List.of(1L), ids(recovered.store));
+            log.appendPut(device(3L, "Xperia", 0L));
+        }
+
+        assertEquals(List.of(1L, 3L), ids(recover().store));
+    }
+
+    @Test
+    void snapshot_ShouldReplaceOlderFilesAndRecoverWithLaterChanges() throws IOException {
+        try (DeviceWriteAheadLog log = new DeviceWriteAheadLog(directory, true)) {
+            OffHeapDeviceStore store = new OffHeapDeviceStore();
+            log.recover(new Recovered(store));
+            for (long id = 1; id <= 3; id++) {
+                log.appendPut(device(id, "Device " + id, 0L));
+                store.put(device(id, "Device " + id, 0L));
+            }
+            log.snapshot(50, store::forEach);
+            assertEquals(0, log.recordsSinceSnapshot());
+            log.appendDelete(2L);
+        }
+
+        assertEquals(List.of("snapshot-1.bin", "wal-1.log"), files());
+        Recovered recovered = recover();
+        assertEquals(50, recovered.reservedUpTo);
+        assertEquals(List.of(1L, 3L), ids(recovered.store));
+    }
+
+    private Recovered recover() throws IOException {
+        Recovered recovered = new Recovered(new OffHeapDeviceStore());
+        try (DeviceWriteAheadLog log = new DeviceWriteAheadLog(directory, true)) {
+            log.recover(recovered);
+        }
+        return recovered;
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static DeviceDTO device(long id, String name, long version) {
+        return new DeviceDTO(id, name, "Brand", CREATED, version, CREATED);
+    }
+
+    private static List<Long> ids(OffHeapDeviceStore store) {
+        return store.page(Long.MIN_VALUE, Integer.MAX_VALUE).stream().map(DeviceDTO::id).toList();
+    }
+
+    private static final class Recovered implements DeviceWriteAheadLog.Replay {
+        private final OffHeapDeviceStore store;
+        private long reservedUpTo;
+
+        Recovered(OffHeapDeviceStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public void put(DeviceDTO device) {
+            store.put(device);
+        }
+
+        @Override
+        public void delete(long id) {
+            store.remove(id);
+        }
+
+        @Override
+        public void reserveIds(long upTo) {
+            reservedUpTo = Math.max(reservedUpTo, upTo);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.crud.device.store;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.DeviceDailyCountDTO;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapDeviceStoreTest {
+
+    private static final Timestamp CREATED = Timestamp.from(Instant.parse("2024-03-01T10:15:30.123456Z"));
+
+    @Test
+    void put_ShouldRoundTripEveryField() {
+        OffHeapDeviceStore store = new OffHeapDeviceStore();
+        store.put(new DeviceDTO(7L, "iPhone 15", "Apple", CREATED, 3L, CREATED));
+        store.put(new DeviceDTO(8L, null, null, CREATED, 0L, CREATED));
+
+        DeviceDTO device = store.get(7L);
+        assertEquals("iPhone 15", device.name());
+        assertEquals("Apple", device.brand());
+        assertEquals(CREATED, device.creationTime());
+        assertEquals(3L, device.version());
+        assertNull(store.get(8L).name());
+        assertNull(store.get(8L).brand());
+        assertNull(store.get(9L));
+        assertEquals(8L, store.maxId());
+    }
+
+    @Test
+    void longerRename_ShouldMoveTheRecordAndKeepBrandSetsInStep() {
+        OffHeapDeviceStore store = new OffHeapDeviceStore();
+        store.put(new DeviceDTO(1L, "A", "Apple", CREATED, 0L, CREATED));
+        store.put(new DeviceDTO(2L, "B", "Apple", CREATED, 0L, CREATED));
+
+        store.put(new DeviceDTO(1L, "A much longer name than before", "Samsung", CREATED, 1L, CREATED));
+
+        assertEquals("A much longer name than before", store.get(1L).name());
+        assertEquals("B", store.get(2L).name());
+        assertEquals(List.of(2L), ids(store.findByBrand("Apple"::equals, Long.MIN_VALUE, 10)));
+        assertEquals(List.of(1L), ids(store.findByBrand("Samsung"::equals, Long.MIN_VALUE, 10)));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void growthAndCompaction_ShouldKeepEveryLiveDevice() {
+        OffHeapDeviceStore store = new OffHeapDeviceStore();
+        int initialCapacity = store.capacity();
+        for (long id = 1; id <= 40_000; id++) {
+            store.put(new DeviceDTO(id, "Device " + id, "Brand " + id % 10, CREATED, 0L, CREATED));
+        }
+        assertTrue(store.capacity() > initialCapacity);
+        for (long id = 1; id <= 40_000; id += 2) {
+            store.remove(id);
+        }
+        for (long id = 40_001; id <= 60_000; id++) {
+            store.put(new DeviceDTO(id, "Device " + id, "Brand " + id % 10, CREATED, 0L, CREATED));
+        }
+
+        assertEquals(40_000, store.size());
+        assertNull(store.get(1L));
+        assertEquals("Device 2", store.get(2L).name());
+        assertEquals("Device 60000", store.get(60_000L).name());
+        assertEquals(6_000, store.countByBrand("Brand 2"::equals));
+    }
+
+    @Test
+    void brandSearch_ShouldMergeMatchingBrandsInIdOrderAfterTheCursor() {
+        OffHeapDeviceStore store = new OffHeapDeviceStore();
+        String[] brands = {"Apple", "apple ", "Samsung", "APPLE"};
+        for (long id = 1; id <= 8; id++) {
+            store.put(new DeviceDTO(id, "Device", brands[(int) (id % 4)], CREATED, 0L, CREATED));
+        }
+
+        List<DeviceDTO> page = store.findByBrand(brand -> brand.trim().equalsIgnoreCase("apple"), 2L, 3);
+
+        assertEquals(List.of(3L, 4L, 5L), ids(page));
+        assertEquals(6, store.countByBrand(brand -> brand.trim().equalsIgnoreCase("apple")));
+    }
+
+    @Test
+    void creationRange_ShouldPageByCreationTimeThenIdAndCountPerDay() {
+        OffHeapDeviceStore store = new OffHeapDeviceStore();
+        Timestamp day1 = Timestamp.from(Instant.parse("2024-03-01T12:00:00Z"));
+        Timestamp day2 = Timestamp.from(Instant.parse("2024-03-02T12:00:00Z"));
+        store.put(new DeviceDTO(1L, "A", "Apple", day2, 0L, day2));
+        store.put(new DeviceDTO(2L, "B", " APPLE", day1, 0L, day1));
+        store.put(new DeviceDTO(3L, "C", "Samsung", day1, 0L, day1));
+
+        Timestamp from = Timestamp.from(Instant.parse("2024-03-01T00:00:00Z"));
+        Timestamp to = Timestamp.from(Instant.parse("2024-03-03T00:00:00Z"));
+        assertEquals(List.of(2L, 3L, 1L), ids(store.findCreatedBetween(from, to, null, Long.MIN_VALUE, 10)));
+        assertEquals(List.of(3L, 1L), ids(store.findCreatedBetween(from, to, day1, 2L, 10)));
+
+        List<DeviceDailyCountDTO> counts = store.countByBrandAndDay(from, to, ZoneOffset.UTC);
+        assertEquals(List.of(
+                new DeviceDailyCountDTO("apple", LocalDate.parse("2024-03-01"), 1),
+                new DeviceDailyCountDTO("samsung", LocalDate.parse("2024-03-01"), 1),
+                new DeviceDailyCountDTO("apple", LocalDate.parse("2024-03-02"), 1)), counts);
+    }
+
+    private static List<Long> ids(List<DeviceDTO> devices) {
+        return devices.stream().map(DeviceDTO::id).toList();
+    }
+}
@@ -0,0 +1,216 @@
+package com.crud.device.writebehind;
+
+import com.crud.device.dto.DeviceDTO;
+import com.crud.device.dto.WriteBehindStatusDTO;
+import com.crud.device.event.DeviceChangeEvent;
+import com.crud.device.repository.DeviceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class DeviceWriteBehindQueueTest {
+
+    @Mock
+    private DeviceRepository deviceRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private AutoCloseable mocks;
+    private DeviceWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        given(deviceRepository.nextSequenceValue()).willReturn(100L, 150L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (queue.isRunning()) {
+            queue.stop();
+        }
+        mocks.close();
+    }
+
+    @Test
+    void enqueue_ShouldAssignIdsFromSequenceBlock() {
+        queue = newQueue(10, 10);
+        queue.start();
+
+        DeviceDTO first = queue.enqueue(new DeviceDTO(null, "Phone", "Apple", null));
+        DeviceDTO second = queue.enqueue(new DeviceDTO(null, "TV", "Samsung", null));
+
+        assertEquals(51L, first.id());
+        assertEquals(52L, second.id());
+        assertEquals(0L, first.version());
+        assertNotNull(first.creationTime());
+    }
+
+    @Test
+    void enqueue_ShouldSkipIdsWrittenWithIdsOfTheirOwn() {
+        queue = newQueue(10, 10);
+        queue.start();
+
+        assertEquals(51L, queue.enqueue(new DeviceDTO(null, "Phone", "Apple", null)).id());
+        queue.skipIdsPast(60L);
+
+        assertEquals(61L, queue.enqueue(new DeviceDTO(null, "TV", "Samsung", null)).id());
+    }
+
+    @Test
+    void enqueuedDevice_ShouldBeReadableUntilWrittenAndThenPublished() throws Exception {
+        CountDownLatch release = blockWrites();
+        queue = newQueue(10, 10);
+        queue.start();
+
+        DeviceDTO queued = queue.enqueue(new DeviceDTO(null, "Phone", "Apple", null));
+        assertEquals(queued, queue.findPending(queued.id()).orElseThrow());
+        verify(eventPublisher, times(0)).publishEvent(any());
+
+        release.countDown();
+        queue.awaitWritten(queued.id());
+
+        assertTrue(queue.findPending(queued.id()).isEmpty());
+        ArgumentCaptor<DeviceChangeEvent> event = ArgumentCaptor.forClass(DeviceChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(DeviceChangeEvent.created(queued), event.getValue());
+        assertEquals(1, queue.status().flushedDevices());
+    }
+
+    @Test
+    void enqueue_ShouldReject_WhenQueueIsFull() throws Exception {
+        CountDownLatch release = blockWrites();
+        queue = newQueue(2, 1);
+        queue.start();
+
+        queue.enqueue(new DeviceDTO(null, "Taken by the writer", "Apple", null));
+        verify(deviceRepository, timeout(5000)).insertAll(anyList());
+        queue.enqueue(new DeviceDTO(null, "Queued", "Apple", null));
+        queue.enqueue(new DeviceDTO(null, "Queued", "Apple", null));
+
+        assertThrows(WriteBehindFullException.class, () -> queue.enqueue(new DeviceDTO(null, "Rejected", "Apple", null)));
+        WriteBehindStatusDTO status = queue.status();
+        assertEquals(2, status.depth());
+        assertEquals(3, status.accepted());
+        assertEquals(1, status.rejected());
+        release.countDown();
+    }
+
+    @Test
+    void stop_ShouldDrainQueuedDevices() {
+        queue = newQueue(100, 10);
+        queue.start();
+        for (int i = 0; i < 25; i++) {
+            queue.enqueue(new DeviceDTO(null, "Phone " + i, "Apple", null));
+        }
+
+        queue.stop();
+
+        verify(eventPublisher, times(25)).publishEvent(any(DeviceChangeEvent.class));
+        assertEquals(0, queue.status().depth());
+        assertThrows(WriteBehindFullException.class, () -> queue.enqueue(new DeviceDTO(null, "Late", "Apple", null)));
+    }
+
+    @Test
+    void flush_ShouldRetry_WhenDatabaseIsUnavailable() {
+        doThrow(new QueryTimeoutException("timeout")).doNothing().when(deviceRepository).insertAll(anyList());
+        queue = newQueue(10, 10);
+        queue.start();
+
+        DeviceDTO queued = queue.enqueue(new DeviceDTO(null, "Phone", "Apple", null));
+        queue.awaitWritten(queued.id());
+
+        verify(deviceRepository, atLeast(2)).insertAll(anyList());
+        verify(eventPublisher).publishEvent(DeviceChangeEvent.created(queued));
+        assertEquals(0, queue.status().droppedDevices());
+    }
+
+    @Test
+    void flush_ShouldDeadLetterOnlyTheDevicesTheDatabaseRefuses() {
+        doAnswer(invocation -> {
+            List<DeviceDTO> devices = invocation.getArgument(0);
+            if (devices.stream().anyMatch(device -> "Refused".equals(device.name()))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            return null;
+        }).when(deviceRepository).insertAll(anyList());
+        queue = newQueue(10, 10);
+        queue.start();
+
+        DeviceDTO refused = queue.enqueue(new DeviceDTO(null, "Refused", "Apple", null));
+        DeviceDTO written = queue.enqueue(new DeviceDTO(null, "Phone", "Apple", null));
+        queue.awaitWritten(refused.id());
+        queue.awaitWritten(written.id());
+
+        verify(eventPublisher).publishEvent(DeviceChangeEvent.created(written));
+        verify(eventPublisher, never()).publishEvent(DeviceChangeEvent.created(refused));
+        assertEquals(refused, queue.deadLetters().getFirst().device());
+        WriteBehindStatusDTO status = queue.status();
+        assertEquals(1, status.deadLettered());
+        assertTrue(status.failedBatches() > 0);
+        assertEquals(0, status.droppedDevices());
+
+        doNothing().when(deviceRepository).insertAll(anyList());
+        assertEquals(1, queue.retryDeadLetters());
+        queue.awaitWritten(refused.id());
+
+        verify(eventPublisher).publishEvent(DeviceChangeEvent.created(refused));
+        assertTrue(queue.deadLetters().isEmpty());
+    }
+
+    @Test
+    @ExtendWith(OutputCaptureExtension.class)
+    void stop_ShouldLogTheDeadLettersInFull(CapturedOutput output) {
+        doThrow(new DataIntegrityViolationException("value too long")).when(deviceRepository).insertAll(anyList());
+        queue = newQueue(10, 10);
+        queue.start();
+
+        DeviceDTO refused = queue.enqueue(new DeviceDTO(null, "Refused", "Apple", null));
+        queue.awaitWritten(refused.id());
+        queue.stop();
+
+        assertTrue(output.getAll().contains("Write-behind dead letter not written: " + refused));
+    }
+
+    private DeviceWriteBehindQueue newQueue(int capacity, int batchSize) {
+        return new DeviceWriteBehindQueue(deviceRepository, eventPublisher, capacity, batchSize, Duration.ofSeconds(5),
+                10);
+    }
+
+    private CountDownLatch blockWrites() {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return null;
+        }).when(deviceRepository).insertAll(anyList());
+        return release;
+    }
+}
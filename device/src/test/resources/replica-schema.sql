@@ -0,0 +1,4 @@
+create sequence if not exists device_seq start with 1 increment by 50;
+create table if not exists device (id bigint not null, brand varchar(255), brand_key varchar(255), creation_time timestamp(6), last_modified timestamp(6), name varchar(255), version bigint, primary key (id));
+create table if not exists device_revision (id integer not null, revision bigint not null, primary key (id));
+merge into device_revision (id, revision) key (id) values (1, 0);
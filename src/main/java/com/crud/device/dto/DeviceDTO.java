@@ -1,15 +0,0 @@
-package com.crud.device.dto;
-
-import java.util.Date;
-
-public record DeviceDTO(Long id,
-                        String name,
-                        String brand,
-                        Date creationTime) {
-}
-
-
-
-
-
-
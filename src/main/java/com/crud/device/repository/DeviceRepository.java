@@ -1,12 +0,0 @@
-package com.crud.device.repository;
-
-import com.crud.device.model.Device;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
-
-import java.util.List;
-
-@Repository
-public interface DeviceRepository extends JpaRepository<Device, Long> {
-    List<Device> findByBrandContainingIgnoreCase(String brand);
-}